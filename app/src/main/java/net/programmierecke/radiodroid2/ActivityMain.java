@@ -706,8 +706,8 @@ public class ActivityMain extends AppCompatActivity implements SearchView.OnQuer
     void LoadFavourites() {
         OpenFileDialog dialogOpen = new OpenFileDialog();
         dialogOpen.setStyle(DialogFragment.STYLE_NO_TITLE, Utils.getThemeResId(this));
+        // No extension filter, stations could be imported from .m3u, .csv and .jsonl files
         Bundle argsOpen = new Bundle();
-        argsOpen.putString(FileDialog.EXTENSION, ".m3u"); // file extension is optional
         dialogOpen.setArguments(argsOpen);
         dialogOpen.show(getSupportFragmentManager(), OpenFileDialog.class.getName());
     }
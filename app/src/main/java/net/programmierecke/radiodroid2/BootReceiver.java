@@ -10,6 +10,8 @@ public class BootReceiver extends BroadcastReceiver{
     @Override
     public void onReceive(Context context, Intent intent) {
         RadioDroidApp radioDroidApp = (RadioDroidApp)context.getApplicationContext();
-        radioDroidApp.getAlarmManager().resetAllAlarms();
+        RadioAlarmManager alarmManager = radioDroidApp.getAlarmManager();
+        alarmManager.resetAllAlarms();
+        alarmManager.resumeActiveRecordings();
     }
 }
@@ -12,6 +12,7 @@ import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 import net.programmierecke.radiodroid2.station.DataRadioStation;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import static java.lang.Math.min;
 
@@ -34,6 +35,11 @@ public class FavouriteManager extends StationSaveManager {
 
     @Override
     public void add(DataRadioStation station) {
+        // Whether the station is already a favourite is only known once loaded
+        if (postponeUntilLoaded(() -> add(station))) {
+            return;
+        }
+
         if (!has(station.StationUuid)) {
             super.add(station);
         }
@@ -41,29 +47,27 @@ public class FavouriteManager extends StationSaveManager {
 
     @Override
     public void restore(DataRadioStation station, int pos) {
+        if (postponeUntilLoaded(() -> restore(station, pos))) {
+            return;
+        }
+
         if (!has(station.StationUuid)) {
             super.restore(station, pos);
         }
     }
 
     @Override
-    void Load() {
-        super.Load();
-        updateShortcuts();
-    }
-
-    @Override
-    void Save() {
-        super.Save();
+    protected void onListChanged() {
         updateShortcuts();
     }
 
     public void updateShortcuts() {
         if (Build.VERSION.SDK_INT >= 25 && !BuildConfig.IS_TESTING.get()) {
-            int number = min(listStations.size(), ActivityMain.MAX_DYNAMIC_LAUNCHER_SHORTCUTS);
+            List<DataRadioStation> stations = getList();
+            int number = min(stations.size(), ActivityMain.MAX_DYNAMIC_LAUNCHER_SHORTCUTS);
             SetDynamicAppLauncherShortcuts setDynamicAppLauncherShortcuts = new SetDynamicAppLauncherShortcuts(number);
             for (int i = 0; i < number; i++) {
-                listStations.get(i).prepareShortcut(context, setDynamicAppLauncherShortcuts);
+                stations.get(i).prepareShortcut(context, setDynamicAppLauncherShortcuts);
             }
         }
     }
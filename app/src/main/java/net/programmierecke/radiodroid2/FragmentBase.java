@@ -62,6 +62,10 @@ public class FragmentBase extends Fragment {
         return urlResult;
     }
 
+    protected String getRelativeUrl() {
+        return relativeUrl;
+    }
+
     protected boolean hasUrl() {
         return !TextUtils.isEmpty(relativeUrl);
     }
@@ -53,9 +53,9 @@ public class FragmentHistory extends Fragment implements IAdapterRefreshable {
 
         ItemAdapterStation adapter = (ItemAdapterStation) rvStations.getAdapter();
 
-        if (BuildConfig.DEBUG) Log.d(TAG, "stations count:" + historyManager.listStations.size());
+        if (BuildConfig.DEBUG) Log.d(TAG, "stations count:" + historyManager.size());
 
-        adapter.updateList(null, historyManager.listStations);
+        adapter.updateList(null, historyManager.getList());
     }
 
     @Override
@@ -80,13 +80,15 @@ public class FragmentHistory extends Fragment implements IAdapterRefreshable {
                 Snackbar snackbar = Snackbar
                         .make(rvStations, R.string.notify_station_removed_from_list, 6000);
                 snackbar.setAnchorView(getView().getRootView().findViewById(R.id.bottom_sheet));
-                snackbar.setAction(R.string.action_station_removed_from_list_undo, new View.OnClickListener() {
-                    @Override
-                    public void onClick(View view) {
-                        historyManager.restore(station, removedIdx);
-                        RefreshListGui();
-                    }
-                });
+                if (removedIdx != -1) {
+                    snackbar.setAction(R.string.action_station_removed_from_list_undo, new View.OnClickListener() {
+                        @Override
+                        public void onClick(View view) {
+                            historyManager.restore(station, removedIdx);
+                            RefreshListGui();
+                        }
+                    });
+                }
                 snackbar.show();
             }
 
@@ -138,7 +140,7 @@ public class FragmentHistory extends Fragment implements IAdapterRefreshable {
         RadioDroidApp radioDroidApp = (RadioDroidApp) getActivity().getApplication();
         final OkHttpClient httpClient = radioDroidApp.getHttpClient();
         ArrayList<String> listUUids = new ArrayList<String>();
-        for (DataRadioStation station : historyManager.listStations){
+        for (DataRadioStation station : historyManager.getList()){
             listUUids.add(station.StationUuid);
         }
         Log.d(TAG, "Search for items: "+listUUids.size());
@@ -180,7 +182,7 @@ public class FragmentHistory extends Fragment implements IAdapterRefreshable {
 
     private void SyncList(List<DataRadioStation> list_new) {
         ArrayList<String> to_remove = new ArrayList<String>();
-        for (DataRadioStation station_current: historyManager.listStations){
+        for (DataRadioStation station_current: historyManager.getList()){
             boolean found = false;
             for (DataRadioStation station_new: list_new){
                 if (station_new.StationUuid.equals(station_current.StationUuid)){
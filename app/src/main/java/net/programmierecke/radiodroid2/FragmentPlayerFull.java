@@ -9,6 +9,7 @@ import android.content.pm.PackageManager;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.text.format.DateUtils;
 import android.util.Log;
@@ -44,10 +45,14 @@ import net.programmierecke.radiodroid2.history.TrackHistoryAdapter;
 import net.programmierecke.radiodroid2.history.TrackHistoryEntry;
 import net.programmierecke.radiodroid2.history.TrackHistoryRepository;
 import net.programmierecke.radiodroid2.history.TrackHistoryViewModel;
+import net.programmierecke.radiodroid2.players.BufferLevelObservable;
+import net.programmierecke.radiodroid2.players.telemetry.PlaybackQualitySummary;
+import net.programmierecke.radiodroid2.players.telemetry.PlaybackTelemetry;
 import net.programmierecke.radiodroid2.recording.Recordable;
 import net.programmierecke.radiodroid2.recording.RecordingsAdapter;
 import net.programmierecke.radiodroid2.recording.RecordingsManager;
 import net.programmierecke.radiodroid2.recording.RunningRecordingInfo;
+import net.programmierecke.radiodroid2.recording.StreamRecorder;
 import net.programmierecke.radiodroid2.service.PauseReason;
 import net.programmierecke.radiodroid2.service.PlayerService;
 import net.programmierecke.radiodroid2.service.PlayerServiceUtil;
@@ -63,6 +68,7 @@ import net.programmierecke.radiodroid2.views.RecyclerAwareNestedScrollView;
 import net.programmierecke.radiodroid2.views.TagsView;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -102,9 +108,17 @@ public class FragmentPlayerFull extends Fragment {
     private FavouriteManager favouriteManager;
     private FavouritesObserver favouritesObserver = new FavouritesObserver();
 
+    private BufferLevelObservable bufferLevelObservable;
+    private BufferLevelObservable.Subscriber bufferLevelSubscriber;
+
     private TrackHistoryRepository trackHistoryRepository;
     private TrackHistoryAdapter trackHistoryAdapter;
 
+    private PlaybackTelemetry playbackTelemetry;
+    // Earlier sessions of the station, loaded once per station
+    private String qualitySummaryStationUuid;
+    private PlaybackQualitySummary qualitySummary;
+
     private RecordingsAdapter recordingsAdapter;
 
     private boolean storagePermissionsDenied = false;
@@ -145,6 +159,9 @@ public class FragmentPlayerFull extends Fragment {
 
         favouriteManager = radioDroidApp.getFavouriteManager();
 
+        bufferLevelObservable = radioDroidApp.getBufferLevelObservable();
+        bufferLevelSubscriber = bufferedMs -> textViewTimeCached.setText(DateUtils.formatElapsedTime(Math.max(0, bufferedMs) / 1000));
+
         trackHistoryAdapter = new TrackHistoryAdapter(requireActivity());
         trackHistoryAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
             public void onItemRangeInserted(int positionStart, int itemCount) {
@@ -157,6 +174,8 @@ public class FragmentPlayerFull extends Fragment {
 
         trackHistoryRepository = radioDroidApp.getTrackHistoryRepository();
 
+        playbackTelemetry = radioDroidApp.getPlaybackTelemetry();
+
         updateUIReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
@@ -251,7 +270,7 @@ public class FragmentPlayerFull extends Fragment {
         historyAndRecordsPagerAdapter.recyclerViewSongHistory.addItemDecoration(dividerItemDecoration);
 
         trackHistoryViewModel = ViewModelProviders.of(this).get(TrackHistoryViewModel.class);
-        trackHistoryViewModel.getAllHistoryPaged().observe(this, new Observer<PagedList<TrackHistoryEntry>>() {
+        trackHistoryViewModel.getHistoryPaged().observe(this, new Observer<PagedList<TrackHistoryEntry>>() {
             @Override
             public void onChanged(@Nullable PagedList<TrackHistoryEntry> songHistoryEntries) {
                 trackHistoryAdapter.submitList(songHistoryEntries);
@@ -407,6 +426,9 @@ public class FragmentPlayerFull extends Fragment {
         recordingsManager.getSavedRecordingsObservable().addObserver(recordingsObserver);
 
         favouriteManager.addObserver(favouritesObserver);
+
+        // The player only samples its buffer while someone looks at it
+        bufferLevelObservable.subscribe(bufferLevelSubscriber, TIMED_UPDATE_INTERVAL);
     }
 
     private void stopUpdating() {
@@ -425,6 +447,8 @@ public class FragmentPlayerFull extends Fragment {
         recordingsManager.getSavedRecordingsObservable().deleteObserver(recordingsObserver);
 
         favouriteManager.deleteObserver(favouritesObserver);
+
+        bufferLevelObservable.unsubscribe(bufferLevelSubscriber);
     }
 
     public void resetScroll() {
@@ -487,6 +511,19 @@ public class FragmentPlayerFull extends Fragment {
             String[] tags = station.TagsAll.split(",");
             artAndInfoPagerAdapter.viewTags.setTags(Arrays.asList(tags));
             //artAndInfoPagerAdapter.viewTags.setTagSelectionCallback(tagSelectionCallback);
+
+            if (!station.StationUuid.equals(qualitySummaryStationUuid)) {
+                final String stationUuid = station.StationUuid;
+                qualitySummaryStationUuid = stationUuid;
+                qualitySummary = null;
+
+                playbackTelemetry.getStationSummary(stationUuid, summary -> {
+                    if (stationUuid.equals(qualitySummaryStationUuid)) {
+                        qualitySummary = summary;
+                        updatePlaybackQuality();
+                    }
+                });
+            }
         }
 
         updateAlbumArt();
@@ -539,7 +576,17 @@ public class FragmentPlayerFull extends Fragment {
     private void updateRunningRecording() {
         if (PlayerServiceUtil.isRecording()) {
             final Map<Recordable, RunningRecordingInfo> runningRecordings = recordingsManager.getRunningRecordings();
-            final RunningRecordingInfo recordingInfo = runningRecordings.entrySet().iterator().next().getValue();
+            RunningRecordingInfo recordingInfo = null;
+            for (Map.Entry<Recordable, RunningRecordingInfo> entry : runningRecordings.entrySet()) {
+                // Stations recorded without playing them are shown in their own notification
+                if (!(entry.getKey() instanceof StreamRecorder)) {
+                    recordingInfo = entry.getValue();
+                    break;
+                }
+            }
+            if (recordingInfo == null) {
+                return;
+            }
 
             groupRecordings.setVisibility(View.VISIBLE);
             imgRecordingIcon.startAnimation(AnimationUtils.loadAnimation(getContext(), R.anim.blink_recording));
@@ -696,7 +743,7 @@ public class FragmentPlayerFull extends Fragment {
                                     .into(fragment.artAndInfoPagerAdapter.imageViewArt);
 
                             if (!albumArtUrl.equals(trackHistoryEntry.stationIconUrl)) {
-                                fragment.trackHistoryRepository.setTrackArtUrl(trackHistoryEntry.uid, albumArtUrl);
+                                fragment.trackHistoryRepository.setTrackArtUrl(trackHistoryEntry, albumArtUrl);
                             }
 
                             fragment.trackMetadataCallback = null;
@@ -711,6 +758,38 @@ public class FragmentPlayerFull extends Fragment {
         }
     }
 
+    private void updatePlaybackQuality() {
+        if (!isAdded()) {
+            return;
+        }
+
+        final List<String> lines = new ArrayList<>();
+
+        final PlaybackTelemetry.Session session = playbackTelemetry.getCurrentSession();
+        if (session != null && session.getStationUuid().equals(qualitySummaryStationUuid)) {
+            final long now = SystemClock.elapsedRealtime();
+            final float rebufferRatio = PlaybackTelemetry.rebufferRatio(session.getPlayingMs(now), session.getRebufferMs(now));
+            lines.add(getString(R.string.playback_quality_session, session.getRebufferCount(), rebufferRatio * 100,
+                    session.getUnderrunCount(), session.getLoadErrorCount()));
+
+            if (!session.getDecoderName().isEmpty()) {
+                lines.add(getString(R.string.playback_quality_decoder, session.getDecoderName(), session.getDecoderInitMs()));
+            }
+            if (session.getBitrateEstimate() > 0) {
+                lines.add(getString(R.string.playback_quality_bandwidth, session.getBitrateEstimate() / 1000));
+            }
+        }
+
+        if (qualitySummary != null && qualitySummary.sessions > 0) {
+            lines.add(getString(R.string.playback_quality_station, qualitySummary.sessions,
+                    qualitySummary.getRebufferRatio() * 100, qualitySummary.loadErrorCount));
+        }
+
+        final TextView textViewPlaybackQuality = artAndInfoPagerAdapter.textViewPlaybackQuality;
+        textViewPlaybackQuality.setText(TextUtils.join("\n", lines));
+        textViewPlaybackQuality.setVisibility(lines.isEmpty() ? View.GONE : View.VISIBLE);
+    }
+
     private class ArtAndInfoPagerAdapter extends PagerAdapter {
         private ViewGroup layoutAlbumArt;
         private ViewGroup layoutStationInfo;
@@ -720,6 +799,7 @@ public class FragmentPlayerFull extends Fragment {
         ImageView imageViewArt;
         TextView textViewStationDescription;
         TagsView viewTags;
+        TextView textViewPlaybackQuality;
 
         ArtAndInfoPagerAdapter(@NonNull Context context, @NonNull ViewGroup parent) {
             LayoutInflater inflater = LayoutInflater.from(context);
@@ -733,6 +813,7 @@ public class FragmentPlayerFull extends Fragment {
 
             textViewStationDescription = layoutStationInfo.findViewById(R.id.textViewStationDescription);
             viewTags = layoutStationInfo.findViewById(R.id.viewTags);
+            textViewPlaybackQuality = layoutStationInfo.findViewById(R.id.textViewPlaybackQuality);
         }
 
         @NonNull
@@ -847,9 +928,8 @@ public class FragmentPlayerFull extends Fragment {
                 deltaSeconds = Math.max(deltaSeconds, 0);
                 fragmentPlayerFull.textViewTimePlayed.setText(DateUtils.formatElapsedTime(deltaSeconds));
 
-                fragmentPlayerFull.textViewTimeCached.setText(DateUtils.formatElapsedTime(PlayerServiceUtil.getBufferedSeconds()));
-
                 fragmentPlayerFull.updateRunningRecording();
+                fragmentPlayerFull.updatePlaybackQuality();
             }
         }
     }
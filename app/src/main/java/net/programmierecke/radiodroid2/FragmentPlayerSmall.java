@@ -15,6 +15,7 @@ import androidx.fragment.app.Fragment;
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 import androidx.preference.PreferenceManager;
 
+import net.programmierecke.radiodroid2.history.TrackHistoryExport;
 import net.programmierecke.radiodroid2.history.TrackHistoryRepository;
 import net.programmierecke.radiodroid2.players.mpd.MPDClient;
 import net.programmierecke.radiodroid2.service.PauseReason;
@@ -24,6 +25,8 @@ import net.programmierecke.radiodroid2.station.DataRadioStation;
 import net.programmierecke.radiodroid2.station.StationActions;
 import net.programmierecke.radiodroid2.station.live.StreamLiveInfo;
 
+import java.io.File;
+
 public class FragmentPlayerSmall extends Fragment {
     private TrackHistoryRepository trackHistoryRepository;
 
@@ -288,6 +291,14 @@ public class FragmentPlayerSmall extends Fragment {
                     StationActions.setAsAlarm(requireActivity(), currentStation);
                     break;
                 }
+                case R.id.action_export_stream_history: {
+                    exportTrackHistory();
+                    break;
+                }
+                case R.id.action_export_playback_report: {
+                    exportPlaybackReport();
+                    break;
+                }
                 case R.id.action_delete_stream_history: {
                     trackHistoryRepository.deleteHistory();
                     break;
@@ -300,6 +311,33 @@ public class FragmentPlayerSmall extends Fragment {
         dropDownMenu.show();
     }
 
+    private void exportTrackHistory() {
+        final Context context = requireContext().getApplicationContext();
+        final String filePath = StationSaveManager.getSaveDir();
+        final String fileName = "radiodroid_track_history.csv";
+
+        Toast.makeText(context, context.getString(R.string.notify_save_playlist_now, filePath, fileName), Toast.LENGTH_LONG).show();
+
+        trackHistoryRepository.exportHistory(new File(filePath, fileName), TrackHistoryExport.Format.CSV, count -> {
+            final int messageId = count >= 0 ? R.string.notify_save_playlist_ok : R.string.notify_save_playlist_nok;
+            Toast.makeText(context, context.getString(messageId, filePath, fileName), Toast.LENGTH_LONG).show();
+        });
+    }
+
+    private void exportPlaybackReport() {
+        final Context context = requireContext().getApplicationContext();
+        final String filePath = StationSaveManager.getSaveDir();
+        final String fileName = "radiodroid_playback_report.csv";
+
+        Toast.makeText(context, context.getString(R.string.notify_save_playlist_now, filePath, fileName), Toast.LENGTH_LONG).show();
+
+        final RadioDroidApp radioDroidApp = (RadioDroidApp) requireActivity().getApplication();
+        radioDroidApp.getPlaybackTelemetry().exportReport(new File(filePath, fileName), count -> {
+            final int messageId = count >= 0 ? R.string.notify_save_playlist_ok : R.string.notify_save_playlist_nok;
+            Toast.makeText(context, context.getString(messageId, filePath, fileName), Toast.LENGTH_LONG).show();
+        });
+    }
+
     class LifecycleCallbacks implements Application.ActivityLifecycleCallbacks {
         @Override
         public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
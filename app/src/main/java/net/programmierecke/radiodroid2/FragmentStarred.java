@@ -63,9 +63,9 @@ public class FragmentStarred extends Fragment implements IAdapterRefreshable, Ob
 
         ItemAdapterStation adapter = (ItemAdapterStation) rvStations.getAdapter();
 
-        if (BuildConfig.DEBUG) Log.d(TAG, "stations count:" + favouriteManager.listStations.size());
+        if (BuildConfig.DEBUG) Log.d(TAG, "stations count:" + favouriteManager.size());
 
-        adapter.updateList(this, favouriteManager.listStations);
+        adapter.updateList(this, favouriteManager.getList());
     }
 
     @Override
@@ -125,7 +125,7 @@ public class FragmentStarred extends Fragment implements IAdapterRefreshable, Ob
             public void onStationMoveFinished() {
                 // We don't want to update RecyclerView during its layout process
                 Objects.requireNonNull(getView()).post(() -> {
-                    favouriteManager.Save();
+                    favouriteManager.updateShortcuts();
                     favouriteManager.notifyObservers();
                 });
             }
@@ -155,7 +155,7 @@ public class FragmentStarred extends Fragment implements IAdapterRefreshable, Ob
         RadioDroidApp radioDroidApp = (RadioDroidApp) getActivity().getApplication();
         final OkHttpClient httpClient = radioDroidApp.getHttpClient();
         ArrayList<String> listUUids = new ArrayList<String>();
-        for (DataRadioStation station : favouriteManager.listStations){
+        for (DataRadioStation station : favouriteManager.getList()){
             listUUids.add(station.StationUuid);
         }
         Log.d(TAG, "Search for items: "+listUUids.size());
@@ -197,7 +197,7 @@ public class FragmentStarred extends Fragment implements IAdapterRefreshable, Ob
 
     private void SyncList(List<DataRadioStation> list_new) {
         ArrayList<String> to_remove = new ArrayList<String>();
-        for (DataRadioStation station_current: favouriteManager.listStations){
+        for (DataRadioStation station_current: favouriteManager.getList()){
             boolean found = false;
             for (DataRadioStation station_new: list_new){
                 if (station_new.StationUuid.equals(station_current.StationUuid)){
@@ -18,21 +18,17 @@ public class HistoryManager extends StationSaveManager{
 
     @Override
     public void add(DataRadioStation station){
+        if (postponeUntilLoaded(() -> add(station))) {
+            return;
+        }
+
         DataRadioStation stationFromHistory = getById(station.StationUuid);
         if (stationFromHistory != null) {
-            listStations.remove(stationFromHistory);
-            listStations.add(0, stationFromHistory);
-            Save();
+            moveWithoutNotify(listStations.positionOf(station.StationUuid), 0);
             return;
         }
 
-        cutList(MAXSIZE - 1);
+        truncate(MAXSIZE - 1);
         super.addFront(station);
     }
-
-    private void cutList(int count){
-        if (listStations.size() > count){
-            listStations = listStations.subList(0,count);
-        }
-    }
 }
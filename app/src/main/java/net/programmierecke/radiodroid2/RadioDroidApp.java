@@ -1,10 +1,15 @@
 package net.programmierecke.radiodroid2;
 
 import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatDelegate;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.ProcessLifecycleOwner;
 import androidx.multidex.MultiDexApplication;
 import androidx.preference.PreferenceManager;
 
@@ -12,8 +17,12 @@ import com.squareup.picasso.OkHttp3Downloader;
 import com.squareup.picasso.Picasso;
 
 import net.programmierecke.radiodroid2.alarm.RadioAlarmManager;
+import net.programmierecke.radiodroid2.database.RadioDroidDatabase;
 import net.programmierecke.radiodroid2.history.TrackHistoryRepository;
+import net.programmierecke.radiodroid2.players.BufferLevelObservable;
+import net.programmierecke.radiodroid2.players.health.StreamHealthStore;
 import net.programmierecke.radiodroid2.players.mpd.MPDClient;
+import net.programmierecke.radiodroid2.players.telemetry.PlaybackTelemetry;
 import net.programmierecke.radiodroid2.station.live.metadata.TrackMetadataSearcher;
 import net.programmierecke.radiodroid2.proxy.ProxySettings;
 import net.programmierecke.radiodroid2.recording.RecordingsManager;
@@ -38,6 +47,10 @@ public class RadioDroidApp extends MultiDexApplication {
 
     private TrackHistoryRepository trackHistoryRepository;
 
+    private PlaybackTelemetry playbackTelemetry;
+    private StreamHealthStore streamHealthStore;
+    private BufferLevelObservable bufferLevelObservable;
+
     private MPDClient mpdClient;
 
     private CastHandler castHandler;
@@ -89,18 +102,31 @@ public class RadioDroidApp extends MultiDexApplication {
 
         historyManager = new HistoryManager(this);
         favouriteManager = new FavouriteManager(this);
-        recordingsManager = new RecordingsManager();
+        recordingsManager = new RecordingsManager(this);
         alarmManager = new RadioAlarmManager(this);
 
         trackHistoryRepository = new TrackHistoryRepository(this);
 
+        streamHealthStore = new StreamHealthStore(RadioDroidDatabase.getDatabase(this));
+        playbackTelemetry = new PlaybackTelemetry(RadioDroidDatabase.getDatabase(this), streamHealthStore);
+        bufferLevelObservable = new BufferLevelObservable(new Handler(Looper.getMainLooper())::post);
+
         mpdClient = new MPDClient(this);
 
         castHandler = new CastHandler();
 
         trackMetadataSearcher = new TrackMetadataSearcher(httpClient);
 
-        recordingsManager.updateRecordingsList();
+        recordingsManager.loadRecordings();
+
+        ProcessLifecycleOwner.get().getLifecycle().addObserver(new DefaultLifecycleObserver() {
+            @Override
+            public void onStop(@NonNull LifecycleOwner owner) {
+                // App may be killed while in background, so don't keep changes pending
+                historyManager.flush();
+                favouriteManager.flush();
+            }
+        });
     }
 
     public void setTestsInterceptor(Interceptor testsInterceptor) {
@@ -137,6 +163,18 @@ public class RadioDroidApp extends MultiDexApplication {
         return trackHistoryRepository;
     }
 
+    public PlaybackTelemetry getPlaybackTelemetry() {
+        return playbackTelemetry;
+    }
+
+    public StreamHealthStore getStreamHealthStore() {
+        return streamHealthStore;
+    }
+
+    public BufferLevelObservable getBufferLevelObservable() {
+        return bufferLevelObservable;
+    }
+
     public MPDClient getMpdClient() {
         return mpdClient;
     }
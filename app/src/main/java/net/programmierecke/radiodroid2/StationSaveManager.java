@@ -8,27 +8,44 @@ import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Environment;
+import android.os.Handler;
+import android.os.Looper;
 import android.preference.PreferenceManager;
 import android.util.Log;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
+import net.programmierecke.radiodroid2.database.RadioDroidDatabase;
 import net.programmierecke.radiodroid2.station.DataRadioStation;
-
-import org.json.JSONArray;
+import net.programmierecke.radiodroid2.station.SavedStationDao;
+import net.programmierecke.radiodroid2.station.SavedStationEntry;
+import net.programmierecke.radiodroid2.station.StationList;
+import net.programmierecke.radiodroid2.station.StationListExport;
+import net.programmierecke.radiodroid2.station.StationSnapshot;
+import net.programmierecke.radiodroid2.utils.SearchNormalizer;
+import net.programmierecke.radiodroid2.utils.WriteBehindQueue;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Observable;
-import java.util.Vector;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import info.debatty.java.stringsimilarity.Cosine;
 import okhttp3.OkHttpClient;
@@ -39,12 +56,90 @@ public class StationSaveManager extends Observable {
     }
 
     Context context;
-    List<DataRadioStation> listStations = new ArrayList<DataRadioStation>();
+    StationList listStations = new StationList();
 
     protected StationStatusListener stationStatusListener;
 
+    // Changes of the list are written in background and batched, consecutive changes done
+    // in quick succession (e.g. dragging a station through the list) will be merged.
+    private static final long WRITE_DELAY_MS = 1000;
+    private static final ScheduledExecutorService writeExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "StationSaveManager Writer"));
+
+    private interface Change {
+        void apply(@NonNull SavedStationDao dao);
+    }
+
+    private static class MoveChange implements Change {
+        final String listId;
+        final int from;
+        int to;
+
+        MoveChange(String listId, int from, int to) {
+            this.listId = listId;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public void apply(@NonNull SavedStationDao dao) {
+            dao.move(listId, from, to);
+        }
+    }
+
+    // A change along with the list as it was right after it, which is only kept for the
+    // latest pending change. The copy is made on the main thread where the list is changed.
+    private static class PendingChange {
+        final Change change;
+        @Nullable
+        List<DataRadioStation> listAfter;
+
+        PendingChange(Change change, List<DataRadioStation> listAfter) {
+            this.change = change;
+            this.listAfter = listAfter;
+        }
+    }
+
+    private static class RewriteChange implements Change {
+        final String listId;
+        final List<SavedStationEntry> entries;
+
+        RewriteChange(String listId, List<SavedStationEntry> entries) {
+            this.listId = listId;
+            this.entries = entries;
+        }
+
+        @Override
+        public void apply(@NonNull SavedStationDao dao) {
+            dao.replaceAll(listId, entries);
+        }
+    }
+
+    private final RadioDroidDatabase db;
+    private final SavedStationDao dao;
+    private final Executor queryExecutor;
+    private final WriteBehindQueue<PendingChange> writeQueue;
+
+    // Binary copy of the list which is much faster to load than JSON stored in the database.
+    // It is deleted before the database is changed and written again after the change is
+    // committed, so an existing snapshot is never out of date. It is also tagged with
+    // the checksum of the list in the database in case the database was replaced.
+    private final File snapshotFile;
+
+    // Stations are read from the database in background. Until they are loaded the list is
+    // empty and changes to it are postponed, observers are notified once loading finishes.
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Runnable> postponedChanges = new ArrayList<>();
+    private volatile boolean loaded = false;
+
     public StationSaveManager(Context ctx) {
         this.context = ctx;
+
+        db = RadioDroidDatabase.getDatabase(ctx);
+        dao = db.savedStationDao();
+        queryExecutor = db.getQueryExecutor();
+        writeQueue = new WriteBehindQueue<>(writeExecutor, WRITE_DELAY_MS, this::writeChanges, StationSaveManager::coalesceChanges);
+        snapshotFile = new File(ctx.getFilesDir(), "stations_" + getSaveId() + ".snapshot");
+
         Load();
     }
 
@@ -56,9 +151,49 @@ public class StationSaveManager extends Observable {
         this.stationStatusListener = stationStatusListener;
     }
 
+    /**
+     * Called on the main thread once stations are loaded and after every change of the list.
+     */
+    protected void onListChanged() {
+    }
+
+    /**
+     * Changes made before stations are loaded are applied on top of the loaded list.
+     * Must be called on the main thread.
+     *
+     * @return true if the change was postponed and should not be done now
+     */
+    protected boolean postponeUntilLoaded(@NonNull Runnable change) {
+        if (loaded) {
+            return false;
+        }
+
+        postponedChanges.add(change);
+        return true;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Runs the action on the main thread once stations are loaded, right away if they already are.
+     * Must be called on the main thread.
+     */
+    public void runWhenLoaded(@NonNull Runnable action) {
+        if (!postponeUntilLoaded(action)) {
+            action.run();
+        }
+    }
+
     public void add(DataRadioStation station) {
+        if (postponeUntilLoaded(() -> add(station))) {
+            return;
+        }
+
         listStations.add(station);
-        Save();
+        persistInsert(listStations.size() - 1, station);
+        onListChanged();
 
         notifyObservers();
 
@@ -68,31 +203,46 @@ public class StationSaveManager extends Observable {
     }
 
     public void addMultiple(List<DataRadioStation> stations) {
+        if (postponeUntilLoaded(() -> addMultiple(stations))) {
+            return;
+        }
+
+        final List<SavedStationEntry> entries = new ArrayList<>(stations.size());
         for (DataRadioStation station_new: stations){
             listStations.add(station_new);
+            entries.add(toEntry(listStations.size() - 1, station_new));
         }
-        Save();
+        submitChange(dao -> dao.insertAll(entries));
+        onListChanged();
 
         notifyObservers();
     }
 
     public void replaceList(List<DataRadioStation> stations_new) {
+        if (postponeUntilLoaded(() -> replaceList(stations_new))) {
+            return;
+        }
+
         for (DataRadioStation station_new: stations_new) {
-            for (int i = 0; i < listStations.size(); i++) {
-                if (listStations.get(i).StationUuid.equals(station_new.StationUuid)){
-                    listStations.set(i, station_new);
-                    break;
-                }
+            int pos = listStations.positionOf(station_new.StationUuid);
+            if (pos != -1) {
+                listStations.set(pos, station_new);
+                persistUpdate(station_new);
             }
         }
-        Save();
+        onListChanged();
 
         notifyObservers();
     }
 
     public void addFront(DataRadioStation station) {
+        if (postponeUntilLoaded(() -> addFront(station))) {
+            return;
+        }
+
         listStations.add(0, station);
-        Save();
+        persistInsert(0, station);
+        onListChanged();
 
         notifyObservers();
 
@@ -118,22 +268,16 @@ public class StationSaveManager extends Observable {
     }
 
     public DataRadioStation getById(String id) {
-        for (DataRadioStation station : listStations) {
-            if (id.equals(station.StationUuid)) {
-                return station;
-            }
-        }
-        return null;
+        return listStations.getByUuid(id);
     }
 
     public DataRadioStation getNextById(String id) {
         if (listStations.isEmpty())
             return null;
 
-        for (int i = 0; i < listStations.size() - 1; i++) {
-            if (listStations.get(i).StationUuid.equals(id)) {
-                return listStations.get(i + 1);
-            }
+        int pos = listStations.positionOf(id);
+        if (pos != -1 && pos < listStations.size() - 1) {
+            return listStations.get(pos + 1);
         }
         return listStations.get(0);
     }
@@ -142,32 +286,38 @@ public class StationSaveManager extends Observable {
         if (listStations.isEmpty())
             return null;
 
-        for (int i = 1; i < listStations.size(); i++) {
-            if (listStations.get(i).StationUuid.equals(id)) {
-                return listStations.get(i - 1);
-            }
+        int pos = listStations.positionOf(id);
+        if (pos > 0) {
+            return listStations.get(pos - 1);
         }
         return listStations.get(listStations.size() - 1);
     }
 
     public void moveWithoutNotify(int fromPos, int toPos) {
-        Collections.rotate(listStations.subList(Math.min(fromPos, toPos), Math.max(fromPos, toPos) + 1), Integer.signum(fromPos - toPos));
+        if (postponeUntilLoaded(() -> moveWithoutNotify(fromPos, toPos))) {
+            return;
+        }
+
+        listStations.move(fromPos, toPos);
+
+        submitChange(new MoveChange(getSaveId(), fromPos, toPos));
     }
 
     public void move(int fromPos, int toPos) {
         moveWithoutNotify(fromPos, toPos);
+        onListChanged();
         notifyObservers();
     }
 
     public @Nullable
     DataRadioStation getBestNameMatch(String query) {
         DataRadioStation bestStation = null;
-        query = query.toUpperCase();
+        query = SearchNormalizer.normalize(query);
         double smallesDistance = Double.MAX_VALUE;
 
         Cosine distMeasure = new Cosine(); // must be in the loop for some measures (e.g. Sift4)
         for (DataRadioStation station : listStations) {
-            double distance = distMeasure.distance(station.Name.toUpperCase(), query);
+            double distance = distMeasure.distance(station.getNameSearchKey(), query);
             if (distance < smallesDistance) {
                 bestStation = station;
                 smallesDistance = distance;
@@ -178,27 +328,37 @@ public class StationSaveManager extends Observable {
     }
 
     public int remove(String id) {
-        for (int i = 0; i < listStations.size(); i++) {
-            DataRadioStation station = listStations.get(i);
-            if (station.StationUuid.equals(id)) {
-                listStations.remove(i);
-                Save();
-                notifyObservers();
+        if (postponeUntilLoaded(() -> remove(id))) {
+            return -1;
+        }
 
-                if (stationStatusListener != null) {
-                    stationStatusListener.onStationStatusChanged(station, false);
-                }
+        int pos = listStations.positionOf(id);
+        if (pos == -1) {
+            return -1;
+        }
 
-                return i;
-            }
+        DataRadioStation station = listStations.remove(pos);
+        persistRemove(pos);
+        onListChanged();
+        notifyObservers();
+
+        if (stationStatusListener != null) {
+            stationStatusListener.onStationStatusChanged(station, false);
         }
 
-        return -1;
+        return pos;
     }
 
     public void restore(DataRadioStation station, int pos) {
-        listStations.add(pos, station);
-        Save();
+        if (postponeUntilLoaded(() -> restore(station, pos))) {
+            return;
+        }
+
+        // The list may have changed since the station was removed
+        int insertPos = Math.max(0, Math.min(pos, listStations.size()));
+        listStations.add(insertPos, station);
+        persistInsert(insertPos, station);
+        onListChanged();
 
         notifyObservers();
 
@@ -208,9 +368,15 @@ public class StationSaveManager extends Observable {
     }
 
     public void clear() {
+        if (postponeUntilLoaded(this::clear)) {
+            return;
+        }
+
         List<DataRadioStation> oldStation = listStations;
-        listStations = new ArrayList<>();
-        Save();
+        listStations = new StationList();
+
+        submitChange(new RewriteChange(getSaveId(), new ArrayList<>()));
+        onListChanged();
 
         notifyObservers();
 
@@ -221,6 +387,22 @@ public class StationSaveManager extends Observable {
         }
     }
 
+    /**
+     * Removes stations at positions starting from {@code count} without notifying observers.
+     */
+    protected void truncate(int count) {
+        if (postponeUntilLoaded(() -> truncate(count))) {
+            return;
+        }
+
+        if (listStations.size() > count) {
+            listStations.subList(count, listStations.size()).clear();
+
+            final String listId = getSaveId();
+            submitChange(dao -> dao.deleteFrom(listId, count));
+        }
+    }
+
     @Override
     public boolean hasChanged() {
         return true;
@@ -235,8 +417,7 @@ public class StationSaveManager extends Observable {
     }
 
     public boolean has(String id) {
-        DataRadioStation station = getById(id);
-        return station != null;
+        return listStations.containsUuid(id);
     }
 
     private boolean hasInvalidUuids() {
@@ -280,9 +461,13 @@ public class StationSaveManager extends Observable {
 
             @Override
             protected void onPostExecute(ArrayList<DataRadioStation> stationsToRemove) {
+                // Stations which had no uuid got it now
+                listStations.rebuildIndex();
                 listStations.removeAll(stationsToRemove);
 
+                // Refreshing may have changed any station including its uuid
                 Save();
+                onListChanged();
 
                 notifyObservers();
 
@@ -293,35 +478,229 @@ public class StationSaveManager extends Observable {
     }
 
     void Load() {
-        listStations.clear();
+        queryExecutor.execute(() -> {
+            StationList stations;
+            try {
+                stations = new StationList(loadFromDatabase());
+            } catch (Exception e) {
+                Log.e("LOAD", "Load() failed", e);
+                stations = new StationList();
+            }
+
+            final StationList loadedStations = stations;
+            mainHandler.post(() -> onLoaded(loadedStations));
+        });
+    }
+
+    private void onLoaded(@NonNull StationList loadedStations) {
+        listStations = loadedStations;
+        loaded = true;
 
+        for (Runnable change : postponedChanges) {
+            change.run();
+        }
+        postponedChanges.clear();
+
+        if (hasInvalidUuids() && Utils.hasAnyConnection(context)) {
+            refreshStationsFromServer();
+        }
+
+        onListChanged();
+        notifyObservers();
+    }
+
+    // Runs in the DB thread
+    private List<DataRadioStation> loadFromDatabase() {
+        List<DataRadioStation> stations = loadFromSnapshot();
+        if (stations == null) {
+            stations = loadFromEntries();
+            writeSnapshot(stations, dao.checksum(getSaveId()));
+        }
+
+        return stations;
+    }
+
+    // Runs in the DB thread
+    private @Nullable
+    List<DataRadioStation> loadFromSnapshot() {
+        if (!snapshotFile.exists()) {
+            return null;
+        }
+
+        try {
+            StationSnapshot.Reader snapshot = StationSnapshot.open(snapshotFile);
+            if (snapshot.getTag() != dao.checksum(getSaveId())) {
+                return null;
+            }
+
+            // Stations are decoded while the list is indexed, which is still in background
+            return snapshot;
+        } catch (Exception e) {
+            Log.e("LOAD", "loadFromSnapshot() failed", e);
+            return null;
+        }
+    }
+
+    // Runs in the DB thread
+    private List<DataRadioStation> loadFromEntries() {
+        final String listId = getSaveId();
+
+        List<SavedStationEntry> entries = dao.getStations(listId);
+        if (entries.isEmpty()) {
+            return migrateFromSharedPreferences();
+        }
+
+        List<DataRadioStation> stations = new ArrayList<>(entries.size());
+        for (SavedStationEntry entry : entries) {
+            DataRadioStation station = DataRadioStation.DecodeJsonSingle(entry.stationJson);
+            if (station != null) {
+                stations.add(station);
+            } else {
+                Log.e("LOAD", "Load() could not decode station " + entry.stationUuid);
+            }
+        }
+
+        if (stations.size() != entries.size()) {
+            // Keep positions dense
+            dao.replaceAll(listId, toEntries(stations));
+        }
+
+        return stations;
+    }
+
+    // Runs in the DB thread
+    private List<DataRadioStation> migrateFromSharedPreferences() {
         SharedPreferences sharedPref = PreferenceManager.getDefaultSharedPreferences(context);
         String str = sharedPref.getString(getSaveId(), null);
-        if (str != null) {
-            List<DataRadioStation> arr = DataRadioStation.DecodeJson(str);
-            listStations.addAll(arr);
-            if (hasInvalidUuids() && Utils.hasAnyConnection(context)) {
-                refreshStationsFromServer();
-            }
-        } else {
+        if (str == null) {
             Log.w("SAVE", "Load() no stations to load");
+            return new ArrayList<>();
         }
+
+        List<DataRadioStation> stations = DataRadioStation.DecodeJson(str);
+        dao.replaceAll(getSaveId(), toEntries(stations));
+        sharedPref.edit().remove(getSaveId()).apply();
+
+        return stations;
     }
 
+    /**
+     * Rewrites the whole list in the database, prefer row-level updates where possible.
+     */
     void Save() {
-        JSONArray arr = new JSONArray();
-        for (DataRadioStation station : listStations) {
-            arr.put(station.toJson());
+        submitChange(new RewriteChange(getSaveId(), toEntries(listStations)));
+    }
+
+    /**
+     * Writes pending changes without further delay, e.g. when the app goes to background.
+     */
+    public void flush() {
+        writeQueue.flush();
+    }
+
+    // Runs in the writer thread
+    private void writeChanges(@NonNull List<PendingChange> changes) {
+        if (snapshotFile.exists() && !snapshotFile.delete()) {
+            Log.e("SAVE", "writeChanges() could not delete outdated snapshot");
+            return;
         }
 
-        SharedPreferences sharedPref = PreferenceManager.getDefaultSharedPreferences(context);
-        SharedPreferences.Editor editor = sharedPref.edit();
-        String str = arr.toString();
-        if (BuildConfig.DEBUG) {
-            Log.d("SAVE", "wrote: " + str);
+        try {
+            db.runInTransaction(() -> {
+                for (PendingChange pendingChange : changes) {
+                    pendingChange.change.apply(dao);
+                }
+            });
+        } catch (Exception e) {
+            Log.e("SAVE", "writeChanges() failed", e);
+            return;
+        }
+
+        // Changes submitted after this batch will write the snapshot themselves
+        final List<DataRadioStation> stations = changes.get(changes.size() - 1).listAfter;
+        if (stations != null && !writeQueue.hasPendingChanges()) {
+            writeSnapshot(stations, dao.checksum(getSaveId()));
+        }
+    }
+
+    // Runs in the writer thread or in the DB thread while loading
+    private void writeSnapshot(@NonNull List<DataRadioStation> stations, long checksum) {
+        try {
+            StationSnapshot.write(stations, checksum, snapshotFile);
+        } catch (IOException e) {
+            Log.e("SAVE", "writeSnapshot() failed", e);
         }
-        editor.putString(getSaveId(), str);
-        editor.commit();
+    }
+
+    private static void coalesceChanges(@NonNull List<PendingChange> pending, @NonNull PendingChange pendingChange) {
+        final Change change = pendingChange.change;
+        if (change instanceof RewriteChange) {
+            // Everything before will be overwritten anyway
+            pending.clear();
+        } else if (change instanceof MoveChange && !pending.isEmpty()) {
+            final MoveChange move = (MoveChange) change;
+            final PendingChange lastPending = pending.get(pending.size() - 1);
+
+            // Moving the same station further is one move from its original position
+            if (lastPending.change instanceof MoveChange && ((MoveChange) lastPending.change).to == move.from) {
+                final MoveChange lastMove = (MoveChange) lastPending.change;
+                lastMove.to = move.to;
+                lastPending.listAfter = pendingChange.listAfter;
+                if (lastMove.from == lastMove.to) {
+                    // The list is back in the state it was after the change before
+                    pending.remove(pending.size() - 1);
+                    if (!pending.isEmpty()) {
+                        pending.get(pending.size() - 1).listAfter = pendingChange.listAfter;
+                    }
+                }
+                return;
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            // Only the list after the latest change is needed
+            pending.get(pending.size() - 1).listAfter = null;
+        }
+        pending.add(pendingChange);
+    }
+
+    // Must be called on the main thread right after the list was changed
+    private void submitChange(@NonNull Change change) {
+        writeQueue.submit(new PendingChange(change, Collections.unmodifiableList(new ArrayList<>(listStations))));
+    }
+
+    private void persistInsert(int position, DataRadioStation station) {
+        final SavedStationEntry entry = toEntry(position, station);
+        submitChange(dao -> dao.insertAt(entry));
+    }
+
+    private void persistRemove(int position) {
+        final String listId = getSaveId();
+        submitChange(dao -> dao.removeAt(listId, position));
+    }
+
+    private void persistUpdate(DataRadioStation station) {
+        final String listId = getSaveId();
+        final String stationUuid = station.StationUuid;
+        final String stationJson = station.toJson().toString();
+        submitChange(dao -> dao.updateStation(listId, stationUuid, stationJson));
+    }
+
+    private SavedStationEntry toEntry(int position, DataRadioStation station) {
+        SavedStationEntry entry = new SavedStationEntry();
+        entry.listId = getSaveId();
+        entry.position = position;
+        entry.stationUuid = station.StationUuid;
+        entry.stationJson = station.toJson().toString();
+        return entry;
+    }
+
+    private List<SavedStationEntry> toEntries(List<DataRadioStation> stations) {
+        List<SavedStationEntry> entries = new ArrayList<>(stations.size());
+        for (int i = 0; i < stations.size(); i++) {
+            entries.add(toEntry(i, stations.get(i)));
+        }
+        return entries;
     }
 
     public static String getSaveDir() {
@@ -391,40 +770,21 @@ public class StationSaveManager extends Observable {
         }.execute();
     }
 
-    protected final String M3U_PREFIX = "#RADIOBROWSERUUID:";
-
     boolean SaveM3UInternal(String filePath, String fileName) {
-        final RadioDroidApp radioDroidApp = (RadioDroidApp) context.getApplicationContext();
-        final OkHttpClient httpClient = radioDroidApp.getHttpClient();
-
         try {
             File f = new File(filePath, fileName);
-            BufferedWriter bw = new BufferedWriter(new FileWriter(f, false));
-            bw.write("#EXTM3U\n");
-            for (DataRadioStation station : listStations) {
-                /*
-                String result = null;
-                for (int i = 0; i < 20; i++) {
-                    result = Utils.getRealStationLink(httpClient, context, station.StationUuid);
-                    if (result != null) {
-                        break;
-                    }
-                    try {
-                        Thread.sleep(500);
-                    } catch (InterruptedException e) {
-                        Log.e("ERR", "Play() " + e);
-                    }
-                }
-                */
 
-                //if (result != null) {
-                    bw.write(M3U_PREFIX + station.StationUuid + "\n");
-                    bw.write("#EXTINF:-1," + station.Name + "\n");
-                    bw.write(station.StreamUrl + "\n\n");
-                //}
+            // Stations are exported from the database, so pending changes have to be written first
+            writeQueue.flush().get();
+
+            final String listId = getSaveId();
+            Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(f, false), Charset.forName("UTF-8")));
+            try {
+                StationListExport.export((fromPosition, limit) -> dao.getStationsPage(listId, fromPosition, limit),
+                        StationListExport.formatOf(fileName), writer);
+            } finally {
+                writer.close();
             }
-            bw.flush();
-            bw.close();
 
             if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
                 context.sendBroadcast(new Intent(Intent.ACTION_MEDIA_MOUNTED, Uri.parse("file://" + Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_MUSIC))));
@@ -441,37 +801,33 @@ public class StationSaveManager extends Observable {
     }
 
     List<DataRadioStation> LoadM3UInternal(String filePath, String fileName) {
+        final List<DataRadioStation> loadedItems = new ArrayList<>();
         try {
             File f = new File(filePath, fileName);
 
-            BufferedReader br = new BufferedReader(new FileReader(f));
-            String line;
-
             final RadioDroidApp radioDroidApp = (RadioDroidApp) context.getApplicationContext();
             final OkHttpClient httpClient = radioDroidApp.getHttpClient();
-            ArrayList<String> listUuids = new ArrayList<String>();
-
-            while ((line = br.readLine()) != null) {
-                if (line.startsWith(M3U_PREFIX)) {
-                    try {
-                        String uuid = line.substring(M3U_PREFIX.length()).trim();
-                        listUuids.add(uuid);
-                    } catch (Exception e) {
-                        Log.e("LOAD", e.toString());
-                    }
-                }
-            }
-            br.close();
+            final StationListExport.Format format = StationListExport.formatOf(fileName);
 
-            List<DataRadioStation> listStationsNew = Utils.getStationsByUuid(httpClient, context, listUuids);
-            if (listStationsNew != null) {
-                return listStationsNew;
+            Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(f), Charset.forName("UTF-8")));
+            try {
+                if (format == StationListExport.Format.JSON_LINES) {
+                    StationListExport.importStations(reader, loadedItems::addAll);
+                } else {
+                    StationListExport.importUuids(reader, format, uuids -> {
+                        List<DataRadioStation> listStationsNew = Utils.getStationsByUuid(httpClient, context, uuids);
+                        if (listStationsNew != null) {
+                            loadedItems.addAll(listStationsNew);
+                        }
+                    });
+                }
+            } finally {
+                reader.close();
             }
         } catch (Exception e) {
-            Log.e("LOAD", "File write failed: " + e.toString());
+            Log.e("LOAD", "File read failed: " + e.toString());
             return null;
         }
-        List<DataRadioStation> loadedItems = new ArrayList<>();
         return loadedItems;
     }
 }
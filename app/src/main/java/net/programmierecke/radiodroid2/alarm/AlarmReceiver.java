@@ -28,6 +28,7 @@ import net.programmierecke.radiodroid2.BuildConfig;
 import net.programmierecke.radiodroid2.IPlayerService;
 import net.programmierecke.radiodroid2.service.ConnectivityChecker;
 import net.programmierecke.radiodroid2.service.PlayerService;
+import net.programmierecke.radiodroid2.service.RecordingService;
 import net.programmierecke.radiodroid2.R;
 import net.programmierecke.radiodroid2.RadioDroidApp;
 import net.programmierecke.radiodroid2.Utils;
@@ -49,16 +50,26 @@ public class AlarmReceiver extends BroadcastReceiver {
     @Override
     public void onReceive(Context context, Intent intent) {
         if(BuildConfig.DEBUG) { Log.d(TAG,"received broadcast"); }
-        aquireLocks(context);
-        
-        Toast toast = Toast.makeText(context, context.getResources().getText(R.string.alert_alarm_working), Toast.LENGTH_SHORT);
-        toast.show();
 
         alarmId = intent.getIntExtra("id",-1);
         if(BuildConfig.DEBUG) { Log.d(TAG,"alarm id:"+alarmId); }
 
         RadioDroidApp radioDroidApp = (RadioDroidApp)context.getApplicationContext();
         RadioAlarmManager ram = radioDroidApp.getAlarmManager();
+        DataRadioStationAlarm alarm = ram.getById(alarmId);
+        if (alarm != null && alarm.recordMinutes > 0) {
+            // The recording service keeps the device awake on its own
+            final long startTime = intent.getLongExtra("startTime", System.currentTimeMillis());
+            RecordingService.recordScheduled(context, alarm.station, startTime, startTime + alarm.recordMinutes * 60 * 1000L);
+            ram.resetAllAlarms();
+            return;
+        }
+
+        aquireLocks(context);
+
+        Toast toast = Toast.makeText(context, context.getResources().getText(R.string.alert_alarm_working), Toast.LENGTH_SHORT);
+        toast.show();
+
         station = ram.getStation(alarmId);
         ram.resetAllAlarms();
 
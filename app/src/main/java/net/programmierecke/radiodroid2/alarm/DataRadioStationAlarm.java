@@ -12,5 +12,7 @@ public class DataRadioStationAlarm {
     public boolean repeating;
     public ArrayList<Integer> weekDays;
     public boolean enabled;
+    // Minutes to record without playing, 0 for an alarm which plays the station
+    public int recordMinutes;
 
 }
@@ -44,6 +44,7 @@ public class ItemAdapterRadioAlarm extends ArrayAdapter<DataRadioStationAlarm> {
 
 		TextView tvStation = (TextView) v.findViewById(R.id.textViewStation);
 		TextView tvTime = (TextView) v.findViewById(R.id.textViewTime);
+		TextView tvRecordDuration = (TextView) v.findViewById(R.id.textViewRecordDuration);
 		SwitchCompat s = (SwitchCompat)v.findViewById(R.id.switch1);
 		ImageButton b = (ImageButton) v.findViewById(R.id.buttonDeleteAlarm);
 		final ImageButton buttonRepeating = (ImageButton) v.findViewById(R.id.checkboxRepeating);
@@ -74,6 +75,21 @@ public class ItemAdapterRadioAlarm extends ArrayAdapter<DataRadioStationAlarm> {
 		if (tvTime != null) {
 			tvTime.setText(String.format(Locale.getDefault(),"%02d:%02d",aData.hour,aData.minute));
 		}
+		if (tvRecordDuration != null) {
+			if (aData.recordMinutes > 0) {
+				tvRecordDuration.setVisibility(View.VISIBLE);
+				tvRecordDuration.setText(context.getString(R.string.alarm_record_duration, aData.recordMinutes));
+				tvRecordDuration.setOnClickListener(new View.OnClickListener() {
+					@Override
+					public void onClick(View view) {
+						RecordDurationDialog.show(context, aData.recordMinutes, minutes -> ram.changeRecordMinutes(aData.id, minutes));
+					}
+				});
+			} else {
+				tvRecordDuration.setVisibility(View.GONE);
+				tvRecordDuration.setOnClickListener(null);
+			}
+		}
 		if (s != null){
 			s.setChecked(aData.enabled);
 			s.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
@@ -9,7 +9,10 @@ import android.os.Build;
 import android.preference.PreferenceManager;
 import android.util.Log;
 
+import androidx.annotation.NonNull;
+
 import net.programmierecke.radiodroid2.BuildConfig;
+import net.programmierecke.radiodroid2.service.RecordingService;
 import net.programmierecke.radiodroid2.station.DataRadioStation;
 
 import java.util.ArrayList;
@@ -24,6 +27,8 @@ import com.google.gson.reflect.TypeToken;
 public class RadioAlarmManager {
 
     private static final int ONE_DAY_IN_MILLIS = 24 * 60 * 60 * 1000;
+    // Scheduled recordings are woken up early to resolve the stream url in time
+    static final long RECORDING_LEAD_MILLIS = 60 * 1000;
     private Context context;
     private List<DataRadioStationAlarm> list = new ArrayList<DataRadioStationAlarm>();
 
@@ -70,6 +75,22 @@ public class RadioAlarmManager {
         setEnabled(alarm.id, true);
     }
 
+    public void addRecording(DataRadioStation station, int hour, int minute, int recordMinutes){
+        if(BuildConfig.DEBUG) { Log.d("ALARM","added recording of station:"+station.Name); }
+        DataRadioStationAlarm alarm = new DataRadioStationAlarm();
+        alarm.station = station;
+        alarm.hour = hour;
+        alarm.minute = minute;
+        alarm.recordMinutes = recordMinutes;
+        alarm.weekDays = new ArrayList<>();
+        alarm.id = getFreeId();
+        list.add(alarm);
+
+        save();
+
+        setEnabled(alarm.id, true);
+    }
+
     public DataRadioStationAlarm[] getList(){
         return list.toArray(new DataRadioStationAlarm[0]);
     }
@@ -105,6 +126,7 @@ public class RadioAlarmManager {
             editor.putInt("alarm."+alarm.id+".timeMinutes",alarm.minute);
             editor.putBoolean("alarm."+alarm.id+".enabled",alarm.enabled);
             editor.putBoolean("alarm."+alarm.id+".repeating",alarm.repeating);
+            editor.putInt("alarm."+alarm.id+".recordMinutes",alarm.recordMinutes);
 
             Gson gson = new Gson();
             String weekdaysString = gson.toJson(alarm.weekDays);
@@ -143,6 +165,7 @@ public class RadioAlarmManager {
                 alarm.minute = sharedPref.getInt("alarm." + id + ".timeMinutes", 0);
                 alarm.enabled = sharedPref.getBoolean("alarm." + id + ".enabled", false);
                 alarm.repeating  = sharedPref.getBoolean("alarm." + id + ".repeating", false);
+                alarm.recordMinutes = sharedPref.getInt("alarm." + id + ".recordMinutes", 0);
 
                 try {
                     alarm.id = Integer.parseInt(id);
@@ -188,34 +211,17 @@ public class RadioAlarmManager {
         if (alarm != null) {
             stop(alarmId);
 
+            final long startTime = getNextStartTime(alarm, System.currentTimeMillis());
+            final long triggerTime = startTime - getLeadMillis(alarm);
+
             Intent intent = new Intent(context, AlarmReceiver.class);
             intent.putExtra("id",alarmId);
+            intent.putExtra("startTime",startTime);
             PendingIntent alarmIntent = PendingIntent.getBroadcast(context, alarmId, intent, PendingIntent.FLAG_UPDATE_CURRENT);
             AlarmManager alarmMgr = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
 
             Calendar calendar = Calendar.getInstance();
-            calendar.setTimeInMillis(System.currentTimeMillis());
-            calendar.set(Calendar.HOUR_OF_DAY, alarm.hour);
-            calendar.set(Calendar.MINUTE, alarm.minute);
-            calendar.set(Calendar.SECOND, 0);
-
-            // if new calendar is in the past, move it 1 day ahead
-            // add 1 min, to ignore already fired events
-            if (calendar.getTimeInMillis() < System.currentTimeMillis() + 60){
-                if(BuildConfig.DEBUG) { Log.d("ALARM","moved ahead one day"); }
-                calendar.setTimeInMillis(calendar.getTimeInMillis() + ONE_DAY_IN_MILLIS);
-            }
-
-            if (alarm.repeating) {
-                Integer currentDayOfWeek = calendar.get(Calendar.DAY_OF_WEEK);
-                Collections.sort(alarm.weekDays);
-                Integer limiter = 6;
-                while (!alarm.weekDays.contains(currentDayOfWeek - 1) && limiter > 0) {
-                    calendar.setTimeInMillis(calendar.getTimeInMillis() + ONE_DAY_IN_MILLIS);
-                    currentDayOfWeek = calendar.get(Calendar.DAY_OF_WEEK);
-                    limiter--;
-                }
-            }
+            calendar.setTimeInMillis(startTime);
             Log.d(
                     "ALARM","started:" +alarmId + " "
                     + calendar.get(Calendar.DAY_OF_WEEK) + " "
@@ -226,17 +232,81 @@ public class RadioAlarmManager {
 
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
                 if(BuildConfig.DEBUG) { Log.d("ALARM","START setAlarmClock"); }
-                alarmMgr.setAlarmClock(new AlarmManager.AlarmClockInfo(calendar.getTimeInMillis(),alarmIntent),alarmIntent);
+                alarmMgr.setAlarmClock(new AlarmManager.AlarmClockInfo(triggerTime,alarmIntent),alarmIntent);
             }else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
                 if(BuildConfig.DEBUG) { Log.d("ALARM","START setExact"); }
-                alarmMgr.setExact(AlarmManager.RTC_WAKEUP, calendar.getTimeInMillis(), alarmIntent);
+                alarmMgr.setExact(AlarmManager.RTC_WAKEUP, triggerTime, alarmIntent);
             }else{
                 if(BuildConfig.DEBUG) { Log.d("ALARM","START set"); }
-                alarmMgr.set(AlarmManager.RTC_WAKEUP,calendar.getTimeInMillis(),alarmIntent);
+                alarmMgr.set(AlarmManager.RTC_WAKEUP,triggerTime,alarmIntent);
             }
         }
     }
 
+    static long getLeadMillis(@NonNull DataRadioStationAlarm alarm) {
+        return alarm.recordMinutes > 0 ? RECORDING_LEAD_MILLIS : 0;
+    }
+
+    /**
+     * @return time the alarm should go off next or the scheduled recording should start
+     */
+    static long getNextStartTime(@NonNull DataRadioStationAlarm alarm, long now) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(now);
+        calendar.set(Calendar.HOUR_OF_DAY, alarm.hour);
+        calendar.set(Calendar.MINUTE, alarm.minute);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+
+        // if new calendar is in the past, move it 1 day ahead
+        // add 1 min, to ignore already fired events
+        if (calendar.getTimeInMillis() - getLeadMillis(alarm) < now + 60){
+            if(BuildConfig.DEBUG) { Log.d("ALARM","moved ahead one day"); }
+            calendar.setTimeInMillis(calendar.getTimeInMillis() + ONE_DAY_IN_MILLIS);
+        }
+
+        if (alarm.repeating) {
+            Integer currentDayOfWeek = calendar.get(Calendar.DAY_OF_WEEK);
+            Collections.sort(alarm.weekDays);
+            Integer limiter = 6;
+            while (!alarm.weekDays.contains(currentDayOfWeek - 1) && limiter > 0) {
+                calendar.setTimeInMillis(calendar.getTimeInMillis() + ONE_DAY_IN_MILLIS);
+                currentDayOfWeek = calendar.get(Calendar.DAY_OF_WEEK);
+                limiter--;
+            }
+        }
+
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * @return start time of the scheduled recording which should be running now, -1 if there is none
+     */
+    static long getActiveRecordingStartTime(@NonNull DataRadioStationAlarm alarm, long now) {
+        if (alarm.recordMinutes <= 0) {
+            return -1;
+        }
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(now);
+        calendar.set(Calendar.HOUR_OF_DAY, alarm.hour);
+        calendar.set(Calendar.MINUTE, alarm.minute);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+
+        // Recordings are shorter than a day, so only the last start could still be running
+        if (calendar.getTimeInMillis() > now) {
+            calendar.setTimeInMillis(calendar.getTimeInMillis() - ONE_DAY_IN_MILLIS);
+        }
+
+        if (alarm.repeating && !alarm.weekDays.contains(calendar.get(Calendar.DAY_OF_WEEK) - 1)) {
+            return -1;
+        }
+
+        final long startTime = calendar.getTimeInMillis();
+        return now < startTime + alarm.recordMinutes * 60 * 1000L ? startTime : -1;
+    }
+
     void stop(int alarmId) {
         DataRadioStationAlarm alarm = getById(alarmId);
         if (alarm != null) {
@@ -262,6 +332,14 @@ public class RadioAlarmManager {
         }
     }
 
+    public void changeRecordMinutes(int alarmId, int recordMinutes) {
+        DataRadioStationAlarm alarm = getById(alarmId);
+        if (alarm != null && recordMinutes > 0) {
+            alarm.recordMinutes = recordMinutes;
+            save();
+        }
+    }
+
     public void changeWeekDays(int alarmId, int weekday) {
         DataRadioStationAlarm alarm = getById(alarmId);
         if (alarm != null) {
@@ -305,6 +383,24 @@ public class RadioAlarmManager {
         }
     }
 
+    /**
+     * Continues scheduled recordings which were interrupted, e.g. by a reboot.
+     */
+    public void resumeActiveRecordings() {
+        final long now = System.currentTimeMillis();
+        for(DataRadioStationAlarm alarm: list){
+            if (!alarm.enabled) {
+                continue;
+            }
+
+            final long startTime = getActiveRecordingStartTime(alarm, now);
+            if (startTime >= 0) {
+                if(BuildConfig.DEBUG) { Log.d("ALARM","resuming recording with id:"+alarm.id); }
+                RecordingService.recordScheduled(context, alarm.station, now, startTime + alarm.recordMinutes * 60 * 1000L);
+            }
+        }
+    }
+
     public void toggleRepeating(int id) {
         DataRadioStationAlarm alarm = getById(id);
         if (alarm != null) {
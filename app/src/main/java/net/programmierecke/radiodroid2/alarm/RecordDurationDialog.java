@@ -0,0 +1,60 @@
+package net.programmierecke.radiodroid2.alarm;
+
+import android.content.Context;
+import android.view.View;
+import android.widget.SeekBar;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
+
+import net.programmierecke.radiodroid2.R;
+
+/**
+ * Lets the user choose for how many minutes a scheduled recording should run.
+ */
+public class RecordDurationDialog {
+    public interface DurationListener {
+        void onDurationChosen(int minutes);
+    }
+
+    public static final int DEFAULT_MINUTES = 60;
+
+    public static void show(@NonNull Context context, int initialMinutes, @NonNull DurationListener listener) {
+        final AlertDialog.Builder seekDialog = new AlertDialog.Builder(context);
+        View seekView = View.inflate(context, R.layout.layout_timer_chooser, null);
+
+        seekDialog.setTitle(R.string.record_duration_title);
+        seekDialog.setView(seekView);
+
+        final TextView seekTextView = seekView.findViewById(R.id.timerTextView);
+        final SeekBar seekBar = seekView.findViewById(R.id.timerSeekBar);
+        seekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                // SeekBar has no minimum before Android 8.0
+                if (progress < 1) {
+                    seekBar.setProgress(1);
+                    return;
+                }
+                seekTextView.setText(String.valueOf(progress));
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {
+            }
+
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+            }
+        });
+
+        seekBar.setProgress(initialMinutes);
+        seekTextView.setText(String.valueOf(seekBar.getProgress()));
+
+        seekDialog.setPositiveButton(android.R.string.ok, (dialog, which) -> listener.onDurationChosen(seekBar.getProgress()));
+        seekDialog.setNegativeButton(android.R.string.cancel, null);
+
+        seekDialog.show();
+    }
+}
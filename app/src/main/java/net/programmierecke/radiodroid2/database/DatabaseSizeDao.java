@@ -0,0 +1,21 @@
+package net.programmierecke.radiodroid2.database;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface DatabaseSizeDao {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(DatabaseSizeSample sample);
+
+    @Query("SELECT * FROM database_size_samples WHERE time >= :from ORDER BY time")
+    LiveData<List<DatabaseSizeSample>> getSamples(long from);
+
+    @Query("DELETE FROM database_size_samples WHERE time < :before")
+    void deleteOlderThan(long before);
+}
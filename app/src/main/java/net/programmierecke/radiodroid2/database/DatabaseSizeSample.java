@@ -0,0 +1,26 @@
+package net.programmierecke.radiodroid2.database;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Size of the database file at some moment, recorded after history retention is enforced.
+ */
+@Entity(tableName = "database_size_samples")
+public class DatabaseSizeSample {
+
+    @PrimaryKey
+    @ColumnInfo(name = "time")
+    public long time;
+
+    @ColumnInfo(name = "size_bytes")
+    public long sizeBytes;
+
+    // Part of the file which is not used and will be returned by vacuum
+    @ColumnInfo(name = "free_bytes")
+    public long freeBytes;
+
+    @ColumnInfo(name = "history_tracks")
+    public int historyTracks;
+}
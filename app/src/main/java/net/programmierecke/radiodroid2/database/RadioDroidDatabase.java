@@ -7,24 +7,54 @@ import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
 import androidx.room.TypeConverters;
+import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
 
+import net.programmierecke.radiodroid2.history.DailyArtistStats;
+import net.programmierecke.radiodroid2.history.DailyStationStats;
+import net.programmierecke.radiodroid2.history.DailyTrackStats;
 import net.programmierecke.radiodroid2.history.TrackHistoryDao;
 import net.programmierecke.radiodroid2.history.TrackHistoryEntry;
+import net.programmierecke.radiodroid2.history.TrackHistorySearchEntry;
+import net.programmierecke.radiodroid2.history.TrackStatsDao;
+import net.programmierecke.radiodroid2.players.health.StreamHealthDao;
+import net.programmierecke.radiodroid2.players.health.StreamHealthEntry;
+import net.programmierecke.radiodroid2.players.telemetry.PlaybackSessionDao;
+import net.programmierecke.radiodroid2.players.telemetry.PlaybackSessionEntry;
+import net.programmierecke.radiodroid2.recording.RecordingDao;
+import net.programmierecke.radiodroid2.recording.RecordingEntry;
+import net.programmierecke.radiodroid2.recording.RecordingTrackMarker;
+import net.programmierecke.radiodroid2.station.SavedStationDao;
+import net.programmierecke.radiodroid2.station.SavedStationEntry;
 
-import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import static net.programmierecke.radiodroid2.history.TrackHistoryEntry.MAX_UNKNOWN_TRACK_DURATION;
 
-@Database(entities = {TrackHistoryEntry.class}, version = 1)
+@Database(entities = {TrackHistoryEntry.class, TrackHistorySearchEntry.class, DailyStationStats.class,
+        DailyArtistStats.class, DailyTrackStats.class, SavedStationEntry.class, DatabaseSizeSample.class,
+        RecordingEntry.class, RecordingTrackMarker.class, PlaybackSessionEntry.class,
+        StreamHealthEntry.class}, version = 8)
 @TypeConverters({Converters.class})
 public abstract class RadioDroidDatabase extends RoomDatabase {
     public abstract TrackHistoryDao songHistoryDao();
 
+    public abstract TrackStatsDao trackStatsDao();
+
+    public abstract SavedStationDao savedStationDao();
+
+    public abstract DatabaseSizeDao databaseSizeDao();
+
+    public abstract RecordingDao recordingDao();
+
+    public abstract PlaybackSessionDao playbackSessionDao();
+
+    public abstract StreamHealthDao streamHealthDao();
+
     private static volatile RadioDroidDatabase INSTANCE;
 
-    private Executor queryExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "RadioDroidDatabase Executor"));
+    private ScheduledExecutorService queryExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "RadioDroidDatabase Executor"));
 
     public static RadioDroidDatabase getDatabase(final Context context) {
         if (INSTANCE == null) {
@@ -33,6 +63,7 @@ public abstract class RadioDroidDatabase extends RoomDatabase {
                     INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
                             RadioDroidDatabase.class, "radio_droid_database")
                             .addCallback(CALLBACK)
+                            .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8)
                             .fallbackToDestructiveMigration()
                             .build();
                 }
@@ -41,14 +72,93 @@ public abstract class RadioDroidDatabase extends RoomDatabase {
         return INSTANCE;
     }
 
-    public Executor getQueryExecutor() {
+    public ScheduledExecutorService getQueryExecutor() {
         return queryExecutor;
     }
 
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `saved_stations` (`uid` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `list_id` TEXT NOT NULL, `position` INTEGER NOT NULL, `station_uuid` TEXT NOT NULL, `station_json` TEXT NOT NULL)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_saved_stations_list_id_position` ON `saved_stations` (`list_id`, `position`)");
+        }
+    };
+
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `track_history` ADD COLUMN `station_name` TEXT NOT NULL DEFAULT ''");
+
+            // Same table and triggers as Room creates for TrackHistorySearchEntry
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `track_history_fts` USING FTS4(`artist` TEXT NOT NULL, `title` TEXT NOT NULL, `track` TEXT NOT NULL, `station_name` TEXT NOT NULL, content=`track_history`)");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_track_history_fts_BEFORE_UPDATE BEFORE UPDATE ON `track_history` BEGIN DELETE FROM `track_history_fts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_track_history_fts_BEFORE_DELETE BEFORE DELETE ON `track_history` BEGIN DELETE FROM `track_history_fts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_track_history_fts_AFTER_UPDATE AFTER UPDATE ON `track_history` BEGIN INSERT INTO `track_history_fts`(`docid`, `artist`, `title`, `track`, `station_name`) VALUES (NEW.`rowid`, NEW.`artist`, NEW.`title`, NEW.`track`, NEW.`station_name`); END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_track_history_fts_AFTER_INSERT AFTER INSERT ON `track_history` BEGIN INSERT INTO `track_history_fts`(`docid`, `artist`, `title`, `track`, `station_name`) VALUES (NEW.`rowid`, NEW.`artist`, NEW.`title`, NEW.`track`, NEW.`station_name`); END");
+
+            // Index the history recorded so far
+            database.execSQL("INSERT INTO `track_history_fts`(`track_history_fts`) VALUES('rebuild')");
+        }
+    };
+
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_track_history_station_uuid` ON `track_history` (`station_uuid`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_track_history_start_time` ON `track_history` (`start_time`)");
+
+            database.execSQL("CREATE TABLE IF NOT EXISTS `daily_station_stats` (`day` INTEGER NOT NULL, `station_uuid` TEXT NOT NULL, `play_count` INTEGER NOT NULL, `listened_ms` INTEGER NOT NULL, PRIMARY KEY(`day`, `station_uuid`))");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `daily_artist_stats` (`day` INTEGER NOT NULL, `station_uuid` TEXT NOT NULL, `artist` TEXT NOT NULL, `play_count` INTEGER NOT NULL, PRIMARY KEY(`day`, `station_uuid`, `artist`))");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `daily_track_stats` (`day` INTEGER NOT NULL, `artist` TEXT NOT NULL, `title` TEXT NOT NULL, `play_count` INTEGER NOT NULL, `listened_ms` INTEGER NOT NULL, PRIMARY KEY(`day`, `artist`, `title`))");
+
+            TrackStatsTriggers.create(database);
+            TrackStatsTriggers.rebuild(database);
+        }
+    };
+
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `database_size_samples` (`time` INTEGER NOT NULL, `size_bytes` INTEGER NOT NULL, `free_bytes` INTEGER NOT NULL, `history_tracks` INTEGER NOT NULL, PRIMARY KEY(`time`))");
+        }
+    };
+
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `recordings` (`uid` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `file_name` TEXT NOT NULL, `title` TEXT NOT NULL, `station_uuid` TEXT NOT NULL, `station_name` TEXT NOT NULL, `start_time` INTEGER NOT NULL, `end_time` INTEGER NOT NULL, `size_bytes` INTEGER NOT NULL, `codec` TEXT NOT NULL)");
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_recordings_file_name` ON `recordings` (`file_name`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_recordings_start_time` ON `recordings` (`start_time`)");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `recording_track_markers` (`uid` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `recording_uid` INTEGER NOT NULL, `byte_offset` INTEGER NOT NULL, `time` INTEGER NOT NULL, `title` TEXT NOT NULL, FOREIGN KEY(`recording_uid`) REFERENCES `recordings`(`uid`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_recording_track_markers_recording_uid` ON `recording_track_markers` (`recording_uid`)");
+
+            // Files recorded so far are picked up when the recordings directory is listed
+        }
+    };
+
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `playback_sessions` (`uid` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `station_uuid` TEXT NOT NULL, `station_name` TEXT NOT NULL, `start_time` INTEGER NOT NULL, `end_time` INTEGER NOT NULL, `startup_ms` INTEGER NOT NULL, `playing_ms` INTEGER NOT NULL, `rebuffer_count` INTEGER NOT NULL, `rebuffer_ms` INTEGER NOT NULL, `underrun_count` INTEGER NOT NULL, `load_error_count` INTEGER NOT NULL, `decoder_name` TEXT NOT NULL, `decoder_init_ms` INTEGER NOT NULL, `bitrate_estimate` INTEGER NOT NULL)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_playback_sessions_station_uuid` ON `playback_sessions` (`station_uuid`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_playback_sessions_start_time` ON `playback_sessions` (`start_time`)");
+        }
+    };
+
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `stream_health` (`station_uuid` TEXT NOT NULL, `stream_url` TEXT NOT NULL, `attempts` REAL NOT NULL, `successes` REAL NOT NULL, `consecutive_failures` INTEGER NOT NULL, `startup_ms` INTEGER NOT NULL, `rebuffer_ratio` REAL NOT NULL, `last_attempt` INTEGER NOT NULL, `last_success` INTEGER NOT NULL, PRIMARY KEY(`station_uuid`, `stream_url`))");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_stream_health_last_attempt` ON `stream_health` (`last_attempt`)");
+        }
+    };
+
     private static RoomDatabase.Callback CALLBACK = new RoomDatabase.Callback() {
         @Override
         public void onCreate(@NonNull SupportSQLiteDatabase db) {
             super.onCreate(db);
+
+            TrackStatsTriggers.create(db);
         }
 
         @Override
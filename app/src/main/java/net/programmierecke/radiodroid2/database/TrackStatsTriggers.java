@@ -0,0 +1,68 @@
+package net.programmierecke.radiodroid2.database;
+
+import androidx.annotation.NonNull;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * Keeps daily rollups (see {@link net.programmierecke.radiodroid2.history.TrackStats})
+ * up to date with track_history.
+ * <p>
+ * A track is counted as played when it is inserted. Its listening time is known only once
+ * its end time is set, which could happen more than once (e.g. when playback of the same track
+ * is resumed), so every change of the end time adds the difference to the rollups.
+ * Deleting from the history keeps the rollups.
+ */
+class TrackStatsTriggers {
+    private static String day(String row) {
+        return "CAST(strftime('%s', " + row + "start_time / 1000, 'unixepoch', 'localtime', 'start of day') AS INTEGER) / 86400";
+    }
+
+    private static String listenedMs(String row) {
+        return "(CASE WHEN " + row + "end_time > " + row + "start_time THEN " + row + "end_time - " + row + "start_time ELSE 0 END)";
+    }
+
+    static void create(@NonNull SupportSQLiteDatabase db) {
+        final String day = day("NEW.");
+        final String listenedMs = listenedMs("NEW.");
+        final String listenedMsDelta = listenedMs + " - " + listenedMs("OLD.");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS track_stats_AFTER_INSERT AFTER INSERT ON `track_history` BEGIN " +
+                "INSERT OR IGNORE INTO `daily_station_stats`(`day`, `station_uuid`, `play_count`, `listened_ms`) VALUES (" + day + ", NEW.`station_uuid`, 0, 0); " +
+                "UPDATE `daily_station_stats` SET `play_count` = `play_count` + 1, `listened_ms` = `listened_ms` + " + listenedMs + " " +
+                "WHERE `day` = " + day + " AND `station_uuid` = NEW.`station_uuid`; " +
+                "INSERT OR IGNORE INTO `daily_artist_stats`(`day`, `station_uuid`, `artist`, `play_count`) VALUES (" + day + ", NEW.`station_uuid`, NEW.`artist`, 0); " +
+                "UPDATE `daily_artist_stats` SET `play_count` = `play_count` + 1 " +
+                "WHERE `day` = " + day + " AND `station_uuid` = NEW.`station_uuid` AND `artist` = NEW.`artist`; " +
+                "INSERT OR IGNORE INTO `daily_track_stats`(`day`, `artist`, `title`, `play_count`, `listened_ms`) VALUES (" + day + ", NEW.`artist`, NEW.`title`, 0, 0); " +
+                "UPDATE `daily_track_stats` SET `play_count` = `play_count` + 1, `listened_ms` = `listened_ms` + " + listenedMs + " " +
+                "WHERE `day` = " + day + " AND `artist` = NEW.`artist` AND `title` = NEW.`title`; " +
+                "END");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS track_stats_AFTER_UPDATE AFTER UPDATE OF `end_time` ON `track_history` " +
+                "WHEN " + listenedMs + " != " + listenedMs("OLD.") + " BEGIN " +
+                "UPDATE `daily_station_stats` SET `listened_ms` = `listened_ms` + " + listenedMsDelta + " " +
+                "WHERE `day` = " + day + " AND `station_uuid` = NEW.`station_uuid`; " +
+                "UPDATE `daily_track_stats` SET `listened_ms` = `listened_ms` + " + listenedMsDelta + " " +
+                "WHERE `day` = " + day + " AND `artist` = NEW.`artist` AND `title` = NEW.`title`; " +
+                "END");
+    }
+
+    /**
+     * Computes rollups from scratch for the history which is already in the database.
+     */
+    static void rebuild(@NonNull SupportSQLiteDatabase db) {
+        final String day = day("");
+        final String listenedMs = listenedMs("");
+
+        db.execSQL("DELETE FROM `daily_station_stats`");
+        db.execSQL("DELETE FROM `daily_artist_stats`");
+        db.execSQL("DELETE FROM `daily_track_stats`");
+
+        db.execSQL("INSERT INTO `daily_station_stats`(`day`, `station_uuid`, `play_count`, `listened_ms`) " +
+                "SELECT " + day + ", `station_uuid`, COUNT(*), SUM(" + listenedMs + ") FROM `track_history` GROUP BY 1, 2");
+        db.execSQL("INSERT INTO `daily_artist_stats`(`day`, `station_uuid`, `artist`, `play_count`) " +
+                "SELECT " + day + ", `station_uuid`, `artist`, COUNT(*) FROM `track_history` GROUP BY 1, 2, 3");
+        db.execSQL("INSERT INTO `daily_track_stats`(`day`, `artist`, `title`, `play_count`, `listened_ms`) " +
+                "SELECT " + day + ", `artist`, `title`, COUNT(*), SUM(" + listenedMs + ") FROM `track_history` GROUP BY 1, 2, 3");
+    }
+}
@@ -0,0 +1,26 @@
+package net.programmierecke.radiodroid2.history;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+
+/**
+ * Plays of an artist on a station during one day, see {@link TrackStats}.
+ */
+@Entity(tableName = "daily_artist_stats", primaryKeys = {"day", "station_uuid", "artist"})
+public class DailyArtistStats {
+
+    @ColumnInfo(name = "day")
+    public int day;
+
+    @ColumnInfo(name = "station_uuid")
+    @NonNull
+    public String stationUuid;
+
+    @ColumnInfo(name = "artist")
+    @NonNull
+    public String artist;
+
+    @ColumnInfo(name = "play_count")
+    public int playCount;
+}
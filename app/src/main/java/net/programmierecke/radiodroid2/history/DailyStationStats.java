@@ -0,0 +1,25 @@
+package net.programmierecke.radiodroid2.history;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+
+/**
+ * Plays and listening time of a station during one day, see {@link TrackStats}.
+ */
+@Entity(tableName = "daily_station_stats", primaryKeys = {"day", "station_uuid"})
+public class DailyStationStats {
+
+    @ColumnInfo(name = "day")
+    public int day;
+
+    @ColumnInfo(name = "station_uuid")
+    @NonNull
+    public String stationUuid;
+
+    @ColumnInfo(name = "play_count")
+    public int playCount;
+
+    @ColumnInfo(name = "listened_ms")
+    public long listenedMs;
+}
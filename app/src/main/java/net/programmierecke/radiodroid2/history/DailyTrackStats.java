@@ -0,0 +1,29 @@
+package net.programmierecke.radiodroid2.history;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+
+/**
+ * Plays and listening time of a track on all stations during one day, see {@link TrackStats}.
+ */
+@Entity(tableName = "daily_track_stats", primaryKeys = {"day", "artist", "title"})
+public class DailyTrackStats {
+
+    @ColumnInfo(name = "day")
+    public int day;
+
+    @ColumnInfo(name = "artist")
+    @NonNull
+    public String artist;
+
+    @ColumnInfo(name = "title")
+    @NonNull
+    public String title;
+
+    @ColumnInfo(name = "play_count")
+    public int playCount;
+
+    @ColumnInfo(name = "listened_ms")
+    public long listenedMs;
+}
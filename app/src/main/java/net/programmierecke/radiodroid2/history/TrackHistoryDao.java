@@ -13,8 +13,23 @@ import java.util.List;
 
 @Dao
 public interface TrackHistoryDao {
+    String SEARCH_HISTORY_QUERY = "SELECT * FROM track_history WHERE uid IN " +
+            "(SELECT docid FROM track_history_fts WHERE track_history_fts MATCH :ftsQuery) " +
+            "ORDER BY uid DESC";
+
+    // Deletes are limited to a batch so that other queries could run in between
+    String DELETE_OLDEST_BEYOND_COUNT_QUERY = "DELETE FROM track_history WHERE uid IN " +
+            "(SELECT uid FROM track_history WHERE uid <= (SELECT uid FROM track_history ORDER BY uid DESC LIMIT 1 OFFSET :keepCount) " +
+            "ORDER BY uid LIMIT :batchSize)";
+
+    String DELETE_STARTED_BEFORE_QUERY = "DELETE FROM track_history WHERE uid IN " +
+            "(SELECT uid FROM track_history WHERE start_time < :time ORDER BY start_time LIMIT :batchSize)";
+
+    @Insert
+    long insert(TrackHistoryEntry historyEntry);
+
     @Insert
-    void insert(TrackHistoryEntry historyEntry);
+    void insertAll(List<TrackHistoryEntry> historyEntries);
 
     @Update
     void update(TrackHistoryEntry historyEntry);
@@ -27,20 +42,46 @@ public interface TrackHistoryDao {
     @Query("SELECT * FROM track_history ORDER BY uid DESC")
     DataSource.Factory<Integer, TrackHistoryEntry> getAllHistoryPositional();
 
+    /**
+     * @param ftsQuery query in the FTS syntax, see {@link TrackHistoryRepository#toFtsQuery(String)}
+     */
+    @Query(SEARCH_HISTORY_QUERY)
+    DataSource.Factory<Integer, TrackHistoryEntry> searchHistoryPositional(@NonNull String ftsQuery);
+
     @Query("SELECT * FROM track_history ORDER BY uid DESC LIMIT 1")
     TrackHistoryEntry getLastInsertedHistoryItem();
 
-    @Query("UPDATE track_history SET end_time = :time WHERE end_time = 0")
+    // Paging by uid doesn't get slower with every page as OFFSET does
+    @Query("SELECT * FROM track_history WHERE uid > :afterUid ORDER BY uid LIMIT :limit")
+    List<TrackHistoryEntry> getHistoryPage(int afterUid, int limit);
+
+    // Only the last track could still be playing, looking it up by uid avoids scanning the table
+    @Query("UPDATE track_history SET end_time = :time WHERE uid = (SELECT MAX(uid) FROM track_history) AND end_time = 0")
     void setCurrentPlayingTrackEndTime(Date time);
 
+    @Query("UPDATE track_history SET end_time = :time WHERE uid = :id")
+    void setTrackEndTime(int id, Date time);
+
     @Query("UPDATE track_history SET end_time = start_time + :deltaSeconds WHERE end_time = 0")
     void setLastHistoryItemEndTimeRelative(int deltaSeconds);
 
     @Query("UPDATE track_history SET art_url = :artUrl WHERE uid = :id")
     void setTrackArtUrl(int id, @NonNull String artUrl);
 
-    @Query("DELETE FROM track_history WHERE uid < (SELECT MIN(uid) FROM (SELECT uid FROM track_history ORDER BY uid DESC LIMIT :limit))")
-    void truncateHistory(int limit);
+    @Query("SELECT COUNT(*) FROM track_history")
+    int getHistoryCount();
+
+    /**
+     * @return number of deleted tracks, less than batchSize once only keepCount newest tracks are left
+     */
+    @Query(DELETE_OLDEST_BEYOND_COUNT_QUERY)
+    int deleteOldestBeyondCount(int keepCount, int batchSize);
+
+    /**
+     * @return number of deleted tracks, less than batchSize once no older tracks are left
+     */
+    @Query(DELETE_STARTED_BEFORE_QUERY)
+    int deleteStartedBefore(Date time, int batchSize);
 
     @Query("DELETE FROM track_history")
     void deleteHistory();
@@ -5,11 +5,12 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 import java.util.Date;
 
-@Entity(tableName = "track_history")
+@Entity(tableName = "track_history", indices = {@Index("station_uuid"), @Index("start_time")})
 public class TrackHistoryEntry {
 
     @PrimaryKey(autoGenerate = true)
@@ -19,6 +20,10 @@ public class TrackHistoryEntry {
     @NonNull
     public String stationUuid;
 
+    @ColumnInfo(name = "station_name", defaultValue = "")
+    @NonNull
+    public String stationName = "";
+
     @ColumnInfo(name = "station_icon_url")
     @NonNull
     public String stationIconUrl;
@@ -56,6 +61,7 @@ public class TrackHistoryEntry {
 
         if (uid != that.uid) return false;
         if (!stationUuid.equals(that.stationUuid)) return false;
+        if (!stationName.equals(that.stationName)) return false;
         if (!track.equals(that.track)) return false;
         if (!artist.equals(that.artist)) return false;
         if (!title.equals(that.title)) return false;
@@ -68,6 +74,7 @@ public class TrackHistoryEntry {
     public int hashCode() {
         int result = uid;
         result = 31 * result + stationUuid.hashCode();
+        result = 31 * result + stationName.hashCode();
         result = 31 * result + track.hashCode();
         result = 31 * result + artist.hashCode();
         result = 31 * result + title.hashCode();
@@ -0,0 +1,251 @@
+package net.programmierecke.radiodroid2.history;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import net.programmierecke.radiodroid2.utils.Csv;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Streams the track history to and from files. Only one page of tracks is held in memory
+ * at a time, so the size of the history doesn't matter.
+ * <p>
+ * Both formats have the same fields named after the columns of track_history. Times are
+ * in ISO 8601 and the end time of a track which is still playing is empty.
+ */
+public class TrackHistoryExport {
+    public enum Format {
+        CSV,
+        JSON_LINES
+    }
+
+    public interface PageSource {
+        /**
+         * @return up to limit tracks with uid greater than afterUid, ordered by uid
+         */
+        @NonNull
+        List<TrackHistoryEntry> getPage(int afterUid, int limit);
+    }
+
+    public interface BatchSink {
+        void insert(@NonNull List<TrackHistoryEntry> tracks);
+    }
+
+    static final int PAGE_SIZE = 500;
+
+    private static final String START_TIME = "start_time";
+    private static final String END_TIME = "end_time";
+    private static final String STATION_UUID = "station_uuid";
+    private static final String STATION_NAME = "station_name";
+    private static final String STATION_ICON_URL = "station_icon_url";
+    private static final String ARTIST = "artist";
+    private static final String TITLE = "title";
+    private static final String TRACK = "track";
+    private static final String ART_URL = "art_url";
+
+    private static final String[] FIELDS = {START_TIME, END_TIME, STATION_UUID, STATION_NAME, STATION_ICON_URL, ARTIST, TITLE, TRACK, ART_URL};
+
+    private final DateFormat dateFormat;
+
+    private TrackHistoryExport() {
+        dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    /**
+     * @return format by extension of the file or null if it is not known
+     */
+    public static @Nullable
+    Format formatOf(@NonNull String fileName) {
+        final String name = fileName.toLowerCase(Locale.US);
+        if (name.endsWith(".csv")) {
+            return Format.CSV;
+        } else if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) {
+            return Format.JSON_LINES;
+        }
+        return null;
+    }
+
+    /**
+     * @return number of exported tracks
+     */
+    public static int export(@NonNull PageSource source, @NonNull Format format, @NonNull Writer writer) throws IOException {
+        return new TrackHistoryExport().write(source, format, writer);
+    }
+
+    /**
+     * Reads tracks and hands them over in batches, so that each batch could be inserted
+     * in one transaction. Imported tracks get new uids.
+     *
+     * @return number of imported tracks
+     */
+    public static int importHistory(@NonNull Reader reader, @NonNull Format format, @NonNull BatchSink sink) throws IOException {
+        return new TrackHistoryExport().read(reader, format, sink);
+    }
+
+    private int write(@NonNull PageSource source, @NonNull Format format, @NonNull Writer writer) throws IOException {
+        if (format == Format.CSV) {
+            Csv.writeRecord(writer, FIELDS);
+        }
+
+        int count = 0;
+        int afterUid = 0;
+        List<TrackHistoryEntry> page;
+        do {
+            page = source.getPage(afterUid, PAGE_SIZE);
+            for (TrackHistoryEntry track : page) {
+                if (format == Format.CSV) {
+                    Csv.writeRecord(writer, toFields(track));
+                } else {
+                    writer.write(toJson(track).toString());
+                    writer.write('\n');
+                }
+                afterUid = track.uid;
+            }
+            count += page.size();
+        } while (page.size() == PAGE_SIZE);
+
+        writer.flush();
+        return count;
+    }
+
+    private int read(@NonNull Reader reader, @NonNull Format format, @NonNull BatchSink sink) throws IOException {
+        int count = 0;
+        List<TrackHistoryEntry> batch = new ArrayList<>(PAGE_SIZE);
+
+        if (format == Format.CSV) {
+            final Csv.Reader csvReader = new Csv.Reader(reader);
+            final List<String> header = csvReader.readRecord();
+            if (header == null) {
+                return 0;
+            }
+
+            List<String> record;
+            while ((record = csvReader.readRecord()) != null) {
+                if (record.size() == 1 && record.get(0).isEmpty()) {
+                    continue;
+                }
+
+                final Map<String, String> fields = new HashMap<>();
+                for (int i = 0; i < header.size() && i < record.size(); i++) {
+                    fields.put(header.get(i), record.get(i));
+                }
+
+                batch.add(fromFields(fields));
+                count += flushIfFull(batch, sink);
+            }
+        } else {
+            final BufferedReader lineReader = new BufferedReader(reader);
+            String line;
+            while ((line = lineReader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+
+                try {
+                    batch.add(fromJson(new JSONObject(line)));
+                } catch (JSONException e) {
+                    throw new IOException("Malformed track: " + e.getMessage());
+                }
+                count += flushIfFull(batch, sink);
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            sink.insert(batch);
+            count += batch.size();
+        }
+
+        return count;
+    }
+
+    private static int flushIfFull(@NonNull List<TrackHistoryEntry> batch, @NonNull BatchSink sink) {
+        if (batch.size() < PAGE_SIZE) {
+            return 0;
+        }
+
+        sink.insert(new ArrayList<>(batch));
+        batch.clear();
+        return PAGE_SIZE;
+    }
+
+    private String[] toFields(@NonNull TrackHistoryEntry track) {
+        return new String[]{formatDate(track.startTime), formatDate(track.endTime), track.stationUuid, track.stationName,
+                track.stationIconUrl, track.artist, track.title, track.track, track.artUrl};
+    }
+
+    private JSONObject toJson(@NonNull TrackHistoryEntry track) throws IOException {
+        final String[] fields = toFields(track);
+        final JSONObject json = new JSONObject();
+        try {
+            for (int i = 0; i < FIELDS.length; i++) {
+                json.put(FIELDS[i], fields[i]);
+            }
+        } catch (JSONException e) {
+            throw new IOException(e.getMessage());
+        }
+        return json;
+    }
+
+    private TrackHistoryEntry fromJson(@NonNull JSONObject json) throws IOException {
+        final Map<String, String> fields = new HashMap<>();
+        for (String field : FIELDS) {
+            fields.put(field, json.isNull(field) ? null : json.optString(field));
+        }
+        return fromFields(fields);
+    }
+
+    private TrackHistoryEntry fromFields(@NonNull Map<String, String> fields) throws IOException {
+        final TrackHistoryEntry track = new TrackHistoryEntry();
+        track.startTime = parseDate(fields.get(START_TIME));
+        track.endTime = parseDate(fields.get(END_TIME));
+        track.stationUuid = nonNull(fields.get(STATION_UUID));
+        track.stationName = nonNull(fields.get(STATION_NAME));
+        track.stationIconUrl = nonNull(fields.get(STATION_ICON_URL));
+        track.artist = nonNull(fields.get(ARTIST));
+        track.title = nonNull(fields.get(TITLE));
+        track.track = nonNull(fields.get(TRACK));
+
+        final String artUrl = fields.get(ART_URL);
+        track.artUrl = artUrl == null || artUrl.isEmpty() ? null : artUrl;
+
+        return track;
+    }
+
+    private String formatDate(@NonNull Date date) {
+        return date.getTime() == 0 ? "" : dateFormat.format(date);
+    }
+
+    private Date parseDate(@Nullable String text) throws IOException {
+        if (text == null || text.isEmpty()) {
+            return new Date(0);
+        }
+
+        try {
+            return dateFormat.parse(text);
+        } catch (ParseException e) {
+            throw new IOException("Malformed time: " + text);
+        }
+    }
+
+    private static String nonNull(@Nullable String text) {
+        return text != null ? text : "";
+    }
+}
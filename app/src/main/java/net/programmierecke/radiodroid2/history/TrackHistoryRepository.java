@@ -1,6 +1,10 @@
 package net.programmierecke.radiodroid2.history;
 
 import android.app.Application;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -8,14 +12,26 @@ import androidx.lifecycle.LiveData;
 import androidx.paging.LivePagedListBuilder;
 import androidx.paging.PagedList;
 
+import net.programmierecke.radiodroid2.database.DatabaseSizeSample;
 import net.programmierecke.radiodroid2.database.RadioDroidDatabase;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.Date;
+import java.util.List;
 import java.util.concurrent.Executor;
 
-import static net.programmierecke.radiodroid2.history.TrackHistoryEntry.MAX_HISTORY_ITEMS_IN_TABLE;
-
 public class TrackHistoryRepository {
+    private static final String TAG = "TrackHistoryRepository";
+
     private final static int HISTORY_PAGE_SIZE = 15;
 
     public interface GetItemCallback {
@@ -28,43 +44,94 @@ public class TrackHistoryRepository {
         void onItemFetched(@Nullable TrackHistoryEntry trackHistoryEntry, @NonNull TrackHistoryDao dao);
     }
 
+    public interface TransferCallback {
+        /**
+         * It will be ran in the main thread
+         *
+         * @param count number of exported or imported tracks, -1 if it failed
+         */
+        void onFinished(int count);
+    }
+
+    private final RadioDroidDatabase db;
     private final TrackHistoryDao dao;
+    private final TrackStatsDao statsDao;
     private final Executor queryExecutor;
+    private final TrackHistoryWriter writer;
+    private final PagedList.Config pagedListConfig;
     private final LiveData<PagedList<TrackHistoryEntry>> allHistoryPaged;
 
-    // For performance reasons we don't want to enforce history limit on every insert
-    private final static int TRUNCATE_FREQUENCY = 20;
-    private int insertsToTruncateLeft = 0;
-
     public TrackHistoryRepository(Application application) {
-        RadioDroidDatabase db = RadioDroidDatabase.getDatabase(application);
+        db = RadioDroidDatabase.getDatabase(application);
 
         dao = db.songHistoryDao();
+        statsDao = db.trackStatsDao();
         queryExecutor = db.getQueryExecutor();
+        writer = new TrackHistoryWriter(db, db.getQueryExecutor());
+
+        new TrackHistoryRetention(application, db, db.getQueryExecutor()).schedule();
 
-        allHistoryPaged = new LivePagedListBuilder<>(
-                dao.getAllHistoryPositional(),
-                new PagedList.Config.Builder()
-                        .setPageSize(HISTORY_PAGE_SIZE)
-                        .setEnablePlaceholders(true)
-                        .build())
+        pagedListConfig = new PagedList.Config.Builder()
+                .setPageSize(HISTORY_PAGE_SIZE)
+                .setEnablePlaceholders(true)
                 .build();
+
+        allHistoryPaged = new LivePagedListBuilder<>(dao.getAllHistoryPositional(), pagedListConfig).build();
     }
 
     public LiveData<PagedList<TrackHistoryEntry>> getAllHistoryPaged() {
         return allHistoryPaged;
     }
 
-    public void insert(final TrackHistoryEntry historyEntry) {
-        queryExecutor.execute(() -> {
-            dao.insert(historyEntry);
-            if (insertsToTruncateLeft == 0) {
-                insertsToTruncateLeft = TRUNCATE_FREQUENCY;
-                dao.truncateHistory(MAX_HISTORY_ITEMS_IN_TABLE);
-            } else {
-                insertsToTruncateLeft--;
+    /**
+     * @return tracks which have every word of the query as a prefix of a word in their artist,
+     * title or station name, or the whole history if the query has no words
+     */
+    public LiveData<PagedList<TrackHistoryEntry>> searchHistoryPaged(@NonNull String query) {
+        final String ftsQuery = toFtsQuery(query);
+        if (ftsQuery == null) {
+            return allHistoryPaged;
+        }
+
+        return new LivePagedListBuilder<>(dao.searchHistoryPositional(ftsQuery), pagedListConfig).build();
+    }
+
+    /**
+     * Converts user input into an FTS query. Every word is quoted so that nothing in the input
+     * could be taken for an FTS operator.
+     *
+     * @return query or null if the input has no words
+     */
+    public static @Nullable
+    String toFtsQuery(@NonNull String query) {
+        final StringBuilder ftsQuery = new StringBuilder();
+        for (String word : query.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
             }
-        });
+
+            if (ftsQuery.length() > 0) {
+                ftsQuery.append(' ');
+            }
+            ftsQuery.append('"').append(word).append("*\"");
+        }
+
+        return ftsQuery.length() > 0 ? ftsQuery.toString() : null;
+    }
+
+    /**
+     * Adds the track to the history or resumes it if it is the last one there.
+     * The change is written with a delay, see {@link TrackHistoryWriter}.
+     */
+    public void trackStarted(@NonNull final TrackHistoryEntry historyEntry) {
+        writer.trackStarted(historyEntry);
+    }
+
+    /**
+     * Writes tracks which are held back without waiting.
+     */
+    public void flush() {
+        writer.flush();
     }
 
     public void setCurrentPlayingTrackEndTime(final Date time) {
@@ -75,20 +142,105 @@ public class TrackHistoryRepository {
         queryExecutor.execute(() -> dao.setLastHistoryItemEndTimeRelative(deltaSeconds));
     }
 
-    public void setTrackArtUrl(int id, @NonNull final String artUrl) {
-        queryExecutor.execute(() -> dao.setTrackArtUrl(id, artUrl));
+    /**
+     * @param historyEntry entry given by {@link #getLastInsertedHistoryItem}, it may not be written yet
+     */
+    public void setTrackArtUrl(@NonNull final TrackHistoryEntry historyEntry, @NonNull final String artUrl) {
+        queryExecutor.execute(() -> writer.setTrackArtUrl(historyEntry, artUrl));
     }
 
+    /**
+     * Fetches the last started track, which may still be held back by the writer.
+     */
     public void getLastInsertedHistoryItem(@NonNull final GetItemCallback callback) {
+        // Writes are done in the same thread so no batch is being written meanwhile
         queryExecutor.execute(() -> {
-            TrackHistoryEntry item = dao.getLastInsertedHistoryItem();
+            TrackHistoryEntry item = writer.getLastHeldBackTrack();
+            if (item == null) {
+                item = dao.getLastInsertedHistoryItem();
+            }
             callback.onItemFetched(item, dao);
         });
     }
 
+    public LiveData<List<TrackStats.ArtistPlays>> getTopArtists(@NonNull String stationUuid, @NonNull Date from, @NonNull Date to, int limit) {
+        return statsDao.getTopArtists(stationUuid, TrackStats.toDay(from), TrackStats.toDay(to), limit);
+    }
+
+    public LiveData<List<TrackStats.DayListening>> getListeningTimePerDay(@NonNull Date from, @NonNull Date to) {
+        return statsDao.getListeningTimePerDay(TrackStats.toDay(from), TrackStats.toDay(to));
+    }
+
+    public LiveData<List<TrackStats.TrackPlays>> getMostHeardTracks(@NonNull Date from, @NonNull Date to, int limit) {
+        return statsDao.getMostHeardTracks(TrackStats.toDay(from), TrackStats.toDay(to), limit);
+    }
+
+    /**
+     * @return sizes of the database recorded after every enforcement of the history limits
+     */
+    public LiveData<List<DatabaseSizeSample>> getDatabaseSizeSamples(@NonNull Date from) {
+        return db.databaseSizeDao().getSamples(from.getTime());
+    }
+
+    /**
+     * Writes the whole history to the file, see {@link TrackHistoryExport}.
+     */
+    public void exportHistory(@NonNull final File file, @NonNull final TrackHistoryExport.Format format, @NonNull final TransferCallback callback) {
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(() -> {
+            int count = -1;
+            try {
+                // Tracks which are held back belong to the history too
+                writer.flush().get();
+
+                Writer fileWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8")));
+                try {
+                    count = TrackHistoryExport.export(dao::getHistoryPage, format, fileWriter);
+                } finally {
+                    fileWriter.close();
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Could not export history to " + file, e);
+            }
+
+            postTransferResult(callback, count);
+        });
+    }
+
+    /**
+     * Adds tracks from the file to the history, see {@link TrackHistoryExport}.
+     * Each batch of tracks is inserted in one transaction.
+     */
+    public void importHistory(@NonNull final File file, @NonNull final TrackHistoryExport.Format format, @NonNull final TransferCallback callback) {
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(() -> {
+            int count = -1;
+            try {
+                Reader fileReader = new BufferedReader(new InputStreamReader(new FileInputStream(file), Charset.forName("UTF-8")));
+                try {
+                    count = TrackHistoryExport.importHistory(fileReader, format, dao::insertAll);
+                } finally {
+                    fileReader.close();
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Could not import history from " + file, e);
+            }
+
+            postTransferResult(callback, count);
+        });
+    }
+
+    private static void postTransferResult(@NonNull final TransferCallback callback, final int count) {
+        new Handler(Looper.getMainLooper()).post(() -> callback.onFinished(count));
+    }
+
     public void deleteHistory() {
         queryExecutor.execute(() -> {
-            dao.deleteHistory();
+            // Statistics are derived from the history and should not outlive it
+            db.runInTransaction(() -> {
+                dao.deleteHistory();
+                statsDao.deleteStationStats();
+                statsDao.deleteArtistStats();
+                statsDao.deleteTrackStats();
+            });
         });
     }
 }
@@ -0,0 +1,181 @@
+package net.programmierecke.radiodroid2.history;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.preference.PreferenceManager;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import net.programmierecke.radiodroid2.database.DatabaseSizeDao;
+import net.programmierecke.radiodroid2.database.DatabaseSizeSample;
+import net.programmierecke.radiodroid2.database.RadioDroidDatabase;
+
+import java.util.Date;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static net.programmierecke.radiodroid2.history.TrackHistoryEntry.MAX_HISTORY_ITEMS_IN_TABLE;
+
+/**
+ * Periodically deletes the oldest tracks from the history so that it stays within limits
+ * set by the user, and gives the freed space back to the file system.
+ * <p>
+ * Tracks are deleted in batches, every batch is a separate task in the database thread so
+ * that other queries are not blocked for long. Afterwards size of the database is recorded
+ * in {@link DatabaseSizeSample}.
+ */
+class TrackHistoryRetention {
+    private static final String TAG = "TrackHistoryRetention";
+
+    static final int BATCH_SIZE = 100;
+
+    private static final long FIRST_RUN_DELAY_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final long RUN_PERIOD_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long KEEP_SIZE_SAMPLES_MS = TimeUnit.DAYS.toMillis(90);
+
+    // Value of PRAGMA auto_vacuum
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    private final RadioDroidDatabase db;
+    private final TrackHistoryDao dao;
+    private final DatabaseSizeDao sizeDao;
+    private final ScheduledExecutorService executor;
+    private final SharedPreferences prefs;
+
+    private boolean incrementalVacuumChecked = false;
+
+    TrackHistoryRetention(@NonNull Context context, @NonNull RadioDroidDatabase db, @NonNull ScheduledExecutorService executor) {
+        this.db = db;
+        this.dao = db.songHistoryDao();
+        this.sizeDao = db.databaseSizeDao();
+        this.executor = executor;
+        this.prefs = PreferenceManager.getDefaultSharedPreferences(context.getApplicationContext());
+    }
+
+    void schedule() {
+        executor.scheduleWithFixedDelay(this::enforce, FIRST_RUN_DELAY_MS, RUN_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param maxTracks   limit of tracks, 0 if there is none
+     * @param maxBytes    limit of the database size, 0 if there is none
+     * @param usedBytes   space used in the database now
+     * @param trackCount  tracks in the history now
+     * @return how many newest tracks should be kept, -1 if all of them
+     */
+    static int tracksToKeep(int maxTracks, long maxBytes, long usedBytes, int trackCount) {
+        int keep = maxTracks > 0 ? maxTracks : -1;
+
+        if (maxBytes > 0 && usedBytes > maxBytes && trackCount > 0) {
+            // History takes most of the database, so assume that the space is shared between tracks.
+            // The FTS index doesn't shrink right away after deletes so measuring space after
+            // every batch would make us delete much more than needed.
+            final int keepForBytes = (int) (trackCount * maxBytes / usedBytes);
+            keep = keep < 0 ? keepForBytes : Math.min(keep, keepForBytes);
+        }
+
+        return keep;
+    }
+
+    private void enforce() {
+        try {
+            enableIncrementalVacuum();
+
+            final int maxTracks = prefs.getInt("history_max_tracks", MAX_HISTORY_ITEMS_IN_TABLE);
+            final int maxAgeDays = prefs.getInt("history_max_age_days", 0);
+            final long maxBytes = prefs.getInt("history_max_size_kb", 0) * 1024L;
+
+            final Date startedBefore = maxAgeDays > 0 ? new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(maxAgeDays)) : null;
+            final int keepCount = tracksToKeep(maxTracks, maxBytes, getUsedBytes(), dao.getHistoryCount());
+
+            deleteBatch(startedBefore, keepCount);
+        } catch (RuntimeException e) {
+            // Not only SQLException, anything thrown here would cancel all following runs
+            Log.e(TAG, "Could not enforce history retention", e);
+        }
+    }
+
+    private void deleteBatch(@Nullable Date startedBefore, int keepCount) {
+        try {
+            int deleted = 0;
+            if (startedBefore != null) {
+                deleted = dao.deleteStartedBefore(startedBefore, BATCH_SIZE);
+            }
+            if (deleted < BATCH_SIZE && keepCount >= 0) {
+                deleted += dao.deleteOldestBeyondCount(keepCount, BATCH_SIZE - deleted);
+            }
+
+            if (deleted == BATCH_SIZE) {
+                executor.execute(() -> deleteBatch(startedBefore, keepCount));
+                return;
+            }
+
+            vacuum();
+            recordSize();
+        } catch (SQLException e) {
+            Log.e(TAG, "Could not enforce history retention", e);
+        }
+    }
+
+    // Only new databases could be created with auto_vacuum, existing ones have to be rebuilt once
+    private void enableIncrementalVacuum() {
+        if (incrementalVacuumChecked) {
+            return;
+        }
+
+        try {
+            if (queryLong("PRAGMA auto_vacuum") != AUTO_VACUUM_INCREMENTAL) {
+                SupportSQLiteDatabase database = db.getOpenHelper().getWritableDatabase();
+                database.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+                database.execSQL("VACUUM");
+            }
+
+            // The mode only changes once VACUUM succeeded, otherwise it is tried again on the next run
+            incrementalVacuumChecked = queryLong("PRAGMA auto_vacuum") == AUTO_VACUUM_INCREMENTAL;
+        } catch (SQLException e) {
+            Log.e(TAG, "Could not enable incremental vacuum", e);
+        }
+    }
+
+    private void vacuum() {
+        // Every step of the statement frees one page so the cursor has to be read to the end
+        Cursor cursor = db.query("PRAGMA incremental_vacuum", null);
+        try {
+            while (cursor.moveToNext()) {
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void recordSize() {
+        DatabaseSizeSample sample = new DatabaseSizeSample();
+        sample.time = System.currentTimeMillis();
+        sample.sizeBytes = queryLong("PRAGMA page_count") * queryLong("PRAGMA page_size");
+        sample.freeBytes = queryLong("PRAGMA freelist_count") * queryLong("PRAGMA page_size");
+        sample.historyTracks = dao.getHistoryCount();
+
+        sizeDao.insert(sample);
+        sizeDao.deleteOlderThan(sample.time - KEEP_SIZE_SAMPLES_MS);
+
+        Log.i(TAG, "Database size: " + sample.sizeBytes + " bytes, free: " + sample.freeBytes + " bytes, tracks in history: " + sample.historyTracks);
+    }
+
+    private long getUsedBytes() {
+        return (queryLong("PRAGMA page_count") - queryLong("PRAGMA freelist_count")) * queryLong("PRAGMA page_size");
+    }
+
+    private long queryLong(@NonNull String sql) {
+        Cursor cursor = db.query(sql, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+}
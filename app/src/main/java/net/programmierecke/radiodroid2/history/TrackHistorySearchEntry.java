@@ -0,0 +1,31 @@
+package net.programmierecke.radiodroid2.history;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+
+/**
+ * Full-text index over {@link TrackHistoryEntry}. It stores no data of its own and is kept
+ * in sync with track_history by triggers, rowid of an entry is the uid of the track.
+ */
+@Fts4(contentEntity = TrackHistoryEntry.class)
+@Entity(tableName = "track_history_fts")
+public class TrackHistorySearchEntry {
+
+    @ColumnInfo(name = "artist")
+    @NonNull
+    public String artist;
+
+    @ColumnInfo(name = "title")
+    @NonNull
+    public String title;
+
+    @ColumnInfo(name = "track")
+    @NonNull
+    public String track;
+
+    @ColumnInfo(name = "station_name")
+    @NonNull
+    public String stationName;
+}
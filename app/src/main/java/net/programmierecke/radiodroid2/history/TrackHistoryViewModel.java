@@ -3,22 +3,41 @@ package net.programmierecke.radiodroid2.history;
 import android.app.Application;
 
 import androidx.lifecycle.AndroidViewModel;
+import androidx.annotation.NonNull;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
 import androidx.paging.PagedList;
 
 import net.programmierecke.radiodroid2.RadioDroidApp;
 
 public class TrackHistoryViewModel extends AndroidViewModel {
     private final TrackHistoryRepository repository;
+    private final MutableLiveData<String> searchQuery = new MutableLiveData<>("");
+    private final LiveData<PagedList<TrackHistoryEntry>> historyPaged;
 
     public TrackHistoryViewModel(Application application) {
         super(application);
 
         RadioDroidApp radioDroidApp = getApplication();
         repository = radioDroidApp.getTrackHistoryRepository();
+        historyPaged = Transformations.switchMap(searchQuery, repository::searchHistoryPaged);
     }
 
     public LiveData<PagedList<TrackHistoryEntry>> getAllHistoryPaged() {
         return repository.getAllHistoryPaged();
     }
+
+    /**
+     * @return history filtered by the search query set with {@link #setSearchQuery(String)}
+     */
+    public LiveData<PagedList<TrackHistoryEntry>> getHistoryPaged() {
+        return historyPaged;
+    }
+
+    public void setSearchQuery(@NonNull String query) {
+        if (!query.equals(searchQuery.getValue())) {
+            searchQuery.setValue(query);
+        }
+    }
 }
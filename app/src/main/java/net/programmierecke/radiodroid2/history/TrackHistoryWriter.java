@@ -0,0 +1,117 @@
+package net.programmierecke.radiodroid2.history;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import net.programmierecke.radiodroid2.database.RadioDroidDatabase;
+import net.programmierecke.radiodroid2.utils.WriteBehindQueue;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Records started tracks in the history.
+ * <p>
+ * Some stations update metadata several times a second or flip between titles, so started
+ * tracks are held back and written in batches, each batch in a single transaction.
+ * <p>
+ * A held back title which the same station replaced in less than {@link #DEBOUNCE_MS} never
+ * reaches the database, this drops partial titles and jingles along with the flipping ones.
+ * Switching to another station keeps the title heard before however short it played.
+ */
+class TrackHistoryWriter {
+    static final int DEBOUNCE_MS = 10 * 1000;
+    private static final int WRITE_DELAY_MS = DEBOUNCE_MS;
+
+    private final RadioDroidDatabase db;
+    private final TrackHistoryDao dao;
+    private final WriteBehindQueue<TrackHistoryEntry> writeQueue;
+
+    TrackHistoryWriter(@NonNull RadioDroidDatabase db, @NonNull ScheduledExecutorService executor) {
+        this.db = db;
+        this.dao = db.songHistoryDao();
+        this.writeQueue = new WriteBehindQueue<>(executor, WRITE_DELAY_MS, this::writeTracks, TrackHistoryWriter::coalesceTracks);
+    }
+
+    /**
+     * @param track track which has just started, its end time is ignored
+     */
+    void trackStarted(@NonNull TrackHistoryEntry track) {
+        writeQueue.submit(track);
+    }
+
+    Future<?> flush() {
+        return writeQueue.flush();
+    }
+
+    /**
+     * Must be called in the executor thread, so no batch is being written meanwhile.
+     *
+     * @return the last started track which is still held back, or null if all are written
+     */
+    @Nullable
+    TrackHistoryEntry getLastHeldBackTrack() {
+        return writeQueue.getLastPendingChange();
+    }
+
+    /**
+     * Must be called in the executor thread. A track which is still held back is written
+     * with the art, one which was dropped is left as it is.
+     */
+    void setTrackArtUrl(@NonNull TrackHistoryEntry track, @NonNull String artUrl) {
+        if (track.uid != 0) {
+            dao.setTrackArtUrl(track.uid, artUrl);
+        } else {
+            track.artUrl = artUrl;
+        }
+    }
+
+    static void coalesceTracks(@NonNull List<TrackHistoryEntry> pending, @NonNull TrackHistoryEntry track) {
+        if (!pending.isEmpty()) {
+            final TrackHistoryEntry last = pending.get(pending.size() - 1);
+            if (last.stationUuid.equals(track.stationUuid) && track.startTime.getTime() - last.startTime.getTime() < DEBOUNCE_MS) {
+                pending.remove(pending.size() - 1);
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            final TrackHistoryEntry last = pending.get(pending.size() - 1);
+            if (last.stationUuid.equals(track.stationUuid) && last.title.equals(track.title)) {
+                // Title flipped back to the one which was playing before
+                return;
+            }
+        }
+
+        pending.add(track);
+    }
+
+    private void writeTracks(@NonNull List<TrackHistoryEntry> tracks) {
+        db.runInTransaction(() -> {
+            TrackHistoryEntry last = dao.getLastInsertedHistoryItem();
+
+            for (TrackHistoryEntry track : tracks) {
+                if (last != null && last.title.equals(track.title)) {
+                    // Prevent from generating several same entries when rapidly doing pause and resume.
+                    last.endTime = new Date(0);
+                    dao.setTrackEndTime(last.uid, last.endTime);
+                    // Later changes of the track go to the entry it resumed
+                    track.uid = last.uid;
+                    if (track.artUrl != null) {
+                        dao.setTrackArtUrl(last.uid, track.artUrl);
+                    }
+                    continue;
+                }
+
+                if (last != null && last.endTime.getTime() == 0) {
+                    dao.setTrackEndTime(last.uid, track.startTime);
+                }
+
+                track.endTime = new Date(0);
+                track.uid = (int) dao.insert(track);
+                last = track;
+            }
+        });
+    }
+}
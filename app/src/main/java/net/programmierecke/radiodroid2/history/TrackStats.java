@@ -0,0 +1,54 @@
+package net.programmierecke.radiodroid2.history;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Listening statistics are read from daily rollups of the track history instead of the history
+ * itself, so they stay cheap no matter how long the history is kept and survive its truncation.
+ * <p>
+ * Rollups are updated by triggers on track_history in the same transaction as the history,
+ * see {@link net.programmierecke.radiodroid2.database.TrackStatsTriggers}.
+ * Days are numbered as days since 1970-01-01 in the local time zone.
+ */
+public class TrackStats {
+    private static final long DAY_MS = 24 * 60 * 60 * 1000;
+
+    public static int toDay(@NonNull Date date) {
+        final long time = date.getTime();
+        return (int) ((time + TimeZone.getDefault().getOffset(time)) / DAY_MS);
+    }
+
+    public static class ArtistPlays {
+        @ColumnInfo(name = "artist")
+        public String artist;
+
+        @ColumnInfo(name = "play_count")
+        public int playCount;
+    }
+
+    public static class DayListening {
+        @ColumnInfo(name = "day")
+        public int day;
+
+        @ColumnInfo(name = "listened_ms")
+        public long listenedMs;
+    }
+
+    public static class TrackPlays {
+        @ColumnInfo(name = "artist")
+        public String artist;
+
+        @ColumnInfo(name = "title")
+        public String title;
+
+        @ColumnInfo(name = "play_count")
+        public int playCount;
+
+        @ColumnInfo(name = "listened_ms")
+        public long listenedMs;
+    }
+}
@@ -0,0 +1,42 @@
+package net.programmierecke.radiodroid2.history;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import java.util.List;
+
+/**
+ * Queries over daily rollups, days are inclusive and computed with {@link TrackStats#toDay}.
+ */
+@Dao
+public interface TrackStatsDao {
+    String TOP_ARTISTS_QUERY = "SELECT artist, SUM(play_count) AS play_count FROM daily_artist_stats " +
+            "WHERE station_uuid = :stationUuid AND day BETWEEN :fromDay AND :toDay AND artist != '' " +
+            "GROUP BY artist ORDER BY play_count DESC LIMIT :limit";
+
+    String LISTENING_TIME_PER_DAY_QUERY = "SELECT day, SUM(listened_ms) AS listened_ms FROM daily_station_stats " +
+            "WHERE day BETWEEN :fromDay AND :toDay GROUP BY day ORDER BY day";
+
+    String MOST_HEARD_TRACKS_QUERY = "SELECT artist, title, SUM(play_count) AS play_count, SUM(listened_ms) AS listened_ms FROM daily_track_stats " +
+            "WHERE day BETWEEN :fromDay AND :toDay GROUP BY artist, title ORDER BY play_count DESC, listened_ms DESC LIMIT :limit";
+
+    @Query(TOP_ARTISTS_QUERY)
+    LiveData<List<TrackStats.ArtistPlays>> getTopArtists(@NonNull String stationUuid, int fromDay, int toDay, int limit);
+
+    @Query(LISTENING_TIME_PER_DAY_QUERY)
+    LiveData<List<TrackStats.DayListening>> getListeningTimePerDay(int fromDay, int toDay);
+
+    @Query(MOST_HEARD_TRACKS_QUERY)
+    LiveData<List<TrackStats.TrackPlays>> getMostHeardTracks(int fromDay, int toDay, int limit);
+
+    @Query("DELETE FROM daily_station_stats")
+    void deleteStationStats();
+
+    @Query("DELETE FROM daily_artist_stats")
+    void deleteArtistStats();
+
+    @Query("DELETE FROM daily_track_stats")
+    void deleteTrackStats();
+}
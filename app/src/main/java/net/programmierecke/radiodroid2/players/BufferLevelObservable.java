@@ -0,0 +1,130 @@
+package net.programmierecke.radiodroid2.players;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import net.programmierecke.radiodroid2.utils.CoalescingChannel;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * How much audio the player has buffered, pushed to subscribers.
+ * <p>
+ * The player publishes the level when it loads data or its state changes, and samples it
+ * in between only while there are subscribers, at the shortest interval they asked for.
+ * Without subscribers nothing is sampled, so playing in the background causes no wakeups.
+ */
+public class BufferLevelObservable {
+    public interface Subscriber {
+        /**
+         * Will be called in the main thread.
+         *
+         * @param bufferedMs buffered audio, -1 if the player can't tell
+         */
+        void onBufferLevel(long bufferedMs);
+    }
+
+    interface SamplingListener {
+        /**
+         * Will be called in the main thread.
+         *
+         * @param intervalMs how often the level should be sampled, 0 if there are no subscribers
+         */
+        void onSamplingIntervalChanged(long intervalMs);
+    }
+
+    // Only used in the main thread
+    private final Map<Subscriber, Long> subscribers = new HashMap<>();
+    private SamplingListener samplingListener;
+    private long samplingIntervalMs;
+
+    private final CoalescingChannel<Long> channel;
+    private volatile long bufferedMs = -1;
+
+    /**
+     * @param mainThreadExecutor runs tasks in the main thread
+     */
+    public BufferLevelObservable(@NonNull Executor mainThreadExecutor) {
+        channel = new CoalescingChannel<>(mainThreadExecutor, this::deliver);
+    }
+
+    /**
+     * Should be called in the main thread. Subscribing again changes the interval.
+     *
+     * @param intervalMs how often the level should be sampled at least between events, positive
+     */
+    public void subscribe(@NonNull Subscriber subscriber, long intervalMs) {
+        if (intervalMs <= 0) {
+            throw new IllegalArgumentException("Sampling interval must be positive: " + intervalMs);
+        }
+
+        subscribers.put(subscriber, intervalMs);
+        updateSamplingInterval();
+
+        subscriber.onBufferLevel(bufferedMs);
+    }
+
+    /**
+     * Should be called in the main thread.
+     */
+    public void unsubscribe(@NonNull Subscriber subscriber) {
+        subscribers.remove(subscriber);
+        updateSamplingInterval();
+    }
+
+    /**
+     * @return last published level, which is only kept up to date while there are subscribers
+     */
+    public long getBufferedMs() {
+        return bufferedMs;
+    }
+
+    long getSamplingIntervalMs() {
+        return samplingIntervalMs;
+    }
+
+    /**
+     * Should be called in the main thread.
+     */
+    void setSamplingListener(@Nullable SamplingListener samplingListener) {
+        this.samplingListener = samplingListener;
+        if (samplingListener != null) {
+            samplingListener.onSamplingIntervalChanged(samplingIntervalMs);
+        }
+    }
+
+    /**
+     * Can be called from any thread.
+     */
+    void publish(long bufferedMs) {
+        this.bufferedMs = bufferedMs;
+        channel.publish(bufferedMs);
+    }
+
+    private void updateSamplingInterval() {
+        long intervalMs = 0;
+        for (long subscriberIntervalMs : subscribers.values()) {
+            if (intervalMs == 0 || subscriberIntervalMs < intervalMs) {
+                intervalMs = subscriberIntervalMs;
+            }
+        }
+
+        if (intervalMs == samplingIntervalMs) {
+            return;
+        }
+
+        samplingIntervalMs = intervalMs;
+        if (samplingListener != null) {
+            samplingListener.onSamplingIntervalChanged(intervalMs);
+        }
+    }
+
+    private void deliver(long bufferedMs) {
+        // Copy, a subscriber may unsubscribe when notified
+        for (Subscriber subscriber : subscribers.keySet().toArray(new Subscriber[0])) {
+            subscriber.onBufferLevel(bufferedMs);
+        }
+    }
+}
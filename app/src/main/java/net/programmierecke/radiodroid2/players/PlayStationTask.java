@@ -19,14 +19,22 @@ import net.programmierecke.radiodroid2.HistoryManager;
 import net.programmierecke.radiodroid2.R;
 import net.programmierecke.radiodroid2.RadioDroidApp;
 import net.programmierecke.radiodroid2.Utils;
+import net.programmierecke.radiodroid2.players.health.HttpStreamProber;
+import net.programmierecke.radiodroid2.players.health.StreamHealthStore;
+import net.programmierecke.radiodroid2.players.health.StreamRace;
 import net.programmierecke.radiodroid2.players.mpd.MPDClient;
 import net.programmierecke.radiodroid2.players.mpd.MPDServerData;
 import net.programmierecke.radiodroid2.players.mpd.tasks.MPDPlayTask;
 import net.programmierecke.radiodroid2.station.DataRadioStation;
 
 import java.lang.ref.WeakReference;
+import java.util.List;
 
 public class PlayStationTask extends AsyncTask<Void, Void, String> {
+    // A stream which didn't answer by then counts as slow and the next one is tried alongside
+    private static final long FALLBACK_DELAY_MS = 1500;
+    private static final long RACE_TIMEOUT_MS = 10000;
+
     public interface PlayFunc {
         void play(String url);
     }
@@ -117,12 +125,48 @@ public class PlayStationTask extends AsyncTask<Void, Void, String> {
                 return null;
             }
 
-            return Utils.getRealStationLink(radioDroidApp.getHttpClient(), ctx.getApplicationContext(), stationToPlay.StationUuid);
+            final String resolvedUrl = Utils.getRealStationLink(radioDroidApp.getHttpClient(), ctx.getApplicationContext(), stationToPlay.StationUuid);
+
+            if (isCancelled()) {
+                return null;
+            }
+
+            return chooseStreamUrl(radioDroidApp, resolvedUrl);
         } else {
             return null;
         }
     }
 
+    /**
+     * Picks the stream which behaved best on this device. Unless it is known to play well the
+     * other candidates are raced against it, so a slow or dead stream doesn't hold up playback.
+     * Streams known from earlier plays are still tried if the server couldn't resolve the link.
+     */
+    private String chooseStreamUrl(@NonNull RadioDroidApp radioDroidApp, @Nullable String resolvedUrl) {
+        final StreamHealthStore healthStore = radioDroidApp.getStreamHealthStore();
+        final String stationUuid = stationToPlay.StationUuid;
+
+        final List<String> candidates = healthStore.getCandidates(stationUuid, resolvedUrl, stationToPlay.StreamUrl);
+        if (candidates.isEmpty()) {
+            return null;
+        }
+
+        final String bestUrl = candidates.get(0);
+        if (candidates.size() == 1 || healthStore.isReliable(stationUuid, bestUrl)) {
+            return bestUrl;
+        }
+
+        try {
+            final String url = StreamRace.race(candidates, new HttpStreamProber(radioDroidApp.getHttpClient()),
+                    FALLBACK_DELAY_MS, RACE_TIMEOUT_MS, failedUrl -> healthStore.recordConnectFailure(stationUuid, failedUrl));
+
+            // The player retries on its own, so it still gets a chance if no stream answered
+            return url != null ? url : bestUrl;
+        } catch (InterruptedException e) {
+            return null;
+        }
+    }
+
     @Override
     protected void onPostExecute(String result) {
         Context ctx = contextWeakReference.get();
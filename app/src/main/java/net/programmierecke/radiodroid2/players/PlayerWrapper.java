@@ -18,6 +18,12 @@ public interface PlayerWrapper extends Recordable {
 
         void onPlayerError(final int messageId);
 
+        /**
+         * Called in the player's thread when data was loaded or the state changed, players
+         * which can't tell their buffer level don't need to call it.
+         */
+        void onBufferLevel(long bufferedMs);
+
         void onDataSourceShoutcastInfo(ShoutcastInfo shoutcastInfo, boolean isHls);
 
         void onDataSourceStreamLiveInfo(StreamLiveInfo liveInfo);
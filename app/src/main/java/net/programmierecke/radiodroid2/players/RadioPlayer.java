@@ -19,9 +19,14 @@ import net.programmierecke.radiodroid2.station.DataRadioStation;
 import net.programmierecke.radiodroid2.station.live.ShoutcastInfo;
 import net.programmierecke.radiodroid2.station.live.StreamLiveInfo;
 import net.programmierecke.radiodroid2.players.exoplayer.ExoPlayerWrapper;
+import net.programmierecke.radiodroid2.players.exoplayer.IcyDataSource;
 import net.programmierecke.radiodroid2.players.mediaplayer.MediaPlayerWrapper;
+import net.programmierecke.radiodroid2.players.telemetry.PlaybackTelemetry;
 import net.programmierecke.radiodroid2.recording.Recordable;
 import net.programmierecke.radiodroid2.recording.RecordableListener;
+import net.programmierecke.radiodroid2.utils.CoalescingChannel;
+import net.programmierecke.radiodroid2.utils.LooperJankMonitor;
+import net.programmierecke.radiodroid2.utils.PowerUsageMonitor;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -33,6 +38,9 @@ public class RadioPlayer implements PlayerWrapper.PlayListener, Recordable {
 
     final private String TAG = "RadioPlayer";
 
+    /**
+     * All of its methods are called in the main thread.
+     */
     public interface PlayerListener {
         void onStateChanged(final PlayState status, final int audioSessionId);
 
@@ -40,61 +48,119 @@ public class RadioPlayer implements PlayerWrapper.PlayListener, Recordable {
 
         void onPlayerError(final int messageId);
 
-        void onBufferedTimeUpdate(final long bufferedMs);
-
         // We are not interested in this events here so they will be forwarded to whoever hold RadioPlayer
         void foundShoutcastStream(ShoutcastInfo bitrate, boolean isHls);
 
         void foundLiveStreamInfo(StreamLiveInfo liveInfo);
     }
 
+    private static final class StateUpdate {
+        final PlayState state;
+        final int audioSessionId;
+
+        StateUpdate(PlayState state, int audioSessionId) {
+            this.state = state;
+            this.audioSessionId = audioSessionId;
+        }
+    }
+
+    private static final class ShoutcastUpdate {
+        final ShoutcastInfo shoutcastInfo;
+        final boolean isHls;
+
+        ShoutcastUpdate(ShoutcastInfo shoutcastInfo, boolean isHls) {
+            this.shoutcastInfo = shoutcastInfo;
+            this.isHls = isHls;
+        }
+    }
+
     private PlayerWrapper currentPlayer;
     private Context mainContext;
 
     private String streamName;
 
-    private HandlerThread playerThread;
-    private Handler playerThreadHandler;
+    // Every player is created, controlled and reports back in this thread, so neither player
+    // callbacks nor metadata parsing compete with drawing the UI
+    private final HandlerThread playerThread;
+    private final Handler playerThreadHandler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
     private PlayerListener playerListener;
-    private PlayState playState = PlayState.Idle;
+    private volatile PlayState playState = PlayState.Idle;
 
-    private StreamLiveInfo lastLiveInfo;
+    private volatile StreamLiveInfo lastLiveInfo;
+
+    // Changes are published from the player's thread and only the latest one reaches the UI
+    private final CoalescingChannel<StateUpdate> stateChannel = new CoalescingChannel<>(mainHandler::post,
+            update -> playerListener.onStateChanged(update.state, update.audioSessionId));
+    private final CoalescingChannel<ShoutcastUpdate> shoutcastChannel = new CoalescingChannel<>(mainHandler::post,
+            update -> playerListener.foundShoutcastStream(update.shoutcastInfo, update.isHls));
+    private final CoalescingChannel<StreamLiveInfo> liveInfoChannel = new CoalescingChannel<>(mainHandler::post,
+            liveInfo -> playerListener.foundLiveStreamInfo(liveInfo));
+
+    // Only in debug builds, to see how much work is left on the main thread while playing
+    private LooperJankMonitor mainThreadMonitor;
+    private LooperJankMonitor playerThreadMonitor;
+    // Only in debug builds, to compare playing with and without low power playback
+    private PowerUsageMonitor powerUsageMonitor;
+    private boolean powerUsageLowPower;
 
     private PlayStationTask playStationTask;
 
-    private Runnable bufferCheckRunnable = new Runnable() {
-        @Override
-        public void run() {
-            final long bufferTimeMs = currentPlayer.getBufferedMs();
+    private final PlaybackTelemetry telemetry;
 
-            playerListener.onBufferedTimeUpdate(bufferTimeMs);
+    // Client for streams, built again only if its settings or the app's client change
+    private OkHttpClient streamHttpClient;
+    private OkHttpClient streamHttpClientBase;
+    private int streamConnectTimeout;
+    private int streamReadTimeout;
 
-            if (BuildConfig.DEBUG) Log.d(TAG, String.format("buffered %d ms.", bufferTimeMs));
+    private final BufferLevelObservable bufferLevel;
+    // Only used in the player's thread, 0 if nobody wants to know the buffer level
+    private long bufferSamplingIntervalMs;
 
-            playerThreadHandler.postDelayed(this, 2000);
+    // Between the player's events buffered audio is consumed without any notice
+    private final Runnable bufferSampleTask = new Runnable() {
+        @Override
+        public void run() {
+            onBufferLevel(currentPlayer.getBufferedMs());
+
+            playerThreadHandler.postDelayed(this, bufferSamplingIntervalMs);
         }
     };
 
     public RadioPlayer(Context mainContext) {
         this.mainContext = mainContext;
 
+        RadioDroidApp radioDroidApp = (RadioDroidApp) mainContext.getApplicationContext();
+        telemetry = radioDroidApp.getPlaybackTelemetry();
+        bufferLevel = radioDroidApp.getBufferLevelObservable();
+
+        playerThread = new HandlerThread("PlayerThread");
+        playerThread.start();
+        playerThreadHandler = new Handler(playerThread.getLooper());
+
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-            // ExoPlayer has its own thread for cpu intensive tasks
-            playerThreadHandler = new Handler(Looper.getMainLooper());
-            currentPlayer = new ExoPlayerWrapper();
+            // ExoPlayer has its own thread for cpu intensive tasks, this one gets its callbacks
+            currentPlayer = new ExoPlayerWrapper(telemetry, playerThreadHandler);
         } else {
-            playerThread = new HandlerThread("MediaPlayerThread");
-            playerThread.start();
-
-            // MediaPlayer requires to be run in non-ui thread.
-            playerThreadHandler = new Handler(playerThread.getLooper());
             // use old MediaPlayer on API levels < 16
             // https://github.com/google/ExoPlayer/issues/711
             currentPlayer = new MediaPlayerWrapper(playerThreadHandler);
         }
 
+        if (BuildConfig.DEBUG) {
+            mainThreadMonitor = new LooperJankMonitor("Main thread");
+            playerThreadMonitor = new LooperJankMonitor("Player thread");
+            powerUsageMonitor = new PowerUsageMonitor("Power usage", mainContext, IcyDataSource::getNetworkReadCount);
+        }
+
         currentPlayer.setStateListener(this);
+
+        bufferLevel.setSamplingListener(intervalMs -> playerThreadHandler.post(() -> {
+            bufferSamplingIntervalMs = intervalMs;
+            updateBufferSampling();
+        }));
     }
 
     public final void play(final String stationURL, final String streamName, final boolean isAlarm) {
@@ -102,18 +168,9 @@ public class RadioPlayer implements PlayerWrapper.PlayListener, Recordable {
 
         this.streamName = streamName;
 
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mainContext.getApplicationContext());
-        final int connectTimeout = prefs.getInt("stream_connect_timeout", 4);
-        final int readTimeout = prefs.getInt("stream_read_timeout", 10);
-
-        RadioDroidApp radioDroidApp = (RadioDroidApp) mainContext.getApplicationContext();
-
         // TODO: Should we not pass http client if currentPlayer is external?
 
-        final OkHttpClient customizedHttpClient = radioDroidApp.newHttpClient()
-                .connectTimeout(connectTimeout, TimeUnit.SECONDS)
-                .readTimeout(readTimeout, TimeUnit.SECONDS)
-                .build();
+        final OkHttpClient customizedHttpClient = getStreamHttpClient();
 
         playerThreadHandler.post(() -> currentPlayer.playRemote(customizedHttpClient, stationURL, mainContext, isAlarm));
     }
@@ -121,8 +178,13 @@ public class RadioPlayer implements PlayerWrapper.PlayListener, Recordable {
     public final void play(final DataRadioStation station, final boolean isAlarm) {
         setState(PlayState.PrePlaying, -1);
 
+        telemetry.startSession(station.StationUuid, station.Name);
+
         playStationTask = new PlayStationTask(station, mainContext,
-                (url) -> RadioPlayer.this.play(station.playableUrl, station.Name, isAlarm),
+                (url) -> {
+                    telemetry.onStreamUrl(url);
+                    RadioPlayer.this.play(station.playableUrl, station.Name, isAlarm);
+                },
                 (executionResult) -> {
                     RadioPlayer.this.playStationTask = null;
 
@@ -134,6 +196,30 @@ public class RadioPlayer implements PlayerWrapper.PlayListener, Recordable {
         playStationTask.execute();
     }
 
+    private OkHttpClient getStreamHttpClient() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mainContext.getApplicationContext());
+        final int connectTimeout = prefs.getInt("stream_connect_timeout", 4);
+        final int readTimeout = prefs.getInt("stream_read_timeout", 10);
+
+        RadioDroidApp radioDroidApp = (RadioDroidApp) mainContext.getApplicationContext();
+
+        // The app's client is rebuilt when the proxy settings change
+        final OkHttpClient baseHttpClient = radioDroidApp.getHttpClient();
+
+        if (streamHttpClient == null || streamHttpClientBase != baseHttpClient
+                || streamConnectTimeout != connectTimeout || streamReadTimeout != readTimeout) {
+            streamHttpClient = radioDroidApp.newHttpClient()
+                    .connectTimeout(connectTimeout, TimeUnit.SECONDS)
+                    .readTimeout(readTimeout, TimeUnit.SECONDS)
+                    .build();
+            streamHttpClientBase = baseHttpClient;
+            streamConnectTimeout = connectTimeout;
+            streamReadTimeout = readTimeout;
+        }
+
+        return streamHttpClient;
+    }
+
     private void cancelStationLinkRetrieval() {
         if (playStationTask != null) {
             playStationTask.cancel(true);
@@ -143,6 +229,7 @@ public class RadioPlayer implements PlayerWrapper.PlayListener, Recordable {
 
     public final void pause() {
         cancelStationLinkRetrieval();
+        telemetry.endSession();
 
         playerThreadHandler.post(() -> {
             if (playState == PlayState.Idle || playState == PlayState.Paused) {
@@ -152,10 +239,6 @@ public class RadioPlayer implements PlayerWrapper.PlayListener, Recordable {
             final int audioSessionId = getAudioSessionId();
             currentPlayer.pause();
 
-            if (BuildConfig.DEBUG) {
-                playerThreadHandler.removeCallbacks(bufferCheckRunnable);
-            }
-
             setState(PlayState.Paused, audioSessionId);
         });
     }
@@ -166,16 +249,13 @@ public class RadioPlayer implements PlayerWrapper.PlayListener, Recordable {
         }
 
         cancelStationLinkRetrieval();
+        telemetry.endSession();
 
         playerThreadHandler.post(() -> {
             final int audioSessionId = getAudioSessionId();
 
             currentPlayer.stop();
 
-            if (BuildConfig.DEBUG) {
-                playerThreadHandler.removeCallbacks(bufferCheckRunnable);
-            }
-
             setState(PlayState.Idle, audioSessionId);
         });
     }
@@ -183,12 +263,14 @@ public class RadioPlayer implements PlayerWrapper.PlayListener, Recordable {
     public final void destroy() {
         stop();
 
-        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
-            Looper looper = playerThread.getLooper();
-            if (looper != null) {
-                playerThreadHandler.post(() -> playerThread.quit());
-            }
+        bufferLevel.setSamplingListener(null);
+
+        if (BuildConfig.DEBUG) {
+            stopJankMonitors();
         }
+
+        // After the player is stopped
+        playerThreadHandler.post(playerThread::quit);
     }
 
     public final boolean isPlaying() {
@@ -202,7 +284,7 @@ public class RadioPlayer implements PlayerWrapper.PlayListener, Recordable {
     }
 
     public final void setVolume(float volume) {
-        currentPlayer.setVolume(volume);
+        playerThreadHandler.post(() -> currentPlayer.setVolume(volume));
     }
 
     @Override
@@ -242,8 +324,13 @@ public class RadioPlayer implements PlayerWrapper.PlayListener, Recordable {
     }
 
     @Override
-    public String getExtension() {
-        return currentPlayer.getExtension();
+    public String getContentType() {
+        return currentPlayer.getContentType();
+    }
+
+    @Override
+    public int getMaxPastAudioBytes() {
+        return currentPlayer.getMaxPastAudioBytes();
     }
 
     public final void runInPlayerThread(Runnable runnable) {
@@ -267,15 +354,51 @@ public class RadioPlayer implements PlayerWrapper.PlayListener, Recordable {
 
         if (BuildConfig.DEBUG) {
             if (state == PlayState.Playing) {
-                playerThreadHandler.removeCallbacks(bufferCheckRunnable);
-                playerThreadHandler.post(bufferCheckRunnable);
-            } else {
-                playerThreadHandler.removeCallbacks(bufferCheckRunnable);
+                if (!mainThreadMonitor.isRunning()) {
+                    mainThreadMonitor.start(Looper.getMainLooper());
+                    playerThreadMonitor.start(playerThread.getLooper());
+
+                    powerUsageLowPower = PreferenceManager.getDefaultSharedPreferences(mainContext)
+                            .getBoolean("low_power_playback", false);
+                    powerUsageMonitor.start();
+                }
+            } else if (state == PlayState.Paused || state == PlayState.Idle) {
+                stopJankMonitors();
             }
         }
 
         playState = state;
-        playerListener.onStateChanged(state, audioSessionId);
+        stateChannel.publish(new StateUpdate(state, audioSessionId));
+
+        playerThreadHandler.post(this::updateBufferSampling);
+    }
+
+    /**
+     * Samples the buffer level only while playing and someone is subscribed to it.
+     * Should be called in the player's thread.
+     */
+    private void updateBufferSampling() {
+        playerThreadHandler.removeCallbacks(bufferSampleTask);
+
+        if (bufferSamplingIntervalMs > 0 && isPlaying()) {
+            playerThreadHandler.post(bufferSampleTask);
+        }
+    }
+
+    private void stopJankMonitors() {
+        if (!mainThreadMonitor.isRunning()) {
+            return;
+        }
+
+        mainThreadMonitor.stop();
+        playerThreadMonitor.stop();
+        powerUsageMonitor.stop();
+
+        Log.d(TAG, "While playing: " + mainThreadMonitor.getSummary() + "; " + playerThreadMonitor.getSummary());
+        Log.d(TAG, String.format("While playing with low power playback %s: %s",
+                powerUsageLowPower ? "on" : "off", powerUsageMonitor.getSummary()));
+        Log.d(TAG, String.format("State changes: %d published, %d delivered to the main thread",
+                stateChannel.getPublishedCount(), stateChannel.getDeliveredCount()));
     }
 
     public long getTotalTransferredBytes() {
@@ -286,8 +409,11 @@ public class RadioPlayer implements PlayerWrapper.PlayListener, Recordable {
         return currentPlayer.getCurrentPlaybackTransferredBytes();
     }
 
+    /**
+     * @return last known buffer level, see {@link BufferLevelObservable}
+     */
     public long getBufferedSeconds() {
-        return currentPlayer.getBufferedMs() / 1000;
+        return Math.max(0, bufferLevel.getBufferedMs()) / 1000;
     }
 
     public boolean isLocal() {
@@ -299,25 +425,41 @@ public class RadioPlayer implements PlayerWrapper.PlayListener, Recordable {
         setState(state, getAudioSessionId());
     }
 
+    @Override
+    public void onBufferLevel(long bufferedMs) {
+        // Nobody would see it
+        if (bufferSamplingIntervalMs == 0) {
+            return;
+        }
+
+        if (BuildConfig.DEBUG) Log.d(TAG, String.format("buffered %d ms.", bufferedMs));
+
+        bufferLevel.publish(bufferedMs);
+    }
+
     @Override
     public void onPlayerWarning(int messageId) {
-        playerThreadHandler.post(() -> playerListener.onPlayerWarning(messageId));
+        // Every warning and error should be shown, so they are not coalesced
+        mainHandler.post(() -> playerListener.onPlayerWarning(messageId));
     }
 
     @Override
     public void onPlayerError(int messageId) {
         pause();
-        playerThreadHandler.post(() -> playerListener.onPlayerError(messageId));
+
+        // Queued after the pause, so the error reaches the listener after the paused state
+        // and is not reset by it
+        playerThreadHandler.post(() -> mainHandler.post(() -> playerListener.onPlayerError(messageId)));
     }
 
     @Override
     public void onDataSourceShoutcastInfo(ShoutcastInfo shoutcastInfo, boolean isHls) {
-        playerListener.foundShoutcastStream(shoutcastInfo, isHls);
+        shoutcastChannel.publish(new ShoutcastUpdate(shoutcastInfo, isHls));
     }
 
     @Override
     public void onDataSourceStreamLiveInfo(StreamLiveInfo liveInfo) {
         lastLiveInfo = liveInfo;
-        playerListener.foundLiveStreamInfo(liveInfo);
+        liveInfoChannel.publish(liveInfo);
     }
 }
@@ -8,8 +8,9 @@ import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.net.ConnectivityManager;
 import android.net.Uri;
+import android.os.Debug;
 import android.os.Handler;
-import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.Surface;
 
@@ -18,6 +19,7 @@ import androidx.annotation.Nullable;
 import androidx.preference.PreferenceManager;
 
 import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.DefaultLoadControl;
 import com.google.android.exoplayer2.ExoPlaybackException;
 import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.PlaybackParameters;
@@ -46,6 +48,8 @@ import net.programmierecke.radiodroid2.BuildConfig;
 import net.programmierecke.radiodroid2.R;
 import net.programmierecke.radiodroid2.Utils;
 import net.programmierecke.radiodroid2.players.PlayState;
+import net.programmierecke.radiodroid2.players.telemetry.PlaybackTelemetry;
+import net.programmierecke.radiodroid2.recording.PastAudioBuffer;
 import net.programmierecke.radiodroid2.recording.RecordableListener;
 import net.programmierecke.radiodroid2.station.live.ShoutcastInfo;
 import net.programmierecke.radiodroid2.station.live.StreamLiveInfo;
@@ -53,6 +57,7 @@ import net.programmierecke.radiodroid2.players.PlayerWrapper;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 
 import okhttp3.OkHttpClient;
@@ -61,14 +66,42 @@ public class ExoPlayerWrapper implements PlayerWrapper, IcyDataSource.IcyDataSou
 
     final private String TAG = "ExoPlayerWrapper";
 
-    private SimpleExoPlayer player;
+    private static final long CROSSFADE_STEP_MS = 50;
+    // Give up on the previous station if the next one takes longer than this to start
+    private static final long CROSSFADE_MAX_WAIT_MS = 15 * 1000;
+    // Limits the buffer of each player while crossfading is on
+    private static final int CROSSFADE_BUFFER_BYTES = 2 * 1024 * 1024;
+    // In low power mode playback waits for a deeper buffer, so that reads of the stream can be
+    // batched without running dry, and loading pauses for longer once the buffer is full
+    private static final int LOW_POWER_MIN_BUFFER_MS = 30 * 1000;
+    private static final int LOW_POWER_MAX_BUFFER_MS = 120 * 1000;
+    private static final int LOW_POWER_BUFFER_FOR_PLAYBACK_MS = 8 * 1000;
+    private static final int LOW_POWER_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS = 10 * 1000;
+
+    // A second player is only used while crossfading, so there are at most two decoders
+    private final PlayerSlot[] slots = {new PlayerSlot(), new PlayerSlot()};
+    // Plays the station which was asked for last
+    private volatile PlayerSlot currentSlot = slots[0];
+    // Keeps playing the previous station until the current one is ready, and then fades out
+    private PlayerSlot fadingSlot;
+    private long fadeStartTime;
+    private long crossfadeMillis;
+    private float volume = 1.0f;
+
     private PlayListener stateListener;
 
+    private final PlaybackTelemetry telemetry;
+
     private String streamUrl;
 
     private DefaultBandwidthMeter bandwidthMeter = new DefaultBandwidthMeter();
 
-    private RecordableListener recordableListener;
+    private volatile RecordableListener recordableListener;
+
+    private volatile int pastAudioSeconds;
+    private volatile PastAudioBuffer pastAudio;
+    // Type of the audio, of the segments for HLS
+    private volatile String contentType;
 
     private long totalTransferredBytes;
     private long currentPlaybackTransferredBytes;
@@ -76,16 +109,25 @@ public class ExoPlayerWrapper implements PlayerWrapper, IcyDataSource.IcyDataSou
     private boolean isHls;
     private boolean isPlayingFlag;
 
-    private Handler playerThreadHandler;
+    private final Handler playerThreadHandler;
 
     private Context context;
-    private MediaSource audioSource;
 
     private Runnable fullStopTask;
 
+    private CustomLoadErrorHandlingPolicy loadErrorHandlingPolicy;
+    private boolean isAlarm;
+    private boolean isReceiverRegistered;
+
+    // For measuring how long it takes from switching stations until playback
+    private long prepareTime;
+    private boolean preparedWarm;
+
     private final BroadcastReceiver networkChangedReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
+            final SimpleExoPlayer player = currentSlot.player;
+            final MediaSource audioSource = currentSlot.audioSource;
             if (fullStopTask != null && player != null && audioSource != null && Utils.hasAnyConnection(context)) {
                 Log.i(TAG, "Regained connection. Resuming playback.");
 
@@ -96,6 +138,189 @@ public class ExoPlayerWrapper implements PlayerWrapper, IcyDataSource.IcyDataSou
             }
         }
     };
+
+    private final Runnable crossfadeTask = new Runnable() {
+        @Override
+        public void run() {
+            applyVolume();
+
+            if (fadingSlot == null) {
+                return;
+            }
+
+            if (SystemClock.elapsedRealtime() - fadeStartTime >= crossfadeMillis) {
+                releaseFadingSlot();
+                applyVolume();
+            } else {
+                playerThreadHandler.postDelayed(this, CROSSFADE_STEP_MS);
+            }
+        }
+    };
+
+    private final Runnable crossfadeTimeoutTask = () -> {
+        Log.i(TAG, "Next station took too long to start, stopping the previous one.");
+        releaseFadingSlot();
+        applyVolume();
+    };
+
+    /**
+     * A player together with the factories for its media sources. The factories are kept
+     * for every station, so switching stations only creates a new media source.
+     * <p>
+     * Events are only passed on from the current slot. The other one may still be playing
+     * the previous station.
+     */
+    private final class PlayerSlot implements IcyDataSource.IcyDataSourceListener, MetadataOutput {
+        SimpleExoPlayer player;
+        MediaSource audioSource;
+        // Whether the player was created for low power playback
+        boolean lowPower;
+
+        private OkHttpClient httpClient;
+        private boolean batchReads;
+        private int retryTimeout;
+        private int retryDelay;
+        private ProgressiveMediaSource.Factory progressiveSourceFactory;
+        private HlsMediaSource.Factory hlsSourceFactory;
+
+        boolean isCurrent() {
+            return currentSlot == this;
+        }
+
+        boolean isReady() {
+            return player != null && player.getPlaybackState() == Player.STATE_READY;
+        }
+
+        void createPlayer(boolean limitBuffer, boolean lowPower) {
+            SimpleExoPlayer.Builder builder = new SimpleExoPlayer.Builder(context)
+                    .setLooper(playerThreadHandler.getLooper());
+            if (limitBuffer || lowPower) {
+                DefaultLoadControl.Builder loadControlBuilder = new DefaultLoadControl.Builder();
+                if (limitBuffer) {
+                    loadControlBuilder.setTargetBufferBytes(CROSSFADE_BUFFER_BYTES);
+                }
+                if (lowPower) {
+                    loadControlBuilder.setBufferDurationsMs(LOW_POWER_MIN_BUFFER_MS, LOW_POWER_MAX_BUFFER_MS,
+                            LOW_POWER_BUFFER_FOR_PLAYBACK_MS, LOW_POWER_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS);
+                }
+                builder.setLoadControl(loadControlBuilder.createDefaultLoadControl());
+            }
+
+            this.lowPower = lowPower;
+            player = builder.build();
+            player.setAudioAttributes(getAudioAttributes(isAlarm));
+
+            player.addListener(new ExoPlayerListener(this));
+            player.addAnalyticsListener(new AnalyticEventListener(this));
+            player.addMetadataOutput(this);
+        }
+
+        void prepare(@NonNull OkHttpClient httpClient, @NonNull String streamUrl, boolean isHls, int retryTimeout, int retryDelay) {
+            if (httpClient != this.httpClient || lowPower != batchReads
+                    || retryTimeout != this.retryTimeout || retryDelay != this.retryDelay) {
+                // The data source factory holds on to the http client and the retry settings, so the
+                // factories are only built again when one of them or the way of reading changes
+                DataSource.Factory dataSourceFactory = new RadioDataSourceFactory(httpClient, bandwidthMeter, this,
+                        retryTimeout, retryDelay, lowPower);
+
+                this.httpClient = httpClient;
+                this.batchReads = lowPower;
+                this.retryTimeout = retryTimeout;
+                this.retryDelay = retryDelay;
+                // Produces Extractor instances for parsing the media data.
+                progressiveSourceFactory = new ProgressiveMediaSource.Factory(dataSourceFactory)
+                        .setLoadErrorHandlingPolicy(loadErrorHandlingPolicy);
+                hlsSourceFactory = new HlsMediaSource.Factory(dataSourceFactory)
+                        .setLoadErrorHandlingPolicy(loadErrorHandlingPolicy);
+            }
+
+            if (!isHls) {
+                audioSource = progressiveSourceFactory.createMediaSource(Uri.parse(streamUrl));
+            } else {
+                audioSource = hlsSourceFactory.createMediaSource(Uri.parse(streamUrl));
+            }
+
+            player.prepare(audioSource);
+            player.setPlayWhenReady(true);
+        }
+
+        void release() {
+            if (player != null) {
+                player.stop();
+                player.release();
+                player = null;
+            }
+            audioSource = null;
+        }
+
+        @Override
+        public void onDataSourceConnected(@NonNull String contentType) {
+            if (isCurrent()) {
+                ExoPlayerWrapper.this.onDataSourceConnected(contentType);
+            }
+        }
+
+        @Override
+        public void onDataSourceConnectionLost() {
+            if (isCurrent()) {
+                ExoPlayerWrapper.this.onDataSourceConnectionLost();
+            }
+        }
+
+        @Override
+        public void onDataSourceConnectionLostIrrecoverably() {
+            if (isCurrent()) {
+                ExoPlayerWrapper.this.onDataSourceConnectionLostIrrecoverably();
+            }
+        }
+
+        @Override
+        public void onDataSourceShoutcastInfo(@Nullable ShoutcastInfo shoutcastInfo) {
+            if (isCurrent()) {
+                ExoPlayerWrapper.this.onDataSourceShoutcastInfo(shoutcastInfo);
+            }
+        }
+
+        @Override
+        public void onDataSourceStreamLiveInfo(StreamLiveInfo streamLiveInfo) {
+            if (isCurrent()) {
+                ExoPlayerWrapper.this.onDataSourceStreamLiveInfo(streamLiveInfo);
+            }
+        }
+
+        @Override
+        public void onDataSourceBytesRead(byte[] buffer, int offset, int length) {
+            if (isCurrent()) {
+                ExoPlayerWrapper.this.onDataSourceBytesRead(buffer, offset, length);
+            } else {
+                totalTransferredBytes += length;
+            }
+        }
+
+        @Override
+        public void onDataSourceStreamLiveInfoRead(StreamLiveInfo streamLiveInfo) {
+            if (isCurrent()) {
+                ExoPlayerWrapper.this.onDataSourceStreamLiveInfoRead(streamLiveInfo);
+            }
+        }
+
+        @Override
+        public void onMetadata(Metadata metadata) {
+            if (isCurrent()) {
+                ExoPlayerWrapper.this.onMetadata(metadata);
+            }
+        }
+    }
+
+    /**
+     * @param playerThreadHandler handler of the thread in which the wrapper is used, the players
+     *                            report their events in it too
+     */
+    public ExoPlayerWrapper(@NonNull PlaybackTelemetry telemetry, @NonNull Handler playerThreadHandler) {
+        this.telemetry = telemetry;
+        this.playerThreadHandler = playerThreadHandler;
+    }
+
     final class CustomLoadErrorHandlingPolicy extends DefaultLoadErrorHandlingPolicy {
         final int MIN_RETRY_DELAY_MS = 10;
         final SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
@@ -155,6 +380,9 @@ public class ExoPlayerWrapper implements PlayerWrapper, IcyDataSource.IcyDataSou
         }
         if (!streamUrl.equals(this.streamUrl)) {
             currentPlaybackTransferredBytes = 0;
+            // Don't record past audio of another station
+            pastAudio = null;
+            contentType = null;
         }
 
         this.context = context;
@@ -164,47 +392,84 @@ public class ExoPlayerWrapper implements PlayerWrapper, IcyDataSource.IcyDataSou
 
         stateListener.onStateChanged(PlayState.PrePlaying);
 
-        if (player != null) {
-            player.stop();
+        if (loadErrorHandlingPolicy == null) {
+            loadErrorHandlingPolicy = new CustomLoadErrorHandlingPolicy();
         }
 
-        if (player == null) {
-            player = new SimpleExoPlayer.Builder(context).build();
-            player.setAudioAttributes(new AudioAttributes.Builder().setContentType(C.CONTENT_TYPE_MUSIC)
-                    .setUsage(isAlarm ? C.USAGE_ALARM : C.USAGE_MEDIA).build());
+        isHls = Utils.urlIndicatesHlsStream(streamUrl);
 
-            player.addListener(new ExoPlayerListener());
-            player.addAnalyticsListener(new AnalyticEventListener());
-            player.addMetadataOutput(this);
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context.getApplicationContext());
+        final int retryTimeout = prefs.getInt("settings_retry_timeout", 10);
+        final int retryDelay = prefs.getInt("settings_retry_delay", 100);
+        pastAudioSeconds = isHls ? 0 : prefs.getInt("record_past_seconds", 0);
+
+        final boolean crossfade = prefs.getBoolean("crossfade", false);
+        final boolean lowPower = prefs.getBoolean("low_power_playback", false);
+        crossfadeMillis = Math.max(0, prefs.getInt("crossfade_millis", 2000));
+
+        if (crossfade && currentSlot.isReady()) {
+            // Only two players may exist, so a station which is still fading out is dropped
+            releaseFadingSlot();
+
+            fadingSlot = currentSlot;
+            currentSlot = fadingSlot == slots[0] ? slots[1] : slots[0];
+        } else if (!crossfade) {
+            releaseFadingSlot();
         }
 
-        if (playerThreadHandler == null) {
-            playerThreadHandler = new Handler(Looper.getMainLooper());
+        if (fadingSlot != null) {
+            // Previous station keeps playing until the next one is ready
+            fadeStartTime = 0;
+            playerThreadHandler.removeCallbacks(crossfadeTask);
+            playerThreadHandler.removeCallbacks(crossfadeTimeoutTask);
+            playerThreadHandler.postDelayed(crossfadeTimeoutTask, CROSSFADE_MAX_WAIT_MS);
         }
 
-        isHls = Utils.urlIndicatesHlsStream(streamUrl);
+        if (currentSlot.player != null && currentSlot.lowPower != lowPower) {
+            // Buffer sizes of a player are fixed once it is created
+            currentSlot.release();
+        }
 
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context.getApplicationContext());
-        final int retryTimeout = prefs.getInt("settings_retry_timeout", 10);
-        final int retryDelay = prefs.getInt("settings_retry_delay", 100);
+        // Not stopping the player before preparing the next source keeps its renderers
+        // enabled, so the codec is flushed and reused instead of released and created again.
+        preparedWarm = currentSlot.player != null;
 
-        DataSource.Factory dataSourceFactory = new RadioDataSourceFactory(httpClient, bandwidthMeter, this, retryTimeout, retryDelay);
-        // Produces Extractor instances for parsing the media data.
-        if (!isHls) {
-            audioSource = new ProgressiveMediaSource.Factory(dataSourceFactory)
-                    .setLoadErrorHandlingPolicy(new CustomLoadErrorHandlingPolicy())
-                    .createMediaSource(Uri.parse(streamUrl));
-            player.prepare(audioSource);
-        } else {
-            audioSource = new HlsMediaSource.Factory(dataSourceFactory)
-                    .setLoadErrorHandlingPolicy(new CustomLoadErrorHandlingPolicy())
-                    .createMediaSource(Uri.parse(streamUrl));
-            player.prepare(audioSource);
+        final boolean isAlarmChanged = this.isAlarm != isAlarm;
+        this.isAlarm = isAlarm;
+
+        // Cost of a station switch on this thread, to compare a reused player with a new one
+        final long switchStartNs = System.nanoTime();
+        if (BuildConfig.DEBUG) {
+            Debug.startAllocCounting();
+            Debug.resetThreadAllocCount();
+            Debug.resetThreadAllocSize();
         }
 
-        player.setPlayWhenReady(true);
+        if (currentSlot.player == null) {
+            currentSlot.createPlayer(crossfade, lowPower);
+        } else if (isAlarmChanged) {
+            currentSlot.player.setAudioAttributes(getAudioAttributes(isAlarm));
+        }
+
+        if (!isReceiverRegistered) {
+            // Received in the player's thread, as it touches the player
+            context.registerReceiver(networkChangedReceiver, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION),
+                    null, playerThreadHandler);
+            isReceiverRegistered = true;
+        }
 
-        context.registerReceiver(networkChangedReceiver, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+        isPlayingFlag = false;
+        applyVolume();
+
+        prepareTime = SystemClock.elapsedRealtime();
+        currentSlot.prepare(httpClient, streamUrl, isHls, retryTimeout, retryDelay);
+
+        if (BuildConfig.DEBUG) {
+            Debug.stopAllocCounting();
+            Log.d(TAG, String.format(Locale.US, "Switch took %.1fms, %d allocations, %d bytes, %s",
+                    (System.nanoTime() - switchStartNs) / 1e6, Debug.getThreadAllocCount(),
+                    Debug.getThreadAllocSize(), preparedWarm ? "reused player" : "new player"));
+        }
 
         // State changed will be called when audio session id is available.
     }
@@ -214,13 +479,7 @@ public class ExoPlayerWrapper implements PlayerWrapper, IcyDataSource.IcyDataSou
         Log.i(TAG, "Pause. Stopping exoplayer.");
 
         cancelStopTask();
-
-        if (player != null) {
-            context.unregisterReceiver(networkChangedReceiver);
-            player.stop();
-            player.release();
-            player = null;
-        }
+        releasePlayers();
     }
 
     @Override
@@ -228,24 +487,19 @@ public class ExoPlayerWrapper implements PlayerWrapper, IcyDataSource.IcyDataSou
         Log.i(TAG, "Stopping exoplayer.");
 
         cancelStopTask();
-
-        if (player != null) {
-            context.unregisterReceiver(networkChangedReceiver);
-            player.stop();
-            player.release();
-            player = null;
-        }
+        releasePlayers();
 
         stopRecording();
     }
 
     @Override
     public boolean isPlaying() {
-        return player != null && isPlayingFlag;
+        return currentSlot.player != null && isPlayingFlag;
     }
 
     @Override
     public long getBufferedMs() {
+        final SimpleExoPlayer player = currentSlot.player;
         if (player != null) {
             return (int) (player.getBufferedPosition() - player.getCurrentPosition());
         }
@@ -255,6 +509,7 @@ public class ExoPlayerWrapper implements PlayerWrapper, IcyDataSource.IcyDataSou
 
     @Override
     public int getAudioSessionId() {
+        final SimpleExoPlayer player = currentSlot.player;
         if (player != null) {
             return player.getAudioSessionId();
         }
@@ -278,9 +533,8 @@ public class ExoPlayerWrapper implements PlayerWrapper, IcyDataSource.IcyDataSou
 
     @Override
     public void setVolume(float newVolume) {
-        if (player != null) {
-            player.setVolume(newVolume);
-        }
+        volume = newVolume;
+        applyVolume();
     }
 
     @Override
@@ -289,8 +543,10 @@ public class ExoPlayerWrapper implements PlayerWrapper, IcyDataSource.IcyDataSou
     }
 
     @Override
-    public void onDataSourceConnected() {
-
+    public void onDataSourceConnected(@NonNull String contentType) {
+        if (!IcyDataSource.isHlsPlaylist(contentType)) {
+            this.contentType = contentType;
+        }
     }
 
     @Override
@@ -370,6 +626,9 @@ public class ExoPlayerWrapper implements PlayerWrapper, IcyDataSource.IcyDataSou
 
     @Override
     public void onDataSourceShoutcastInfo(@Nullable ShoutcastInfo shoutcastInfo) {
+        // Called in the loader thread after each connection, before any bytes are read
+        pastAudio = PastAudioBuffer.reuseOrCreate(pastAudio, pastAudioSeconds, shoutcastInfo != null ? shoutcastInfo.bitrate : 0);
+
         stateListener.onDataSourceShoutcastInfo(shoutcastInfo, false);
     }
 
@@ -383,14 +642,30 @@ public class ExoPlayerWrapper implements PlayerWrapper, IcyDataSource.IcyDataSou
         totalTransferredBytes += length;
         currentPlaybackTransferredBytes += length;
 
+        final RecordableListener recordableListener = this.recordableListener;
+        final PastAudioBuffer pastAudio = this.pastAudio;
         if (recordableListener != null) {
+            if (pastAudio != null) {
+                pastAudio.flushTo(recordableListener);
+            }
             recordableListener.onBytesAvailable(buffer, offset, length);
         }
+        if (pastAudio != null) {
+            pastAudio.write(buffer, offset, length);
+        }
+    }
+
+    @Override
+    public void onDataSourceStreamLiveInfoRead(StreamLiveInfo streamLiveInfo) {
+        final RecordableListener recordableListener = this.recordableListener;
+        if (recordableListener != null) {
+            recordableListener.onStreamLiveInfo(streamLiveInfo);
+        }
     }
 
     @Override
     public boolean canRecord() {
-        return player != null;
+        return currentSlot.player != null;
     }
 
     @Override
@@ -417,8 +692,80 @@ public class ExoPlayerWrapper implements PlayerWrapper, IcyDataSource.IcyDataSou
     }
 
     @Override
-    public String getExtension() {
-        return isHls ? "ts" : "mp3";
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public int getMaxPastAudioBytes() {
+        final PastAudioBuffer pastAudio = this.pastAudio;
+        return pastAudio != null ? pastAudio.getCapacity() : 0;
+    }
+
+    /**
+     * Sets the volume of the players according to the progress of the crossfade.
+     */
+    private void applyVolume() {
+        final SimpleExoPlayer player = currentSlot.player;
+        if (fadingSlot == null) {
+            if (player != null) {
+                player.setVolume(volume);
+            }
+            return;
+        }
+
+        float progress = 0;
+        if (fadeStartTime != 0) {
+            progress = crossfadeMillis > 0 ? Math.min(1.0f, (SystemClock.elapsedRealtime() - fadeStartTime) / (float) crossfadeMillis) : 1.0f;
+        }
+
+        // Equal power, so the loudness stays the same during the crossfade
+        final double angle = progress * Math.PI / 2;
+        if (player != null) {
+            player.setVolume(volume * (float) Math.sin(angle));
+        }
+        fadingSlot.player.setVolume(volume * (float) Math.cos(angle));
+    }
+
+    private void startCrossfade() {
+        if (fadingSlot == null || fadeStartTime != 0) {
+            return;
+        }
+
+        playerThreadHandler.removeCallbacks(crossfadeTimeoutTask);
+
+        fadeStartTime = SystemClock.elapsedRealtime();
+        playerThreadHandler.removeCallbacks(crossfadeTask);
+        playerThreadHandler.post(crossfadeTask);
+    }
+
+    private void releaseFadingSlot() {
+        if (fadingSlot == null) {
+            return;
+        }
+
+        playerThreadHandler.removeCallbacks(crossfadeTask);
+        playerThreadHandler.removeCallbacks(crossfadeTimeoutTask);
+
+        fadingSlot.release();
+        fadingSlot = null;
+        fadeStartTime = 0;
+    }
+
+    private void releasePlayers() {
+        releaseFadingSlot();
+        currentSlot.release();
+        isPlayingFlag = false;
+
+        if (isReceiverRegistered) {
+            context.unregisterReceiver(networkChangedReceiver);
+            isReceiverRegistered = false;
+        }
+    }
+
+    private static AudioAttributes getAudioAttributes(boolean isAlarm) {
+        return new AudioAttributes.Builder().setContentType(C.CONTENT_TYPE_MUSIC)
+                .setUsage(isAlarm ? C.USAGE_ALARM : C.USAGE_MEDIA).build();
     }
 
     private void cancelStopTask() {
@@ -429,6 +776,11 @@ public class ExoPlayerWrapper implements PlayerWrapper, IcyDataSource.IcyDataSou
     }
 
     private class ExoPlayerListener implements Player.EventListener {
+        private final PlayerSlot slot;
+
+        ExoPlayerListener(PlayerSlot slot) {
+            this.slot = slot;
+        }
 
         @Override
         public void onTracksChanged(TrackGroupArray trackGroups, TrackSelectionArray trackSelections) {
@@ -453,6 +805,14 @@ public class ExoPlayerWrapper implements PlayerWrapper, IcyDataSource.IcyDataSou
         @Override
         public void onPlayerError(ExoPlaybackException error) {
             Log.d(TAG, "Player error: ", error);
+            if (!slot.isCurrent()) {
+                // Previous station failed while fading out
+                if (slot == fadingSlot) {
+                    releaseFadingSlot();
+                    applyVolume();
+                }
+                return;
+            }
             // Stop playing since it is either irrecoverable error in the player or our data source failed to reconnect.
             if (fullStopTask != null || error.type != ExoPlaybackException.TYPE_SOURCE) {
                 stop();
@@ -472,20 +832,43 @@ public class ExoPlayerWrapper implements PlayerWrapper, IcyDataSource.IcyDataSou
     }
 
     private class AnalyticEventListener implements AnalyticsListener {
+        private final PlayerSlot slot;
+
+        AnalyticEventListener(PlayerSlot slot) {
+            this.slot = slot;
+        }
+
         @Override
         public void onPlayerStateChanged(EventTime eventTime, boolean playWhenReady, int playbackState) {
+            if (!slot.isCurrent()) {
+                return;
+            }
+
             isPlayingFlag = playbackState == Player.STATE_READY || playbackState == Player.STATE_BUFFERING;
 
             switch (playbackState) {
                 case Player.STATE_READY:
+                    telemetry.onReady(eventTime.realtimeMs);
+                    if (BuildConfig.DEBUG && prepareTime != 0) {
+                        Log.d(TAG, "Ready " + (SystemClock.elapsedRealtime() - prepareTime) + "ms after prepare, "
+                                + (preparedWarm ? "reused player" : "new player"));
+                    }
+                    prepareTime = 0;
                     cancelStopTask();
+                    startCrossfade();
                     stateListener.onStateChanged(PlayState.Playing);
                     break;
                 case Player.STATE_BUFFERING:
+                    telemetry.onBuffering(eventTime.realtimeMs);
                     stateListener.onStateChanged(PlayState.PrePlaying);
                     break;
+                case Player.STATE_IDLE:
+                case Player.STATE_ENDED:
+                    telemetry.onStopped(eventTime.realtimeMs);
+                    break;
             }
 
+            stateListener.onBufferLevel(eventTime.totalBufferedDurationMs);
         }
 
         @Override
@@ -525,7 +908,10 @@ public class ExoPlayerWrapper implements PlayerWrapper, IcyDataSource.IcyDataSou
 
         @Override
         public void onLoadingChanged(EventTime eventTime, boolean isLoading) {
-
+            // Loading stops when the buffer is full and starts again once enough is consumed
+            if (slot.isCurrent()) {
+                stateListener.onBufferLevel(eventTime.totalBufferedDurationMs);
+            }
         }
 
         @Override
@@ -545,17 +931,24 @@ public class ExoPlayerWrapper implements PlayerWrapper, IcyDataSource.IcyDataSou
 
         @Override
         public void onLoadCompleted(EventTime eventTime, MediaSourceEventListener.LoadEventInfo loadEventInfo, MediaSourceEventListener.MediaLoadData mediaLoadData) {
-
+            // Each segment of HLS streams
+            if (slot.isCurrent()) {
+                stateListener.onBufferLevel(eventTime.totalBufferedDurationMs);
+            }
         }
 
         @Override
         public void onLoadCanceled(EventTime eventTime, MediaSourceEventListener.LoadEventInfo loadEventInfo, MediaSourceEventListener.MediaLoadData mediaLoadData) {
-
+            if (slot.isCurrent()) {
+                stateListener.onBufferLevel(eventTime.totalBufferedDurationMs);
+            }
         }
 
         @Override
         public void onLoadError(EventTime eventTime, MediaSourceEventListener.LoadEventInfo loadEventInfo, MediaSourceEventListener.MediaLoadData mediaLoadData, IOException error, boolean wasCanceled) {
-
+            if (slot.isCurrent()) {
+                telemetry.onLoadError();
+            }
         }
 
         @Override
@@ -585,7 +978,9 @@ public class ExoPlayerWrapper implements PlayerWrapper, IcyDataSource.IcyDataSou
 
         @Override
         public void onBandwidthEstimate(EventTime eventTime, int totalLoadTimeMs, long totalBytesLoaded, long bitrateEstimate) {
-
+            if (slot.isCurrent()) {
+                telemetry.onBandwidthEstimate(bitrateEstimate);
+            }
         }
 
         @Override
@@ -605,7 +1000,16 @@ public class ExoPlayerWrapper implements PlayerWrapper, IcyDataSource.IcyDataSou
 
         @Override
         public void onDecoderInitialized(EventTime eventTime, int trackType, String decoderName, long initializationDurationMs) {
+            if (slot.isCurrent()) {
+                telemetry.onDecoderInitialized(decoderName, initializationDurationMs);
+            }
+        }
 
+        @Override
+        public void onAudioUnderrun(EventTime eventTime, int bufferSize, long bufferSizeMs, long elapsedSinceLastFeedMs) {
+            if (slot.isCurrent()) {
+                telemetry.onAudioUnderrun();
+            }
         }
 
         @Override
@@ -2,6 +2,7 @@ package net.programmierecke.radiodroid2.players.exoplayer;
 
 
 import android.net.Uri;
+import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -16,8 +17,10 @@ import net.programmierecke.radiodroid2.station.live.StreamLiveInfo;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.Charset;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import okhttp3.HttpUrl;
 import okhttp3.MediaType;
@@ -25,6 +28,7 @@ import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import okio.BufferedSource;
 
 import static net.programmierecke.radiodroid2.Utils.getMimeType;
 import static okhttp3.internal.Util.closeQuietly;
@@ -48,8 +52,10 @@ public class IcyDataSource implements HttpDataSource {
     public interface IcyDataSourceListener {
         /**
          * Called on first connection and after successful reconnection.
+         *
+         * @param contentType MIME type of the response, in lower case
          */
-        void onDataSourceConnected();
+        void onDataSourceConnected(@NonNull String contentType);
 
         /**
          * Called when connection is lost and reconnection attempts will be made.
@@ -65,16 +71,40 @@ public class IcyDataSource implements HttpDataSource {
 
         void onDataSourceStreamLiveInfo(StreamLiveInfo streamLiveInfo);
 
+        /**
+         * Called with the audio read from the stream, without ICY metadata and HLS playlists.
+         */
         void onDataSourceBytesRead(byte[] buffer, int offset, int length);
+
+        /**
+         * Called when metadata is read from the stream, in order with
+         * {@link #onDataSourceBytesRead(byte[], int, int)}. Playback reaches it later, when
+         * {@link #onDataSourceStreamLiveInfo(StreamLiveInfo)} is called.
+         */
+        void onDataSourceStreamLiveInfoRead(StreamLiveInfo streamLiveInfo);
     }
 
     private static final String TAG = "IcyDataSource";
 
+    private static final Charset METADATA_CHARSET = Charset.forName("UTF-8");
+
+    // Batched reads wait until about this much audio has arrived. The size of a batch follows
+    // the rate the stream is actually received at, the bitrate servers claim can be far off.
+    static final long BATCH_READ_MS = 2000;
+    static final int MIN_BATCH_READ_BYTES = 8 * 1024;
+    static final int MAX_BATCH_READ_BYTES = 64 * 1024;
+
+    // Reads which had to wait for the network, of all data sources
+    private static final AtomicLong networkReadCount = new AtomicLong();
+
     private DataSpec dataSpec;
 
     private final OkHttpClient httpClient;
     private final TransferListener transferListener;
     private final IcyDataSourceListener dataSourceListener;
+    private final boolean batchReads;
+    // 0 if reads are not batched
+    private int batchReadBytes;
 
     private Request request;
 
@@ -82,8 +112,13 @@ public class IcyDataSource implements HttpDataSource {
     private Map<String, List<String>> responseHeaders;
 
     int metadataBytesToSkip = 0;
+    // Length byte and at most 255 * 16 bytes of metadata
+    private final byte[] metadata = new byte[1 + 255 * 16];
+    private int metadataLength;
     int remainingUntilMetadata = Integer.MAX_VALUE;
     private boolean opened;
+    // Playlists are read by the player but are not audio
+    private boolean isPlaylist;
 
     ShoutcastInfo shoutcastInfo;
     private StreamLiveInfo streamLiveInfo;
@@ -91,9 +126,46 @@ public class IcyDataSource implements HttpDataSource {
     public IcyDataSource(@NonNull OkHttpClient httpClient,
                          @NonNull TransferListener listener,
                          @NonNull IcyDataSourceListener dataSourceListener) {
+        this(httpClient, listener, dataSourceListener, false);
+    }
+
+    /**
+     * @param batchReads whether reads of the stream wait for {@link #BATCH_READ_MS} of audio once
+     *                   everything received is consumed, so the player goes through the stream in
+     *                   a few large chunks instead of one small one per network packet
+     */
+    public IcyDataSource(@NonNull OkHttpClient httpClient,
+                         @NonNull TransferListener listener,
+                         @NonNull IcyDataSourceListener dataSourceListener,
+                         boolean batchReads) {
         this.httpClient = httpClient;
         this.transferListener = listener;
         this.dataSourceListener = dataSourceListener;
+        this.batchReads = batchReads;
+    }
+
+    /**
+     * @return number of reads of all data sources which found nothing received yet and had to
+     * wait for the network, for measuring how often playback wakes up
+     */
+    public static long getNetworkReadCount() {
+        return networkReadCount.get();
+    }
+
+    /**
+     * @param waitedMs how long it took to receive the last batch
+     * @return size of the next batch or 0 if the stream is too slow to be worth batching
+     */
+    static int getNextBatchReadBytes(int batchReadBytes, long waitedMs) {
+        // A batch which was received at once tells nothing about the rate, so batches at most
+        // double. As long as the rate holds no batch takes longer than twice BATCH_READ_MS,
+        // well below the read timeout.
+        final long bytes = Math.min(batchReadBytes * BATCH_READ_MS / Math.max(waitedMs, 1), batchReadBytes * 2L);
+        if (bytes < MIN_BATCH_READ_BYTES) {
+            return 0;
+        }
+
+        return (int) Math.min(bytes, MAX_BATCH_READ_BYTES);
     }
 
     @Override
@@ -148,11 +220,13 @@ public class IcyDataSource implements HttpDataSource {
         }
 
         opened = true;
+        isPlaylist = isHlsPlaylist(type);
+        batchReadBytes = batchReads && !isPlaylist ? MIN_BATCH_READ_BYTES : 0;
 
-        dataSourceListener.onDataSourceConnected();
+        dataSourceListener.onDataSourceConnected(type);
         transferListener.onTransferStart(this, dataSpec, true);
 
-        if (type.equals("application/vnd.apple.mpegurl") || type.equals("application/x-mpegurl")) {
+        if (isPlaylist) {
             return responseBody.contentLength();
         } else {
             // try to get shoutcast information from stream connection
@@ -197,6 +271,7 @@ public class IcyDataSource implements HttpDataSource {
 
     void sendToDataSourceListenersWithoutMetadata(byte[] buffer, int offset, int bytesAvailable) {
         int canSkip = Math.min(metadataBytesToSkip, bytesAvailable);
+        skipMetadata(buffer, offset, canSkip);
         offset += canSkip;
         bytesAvailable -= canSkip;
         remainingUntilMetadata -= canSkip;
@@ -207,16 +282,18 @@ public class IcyDataSource implements HttpDataSource {
                     offset += remainingUntilMetadata;
                     bytesAvailable -= remainingUntilMetadata;
                 }
-                metadataBytesToSkip = buffer[offset] * 16 + 1;
+                metadataBytesToSkip = (buffer[offset] & 0xFF) * 16 + 1;
+                metadataLength = 0;
                 remainingUntilMetadata = shoutcastInfo.metadataOffset + metadataBytesToSkip;
             }
 
             int bytesLeft = Math.min(bytesAvailable, remainingUntilMetadata);
             if (bytesLeft > metadataBytesToSkip) { // is there audio data left we need to send?
-                dataSourceListener.onDataSourceBytesRead(buffer, offset + metadataBytesToSkip, bytesLeft - metadataBytesToSkip);
-                metadataBytesToSkip = 0;
+                final int audioOffset = offset + metadataBytesToSkip;
+                skipMetadata(buffer, offset, metadataBytesToSkip);
+                dataSourceListener.onDataSourceBytesRead(buffer, audioOffset, offset + bytesLeft - audioOffset);
             } else {
-                metadataBytesToSkip -= bytesLeft;
+                skipMetadata(buffer, offset, bytesLeft);
             }
             offset += bytesLeft;
             bytesAvailable -= bytesLeft;
@@ -224,25 +301,66 @@ public class IcyDataSource implements HttpDataSource {
         }
     }
 
+    /**
+     * Collects bytes of a metadata frame, including its length byte, and decodes it once
+     * it is complete.
+     */
+    private void skipMetadata(byte[] buffer, int offset, int length) {
+        if (length <= 0) {
+            return;
+        }
+
+        System.arraycopy(buffer, offset, metadata, metadataLength, length);
+        metadataLength += length;
+        metadataBytesToSkip -= length;
+
+        if (metadataBytesToSkip == 0 && metadataLength > 1) {
+            final String metadataStr = new String(metadata, 1, metadataLength - 1, METADATA_CHARSET);
+            final Map<String, String> rawMetadata = StreamLiveInfo.decodeShoutcastMetadata(metadataStr);
+            if (rawMetadata.containsKey("StreamTitle")) {
+                dataSourceListener.onDataSourceStreamLiveInfoRead(new StreamLiveInfo(rawMetadata));
+            }
+        }
+    }
+
     private int readInternal(byte[] buffer, int offset, int readLength) throws HttpDataSourceException {
         if (responseBody == null) {
             throw new HttpDataSourceException(dataSpec, HttpDataSourceException.TYPE_READ);
         }
 
-        InputStream stream = responseBody.byteStream();
+        final BufferedSource source = responseBody.source();
+        InputStream stream = source.inputStream();
 
         int bytesRead = 0;
         try {
+            if (source.buffer().size() == 0) {
+                networkReadCount.incrementAndGet();
+
+                if (batchReadBytes > 0) {
+                    final long startMs = SystemClock.elapsedRealtime();
+                    // Returns false at the end of the stream
+                    if (source.request(batchReadBytes)) {
+                        batchReadBytes = getNextBatchReadBytes(batchReadBytes, SystemClock.elapsedRealtime() - startMs);
+                    }
+                }
+            }
+
             bytesRead = stream.read(buffer, offset, readLength);
         } catch (IOException e) {
             throw new HttpDataSourceException(e, dataSpec, HttpDataSourceException.TYPE_READ);
         }
 
-        sendToDataSourceListenersWithoutMetadata(buffer, offset, bytesRead);
+        if (!isPlaylist) {
+            sendToDataSourceListenersWithoutMetadata(buffer, offset, bytesRead);
+        }
 
         return bytesRead;
     }
 
+    public static boolean isHlsPlaylist(@NonNull String contentType) {
+        return contentType.equals("application/vnd.apple.mpegurl") || contentType.equals("application/x-mpegurl");
+    }
+
     @Override
     public Uri getUri() {
         return dataSpec.uri;
@@ -14,21 +14,24 @@ public class RadioDataSourceFactory implements DataSource.Factory {
     private IcyDataSource.IcyDataSourceListener dataSourceListener;
     private long retryTimeout;
     private long retryDelay;
+    private final boolean batchReads;
 
     public RadioDataSourceFactory(@NonNull OkHttpClient httpClient,
                                   @NonNull TransferListener transferListener,
                                   @NonNull IcyDataSource.IcyDataSourceListener dataSourceListener,
                                   long retryTimeout,
-                                  long retryDelay) {
+                                  long retryDelay,
+                                  boolean batchReads) {
         this.httpClient = httpClient;
         this.transferListener = transferListener;
         this.dataSourceListener = dataSourceListener;
         this.retryTimeout = retryTimeout;
         this.retryDelay = retryDelay;
+        this.batchReads = batchReads;
     }
 
     @Override
     public DataSource createDataSource() {
-        return new IcyDataSource(httpClient, transferListener, dataSourceListener);
+        return new IcyDataSource(httpClient, transferListener, dataSourceListener, batchReads);
     }
 }
@@ -0,0 +1,54 @@
+package net.programmierecke.radiodroid2.players.health;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Probes a stream by requesting it and closing the connection as soon as the response
+ * headers arrived.
+ */
+public class HttpStreamProber implements StreamRace.Prober {
+    private final OkHttpClient httpClient;
+
+    public HttpStreamProber(@NonNull OkHttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    @NonNull
+    @Override
+    public StreamRace.Probe probe(@NonNull String url, @NonNull StreamRace.ProbeCallback callback) {
+        final Request request;
+        try {
+            request = new Request.Builder().url(url).build();
+        } catch (IllegalArgumentException e) {
+            callback.onProbed(url, false);
+            return () -> {
+            };
+        }
+
+        final Call call = httpClient.newCall(request);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                callback.onProbed(url, false);
+            }
+
+            @Override
+            public void onResponse(@NonNull Call call, @NonNull Response response) {
+                final boolean connected = response.isSuccessful();
+                // Streams don't end, so the body is not read
+                response.close();
+                callback.onProbed(url, connected);
+            }
+        });
+
+        return call::cancel;
+    }
+}
@@ -0,0 +1,20 @@
+package net.programmierecke.radiodroid2.players.health;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface StreamHealthDao {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(StreamHealthEntry entry);
+
+    @Query("SELECT * FROM stream_health")
+    List<StreamHealthEntry> getAll();
+
+    @Query("DELETE FROM stream_health WHERE last_attempt < :before")
+    void deleteOlderThan(long before);
+}
@@ -0,0 +1,63 @@
+package net.programmierecke.radiodroid2.players.health;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+
+/**
+ * How a stream URL of a station behaved on this device, see {@link StreamHealthStore}.
+ * <p>
+ * Entries in the store are not changed after they are published, a changed copy replaces them.
+ */
+@Entity(tableName = "stream_health", primaryKeys = {"station_uuid", "stream_url"}, indices = {@Index("last_attempt")})
+public class StreamHealthEntry {
+
+    @ColumnInfo(name = "station_uuid")
+    @NonNull
+    public String stationUuid = "";
+
+    @ColumnInfo(name = "stream_url")
+    @NonNull
+    public String streamUrl = "";
+
+    // Attempts and successes decay with time, so that old results count less
+    @ColumnInfo(name = "attempts")
+    public double attempts;
+
+    @ColumnInfo(name = "successes")
+    public double successes;
+
+    @ColumnInfo(name = "consecutive_failures")
+    public int consecutiveFailures;
+
+    // Moving average of the time from pressing play until audio, 0 if it never played
+    @ColumnInfo(name = "startup_ms")
+    public long startupMs;
+
+    // Moving average of the part of the time spent waiting for audio after playback began
+    @ColumnInfo(name = "rebuffer_ratio")
+    public double rebufferRatio;
+
+    @ColumnInfo(name = "last_attempt")
+    public long lastAttempt;
+
+    // 0 if it never played
+    @ColumnInfo(name = "last_success")
+    public long lastSuccess;
+
+    public StreamHealthEntry() {
+    }
+
+    StreamHealthEntry(@NonNull StreamHealthEntry other) {
+        stationUuid = other.stationUuid;
+        streamUrl = other.streamUrl;
+        attempts = other.attempts;
+        successes = other.successes;
+        consecutiveFailures = other.consecutiveFailures;
+        startupMs = other.startupMs;
+        rebufferRatio = other.rebufferRatio;
+        lastAttempt = other.lastAttempt;
+        lastSuccess = other.lastSuccess;
+    }
+}
@@ -0,0 +1,250 @@
+package net.programmierecke.radiodroid2.players.health;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import net.programmierecke.radiodroid2.database.RadioDroidDatabase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Remembers how the stream URLs of stations behaved on this device and scores them by how
+ * often they connected, how long it took until audio and how much they rebuffered.
+ * <p>
+ * Everything is kept in memory so that stations can be ranked while filtering lists and
+ * before playing without waiting for the database. Results are written in the database's
+ * executor, which also loads the saved entries first, so no lock is needed.
+ */
+public class StreamHealthStore {
+    // Older results count half as much after this time
+    static final long HALF_LIFE_MS = TimeUnit.DAYS.toMillis(14);
+
+    // Startup time at which a stream scores 3/4 of an instant one
+    static final long SLOW_STARTUP_MS = 5000;
+
+    // Failures in a row after which a stream is not tried first anymore
+    static final int CHRONIC_FAILURES = 3;
+
+    static final int MAX_CANDIDATES = 3;
+
+    private static final long CHRONIC_FAILURES_FORGOTTEN_MS = TimeUnit.DAYS.toMillis(30);
+    private static final long RETENTION_MS = TimeUnit.DAYS.toMillis(90);
+
+    // Shorter sessions say little about rebuffering
+    private static final long MIN_REBUFFER_SAMPLE_MS = 30000;
+
+    // Weight of the newest result in moving averages
+    private static final double AVERAGE_WEIGHT = 0.3;
+
+    private static final Pattern PLAYLIST_URL = Pattern.compile(".*\\.(pls|m3u|asx|xspf)([#?].*)?$", Pattern.CASE_INSENSITIVE);
+
+    private final StreamHealthDao dao;
+    private final Executor queryExecutor;
+
+    // Stream URLs of stations by station uuid. Maps are replaced instead of changed.
+    private final ConcurrentHashMap<String, Map<String, StreamHealthEntry>> stations = new ConcurrentHashMap<>();
+
+    public StreamHealthStore(@NonNull RadioDroidDatabase database) {
+        this(database.streamHealthDao(), database.getQueryExecutor());
+    }
+
+    StreamHealthStore(@NonNull StreamHealthDao dao, @NonNull Executor queryExecutor) {
+        this.dao = dao;
+        this.queryExecutor = queryExecutor;
+
+        queryExecutor.execute(this::load);
+    }
+
+    /**
+     * Records how playing the stream went, see {@link net.programmierecke.radiodroid2.players.telemetry.PlaybackTelemetry}.
+     * Sessions which neither played nor failed are ignored.
+     */
+    public void recordSession(@NonNull String stationUuid, @NonNull String streamUrl, long startupMs,
+                              long playingMs, long rebufferMs, int loadErrorCount) {
+        if (startupMs == 0 && loadErrorCount == 0) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        queryExecutor.execute(() -> update(withResult(getEntries(stationUuid).get(streamUrl), stationUuid, streamUrl, now,
+                startupMs != 0, startupMs, playingMs, rebufferMs)));
+    }
+
+    public void recordConnectFailure(@NonNull String stationUuid, @NonNull String streamUrl) {
+        final long now = System.currentTimeMillis();
+        queryExecutor.execute(() -> update(withResult(getEntries(stationUuid).get(streamUrl), stationUuid, streamUrl, now,
+                false, 0, 0, 0)));
+    }
+
+    /**
+     * @return URLs to try for the station, the best one first. The resolved URL comes first among
+     * equally good ones, URLs of playlists which the players can't open are left out.
+     */
+    @NonNull
+    public List<String> getCandidates(@NonNull String stationUuid, @Nullable String resolvedUrl, @Nullable String stationUrl) {
+        final Map<String, StreamHealthEntry> entries = getEntries(stationUuid);
+
+        final List<String> urls = new ArrayList<>();
+        if (resolvedUrl != null && !resolvedUrl.isEmpty()) {
+            urls.add(resolvedUrl);
+        }
+        if (isStreamUrl(stationUrl) && !urls.contains(stationUrl)) {
+            urls.add(stationUrl);
+        }
+        for (String url : entries.keySet()) {
+            if (isStreamUrl(url) && !urls.contains(url)) {
+                urls.add(url);
+            }
+        }
+
+        final long now = System.currentTimeMillis();
+        final Map<String, Float> scores = new HashMap<>();
+        for (String url : urls) {
+            scores.put(url, score(entries.get(url), now));
+        }
+
+        // Sorting is stable, so equally good URLs keep their order
+        Collections.sort(urls, (x, y) -> Float.compare(scores.get(y), scores.get(x)));
+
+        return urls.size() > MAX_CANDIDATES ? new ArrayList<>(urls.subList(0, MAX_CANDIDATES)) : urls;
+    }
+
+    /**
+     * @return whether the stream played the last time it was tried and started quickly, so
+     * there is no point in trying others alongside
+     */
+    public boolean isReliable(@NonNull String stationUuid, @NonNull String streamUrl) {
+        final StreamHealthEntry entry = getEntries(stationUuid).get(streamUrl);
+        return entry != null && entry.consecutiveFailures == 0 && entry.lastSuccess != 0
+                && entry.startupMs < SLOW_STARTUP_MS;
+    }
+
+    /**
+     * @return whether every known stream of the station failed repeatedly in a row lately,
+     * false if nothing is known about the station
+     */
+    public boolean isChronicallyFailing(@NonNull String stationUuid) {
+        final Map<String, StreamHealthEntry> entries = getEntries(stationUuid);
+        if (entries.isEmpty()) {
+            return false;
+        }
+
+        final long now = System.currentTimeMillis();
+        for (StreamHealthEntry entry : entries.values()) {
+            if (!isChronicallyFailing(entry, now)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return score of the stream from 0 to 1, an unknown stream scores 1/2
+     */
+    static float score(@Nullable StreamHealthEntry entry, long now) {
+        if (entry == null) {
+            return score(0, 0, 0, 0);
+        }
+
+        final double decay = decay(now - entry.lastAttempt);
+        return score(entry.attempts * decay, entry.successes * decay, entry.startupMs, entry.rebufferRatio);
+    }
+
+    private static float score(double attempts, double successes, long startupMs, double rebufferRatio) {
+        // Starts from one success and one failure, so that few results don't count too much
+        final double connectRate = (successes + 1) / (attempts + 2);
+        final double startupFactor = 1 - 0.5 * startupMs / (double) (startupMs + SLOW_STARTUP_MS);
+        return (float) (connectRate * startupFactor * (1 - rebufferRatio));
+    }
+
+    static boolean isChronicallyFailing(@NonNull StreamHealthEntry entry, long now) {
+        return entry.consecutiveFailures >= CHRONIC_FAILURES && now - entry.lastAttempt < CHRONIC_FAILURES_FORGOTTEN_MS;
+    }
+
+    /**
+     * @return copy of the entry, or a new one, with the result of one attempt to play the stream
+     */
+    @NonNull
+    static StreamHealthEntry withResult(@Nullable StreamHealthEntry previous, @NonNull String stationUuid,
+                                        @NonNull String streamUrl, long now, boolean connected,
+                                        long startupMs, long playingMs, long rebufferMs) {
+        final StreamHealthEntry entry;
+        if (previous != null) {
+            entry = new StreamHealthEntry(previous);
+
+            final double decay = decay(now - previous.lastAttempt);
+            entry.attempts *= decay;
+            entry.successes *= decay;
+        } else {
+            entry = new StreamHealthEntry();
+            entry.stationUuid = stationUuid;
+            entry.streamUrl = streamUrl;
+        }
+
+        entry.attempts += 1;
+        entry.lastAttempt = now;
+
+        if (!connected) {
+            entry.consecutiveFailures++;
+            return entry;
+        }
+
+        entry.successes += 1;
+        entry.consecutiveFailures = 0;
+        entry.lastSuccess = now;
+        entry.startupMs = entry.startupMs == 0 ? startupMs : Math.round(average(entry.startupMs, startupMs));
+
+        if (playingMs + rebufferMs >= MIN_REBUFFER_SAMPLE_MS) {
+            final double rebufferRatio = rebufferMs / (double) (playingMs + rebufferMs);
+            entry.rebufferRatio = average(entry.rebufferRatio, rebufferRatio);
+        }
+
+        return entry;
+    }
+
+    private static double average(double average, double value) {
+        return average + AVERAGE_WEIGHT * (value - average);
+    }
+
+    private static double decay(long elapsedMs) {
+        return elapsedMs <= 0 ? 1 : Math.pow(0.5, elapsedMs / (double) HALF_LIFE_MS);
+    }
+
+    private static boolean isStreamUrl(@Nullable String url) {
+        return url != null && !url.isEmpty() && !PLAYLIST_URL.matcher(url).matches();
+    }
+
+    @NonNull
+    private Map<String, StreamHealthEntry> getEntries(@NonNull String stationUuid) {
+        final Map<String, StreamHealthEntry> entries = stations.get(stationUuid);
+        return entries != null ? entries : Collections.emptyMap();
+    }
+
+    private void load() {
+        dao.deleteOlderThan(System.currentTimeMillis() - RETENTION_MS);
+
+        for (StreamHealthEntry entry : dao.getAll()) {
+            publish(entry);
+        }
+    }
+
+    private void update(@NonNull StreamHealthEntry entry) {
+        publish(entry);
+        dao.insert(entry);
+    }
+
+    private void publish(@NonNull StreamHealthEntry entry) {
+        final Map<String, StreamHealthEntry> entries = new HashMap<>(getEntries(entry.stationUuid));
+        entries.put(entry.streamUrl, entry);
+        stations.put(entry.stationUuid, Collections.unmodifiableMap(entries));
+    }
+}
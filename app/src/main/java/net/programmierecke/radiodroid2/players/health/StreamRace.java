@@ -0,0 +1,109 @@
+package net.programmierecke.radiodroid2.players.health;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connects to stream URLs in the order of preference and picks the first one which answers.
+ * The next URL is tried alongside when the previous one is slow to answer or fails, so a
+ * dead stream costs at most the fallback delay instead of a whole connect timeout.
+ */
+public class StreamRace {
+    public interface Probe {
+        void cancel();
+    }
+
+    public interface ProbeCallback {
+        /**
+         * May be called from any thread.
+         */
+        void onProbed(@NonNull String url, boolean connected);
+    }
+
+    public interface Prober {
+        @NonNull
+        Probe probe(@NonNull String url, @NonNull ProbeCallback callback);
+    }
+
+    public interface FailureListener {
+        void onConnectFailed(@NonNull String url);
+    }
+
+    private static class Result {
+        final String url;
+        final boolean connected;
+
+        Result(String url, boolean connected) {
+            this.url = url;
+            this.connected = connected;
+        }
+    }
+
+    private StreamRace() {
+    }
+
+    /**
+     * Blocks until a URL answered, all of them failed or the timeout passed.
+     *
+     * @return first URL which answered, null if none did
+     * @throws InterruptedException if the thread was interrupted, probes are cancelled then
+     */
+    @Nullable
+    public static String race(@NonNull List<String> candidates, @NonNull Prober prober, long fallbackDelayMs,
+                              long timeoutMs, @Nullable FailureListener failureListener) throws InterruptedException {
+        if (candidates.isEmpty()) {
+            return null;
+        }
+
+        final BlockingQueue<Result> results = new LinkedBlockingQueue<>();
+        final ProbeCallback callback = (url, connected) -> results.add(new Result(url, connected));
+        final List<Probe> probes = new ArrayList<>();
+
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        int pending = 0;
+
+        try {
+            while (true) {
+                if (probes.size() < candidates.size() && (pending == 0 || results.isEmpty())) {
+                    probes.add(prober.probe(candidates.get(probes.size()), callback));
+                    pending++;
+                }
+
+                final long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMs <= 0) {
+                    return null;
+                }
+
+                // Waits for the fallback delay only while there is another URL to try
+                final long waitMs = probes.size() < candidates.size() ? Math.min(fallbackDelayMs, remainingMs) : remainingMs;
+                final Result result = results.poll(waitMs, TimeUnit.MILLISECONDS);
+                if (result == null) {
+                    continue;
+                }
+
+                if (result.connected) {
+                    return result.url;
+                }
+
+                pending--;
+                if (failureListener != null) {
+                    failureListener.onConnectFailed(result.url);
+                }
+
+                if (pending == 0 && probes.size() == candidates.size()) {
+                    return null;
+                }
+            }
+        } finally {
+            for (Probe probe : probes) {
+                probe.cancel();
+            }
+        }
+    }
+}
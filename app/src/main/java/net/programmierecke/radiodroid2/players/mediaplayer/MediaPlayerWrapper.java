@@ -1,12 +1,14 @@
 package net.programmierecke.radiodroid2.players.mediaplayer;
 
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.media.AudioManager;
 import android.media.MediaPlayer;
 import android.os.Handler;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.preference.PreferenceManager;
 
 import net.programmierecke.radiodroid2.BuildConfig;
 import net.programmierecke.radiodroid2.R;
@@ -68,7 +70,10 @@ public class MediaPlayerWrapper implements PlayerWrapper, StreamProxyListener {
                 stopProxy();
             }
 
-            proxy = new StreamProxy(httpClient, streamUrl, MediaPlayerWrapper.this);
+            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context.getApplicationContext());
+            final int pastAudioSeconds = prefs.getInt("record_past_seconds", 0);
+
+            proxy = new StreamProxy(httpClient, streamUrl, MediaPlayerWrapper.this, pastAudioSeconds);
         } else {
             stopProxy();
             onStreamCreated(streamUrl);
@@ -235,8 +240,13 @@ public class MediaPlayerWrapper implements PlayerWrapper, StreamProxyListener {
     }
 
     @Override
-    public String getExtension() {
-        return proxy.getExtension();
+    public String getContentType() {
+        return proxy != null ? proxy.getContentType() : null;
+    }
+
+    @Override
+    public int getMaxPastAudioBytes() {
+        return proxy != null ? proxy.getMaxPastAudioBytes() : 0;
     }
 
     @Override
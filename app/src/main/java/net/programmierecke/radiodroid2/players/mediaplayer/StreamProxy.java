@@ -7,6 +7,7 @@ import androidx.annotation.NonNull;
 import net.programmierecke.radiodroid2.BuildConfig;
 import net.programmierecke.radiodroid2.station.live.ShoutcastInfo;
 import net.programmierecke.radiodroid2.station.live.StreamLiveInfo;
+import net.programmierecke.radiodroid2.recording.PastAudioBuffer;
 import net.programmierecke.radiodroid2.recording.Recordable;
 import net.programmierecke.radiodroid2.recording.RecordableListener;
 
@@ -19,7 +20,6 @@ import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 
@@ -36,16 +36,20 @@ public class StreamProxy implements Recordable {
 
     private OkHttpClient httpClient;
     private StreamProxyListener callback;
-    private RecordableListener recordableListener;
+    private volatile RecordableListener recordableListener;
+    private final int pastAudioSeconds;
+    private volatile PastAudioBuffer pastAudio;
+    private volatile String contentType;
     private String uri;
     private byte readBuffer[] = new byte[256 * 16];
     private volatile String localAddress = null;
     private boolean isStopped = false;
 
-    public StreamProxy(OkHttpClient httpClient, String uri, StreamProxyListener callback) {
+    public StreamProxy(OkHttpClient httpClient, String uri, StreamProxyListener callback, int pastAudioSeconds) {
         this.httpClient = httpClient;
         this.uri = uri;
         this.callback = callback;
+        this.pastAudioSeconds = pastAudioSeconds;
 
         createProxy();
     }
@@ -76,6 +80,8 @@ public class StreamProxy implements Recordable {
             streamHasMetaData = true;
         }
 
+        pastAudio = PastAudioBuffer.reuseOrCreate(pastAudio, pastAudioSeconds, info != null ? info.bitrate : 0);
+
         InputStream inputStream = responseBody.byteStream();
 
         while (!isStopped) {
@@ -99,9 +105,17 @@ public class StreamProxy implements Recordable {
 
                 outStream.write(readBuffer, 0, readBytes);
 
+                final RecordableListener recordableListener = this.recordableListener;
+                final PastAudioBuffer pastAudio = this.pastAudio;
                 if (recordableListener != null) {
+                    if (pastAudio != null) {
+                        pastAudio.flushTo(recordableListener);
+                    }
                     recordableListener.onBytesAvailable(readBuffer, 0, readBytes);
                 }
+                if (pastAudio != null) {
+                    pastAudio.write(readBuffer, 0, readBytes);
+                }
 
                 callback.onBytesRead(readBuffer, 0, readBytes);
             } else {
@@ -135,10 +149,15 @@ public class StreamProxy implements Recordable {
                 if (metadataBytesToRead <= 0) {
                     String s = new String(readBuffer, 0, metadataBytes, "utf-8");
                     if (BuildConfig.DEBUG) Log.d(TAG, "METADATA:" + s);
-                    Map<String, String> rawMetadata = decodeShoutcastMetadata(s);
+                    Map<String, String> rawMetadata = StreamLiveInfo.decodeShoutcastMetadata(s);
                     StreamLiveInfo streamLiveInfo = new StreamLiveInfo(rawMetadata);
                     if (BuildConfig.DEBUG) Log.d(TAG, "META:" + streamLiveInfo.getTitle());
                     callback.onFoundLiveStreamInfo(streamLiveInfo);
+
+                    final RecordableListener recordableListener = this.recordableListener;
+                    if (recordableListener != null) {
+                        recordableListener.onStreamLiveInfo(streamLiveInfo);
+                    }
                     break;
                 }
             }
@@ -218,6 +237,7 @@ public class StreamProxy implements Recordable {
                             "\r\n\r\n").getBytes("utf-8"));
 
                     final String type = contentType.toString().toLowerCase();
+                    StreamProxy.this.contentType = type;
 
                     if (BuildConfig.DEBUG) Log.d(TAG, "Content Type: " + type);
 
@@ -277,31 +297,6 @@ public class StreamProxy implements Recordable {
         stop();
     }
 
-    private Map<String, String> decodeShoutcastMetadata(String metadataStr) {
-        Map<String, String> metadata = new HashMap<>();
-
-        String[] kvs = metadataStr.split(";");
-
-        for (String kv : kvs) {
-            final int n = kv.indexOf('=');
-            if (n < 1) continue;
-
-            final boolean isString = n + 1 < kv.length()
-                    && kv.charAt(kv.length() - 1) == '\''
-                    && kv.charAt(n + 1) == '\'';
-
-            final String key = kv.substring(0, n);
-            final String val = isString ?
-                    kv.substring(n + 2, kv.length() - 1) :
-                    n + 1 < kv.length() ?
-                            kv.substring(n + 1) : "";
-
-            metadata.put(key, val);
-        }
-
-        return metadata;
-    }
-
     public String getLocalAddress() {
         return localAddress;
     }
@@ -343,7 +338,13 @@ public class StreamProxy implements Recordable {
     }
 
     @Override
-    public String getExtension() {
-        return "mp3";
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public int getMaxPastAudioBytes() {
+        final PastAudioBuffer pastAudio = this.pastAudio;
+        return pastAudio != null ? pastAudio.getCapacity() : 0;
     }
 }
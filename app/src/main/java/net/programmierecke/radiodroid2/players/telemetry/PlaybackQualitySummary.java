@@ -0,0 +1,33 @@
+package net.programmierecke.radiodroid2.players.telemetry;
+
+import androidx.room.ColumnInfo;
+
+/**
+ * Sums of the recorded sessions of a station.
+ */
+public class PlaybackQualitySummary {
+    @ColumnInfo(name = "sessions")
+    public int sessions;
+
+    @ColumnInfo(name = "playing_ms")
+    public long playingMs;
+
+    @ColumnInfo(name = "rebuffer_count")
+    public int rebufferCount;
+
+    @ColumnInfo(name = "rebuffer_ms")
+    public long rebufferMs;
+
+    @ColumnInfo(name = "underrun_count")
+    public int underrunCount;
+
+    @ColumnInfo(name = "load_error_count")
+    public int loadErrorCount;
+
+    /**
+     * @return part of the time spent waiting for audio after playback began, from 0 to 1
+     */
+    public float getRebufferRatio() {
+        return PlaybackTelemetry.rebufferRatio(playingMs, rebufferMs);
+    }
+}
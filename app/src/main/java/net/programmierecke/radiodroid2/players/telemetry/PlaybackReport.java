@@ -0,0 +1,77 @@
+package net.programmierecke.radiodroid2.players.telemetry;
+
+import androidx.annotation.NonNull;
+
+import net.programmierecke.radiodroid2.utils.Csv;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Writes saved playback sessions as CSV, one page of sessions at a time. Fields are named
+ * after the columns of playback_sessions, with the rebuffer ratio added for convenience.
+ */
+public class PlaybackReport {
+    public interface PageSource {
+        /**
+         * @return up to limit sessions with uid greater than afterUid, ordered by uid
+         */
+        @NonNull
+        List<PlaybackSessionEntry> getPage(int afterUid, int limit);
+    }
+
+    static final int PAGE_SIZE = 500;
+
+    private static final String[] FIELDS = {"start_time", "end_time", "station_uuid", "station_name", "startup_ms",
+            "playing_ms", "rebuffer_count", "rebuffer_ms", "rebuffer_ratio", "underrun_count", "load_error_count",
+            "decoder_name", "decoder_init_ms", "bitrate_estimate"};
+
+    private PlaybackReport() {
+    }
+
+    /**
+     * @return number of exported sessions
+     */
+    public static int export(@NonNull PageSource source, @NonNull Writer writer) throws IOException {
+        final DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        Csv.writeRecord(writer, FIELDS);
+
+        int count = 0;
+        int afterUid = 0;
+        List<PlaybackSessionEntry> page;
+        do {
+            page = source.getPage(afterUid, PAGE_SIZE);
+            for (PlaybackSessionEntry session : page) {
+                Csv.writeRecord(writer, toFields(session, dateFormat));
+                afterUid = session.uid;
+            }
+            count += page.size();
+        } while (page.size() == PAGE_SIZE);
+
+        writer.flush();
+        return count;
+    }
+
+    private static String[] toFields(@NonNull PlaybackSessionEntry session, @NonNull DateFormat dateFormat) {
+        final float rebufferRatio = PlaybackTelemetry.rebufferRatio(session.playingMs, session.rebufferMs);
+
+        return new String[]{formatDate(session.startTime, dateFormat), formatDate(session.endTime, dateFormat),
+                session.stationUuid, session.stationName, Long.toString(session.startupMs),
+                Long.toString(session.playingMs), Integer.toString(session.rebufferCount), Long.toString(session.rebufferMs),
+                String.format(Locale.US, "%.4f", rebufferRatio), Integer.toString(session.underrunCount),
+                Integer.toString(session.loadErrorCount), session.decoderName, Long.toString(session.decoderInitMs),
+                Long.toString(session.bitrateEstimate)};
+    }
+
+    private static String formatDate(@NonNull Date date, @NonNull DateFormat dateFormat) {
+        return date.getTime() == 0 ? "" : dateFormat.format(date);
+    }
+}
@@ -0,0 +1,25 @@
+package net.programmierecke.radiodroid2.players.telemetry;
+
+import androidx.annotation.NonNull;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface PlaybackSessionDao {
+    @Insert
+    void insert(PlaybackSessionEntry session);
+
+    @Query("SELECT COUNT(*) AS sessions, COALESCE(SUM(playing_ms), 0) AS playing_ms, COALESCE(SUM(rebuffer_count), 0) AS rebuffer_count, " +
+            "COALESCE(SUM(rebuffer_ms), 0) AS rebuffer_ms, COALESCE(SUM(underrun_count), 0) AS underrun_count, " +
+            "COALESCE(SUM(load_error_count), 0) AS load_error_count FROM playback_sessions WHERE station_uuid = :stationUuid")
+    PlaybackQualitySummary getStationSummary(@NonNull String stationUuid);
+
+    @Query("SELECT * FROM playback_sessions WHERE uid > :afterUid ORDER BY uid LIMIT :limit")
+    List<PlaybackSessionEntry> getSessionsPage(int afterUid, int limit);
+
+    @Query("DELETE FROM playback_sessions WHERE start_time < :before")
+    void deleteOlderThan(long before);
+}
@@ -0,0 +1,67 @@
+package net.programmierecke.radiodroid2.players.telemetry;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import java.util.Date;
+
+/**
+ * How playback of a station went from pressing play until it was stopped or another station
+ * was played, see {@link PlaybackTelemetry}.
+ */
+@Entity(tableName = "playback_sessions", indices = {@Index("station_uuid"), @Index("start_time")})
+public class PlaybackSessionEntry {
+
+    @PrimaryKey(autoGenerate = true)
+    public int uid;
+
+    @ColumnInfo(name = "station_uuid")
+    @NonNull
+    public String stationUuid = "";
+
+    @ColumnInfo(name = "station_name")
+    @NonNull
+    public String stationName = "";
+
+    @ColumnInfo(name = "start_time")
+    @NonNull
+    public Date startTime;
+
+    @ColumnInfo(name = "end_time")
+    @NonNull
+    public Date endTime;
+
+    // From the start until audio could be played for the first time, 0 if it never could
+    @ColumnInfo(name = "startup_ms")
+    public long startupMs;
+
+    @ColumnInfo(name = "playing_ms")
+    public long playingMs;
+
+    // Buffering after audio was played already
+    @ColumnInfo(name = "rebuffer_count")
+    public int rebufferCount;
+
+    @ColumnInfo(name = "rebuffer_ms")
+    public long rebufferMs;
+
+    @ColumnInfo(name = "underrun_count")
+    public int underrunCount;
+
+    @ColumnInfo(name = "load_error_count")
+    public int loadErrorCount;
+
+    @ColumnInfo(name = "decoder_name")
+    @NonNull
+    public String decoderName = "";
+
+    @ColumnInfo(name = "decoder_init_ms")
+    public long decoderInitMs;
+
+    // Mean of the bandwidth estimates in bits per second, 0 if there was none
+    @ColumnInfo(name = "bitrate_estimate")
+    public long bitrateEstimate;
+}
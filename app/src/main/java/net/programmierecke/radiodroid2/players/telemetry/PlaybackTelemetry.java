@@ -0,0 +1,394 @@
+package net.programmierecke.radiodroid2.players.telemetry;
+
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import net.programmierecke.radiodroid2.database.RadioDroidDatabase;
+import net.programmierecke.radiodroid2.players.health.StreamHealthStore;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Date;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Collects how well stations play: how long it takes until audio can be played, how often and
+ * how long playback waits for data afterwards, audio underruns, load errors, decoder
+ * initialization and bandwidth estimates.
+ * <p>
+ * Events come from the player's thread and are counted in the current {@link Session} with
+ * atomics, so neither the player nor the UI reading the session ever waits for a lock.
+ * A session is written to the database when it ends and its result is passed on to the
+ * {@link StreamHealthStore}.
+ */
+public class PlaybackTelemetry {
+    public interface SummaryCallback {
+        /**
+         * It will be ran in the main thread
+         */
+        void onSummary(@NonNull PlaybackQualitySummary summary);
+    }
+
+    public interface ReportCallback {
+        /**
+         * It will be ran in the main thread
+         *
+         * @param count number of exported sessions, -1 if it failed
+         */
+        void onFinished(int count);
+    }
+
+    private static final String TAG = "PlaybackTelemetry";
+
+    private static final long RETENTION_MS = TimeUnit.DAYS.toMillis(90);
+
+    /**
+     * Playback of one station. Times are from {@link SystemClock#elapsedRealtime()}.
+     */
+    public static final class Session {
+        private final String stationUuid;
+        private final String stationName;
+        private final long startTime;
+        private final long startRealtime;
+
+        // Start of the interval which is currently measured, 0 if there is none
+        private final AtomicLong readySince = new AtomicLong();
+        private final AtomicLong bufferingSince = new AtomicLong();
+
+        private final AtomicLong startupMs = new AtomicLong();
+        private final AtomicLong playingMs = new AtomicLong();
+        private final AtomicInteger rebufferCount = new AtomicInteger();
+        private final AtomicLong rebufferMs = new AtomicLong();
+        private final AtomicInteger underrunCount = new AtomicInteger();
+        private final AtomicInteger loadErrorCount = new AtomicInteger();
+        private final AtomicLong decoderInitMs = new AtomicLong();
+        private final AtomicLong bitrateSum = new AtomicLong();
+        private final AtomicInteger bitrateSamples = new AtomicInteger();
+        private volatile String decoderName = "";
+        private volatile String streamUrl;
+
+        Session(@NonNull String stationUuid, @NonNull String stationName, long startTime, long startRealtime) {
+            this.stationUuid = stationUuid;
+            this.stationName = stationName;
+            this.startTime = startTime;
+            this.startRealtime = startRealtime;
+        }
+
+        void onBuffering(long realtime) {
+            final long readyTime = readySince.getAndSet(0);
+            if (readyTime != 0) {
+                playingMs.addAndGet(realtime - readyTime);
+            }
+
+            // Waiting for the first audio is counted as startup instead
+            if (startupMs.get() != 0 && bufferingSince.compareAndSet(0, realtime)) {
+                rebufferCount.incrementAndGet();
+            }
+        }
+
+        void onReady(long realtime) {
+            final long bufferingTime = bufferingSince.getAndSet(0);
+            if (bufferingTime != 0) {
+                rebufferMs.addAndGet(realtime - bufferingTime);
+            }
+
+            startupMs.compareAndSet(0, Math.max(1, realtime - startRealtime));
+            readySince.compareAndSet(0, realtime);
+        }
+
+        void onStopped(long realtime) {
+            final long readyTime = readySince.getAndSet(0);
+            if (readyTime != 0) {
+                playingMs.addAndGet(realtime - readyTime);
+            }
+
+            final long bufferingTime = bufferingSince.getAndSet(0);
+            if (bufferingTime != 0) {
+                rebufferMs.addAndGet(realtime - bufferingTime);
+            }
+        }
+
+        void onStreamUrl(@NonNull String streamUrl) {
+            this.streamUrl = streamUrl;
+        }
+
+        void onAudioUnderrun() {
+            underrunCount.incrementAndGet();
+        }
+
+        void onLoadError() {
+            loadErrorCount.incrementAndGet();
+        }
+
+        void onDecoderInitialized(@NonNull String decoderName, long initializationMs) {
+            this.decoderName = decoderName;
+            decoderInitMs.set(initializationMs);
+        }
+
+        void onBandwidthEstimate(long bitrate) {
+            if (bitrate > 0) {
+                bitrateSum.addAndGet(bitrate);
+                bitrateSamples.incrementAndGet();
+            }
+        }
+
+        @NonNull
+        public String getStationUuid() {
+            return stationUuid;
+        }
+
+        /**
+         * @return URL which is played, null if it is not known yet
+         */
+        @Nullable
+        public String getStreamUrl() {
+            return streamUrl;
+        }
+
+        public long getStartupMs() {
+            return startupMs.get();
+        }
+
+        /**
+         * @param realtime now, to include the interval which is still running
+         */
+        public long getPlayingMs(long realtime) {
+            final long readyTime = readySince.get();
+            return playingMs.get() + (readyTime != 0 ? realtime - readyTime : 0);
+        }
+
+        public int getRebufferCount() {
+            return rebufferCount.get();
+        }
+
+        /**
+         * @param realtime now, to include the interval which is still running
+         */
+        public long getRebufferMs(long realtime) {
+            final long bufferingTime = bufferingSince.get();
+            return rebufferMs.get() + (bufferingTime != 0 ? realtime - bufferingTime : 0);
+        }
+
+        public int getUnderrunCount() {
+            return underrunCount.get();
+        }
+
+        public int getLoadErrorCount() {
+            return loadErrorCount.get();
+        }
+
+        @NonNull
+        public String getDecoderName() {
+            return decoderName;
+        }
+
+        public long getDecoderInitMs() {
+            return decoderInitMs.get();
+        }
+
+        /**
+         * @return mean of the bandwidth estimates in bits per second, 0 if there was none
+         */
+        public long getBitrateEstimate() {
+            final int samples = bitrateSamples.get();
+            return samples > 0 ? bitrateSum.get() / samples : 0;
+        }
+
+        /**
+         * Should be called after the session is stopped.
+         *
+         * @return entry to save or null if there is nothing worth saving
+         */
+        @Nullable
+        PlaybackSessionEntry toEntry(long endTime) {
+            if (playingMs.get() == 0 && loadErrorCount.get() == 0) {
+                return null;
+            }
+
+            final PlaybackSessionEntry entry = new PlaybackSessionEntry();
+            entry.stationUuid = stationUuid;
+            entry.stationName = stationName;
+            entry.startTime = new Date(startTime);
+            entry.endTime = new Date(endTime);
+            entry.startupMs = startupMs.get();
+            entry.playingMs = playingMs.get();
+            entry.rebufferCount = rebufferCount.get();
+            entry.rebufferMs = rebufferMs.get();
+            entry.underrunCount = underrunCount.get();
+            entry.loadErrorCount = loadErrorCount.get();
+            entry.decoderName = decoderName;
+            entry.decoderInitMs = decoderInitMs.get();
+            entry.bitrateEstimate = getBitrateEstimate();
+            return entry;
+        }
+    }
+
+    private final PlaybackSessionDao dao;
+    private final Executor queryExecutor;
+    private final StreamHealthStore streamHealthStore;
+
+    private final AtomicReference<Session> currentSession = new AtomicReference<>();
+
+    public PlaybackTelemetry(@NonNull RadioDroidDatabase database, @NonNull StreamHealthStore streamHealthStore) {
+        this.dao = database.playbackSessionDao();
+        this.queryExecutor = database.getQueryExecutor();
+        this.streamHealthStore = streamHealthStore;
+    }
+
+    /**
+     * @return part of the time spent waiting for audio after playback began, from 0 to 1
+     */
+    public static float rebufferRatio(long playingMs, long rebufferMs) {
+        final long totalMs = playingMs + rebufferMs;
+        return totalMs > 0 ? rebufferMs / (float) totalMs : 0;
+    }
+
+    /**
+     * Ends the current session, if any, and starts measuring playback of the station.
+     */
+    public void startSession(@NonNull String stationUuid, @NonNull String stationName) {
+        final Session previousSession = currentSession.getAndSet(new Session(stationUuid, stationName,
+                System.currentTimeMillis(), SystemClock.elapsedRealtime()));
+        if (previousSession != null) {
+            save(previousSession);
+        }
+    }
+
+    public void endSession() {
+        final Session session = currentSession.getAndSet(null);
+        if (session != null) {
+            save(session);
+        }
+    }
+
+    @Nullable
+    public Session getCurrentSession() {
+        return currentSession.get();
+    }
+
+    /**
+     * Sets the URL which is played in the current session.
+     */
+    public void onStreamUrl(@NonNull String streamUrl) {
+        final Session session = currentSession.get();
+        if (session != null) {
+            session.onStreamUrl(streamUrl);
+        }
+    }
+
+    public void onBuffering(long realtime) {
+        final Session session = currentSession.get();
+        if (session != null) {
+            session.onBuffering(realtime);
+        }
+    }
+
+    public void onReady(long realtime) {
+        final Session session = currentSession.get();
+        if (session != null) {
+            session.onReady(realtime);
+        }
+    }
+
+    public void onStopped(long realtime) {
+        final Session session = currentSession.get();
+        if (session != null) {
+            session.onStopped(realtime);
+        }
+    }
+
+    public void onAudioUnderrun() {
+        final Session session = currentSession.get();
+        if (session != null) {
+            session.onAudioUnderrun();
+        }
+    }
+
+    public void onLoadError() {
+        final Session session = currentSession.get();
+        if (session != null) {
+            session.onLoadError();
+        }
+    }
+
+    public void onDecoderInitialized(@NonNull String decoderName, long initializationMs) {
+        final Session session = currentSession.get();
+        if (session != null) {
+            session.onDecoderInitialized(decoderName, initializationMs);
+        }
+    }
+
+    public void onBandwidthEstimate(long bitrate) {
+        final Session session = currentSession.get();
+        if (session != null) {
+            session.onBandwidthEstimate(bitrate);
+        }
+    }
+
+    /**
+     * Sums up the saved sessions of the station. The current session is not included.
+     */
+    public void getStationSummary(@NonNull String stationUuid, @NonNull SummaryCallback callback) {
+        queryExecutor.execute(() -> {
+            final PlaybackQualitySummary summary = dao.getStationSummary(stationUuid);
+            new Handler(Looper.getMainLooper()).post(() -> callback.onSummary(summary));
+        });
+    }
+
+    /**
+     * Writes all saved sessions to the file, see {@link PlaybackReport}.
+     */
+    public void exportReport(@NonNull final File file, @NonNull final ReportCallback callback) {
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(() -> {
+            int count = -1;
+            try {
+                Writer fileWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8")));
+                try {
+                    count = PlaybackReport.export(dao::getSessionsPage, fileWriter);
+                } finally {
+                    fileWriter.close();
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Could not export playback report to " + file, e);
+            }
+
+            final int exportedCount = count;
+            new Handler(Looper.getMainLooper()).post(() -> callback.onFinished(exportedCount));
+        });
+    }
+
+    private void save(@NonNull Session session) {
+        session.onStopped(SystemClock.elapsedRealtime());
+
+        final String streamUrl = session.getStreamUrl();
+        if (streamUrl != null) {
+            streamHealthStore.recordSession(session.getStationUuid(), streamUrl, session.getStartupMs(),
+                    session.playingMs.get(), session.rebufferMs.get(), session.getLoadErrorCount());
+        }
+
+        final long now = System.currentTimeMillis();
+        final PlaybackSessionEntry entry = session.toEntry(now);
+        if (entry == null) {
+            return;
+        }
+
+        queryExecutor.execute(() -> {
+            dao.insert(entry);
+            dao.deleteOlderThan(now - RETENTION_MS);
+        });
+    }
+}
@@ -0,0 +1,143 @@
+package net.programmierecke.radiodroid2.recording;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Finds where a frame of an MP3 or AAC (ADTS) stream starts, so that a recording could be
+ * cut there without leaving a broken frame at the end of one file or the start of another.
+ * <p>
+ * A frame header is only trusted if another header of the same stream follows exactly one
+ * frame later, because sync words occur in the audio data as well. Buffers are scanned in
+ * place and the scanner remembers where the next frame is expected, so frames may span
+ * several buffers.
+ */
+class FrameScanner {
+    private static final int HEADER_SIZE = 7;
+
+    private static final int[][] MPEG1_BITRATES = {
+            {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448}, // Layer I
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384}, // Layer II
+            {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320}, // Layer III
+    };
+
+    private static final int[][] MPEG2_BITRATES = {
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256}, // Layer I
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}, // Layer II
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}, // Layer III
+    };
+
+    private static final int[] MPEG1_SAMPLE_RATES = {44100, 48000, 32000};
+
+    // Position in the stream of the first byte of the next scanned buffer
+    private long streamPosition;
+
+    // Position in the stream where a frame following a found header should start, -1 if none
+    private long expectedFramePosition = -1;
+    private int expectedHeaderKey;
+
+    /**
+     * Scans the buffer which directly follows the previously scanned one.
+     *
+     * @return index in the buffer where a frame starts or -1 if none was found yet
+     */
+    int findFrameStart(@NonNull byte[] buffer, int offset, int length) {
+        final int end = offset + length;
+        final long bufferPosition = streamPosition;
+        streamPosition += length;
+
+        if (expectedFramePosition >= bufferPosition) {
+            final int expected = offset + (int) (expectedFramePosition - bufferPosition);
+            if (expected >= end) {
+                // Frame is longer than the buffer
+                return -1;
+            }
+
+            if (expected + HEADER_SIZE <= end && frameLength(buffer, expected) > 0
+                    && headerKey(buffer, expected) == expectedHeaderKey) {
+                return expected;
+            }
+
+            // The header before was a false one, look at everything after it again
+        }
+
+        expectedFramePosition = -1;
+
+        for (int i = offset; i + HEADER_SIZE <= end; i++) {
+            if ((buffer[i] & 0xFF) != 0xFF) {
+                continue;
+            }
+
+            final int frameLength = frameLength(buffer, i);
+            if (frameLength <= 0) {
+                continue;
+            }
+
+            final int next = i + frameLength;
+            if (next + HEADER_SIZE > end) {
+                // Check the next header in the following buffers
+                expectedFramePosition = bufferPosition + (next - offset);
+                expectedHeaderKey = headerKey(buffer, i);
+                return -1;
+            }
+
+            if (frameLength(buffer, next) > 0 && headerKey(buffer, next) == headerKey(buffer, i)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return length of the frame with the header at the index including the header,
+     * 0 if there is no valid header
+     */
+    static int frameLength(@NonNull byte[] buffer, int i) {
+        final int b1 = buffer[i + 1] & 0xFF;
+        final int b2 = buffer[i + 2] & 0xFF;
+
+        if ((buffer[i] & 0xFF) != 0xFF || (b1 & 0xE0) != 0xE0) {
+            return 0;
+        }
+
+        if ((b1 & 0xF6) == 0xF0) {
+            // ADTS uses the reserved layer 0 of MPEG audio
+            final int sampleRateIndex = (b2 >> 2) & 0x0F;
+            final int frameLength = ((buffer[i + 3] & 0x03) << 11) | ((buffer[i + 4] & 0xFF) << 3) | ((buffer[i + 5] & 0xE0) >> 5);
+            return sampleRateIndex < 13 && frameLength >= HEADER_SIZE ? frameLength : 0;
+        }
+
+        final int version = (b1 >> 3) & 0x03; // 0 = 2.5, 1 = reserved, 2 = 2, 3 = 1
+        final int layer = (b1 >> 1) & 0x03; // 1 = III, 2 = II, 3 = I
+        final int bitrateIndex = (b2 >> 4) & 0x0F;
+        final int sampleRateIndex = (b2 >> 2) & 0x03;
+        final int padding = (b2 >> 1) & 0x01;
+
+        // Free format bitrate can't be used to find the next frame
+        if (version == 1 || layer == 0 || bitrateIndex == 0 || bitrateIndex == 15 || sampleRateIndex == 3) {
+            return 0;
+        }
+
+        final int layerIndex = 3 - layer;
+        final int bitrate = (version == 3 ? MPEG1_BITRATES : MPEG2_BITRATES)[layerIndex][bitrateIndex] * 1000;
+        final int sampleRate = MPEG1_SAMPLE_RATES[sampleRateIndex] >> (version == 3 ? 0 : version == 2 ? 1 : 2);
+
+        if (layer == 3) {
+            return (12 * bitrate / sampleRate + padding) * 4;
+        } else if (layer == 1 && version != 3) {
+            return 72 * bitrate / sampleRate + padding;
+        } else {
+            return 144 * bitrate / sampleRate + padding;
+        }
+    }
+
+    /**
+     * @return value which is equal for all frame headers of one stream
+     */
+    static int headerKey(@NonNull byte[] buffer, int i) {
+        // Version and layer, then sample rate which takes more bits in ADTS
+        final int b1 = buffer[i + 1] & 0xFE;
+        final int sampleRateMask = (b1 & 0xF6) == 0xF0 ? 0x3C : 0x0C;
+        return (b1 << 8) | (buffer[i + 2] & sampleRateMask);
+    }
+}
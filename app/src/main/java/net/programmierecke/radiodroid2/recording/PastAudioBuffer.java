@@ -0,0 +1,132 @@
+package net.programmierecke.radiodroid2.recording;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Keeps the last seconds of a stream in memory, so that a recording started late could
+ * begin with the audio which was already played.
+ * <p>
+ * The buffer is allocated once per stream and bytes are copied into it as they are read,
+ * nothing is allocated for them. It must only be used by the thread which reads the stream,
+ * except for {@link #getCapacity()}.
+ */
+public class PastAudioBuffer {
+    // Used if the stream doesn't tell its bitrate
+    private static final int DEFAULT_BITRATE_KBPS = 128;
+
+    private final byte[] ring;
+
+    // Number of bytes written so far, the buffer holds the last of them
+    private long writePosition;
+
+    private RecordableListener flushedListener;
+
+    public PastAudioBuffer(int capacity) {
+        ring = new byte[capacity];
+    }
+
+    /**
+     * @return a buffer for the stream, the given one if it has the right size already
+     * or null if past audio should not be kept
+     */
+    @Nullable
+    public static PastAudioBuffer reuseOrCreate(@Nullable PastAudioBuffer buffer, int seconds, int bitrateKbps) {
+        final int capacity = capacityFor(seconds, bitrateKbps);
+        if (capacity <= 0) {
+            return null;
+        }
+
+        if (buffer != null && buffer.getCapacity() == capacity) {
+            buffer.clear();
+            return buffer;
+        }
+
+        return new PastAudioBuffer(capacity);
+    }
+
+    static int capacityFor(int seconds, int bitrateKbps) {
+        if (seconds <= 0) {
+            return 0;
+        }
+
+        return seconds * (bitrateKbps > 0 ? bitrateKbps : DEFAULT_BITRATE_KBPS) * 1000 / 8;
+    }
+
+    public int getCapacity() {
+        return ring.length;
+    }
+
+    int getSize() {
+        return (int) Math.min(writePosition, ring.length);
+    }
+
+    public void write(@NonNull byte[] buffer, int offset, int length) {
+        if (length > ring.length) {
+            // Only the end fits
+            offset += length - ring.length;
+            writePosition += length - ring.length;
+            length = ring.length;
+        }
+
+        final int start = (int) (writePosition % ring.length);
+        final int firstPart = Math.min(length, ring.length - start);
+        System.arraycopy(buffer, offset, ring, start, firstPart);
+        if (firstPart < length) {
+            System.arraycopy(buffer, offset + firstPart, ring, 0, length - firstPart);
+        }
+
+        writePosition += length;
+    }
+
+    /**
+     * Passes the buffered bytes to the listener, starting with the first frame in them.
+     * Does nothing if the listener already got them.
+     */
+    public void flushTo(@NonNull RecordableListener listener) {
+        if (listener == flushedListener) {
+            return;
+        }
+
+        flushedListener = listener;
+
+        final int size = getSize();
+        if (size == 0) {
+            return;
+        }
+
+        // The buffer starts with the oldest bytes once it is full
+        final int oldest = size < ring.length ? 0 : (int) (writePosition % ring.length);
+        final int firstLength = Math.min(size, ring.length - oldest);
+        final int secondLength = size - firstLength;
+
+        final FrameScanner frameScanner = new FrameScanner();
+        int frameStart = frameScanner.findFrameStart(ring, oldest, firstLength);
+        if (frameStart >= 0) {
+            listener.onBytesAvailable(ring, frameStart, oldest + firstLength - frameStart);
+            if (secondLength > 0) {
+                listener.onBytesAvailable(ring, 0, secondLength);
+            }
+            return;
+        }
+
+        if (secondLength > 0) {
+            frameStart = frameScanner.findFrameStart(ring, 0, secondLength);
+            if (frameStart >= 0) {
+                listener.onBytesAvailable(ring, frameStart, secondLength - frameStart);
+                return;
+            }
+        }
+
+        // Not MP3 or AAC, decoders will have to find their way in
+        listener.onBytesAvailable(ring, oldest, firstLength);
+        if (secondLength > 0) {
+            listener.onBytesAvailable(ring, 0, secondLength);
+        }
+    }
+
+    public void clear() {
+        writePosition = 0;
+        flushedListener = null;
+    }
+}
@@ -1,6 +1,7 @@
 package net.programmierecke.radiodroid2.recording;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import java.util.Map;
 
@@ -15,5 +16,16 @@ public interface Recordable {
     boolean isRecording();
 
     Map<String, String> getRecordNameFormattingArgs();
-    String getExtension();
+
+    /**
+     * @return MIME type the audio is sent with, null if it is not known (yet)
+     */
+    @Nullable
+    String getContentType();
+
+    /**
+     * @return maximum number of bytes of past audio which are passed to the listener
+     * before live audio when recording starts, 0 if past audio isn't kept
+     */
+    int getMaxPastAudioBytes();
 }
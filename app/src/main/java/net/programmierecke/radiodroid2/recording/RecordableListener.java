@@ -1,6 +1,17 @@
 package net.programmierecke.radiodroid2.recording;
 
+import androidx.annotation.NonNull;
+
+import net.programmierecke.radiodroid2.station.live.StreamLiveInfo;
+
 public interface RecordableListener {
     void onBytesAvailable(byte[] buffer, int offset, int length);
+
+    /**
+     * Called in the same thread as {@link #onBytesAvailable(byte[], int, int)} when metadata
+     * is read from the stream, so bytes available after it belong to the new track.
+     */
+    void onStreamLiveInfo(@NonNull StreamLiveInfo liveInfo);
+
     void onRecordingEnded();
 }
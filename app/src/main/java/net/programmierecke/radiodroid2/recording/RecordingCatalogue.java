@@ -0,0 +1,235 @@
+package net.programmierecke.radiodroid2.recording;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import net.programmierecke.radiodroid2.database.RadioDroidDatabase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Catalogue of recordings in the database, so that they could be shown without listing the
+ * recordings directory. Recordings are catalogued while they are recorded, the directory is
+ * only listed once in a while to pick up files copied there or deleted by other apps.
+ * <p>
+ * Everything is done in the database executor, callbacks are called there as well.
+ * Methods which return a value wait for the executor and must not be called in the main thread.
+ */
+class RecordingCatalogue {
+    interface RecordingsCallback {
+        void onRecordings(@NonNull List<RecordingEntry> recordings);
+    }
+
+    interface ReconcileCallback {
+        void onReconciled(boolean changed);
+    }
+
+    private static final String TAG = "RecordingCatalogue";
+
+    // SQLite limits the number of parameters in a query
+    private static final int DELETE_BATCH_SIZE = 500;
+
+    private static final int EVICT_BATCH_SIZE = 20;
+
+    private final RecordingDao dao;
+    private final ScheduledExecutorService executor;
+
+    RecordingCatalogue(@NonNull RadioDroidDatabase database) {
+        this.dao = database.recordingDao();
+        this.executor = database.getQueryExecutor();
+    }
+
+    void getRecordings(@NonNull RecordingsCallback callback) {
+        executor.execute(() -> callback.onRecordings(dao.getRecordings()));
+    }
+
+    void recordingStarted(@NonNull RecordingEntry entry) {
+        executor.execute(() -> entry.uid = (int) dao.insert(entry));
+    }
+
+    void trackStarted(@NonNull RecordingEntry entry, long byteOffset, @NonNull String title) {
+        final RecordingTrackMarker marker = new RecordingTrackMarker();
+        marker.byteOffset = byteOffset;
+        marker.time = new Date();
+        marker.title = title;
+
+        // Runs after the recording is inserted and got its uid
+        executor.execute(() -> {
+            marker.recordingUid = entry.uid;
+            dao.insertMarker(marker);
+        });
+    }
+
+    void recordingRenamed(@NonNull RecordingEntry entry, @NonNull String fileName) {
+        entry.fileName = fileName;
+        executor.execute(() -> dao.setFileName(entry.uid, fileName));
+    }
+
+    /**
+     * Removes a recording whose file was deleted before anything was written to it.
+     */
+    void recordingDiscarded(@NonNull RecordingEntry entry) {
+        final String fileName = entry.fileName;
+        executor.execute(() -> dao.deleteByFileNames(Collections.singletonList(fileName)));
+    }
+
+    void recordingFinished(@NonNull RecordingEntry entry, long sizeBytes) {
+        final Date endTime = new Date();
+        executor.execute(() -> dao.setFinished(entry.uid, endTime, sizeBytes));
+    }
+
+    /**
+     * Finishes recordings which were interrupted because the app was killed.
+     * Must be called before recording anything.
+     */
+    void finishInterrupted(@NonNull File directory) {
+        executor.execute(() -> {
+            for (RecordingEntry entry : dao.getUnfinished()) {
+                final File file = new File(directory, entry.fileName);
+                dao.setFinished(entry.uid, new Date(Math.max(file.lastModified(), entry.startTime.getTime())), file.length());
+            }
+        });
+    }
+
+    /**
+     * Lists the directory after the delay and brings the catalogue in line with it.
+     */
+    void reconcile(@NonNull File directory, long delayMs, @NonNull ReconcileCallback callback) {
+        executor.schedule(() -> {
+            final File[] files = directory.listFiles();
+            if (files == null) {
+                callback.onReconciled(false);
+                return;
+            }
+
+            final List<String> catalogued = dao.getFileNames();
+            final List<RecordingEntry> uncatalogued = findUncatalogued(catalogued, files);
+            final List<String> missing = findMissing(catalogued, files);
+
+            if (!uncatalogued.isEmpty()) {
+                dao.insertAll(uncatalogued);
+            }
+
+            for (int i = 0; i < missing.size(); i += DELETE_BATCH_SIZE) {
+                dao.deleteByFileNames(missing.subList(i, Math.min(i + DELETE_BATCH_SIZE, missing.size())));
+            }
+
+            callback.onReconciled(!uncatalogued.isEmpty() || !missing.isEmpty());
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return size of all finished recordings in bytes
+     */
+    long getFinishedSize() throws IOException {
+        return await(dao::getFinishedSize);
+    }
+
+    /**
+     * Deletes the oldest finished recordings until at least the given number of bytes is freed.
+     *
+     * @return number of bytes freed, less than requested if there was nothing left to delete
+     */
+    long evictOldest(@NonNull File directory, long bytesToFree) throws IOException {
+        return await(() -> {
+            long freed = 0;
+
+            while (freed < bytesToFree) {
+                final List<String> deleted = new ArrayList<>();
+                for (RecordingEntry entry : dao.getOldestFinished(EVICT_BATCH_SIZE)) {
+                    if (freed >= bytesToFree) {
+                        break;
+                    }
+
+                    final File file = new File(directory, entry.fileName);
+                    if (file.delete() || !file.exists()) {
+                        Log.i(TAG, "Deleted " + entry.fileName + " to stay within the recordings quota");
+                        deleted.add(entry.fileName);
+                        freed += entry.sizeBytes;
+                    }
+                }
+
+                if (deleted.isEmpty()) {
+                    break;
+                }
+
+                dao.deleteByFileNames(deleted);
+            }
+
+            return freed;
+        });
+    }
+
+    private <T> T await(@NonNull Callable<T> callable) throws IOException {
+        try {
+            return executor.submit(callable).get();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * @return entries for files which are not in the catalogue
+     */
+    static @NonNull
+    List<RecordingEntry> findUncatalogued(@NonNull Collection<String> catalogued, @NonNull File[] files) {
+        final Set<String> cataloguedNames = new HashSet<>(catalogued);
+        final List<RecordingEntry> entries = new ArrayList<>();
+
+        for (File file : files) {
+            if (!file.isFile() || cataloguedNames.contains(file.getName())) {
+                continue;
+            }
+
+            final String name = file.getName();
+            final int extensionStart = name.lastIndexOf('.');
+
+            final RecordingEntry entry = new RecordingEntry();
+            entry.fileName = name;
+            entry.title = extensionStart > 0 ? name.substring(0, extensionStart) : name;
+            entry.startTime = new Date(file.lastModified());
+            entry.endTime = entry.startTime;
+            entry.sizeBytes = file.length();
+            entry.codec = extensionStart > 0 ? name.substring(extensionStart + 1).toUpperCase(Locale.US) : "";
+            entries.add(entry);
+        }
+
+        return entries;
+    }
+
+    /**
+     * @return names of catalogued files which don't exist anymore
+     */
+    static @NonNull
+    List<String> findMissing(@NonNull Collection<String> catalogued, @NonNull File[] files) {
+        final Set<String> fileNames = new HashSet<>();
+        for (File file : files) {
+            fileNames.add(file.getName());
+        }
+
+        final List<String> missing = new ArrayList<>();
+        for (String name : catalogued) {
+            if (!fileNames.contains(name)) {
+                missing.add(name);
+            }
+        }
+
+        return missing;
+    }
+}
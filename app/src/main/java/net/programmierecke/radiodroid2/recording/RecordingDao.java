@@ -0,0 +1,50 @@
+package net.programmierecke.radiodroid2.recording;
+
+import androidx.annotation.NonNull;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.Date;
+import java.util.List;
+
+@Dao
+public interface RecordingDao {
+    @Query("SELECT * FROM recordings ORDER BY start_time DESC")
+    List<RecordingEntry> getRecordings();
+
+    @Query("SELECT * FROM recordings WHERE end_time = 0")
+    List<RecordingEntry> getUnfinished();
+
+    @Query("SELECT file_name FROM recordings")
+    List<String> getFileNames();
+
+    @Query("SELECT COALESCE(SUM(size_bytes), 0) FROM recordings WHERE end_time != 0")
+    long getFinishedSize();
+
+    @Query("SELECT * FROM recordings WHERE end_time != 0 ORDER BY start_time LIMIT :limit")
+    List<RecordingEntry> getOldestFinished(int limit);
+
+    // A file which is recorded again replaces the old one
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    long insert(RecordingEntry entry);
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void insertAll(List<RecordingEntry> entries);
+
+    @Query("UPDATE recordings SET end_time = :endTime, size_bytes = :sizeBytes WHERE uid = :uid")
+    void setFinished(int uid, @NonNull Date endTime, long sizeBytes);
+
+    @Query("UPDATE recordings SET file_name = :fileName WHERE uid = :uid")
+    void setFileName(int uid, @NonNull String fileName);
+
+    @Query("DELETE FROM recordings WHERE file_name IN (:fileNames)")
+    void deleteByFileNames(List<String> fileNames);
+
+    @Insert
+    void insertMarker(RecordingTrackMarker marker);
+
+    @Query("SELECT * FROM recording_track_markers WHERE recording_uid = :recordingUid ORDER BY byte_offset")
+    List<RecordingTrackMarker> getMarkers(int recordingUid);
+}
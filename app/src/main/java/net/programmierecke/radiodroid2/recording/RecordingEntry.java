@@ -0,0 +1,53 @@
+package net.programmierecke.radiodroid2.recording;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import java.util.Date;
+
+/**
+ * A recording file in {@link RecordingsManager#getRecordDir()}, catalogued when recording
+ * starts so that the directory doesn't have to be scanned to show recordings.
+ */
+@Entity(tableName = "recordings", indices = {@Index(value = {"file_name"}, unique = true), @Index("start_time")})
+public class RecordingEntry {
+
+    @PrimaryKey(autoGenerate = true)
+    public int uid;
+
+    @ColumnInfo(name = "file_name")
+    @NonNull
+    public String fileName;
+
+    @ColumnInfo(name = "title")
+    @NonNull
+    public String title;
+
+    // Empty for files which were found in the directory
+    @ColumnInfo(name = "station_uuid")
+    @NonNull
+    public String stationUuid = "";
+
+    @ColumnInfo(name = "station_name")
+    @NonNull
+    public String stationName = "";
+
+    @ColumnInfo(name = "start_time")
+    @NonNull
+    public Date startTime;
+
+    // 0 while recording
+    @ColumnInfo(name = "end_time")
+    @NonNull
+    public Date endTime;
+
+    @ColumnInfo(name = "size_bytes")
+    public long sizeBytes;
+
+    @ColumnInfo(name = "codec")
+    @NonNull
+    public String codec = "";
+}
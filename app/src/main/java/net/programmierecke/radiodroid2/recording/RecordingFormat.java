@@ -0,0 +1,123 @@
+package net.programmierecke.radiodroid2.recording;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Locale;
+
+/**
+ * Format a recording is saved in, which decides the extension of its file.
+ */
+public enum RecordingFormat {
+    MP3("mp3"),
+    AAC("aac"),
+    OGG("ogg"),
+    OPUS("opus"),
+    FLAC("flac"),
+    MPEG_TS("ts");
+
+    private static final int TS_PACKET_SIZE = 188;
+
+    public final String extension;
+
+    RecordingFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * @return true if the stream consists of MP3 or AAC (ADTS) frames without a container
+     */
+    boolean isFramed() {
+        return this == MP3 || this == AAC;
+    }
+
+    /**
+     * @return format of a stream sent with the MIME type or null if it is not known
+     */
+    @Nullable
+    public static RecordingFormat fromContentType(@Nullable String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+
+        final String type = contentType.toLowerCase(Locale.US);
+        final int parametersStart = type.indexOf(';');
+        final String mimeType = (parametersStart >= 0 ? type.substring(0, parametersStart) : type).trim();
+
+        switch (mimeType) {
+            case "audio/mpeg":
+            case "audio/mp3":
+            case "audio/mpeg3":
+            case "audio/x-mpeg":
+                return MP3;
+            case "audio/aac":
+            case "audio/aacp":
+            case "audio/x-aac":
+                return AAC;
+            case "audio/ogg":
+            case "application/ogg":
+            case "audio/vorbis":
+                return type.contains("opus") ? OPUS : OGG;
+            case "audio/opus":
+                return OPUS;
+            case "audio/flac":
+            case "audio/x-flac":
+                return FLAC;
+            case "video/mp2t":
+                return MPEG_TS;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return format of a station's codec as listed in the directory or null if it is not known
+     */
+    @Nullable
+    public static RecordingFormat fromCodec(@Nullable String codec) {
+        if (codec == null) {
+            return null;
+        }
+
+        switch (codec.toUpperCase(Locale.US)) {
+            case "MP3":
+                return MP3;
+            case "AAC":
+            case "AAC+":
+                return AAC;
+            case "OGG":
+                return OGG;
+            case "OPUS":
+                return OPUS;
+            case "FLAC":
+                return FLAC;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Recognizes containers by the bytes they start with. Frames of MP3 and AAC have to be
+     * searched for instead, see {@link FrameScanner}.
+     *
+     * @return format of the stream starting with the bytes or null if it is not a known container
+     */
+    @Nullable
+    static RecordingFormat sniff(@NonNull byte[] buffer, int offset, int length) {
+        if (length >= 4) {
+            if (buffer[offset] == 'O' && buffer[offset + 1] == 'g' && buffer[offset + 2] == 'g' && buffer[offset + 3] == 'S') {
+                return OGG;
+            }
+            if (buffer[offset] == 'f' && buffer[offset + 1] == 'L' && buffer[offset + 2] == 'a' && buffer[offset + 3] == 'C') {
+                return FLAC;
+            }
+        }
+
+        // One sync byte could be anything, packets follow each other though
+        if (length > TS_PACKET_SIZE && buffer[offset] == 0x47 && buffer[offset + TS_PACKET_SIZE] == 0x47) {
+            return MPEG_TS;
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,373 @@
+package net.programmierecke.radiodroid2.recording;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Puts a stream into the file of a recording. The bytes are passed to the
+ * {@link RecordingWriter} as they are, the muxer only looks at them in place to find out
+ * what the stream is and where its frames are.
+ * <p>
+ * Containers like Ogg or MPEG-TS are written as they come. MP3 and AAC (ADTS) recordings
+ * start with a whole frame, and ID3 tags between frames are left out. HLS puts such a tag
+ * at the start of each segment of packed audio, so the segments are stitched into one stream.
+ * An MP3 recording starts with a Xing header which is filled in once the recording is
+ * finished, so players know its duration and can seek in it.
+ */
+class RecordingMuxer implements RecordingWriter.Finisher {
+    private static final String TAG = "RecordingMuxer";
+
+    // Enough to recognize an ID3 tag and any frame header
+    private static final int PEEK_SIZE = 10;
+
+    // Give up looking for frames, the stream is probably in a container then
+    private static final int MAX_SYNC_BYTES = 64 * 1024;
+
+    private static final int XING_SIZE = 4 + 4 + 4 + 4 + 100;
+    private static final int XING_FLAGS = 0x01 | 0x02 | 0x04; // Frames, bytes and seek table
+
+    // Positions of frames kept for the seek table, fewer are kept as the recording grows
+    private static final int SEEK_POSITIONS = 512;
+
+    private enum Mode {
+        SNIFFING,
+        // At the start of a frame or tag, or in the middle of one
+        FRAMING,
+        SYNCING,
+        PASSTHROUGH
+    }
+
+    private RecordingWriter writer;
+
+    private volatile RecordingFormat format;
+    private Mode mode = Mode.SNIFFING;
+
+    // Bytes of the current frame or tag which are not passed yet
+    private int remaining;
+    private boolean dropping;
+
+    // Start of a header which didn't fit into the previous buffer
+    private final byte[] carry = new byte[PEEK_SIZE];
+    private int carryLength;
+
+    private FrameScanner frameScanner;
+    private int bytesSynced;
+    // Value which is equal for all frame headers of the stream, -1 until the first frame
+    private int headerKey = -1;
+    // Files of split recordings and past audio start with a frame, which is trusted
+    private boolean atStart = true;
+
+    // Following fields are also read by the writer thread when the recording is finished
+    private long frames;
+    private int firstBitrateIndex;
+    private boolean variableBitrate;
+    private byte[] xingFrame;
+    private int xingOffset;
+    private long xingPosition;
+    private final long[] seekPositions = new long[SEEK_POSITIONS];
+    private int seekCount;
+    private int seekStride = 1;
+
+    /**
+     * @param format format the stream is supposed to have, it is checked against the stream
+     */
+    RecordingMuxer(@Nullable RecordingFormat format) {
+        this.format = format;
+    }
+
+    /**
+     * Must be called before anything is written.
+     */
+    void setWriter(@NonNull RecordingWriter writer) {
+        this.writer = writer;
+        writer.setFinisher(this);
+    }
+
+    /**
+     * @return format of the recording, as far as it is known
+     */
+    @NonNull
+    RecordingFormat getFormat() {
+        final RecordingFormat format = this.format;
+        return format != null ? format : RecordingFormat.MP3;
+    }
+
+    /**
+     * Must be called from one thread at a time, like {@link RecordingWriter#write(byte[], int, int)}.
+     */
+    void write(@NonNull byte[] buffer, int offset, int length) {
+        final int end = offset + length;
+        int position = offset;
+
+        if (mode == Mode.SNIFFING && length > 0) {
+            sniff(buffer, offset, length);
+        }
+
+        while (position < end) {
+            switch (mode) {
+                case FRAMING:
+                    position = frame(buffer, position, end);
+                    break;
+                case SYNCING:
+                    position = sync(buffer, position, end);
+                    break;
+                default:
+                    writer.write(buffer, position, end - position);
+                    position = end;
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Writes what is left of a header and stops accepting bytes.
+     */
+    void close() {
+        if (carryLength > 0 && frames > 0) {
+            writer.write(carry, 0, carryLength);
+            carryLength = 0;
+        }
+        writer.close();
+    }
+
+    private void sniff(@NonNull byte[] buffer, int offset, int length) {
+        final RecordingFormat container = RecordingFormat.sniff(buffer, offset, length);
+        if (container != null) {
+            // Opus is in Ogg as well
+            if (!(container == RecordingFormat.OGG && format == RecordingFormat.OPUS)) {
+                format = container;
+            }
+            mode = Mode.PASSTHROUGH;
+        } else if (format == null || format.isFramed()) {
+            mode = Mode.FRAMING;
+        } else {
+            // Stream started in the middle of a container
+            mode = Mode.PASSTHROUGH;
+        }
+    }
+
+    private int frame(@NonNull byte[] buffer, int position, int end) {
+        if (remaining > 0) {
+            final int length = Math.min(remaining, end - position);
+            if (!dropping) {
+                writer.write(buffer, position, length);
+            }
+            remaining -= length;
+            return position + length;
+        }
+
+        final byte[] header;
+        final int headerStart;
+        final int carried = carryLength;
+        if (carried == 0 && end - position >= PEEK_SIZE) {
+            header = buffer;
+            headerStart = position;
+        } else {
+            // Header is split between buffers, this copies at most a few bytes per buffer
+            final int length = Math.min(PEEK_SIZE - carried, end - position);
+            System.arraycopy(buffer, position, carry, carried, length);
+            if (carried + length < PEEK_SIZE) {
+                carryLength = carried + length;
+                return end;
+            }
+            header = carry;
+            headerStart = 0;
+        }
+        carryLength = 0;
+
+        final int tagLength = id3TagLength(header, headerStart);
+        if (tagLength > 0) {
+            dropping = true;
+            remaining = tagLength - carried;
+            return position;
+        }
+
+        final int frameLength = FrameScanner.frameLength(header, headerStart);
+        if (atStart && frameLength > 0) {
+            headerKey = FrameScanner.headerKey(header, headerStart);
+        }
+        atStart = false;
+
+        if (frameLength >= PEEK_SIZE && FrameScanner.headerKey(header, headerStart) == headerKey) {
+            onFrame(header, headerStart);
+            if (carried > 0) {
+                writer.write(carry, 0, carried);
+            }
+            dropping = false;
+            remaining = frameLength - carried;
+            return position;
+        }
+
+        // Not synced yet or the stream is broken, bytes are kept once audio was written
+        if (carried > 0 && frames > 0) {
+            writer.write(carry, 0, carried);
+        }
+        mode = Mode.SYNCING;
+        frameScanner = new FrameScanner();
+        bytesSynced = 0;
+        return position;
+    }
+
+    private int sync(@NonNull byte[] buffer, int position, int end) {
+        final int frameStart = frameScanner.findFrameStart(buffer, position, end - position);
+        final int skipped = (frameStart >= 0 ? frameStart : end) - position;
+
+        if (frames > 0) {
+            writer.write(buffer, position, skipped);
+        }
+
+        if (frameStart >= 0) {
+            headerKey = FrameScanner.headerKey(buffer, frameStart);
+            mode = Mode.FRAMING;
+            return frameStart;
+        }
+
+        bytesSynced += skipped;
+        if (bytesSynced > MAX_SYNC_BYTES) {
+            Log.w(TAG, "No MP3 or AAC frames found, recording is written as it is");
+            mode = Mode.PASSTHROUGH;
+        }
+
+        return end;
+    }
+
+    private synchronized void onFrame(@NonNull byte[] header, int headerStart) {
+        final int bitrateIndex = (header[headerStart + 2] >> 4) & 0x0F;
+
+        if (frames == 0) {
+            final boolean adts = (header[headerStart + 1] & 0xF6) == 0xF0;
+            format = adts ? RecordingFormat.AAC : RecordingFormat.MP3;
+            firstBitrateIndex = bitrateIndex;
+
+            // Only Layer III has Xing headers
+            if (!adts && ((header[headerStart + 1] >> 1) & 0x03) == 1) {
+                xingFrame = createXingFrame(header, headerStart);
+                if (xingFrame != null) {
+                    xingPosition = writer.getPosition();
+                    xingOffset = 4 + sideInfoSize(header, headerStart);
+                    if (!writer.write(xingFrame, 0, xingFrame.length)) {
+                        xingFrame = null;
+                    }
+                }
+            }
+        } else if (bitrateIndex != firstBitrateIndex) {
+            variableBitrate = true;
+        }
+
+        if (frames % seekStride == 0) {
+            if (seekCount == seekPositions.length) {
+                for (int i = 0; i < seekCount / 2; i++) {
+                    seekPositions[i] = seekPositions[2 * i];
+                }
+                seekCount /= 2;
+                seekStride *= 2;
+            }
+
+            if (frames % seekStride == 0) {
+                seekPositions[seekCount++] = writer.getPosition();
+            }
+        }
+
+        frames++;
+    }
+
+    /**
+     * Fills in the Xing header now that the number of frames and the size is known.
+     */
+    @Override
+    public synchronized void finish(@NonNull FileChannel channel, long size) throws IOException {
+        if (xingFrame == null || frames == 0 || size <= xingPosition + xingFrame.length) {
+            return;
+        }
+
+        final ByteBuffer xing = ByteBuffer.wrap(xingFrame, xingOffset, XING_SIZE).slice();
+        // CBR files are tagged "Info" by convention
+        xing.put((byte) (variableBitrate ? 'X' : 'I'))
+                .put((byte) (variableBitrate ? 'i' : 'n'))
+                .put((byte) (variableBitrate ? 'n' : 'f'))
+                .put((byte) (variableBitrate ? 'g' : 'o'));
+        xing.putInt(XING_FLAGS);
+        xing.putInt((int) Math.min(frames, Integer.MAX_VALUE));
+        xing.putInt((int) Math.min(size - xingPosition, Integer.MAX_VALUE));
+
+        // Position of every percent of the duration, in 1/256 of the size
+        final long audioSize = size - xingPosition;
+        for (int percent = 0; percent < 100; percent++) {
+            final long frame = percent * frames / 100;
+            final int seekIndex = (int) Math.min(frame / seekStride, seekCount - 1);
+            final long framePosition = seekPositions[seekIndex] - xingPosition;
+            xing.put((byte) Math.min(255, framePosition * 256 / audioSize));
+        }
+
+        xing.flip();
+        long position = xingPosition + xingOffset;
+        while (xing.hasRemaining()) {
+            position += channel.write(xing, position);
+        }
+    }
+
+    /**
+     * @return frame which matches the stream and has room for a Xing header with no tag in it
+     * yet, null if there is no bitrate which makes it large enough
+     */
+    @Nullable
+    private static byte[] createXingFrame(@NonNull byte[] header, int headerStart) {
+        final int requiredLength = 4 + sideInfoSize(header, headerStart) + XING_SIZE;
+
+        // Without CRC and padding
+        final byte[] frameHeader = new byte[]{
+                header[headerStart], (byte) (header[headerStart + 1] | 0x01),
+                (byte) (header[headerStart + 2] & 0xFD), header[headerStart + 3]};
+
+        // Stream's own bitrate if it is large enough, like encoders do
+        final int streamBitrateIndex = (frameHeader[2] >> 4) & 0x0F;
+        for (int bitrateIndex = streamBitrateIndex; bitrateIndex < 15; bitrateIndex++) {
+            frameHeader[2] = (byte) ((frameHeader[2] & 0x0F) | (bitrateIndex << 4));
+            final int frameLength = FrameScanner.frameLength(frameHeader, 0);
+            if (frameLength >= requiredLength) {
+                final byte[] frame = new byte[frameLength];
+                System.arraycopy(frameHeader, 0, frame, 0, frameHeader.length);
+                // The tag itself is only written at the end, so players don't trust an empty header
+                return frame;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return size of the side information of a Layer III frame, the Xing header follows it
+     */
+    private static int sideInfoSize(@NonNull byte[] header, int headerStart) {
+        final boolean mpeg1 = ((header[headerStart + 1] >> 3) & 0x03) == 3;
+        final boolean mono = ((header[headerStart + 3] >> 6) & 0x03) == 3;
+        return mpeg1 ? (mono ? 17 : 32) : (mono ? 9 : 17);
+    }
+
+    /**
+     * @return length of the ID3v2 tag at the index including its header, 0 if there is none
+     */
+    private static int id3TagLength(@NonNull byte[] buffer, int i) {
+        if (buffer[i] != 'I' || buffer[i + 1] != 'D' || buffer[i + 2] != '3') {
+            return 0;
+        }
+
+        // Synchsafe integer of 4 times 7 bits
+        int size = 0;
+        for (int j = 6; j < 10; j++) {
+            if ((buffer[i + j] & 0x80) != 0) {
+                return 0;
+            }
+            size = (size << 7) | buffer[i + j];
+        }
+
+        final boolean hasFooter = (buffer[i + 5] & 0x10) != 0;
+        return 10 + size + (hasFooter ? 10 : 0);
+    }
+}
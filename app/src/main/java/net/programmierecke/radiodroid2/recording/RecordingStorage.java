@@ -0,0 +1,144 @@
+package net.programmierecke.radiodroid2.recording;
+
+import android.os.Build;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps recordings from filling up the device and the recordings directory beyond the quota
+ * set by the user.
+ * <p>
+ * Space is reserved for each file in extents of {@link #EXTENT_SIZE}, so free space and the
+ * quota are only checked once per extent. On Android 5.0 and newer the extent is allocated
+ * at once, which keeps the file in one piece and saves the file system from updating its
+ * size with every chunk. If the quota would be exceeded the oldest finished recordings are
+ * deleted. If the device is about to run out of space the recording is stopped with a
+ * {@link StorageFullException} instead.
+ */
+class RecordingStorage {
+    private static final String TAG = "RecordingStorage";
+
+    static final long EXTENT_SIZE = 4 * 1024 * 1024;
+
+    // Space which is left to the system and other apps
+    static final long MIN_FREE_BYTES = 64 * 1024 * 1024;
+
+    static class StorageFullException extends IOException {
+        StorageFullException(String message) {
+            super(message);
+        }
+    }
+
+    private final File directory;
+    private final RecordingCatalogue catalogue;
+    private final Runnable evictionListener;
+
+    // 0 if there is no quota
+    private volatile long quotaBytes;
+
+    // Space reserved by all files which are being recorded
+    private final AtomicLong reservedBytes = new AtomicLong();
+
+    RecordingStorage(@NonNull File directory, @NonNull RecordingCatalogue catalogue, @NonNull Runnable evictionListener) {
+        this.directory = directory;
+        this.catalogue = catalogue;
+        this.evictionListener = evictionListener;
+    }
+
+    void setQuota(long quotaBytes) {
+        this.quotaBytes = quotaBytes;
+    }
+
+    /**
+     * @return true if there is enough free space to start a recording
+     */
+    boolean canStartRecording() {
+        return directory.getUsableSpace() >= MIN_FREE_BYTES + EXTENT_SIZE;
+    }
+
+    /**
+     * @param fd descriptor of the file the storage is used for, space is allocated in it
+     */
+    @NonNull
+    RecordingWriter.Storage forFile(@NonNull FileDescriptor fd) {
+        return new RecordingWriter.Storage() {
+            @Override
+            public long reserve(long requiredBytes, long reservedBytes) throws IOException {
+                final long newReservedBytes = extendReservation(requiredBytes, reservedBytes);
+                final long growth = newReservedBytes - reservedBytes;
+
+                if (directory.getUsableSpace() - growth < MIN_FREE_BYTES) {
+                    throw new StorageFullException("Device is running out of space");
+                }
+
+                if (quotaBytes > 0) {
+                    enforceQuota(growth);
+                }
+
+                RecordingStorage.this.reservedBytes.addAndGet(growth);
+                allocate(fd, reservedBytes, growth);
+
+                return newReservedBytes;
+            }
+
+            @Override
+            public void release(long reservedBytes) {
+                RecordingStorage.this.reservedBytes.addAndGet(-reservedBytes);
+            }
+        };
+    }
+
+    /**
+     * @return reserved size which is a multiple of extents and covers the required size
+     */
+    static long extendReservation(long requiredBytes, long reservedBytes) {
+        if (requiredBytes <= reservedBytes) {
+            return reservedBytes;
+        }
+
+        final long extents = (requiredBytes - reservedBytes + EXTENT_SIZE - 1) / EXTENT_SIZE;
+        return reservedBytes + extents * EXTENT_SIZE;
+    }
+
+    private void enforceQuota(long growth) throws IOException {
+        final long excess = catalogue.getFinishedSize() + reservedBytes.get() + growth - quotaBytes;
+        if (excess <= 0) {
+            return;
+        }
+
+        final long freed = catalogue.evictOldest(directory, excess);
+        if (freed > 0) {
+            evictionListener.run();
+        }
+
+        if (freed < excess) {
+            throw new StorageFullException("Recordings quota is exceeded");
+        }
+    }
+
+    private static void allocate(@NonNull FileDescriptor fd, long offset, long length) throws IOException {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+
+        try {
+            Os.posix_fallocate(fd, offset, length);
+        } catch (ErrnoException e) {
+            if (e.errno == OsConstants.ENOSPC) {
+                throw new StorageFullException("No space left to allocate");
+            }
+
+            // Some file systems don't support it, the file then just grows as it is written
+            Log.w(TAG, "Could not allocate space for recording", e);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package net.programmierecke.radiodroid2.recording;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import java.util.Date;
+
+/**
+ * Position in a recording where the station announced a new track.
+ */
+@Entity(tableName = "recording_track_markers",
+        foreignKeys = @ForeignKey(entity = RecordingEntry.class, parentColumns = "uid", childColumns = "recording_uid", onDelete = ForeignKey.CASCADE),
+        indices = {@Index("recording_uid")})
+public class RecordingTrackMarker {
+
+    @PrimaryKey(autoGenerate = true)
+    public int uid;
+
+    @ColumnInfo(name = "recording_uid")
+    public int recordingUid;
+
+    @ColumnInfo(name = "byte_offset")
+    public long byteOffset;
+
+    @ColumnInfo(name = "time")
+    @NonNull
+    public Date time;
+
+    @ColumnInfo(name = "title")
+    @NonNull
+    public String title;
+}
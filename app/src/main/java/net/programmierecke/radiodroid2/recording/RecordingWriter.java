@@ -0,0 +1,290 @@
+package net.programmierecke.radiodroid2.recording;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes a recording to disk in its own thread, so that a slow storage never stalls the
+ * thread which reads the stream.
+ * <p>
+ * {@link #write(byte[], int, int)} only copies bytes into a ring buffer allocated once per
+ * recording and returns. The writer thread drains the buffer in chunks of {@link #CHUNK_SIZE}
+ * which are aligned both in the buffer and in the file. If the buffer is full the bytes are
+ * dropped and counted instead of blocking the caller.
+ * <p>
+ * A {@link Storage} may be given to reserve space before the file grows, the space which
+ * was not used is cut off when the file is closed. A {@link Finisher} may complete the file
+ * before that, e.g. by filling in a header.
+ * <p>
+ * {@link #close()} doesn't block either, everything written before it is still saved and
+ * {@link Listener#onClosed(RecordingWriter)} is called once the file is complete.
+ */
+public class RecordingWriter {
+    public interface Listener {
+        /**
+         * Called in the writer thread if the recording could not be written.
+         * The writer is closed after that.
+         */
+        void onWriteFailed(@NonNull RecordingWriter writer, @NonNull IOException e);
+
+        /**
+         * Called in the writer thread after all bytes are written and the file is closed.
+         */
+        void onClosed(@NonNull RecordingWriter writer);
+    }
+
+    /**
+     * Decides how much the file may grow, called in the writer thread.
+     */
+    public interface Storage {
+        /**
+         * Called before the file grows past the reserved size.
+         *
+         * @param requiredBytes size the file is about to reach
+         * @param reservedBytes size which was reserved so far
+         * @return new reserved size, at least requiredBytes
+         * @throws IOException if the recording must stop, it is reported as a write failure
+         */
+        long reserve(long requiredBytes, long reservedBytes) throws IOException;
+
+        /**
+         * Called once the file is closed.
+         */
+        void release(long reservedBytes);
+    }
+
+    /**
+     * Completes a file, e.g. by filling in headers, called in the writer thread.
+     */
+    public interface Finisher {
+        /**
+         * Called after all bytes are written, also if writing failed.
+         *
+         * @param size number of bytes which were written
+         */
+        void finish(@NonNull FileChannel channel, long size) throws IOException;
+    }
+
+    private static final String TAG = "RecordingWriter";
+
+    static final int CHUNK_SIZE = 64 * 1024;
+    static final int DEFAULT_BUFFER_SIZE = 16 * CHUNK_SIZE;
+
+    // Bytes waiting less than a full chunk are written after this time anyway
+    private static final long FLUSH_INTERVAL_MS = 1000;
+
+    private final WritableByteChannel channel;
+    private final Listener listener;
+    private final Storage storage;
+    private volatile Finisher finisher;
+
+    // Only used by the writer thread
+    private long reservedBytes;
+
+    private final byte[] ring;
+    private final ByteBuffer ringView;
+    private final int chunkSize;
+
+    // Positions only grow, their difference is the number of buffered bytes.
+    // writePosition is only changed by the producer, readPosition by the writer thread.
+    private volatile long writePosition;
+    private volatile long readPosition;
+
+    private volatile long bytesDropped;
+    private volatile boolean closing;
+
+    private final Object signal = new Object();
+    private final Thread thread;
+
+    public RecordingWriter(@NonNull WritableByteChannel channel, @Nullable Listener listener) {
+        this(channel, listener, null);
+    }
+
+    public RecordingWriter(@NonNull WritableByteChannel channel, @Nullable Listener listener, @Nullable Storage storage) {
+        this(channel, listener, storage, DEFAULT_BUFFER_SIZE, CHUNK_SIZE);
+    }
+
+    RecordingWriter(@NonNull WritableByteChannel channel, @Nullable Listener listener, @Nullable Storage storage,
+                    int bufferSize, int chunkSize) {
+        if (bufferSize % chunkSize != 0) {
+            throw new IllegalArgumentException("Buffer size must be a multiple of chunk size");
+        }
+
+        this.channel = channel;
+        this.listener = listener;
+        this.storage = storage;
+        this.ring = new byte[bufferSize];
+        this.ringView = ByteBuffer.wrap(ring);
+        this.chunkSize = chunkSize;
+
+        thread = new Thread(this::drain, TAG);
+        thread.start();
+    }
+
+    /**
+     * Sets what completes the file once it is closed, only files are completed.
+     */
+    public void setFinisher(@Nullable Finisher finisher) {
+        this.finisher = finisher;
+    }
+
+    /**
+     * Copies bytes into the buffer. Must be called from one thread at a time.
+     *
+     * @return false if there was not enough space and the bytes were dropped
+     */
+    public boolean write(@NonNull byte[] buffer, int offset, int length) {
+        if (closing || length <= 0) {
+            return length <= 0;
+        }
+
+        final long write = writePosition;
+        final long buffered = write - readPosition;
+        if (length > ring.length - buffered) {
+            bytesDropped += length;
+            return false;
+        }
+
+        final int start = (int) (write % ring.length);
+        final int firstPart = Math.min(length, ring.length - start);
+        System.arraycopy(buffer, offset, ring, start, firstPart);
+        if (firstPart < length) {
+            System.arraycopy(buffer, offset + firstPart, ring, 0, length - firstPart);
+        }
+
+        writePosition = write + length;
+
+        // Wake up the writer only when there is a full chunk for it
+        if (buffered < chunkSize && buffered + length >= chunkSize) {
+            synchronized (signal) {
+                signal.notify();
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Stops accepting bytes. Bytes which are already buffered will still be written.
+     */
+    public void close() {
+        closing = true;
+        synchronized (signal) {
+            signal.notify();
+        }
+    }
+
+    /**
+     * Waits until the file is closed, mostly for tests.
+     */
+    void join() throws InterruptedException {
+        thread.join();
+    }
+
+    /**
+     * @return position in the file of the next bytes to write
+     */
+    public long getPosition() {
+        return writePosition;
+    }
+
+    public long getBytesWritten() {
+        return readPosition;
+    }
+
+    public long getBytesDropped() {
+        return bytesDropped;
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                long buffered = writePosition - readPosition;
+
+                if (buffered < chunkSize && !closing) {
+                    synchronized (signal) {
+                        buffered = writePosition - readPosition;
+                        if (buffered < chunkSize && !closing) {
+                            signal.wait(FLUSH_INTERVAL_MS);
+                        }
+                    }
+                    buffered = writePosition - readPosition;
+                }
+
+                if (buffered == 0) {
+                    if (closing && writePosition == readPosition) {
+                        break;
+                    }
+                    continue;
+                }
+
+                writeChunk(buffered);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write recording", e);
+            closing = true;
+            if (listener != null) {
+                listener.onWriteFailed(this, e);
+            }
+        } catch (InterruptedException e) {
+            Log.e(TAG, "Interrupted while waiting for bytes", e);
+        } finally {
+            try {
+                if (channel instanceof FileChannel) {
+                    final FileChannel fileChannel = (FileChannel) channel;
+                    if (finisher != null) {
+                        finisher.finish(fileChannel, readPosition);
+                    }
+                    // Cut off the space which was reserved but not used, also after a failure
+                    if (fileChannel.size() > readPosition) {
+                        fileChannel.truncate(readPosition);
+                    }
+                    fileChannel.force(false);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to complete recording", e);
+            }
+
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to close recording", e);
+            }
+
+            if (storage != null) {
+                storage.release(reservedBytes);
+            }
+        }
+
+        if (listener != null) {
+            listener.onClosed(this);
+        }
+    }
+
+    private void writeChunk(long buffered) throws IOException {
+        final long read = readPosition;
+        final int start = (int) (read % ring.length);
+
+        // Never cross a chunk boundary so that writes stay aligned after a partial chunk
+        final int length = (int) Math.min(buffered, chunkSize - start % chunkSize);
+
+        if (storage != null && read + length > reservedBytes) {
+            reservedBytes = storage.reserve(read + length, reservedBytes);
+        }
+
+        ringView.limit(start + length);
+        ringView.position(start);
+        while (ringView.hasRemaining()) {
+            channel.write(ringView);
+        }
+
+        readPosition = read + length;
+    }
+}
@@ -1,19 +1,27 @@
 package net.programmierecke.radiodroid2.recording;
 
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.os.Build;
 import android.os.Environment;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.app.NotificationCompat;
 import androidx.preference.PreferenceManager;
 
-import net.programmierecke.radiodroid2.BuildConfig;
 import net.programmierecke.radiodroid2.R;
 import net.programmierecke.radiodroid2.Utils;
+import net.programmierecke.radiodroid2.database.RadioDroidDatabase;
+import net.programmierecke.radiodroid2.station.DataRadioStation;
+import net.programmierecke.radiodroid2.station.live.StreamLiveInfo;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.text.DateFormat;
@@ -21,18 +29,27 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Observable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-/* TODO: Actually have info about recording by storing them in the database and matching with files on disk.
- */
 public class RecordingsManager {
     private final static String TAG = "Recordings";
+
+    // Give up splitting if there is no frame to split at, e.g. in an Ogg stream
+    private final static int MAX_SPLIT_SCAN_BYTES = 64 * 1024;
+
+    // Let the app start before the recordings directory is listed
+    private final static long RECONCILE_DELAY_MS = 10 * 1000;
+
+    private final static String STORAGE_NOTIFICATION_CHANNEL_ID = "recordings";
+    private final static int STORAGE_NOTIFICATION_ID = 3;
+
     private DateFormat dateFormatter = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
     private DateFormat timeFormatter = new SimpleDateFormat("HH-mm", Locale.US);
 
@@ -45,37 +62,236 @@ public class RecordingsManager {
 
     private Observable savedRecordingsObservable = new RecordingsObservable();
 
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Opens the files of split recordings, so the thread which reads the stream never waits for the disk
+    private final ExecutorService fileExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "RecordingsManager Files"));
+
+    private final Context context;
+    private final RecordingCatalogue catalogue;
+    private final RecordingStorage storage;
+
+    /**
+     * Listens to the writer of one file of a recording, a recording split into tracks has many.
+     */
+    private class RecordingFileListener implements RecordingWriter.Listener {
+        private final RunningRecordingInfo runningRecordingInfo;
+        private final RecordingEntry entry;
+        private final RecordingMuxer muxer;
+
+        private RecordingFileListener(@NonNull RunningRecordingInfo runningRecordingInfo, @NonNull RecordingEntry entry,
+                                      @NonNull RecordingMuxer muxer) {
+            this.runningRecordingInfo = runningRecordingInfo;
+            this.entry = entry;
+            this.muxer = muxer;
+        }
+
+        @Override
+        public void onWriteFailed(@NonNull RecordingWriter writer, @NonNull IOException e) {
+            if (e instanceof RecordingStorage.StorageFullException) {
+                showStorageFullNotification();
+            }
+            mainHandler.post(() -> runningRecordingInfo.getRecordable().stopRecording());
+        }
+
+        @Override
+        public void onClosed(@NonNull RecordingWriter writer) {
+            if (writer.getBytesDropped() > 0) {
+                Log.w(TAG, String.format(Locale.US, "Dropped %d bytes of %s because storage was too slow",
+                        writer.getBytesDropped(), entry.fileName));
+            }
+
+            if (writer.getBytesWritten() == 0 && runningRecordingInfo.getEntry() != entry) {
+                // Opened for a track which never started, the recording ended or moved on to another one
+                if (!new File(getRecordDir(), entry.fileName).delete()) {
+                    Log.w(TAG, "Could not delete unused " + entry.fileName);
+                }
+                catalogue.recordingDiscarded(entry);
+                return;
+            }
+
+            renameToFormat();
+
+            // The file is complete only now
+            catalogue.recordingFinished(entry, writer.getBytesWritten());
+            updateRecordingsList();
+        }
+
+        /**
+         * Gives the file the extension of the format which was found in the stream,
+         * if it was started with another one.
+         */
+        private void renameToFormat() {
+            final String extension = "." + muxer.getFormat().extension;
+            if (entry.fileName.endsWith(extension)) {
+                return;
+            }
+
+            final File file = new File(getRecordDir(), entry.fileName);
+            final String fileName = entry.title + extension;
+            final File renamedFile = new File(getRecordDir(), fileName);
+            if (renamedFile.exists() || !file.renameTo(renamedFile)) {
+                Log.w(TAG, "Could not rename " + entry.fileName + " to " + fileName);
+                return;
+            }
+
+            catalogue.recordingRenamed(entry, fileName);
+            runningRecordingInfo.fileRenamed(entry, fileName);
+        }
+    }
+
     private class RunningRecordableListener implements RecordableListener {
         private RunningRecordingInfo runningRecordingInfo;
         private boolean ended;
 
-        private RunningRecordableListener(@NonNull RunningRecordingInfo runningRecordingInfo) {
+        private final SharedPreferences prefs;
+        private final String fileNameFormat;
+        private final boolean splitTracks;
+        private final DataRadioStation station;
+
+        // Track the current file is named after
+        private String currentArtist;
+        private String currentTrack;
+        private StreamLiveInfo nextTrack;
+        private FrameScanner frameScanner;
+        private int bytesScanned;
+
+        // File for the next track, opened in the background while the current one is written
+        private volatile RunningRecordingInfo.RecordingFile nextFile;
+        // Counts the tracks a file was asked for, a file opened for an earlier one is not used
+        private int nextFileRequests;
+
+        private RunningRecordableListener(@NonNull RunningRecordingInfo runningRecordingInfo, @NonNull SharedPreferences prefs,
+                                          @NonNull String fileNameFormat, boolean splitTracks, @Nullable DataRadioStation station) {
             this.runningRecordingInfo = runningRecordingInfo;
+            this.prefs = prefs;
+            this.fileNameFormat = fileNameFormat;
+            this.splitTracks = splitTracks;
+            this.station = station;
+
+            final Map<String, String> formattingArgs = runningRecordingInfo.getRecordable().getRecordNameFormattingArgs();
+            currentArtist = formattingArgs.get("artist");
+            currentTrack = formattingArgs.get("track");
         }
 
         @Override
         public void onBytesAvailable(byte[] buffer, int offset, int length) {
-            try {
-                runningRecordingInfo.getOutputStream().write(buffer, offset, length);
-                runningRecordingInfo.setBytesWritten(runningRecordingInfo.getBytesWritten() + length);
-            } catch (IOException e) {
-                e.printStackTrace();
-                runningRecordingInfo.getRecordable().stopRecording();
+            // The current file gets everything until the next one is open
+            if (nextTrack != null && nextFile != null) {
+                // Only scan while waiting for a frame to start the next track with
+                final int frameStart = frameScanner.findFrameStart(buffer, offset, length);
+                if (frameStart >= 0) {
+                    runningRecordingInfo.getMuxer().write(buffer, offset, frameStart - offset);
+                    startNextTrack();
+                    length -= frameStart - offset;
+                    offset = frameStart;
+                } else {
+                    bytesScanned += length;
+                    if (bytesScanned > MAX_SPLIT_SCAN_BYTES) {
+                        Log.w(TAG, "No MP3 or AAC frames found, recording is not split");
+                        nextTrack = null;
+                        discardNextFile();
+                    }
+                }
             }
+
+            // Only copies into the writer's buffer, the network thread is never blocked by disk
+            runningRecordingInfo.getMuxer().write(buffer, offset, length);
         }
 
         @Override
-        public void onRecordingEnded() {
-            if (ended) {
+        public void onStreamLiveInfo(@NonNull StreamLiveInfo liveInfo) {
+            final String artist = Utils.sanitizeName(liveInfo.getArtist());
+            final String track = Utils.sanitizeName(liveInfo.getTrack());
+            if (artist.equals(currentArtist) && track.equals(currentTrack)) {
+                // Metadata may be repeated for the same track
+                return;
+            }
+
+            currentArtist = artist;
+            currentTrack = track;
+
+            if (!splitTracks) {
+                catalogue.trackStarted(runningRecordingInfo.getEntry(), runningRecordingInfo.getWriter().getPosition(), liveInfo.getTitle());
                 return;
             }
 
-            ended = true;
+            nextTrack = liveInfo;
+            frameScanner = new FrameScanner();
+            bytesScanned = 0;
+
+            openNextFile();
+        }
+
+        private void openNextFile() {
+            final Map<String, String> formattingArgs = new HashMap<>(runningRecordingInfo.getRecordable().getRecordNameFormattingArgs());
+            formattingArgs.put("artist", currentArtist);
+            formattingArgs.put("track", currentTrack);
+            final RecordingFormat format = runningRecordingInfo.getMuxer().getFormat();
+
+            final int request;
+            synchronized (this) {
+                discardNextFile();
+                request = ++nextFileRequests;
+            }
+
+            fileExecutor.execute(() -> {
+                final RunningRecordingInfo.RecordingFile file = openFile(runningRecordingInfo, prefs, fileNameFormat,
+                        formattingArgs, station, 0, format);
+                if (file == null) {
+                    return;
+                }
+
+                synchronized (this) {
+                    if (ended || request != nextFileRequests) {
+                        file.muxer.close();
+                        return;
+                    }
+
+                    nextFile = file;
+                }
+            });
+        }
+
+        private synchronized void discardNextFile() {
+            if (nextFile != null) {
+                nextFile.muxer.close();
+                nextFile = null;
+            }
+        }
+
+        private void startNextTrack() {
+            final StreamLiveInfo liveInfo = nextTrack;
+            nextTrack = null;
+
+            final RunningRecordingInfo.RecordingFile file;
+            synchronized (this) {
+                if (ended || nextFile == null) {
+                    return;
+                }
+
+                file = nextFile;
+                nextFile = null;
+
+                final RecordingMuxer previousMuxer = runningRecordingInfo.getMuxer();
+                runningRecordingInfo.setFile(file);
+                previousMuxer.close();
+            }
+
+            catalogue.trackStarted(file.entry, 0, liveInfo.getTitle());
+        }
+
+        @Override
+        public void onRecordingEnded() {
+            synchronized (this) {
+                if (ended) {
+                    return;
+                }
+
+                ended = true;
 
-            try {
-                runningRecordingInfo.getOutputStream().close();
-            } catch (IOException e) {
-                e.printStackTrace();
+                runningRecordingInfo.getMuxer().close();
+                discardNextFile();
             }
 
             RecordingsManager.this.stopRecording(runningRecordingInfo.getRecordable());
@@ -85,9 +301,18 @@ public class RecordingsManager {
     private Map<Recordable, RunningRecordingInfo> runningRecordings = new HashMap<>();
     private ArrayList<DataRecording> savedRecordings = new ArrayList<>();
 
-    public void record(@NonNull Context context, @NonNull Recordable recordable) {
+    public RecordingsManager(@NonNull Context context) {
+        this.context = context.getApplicationContext();
+        catalogue = new RecordingCatalogue(RadioDroidDatabase.getDatabase(context));
+        storage = new RecordingStorage(new File(getRecordDir()), catalogue, this::updateRecordingsList);
+    }
+
+    /**
+     * @return true if the recordable is being recorded
+     */
+    public boolean record(@NonNull Context context, @NonNull Recordable recordable, @Nullable DataRadioStation station) {
         if (!recordable.canRecord()) {
-            return;
+            return false;
         }
 
         if (!runningRecordings.containsKey(recordable)) {
@@ -98,52 +323,133 @@ public class RecordingsManager {
             SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context.getApplicationContext());
 
             final String fileNameFormat = prefs.getString("record_name_formatting", context.getString(R.string.settings_record_name_formatting_default));
+            final boolean splitTracks = prefs.getBoolean("record_split_tracks", false);
+            storage.setQuota(prefs.getInt("record_quota_mb", 0) * 1024L * 1024L);
 
-            final Map<String, String> formattingArgs = new HashMap<>(recordable.getRecordNameFormattingArgs());
+            final RunningRecordableListener listener = new RunningRecordableListener(info, prefs, fileNameFormat, splitTracks, station);
 
-            Calendar calendar = Calendar.getInstance();
-            calendar.setTimeInMillis(System.currentTimeMillis());
+            // Checked against the stream once it is written
+            RecordingFormat format = RecordingFormat.fromContentType(recordable.getContentType());
+            if (format == null && station != null) {
+                format = RecordingFormat.fromCodec(station.Codec);
+            }
 
-            final Date currentTime = calendar.getTime();
+            // Past audio is passed on at once before live audio, the first file must have room for it
+            final RunningRecordingInfo.RecordingFile file = openFile(info, prefs, fileNameFormat,
+                    recordable.getRecordNameFormattingArgs(), station, recordable.getMaxPastAudioBytes(), format);
+            if (file == null) {
+                return false;
+            }
+            info.setFile(file);
 
-            String dateStr = dateFormatter.format(currentTime);
-            String timeStr = timeFormatter.format(currentTime);
+            recordable.startRecording(listener);
 
-            formattingArgs.put("date", dateStr);
-            formattingArgs.put("time", timeStr);
+            runningRecordings.put(recordable, info);
+        }
 
-            final int recordNum = prefs.getInt("record_num", 1);
-            formattingArgs.put("index", Integer.toString(recordNum));
+        return true;
+    }
 
-            final String recordTitle = Utils.formatStringWithNamedArgs(fileNameFormat, formattingArgs);
+    /**
+     * Opens a new file named after the format for the recording, without making it the one
+     * which is written to. Blocks on the disk.
+     *
+     * @param pastAudioBytes number of bytes the writer must take at once in addition to live audio
+     * @param format          format the stream is supposed to have, null if it's not known
+     * @return null if the file could not be opened
+     */
+    @Nullable
+    private RunningRecordingInfo.RecordingFile openFile(@NonNull RunningRecordingInfo info, @NonNull SharedPreferences prefs,
+                                                        @NonNull String fileNameFormat, @NonNull Map<String, String> recordableFormattingArgs,
+                                                        @Nullable DataRadioStation station, int pastAudioBytes,
+                                                        @Nullable RecordingFormat format) {
+        final Map<String, String> formattingArgs = new HashMap<>(recordableFormattingArgs);
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(System.currentTimeMillis());
+
+        final Date currentTime = calendar.getTime();
+
+        String dateStr = dateFormatter.format(currentTime);
+        String timeStr = timeFormatter.format(currentTime);
+
+        formattingArgs.put("date", dateStr);
+        formattingArgs.put("time", timeStr);
+
+        final int recordNum = takeRecordNum(prefs);
+        formattingArgs.put("index", Integer.toString(recordNum));
+
+        final String recordTitle = Utils.formatStringWithNamedArgs(fileNameFormat, formattingArgs);
+        final RecordingMuxer muxer = new RecordingMuxer(format);
+        final String fileName = String.format("%s.%s", recordTitle, muxer.getFormat().extension);
+
+        if (!storage.canStartRecording()) {
+            Log.w(TAG, "Not enough space to record " + fileName);
+            showStorageFullNotification();
+            return null;
+        }
 
-            info.setTitle(recordTitle);
-            info.setFileName(String.format("%s.%s", recordTitle, recordable.getExtension()));
+        String filePath = RecordingsManager.getRecordDir() + "/" + fileName;
+        final FileOutputStream outputStream;
+        final RecordingWriter.Storage fileStorage;
+        try {
+            outputStream = new FileOutputStream(filePath);
+            fileStorage = storage.forFile(outputStream.getFD());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
 
-            //TODO: check available disk space here
+        final RecordingEntry entry = new RecordingEntry();
+        entry.fileName = fileName;
+        entry.title = recordTitle;
+        if (station != null) {
+            entry.stationUuid = station.StationUuid;
+            entry.stationName = station.Name != null ? station.Name : "";
+            entry.codec = station.Codec != null ? station.Codec : "";
+        }
+        entry.startTime = currentTime;
+        entry.endTime = new Date(0);
+        catalogue.recordingStarted(entry);
 
-            String filePath = RecordingsManager.getRecordDir() + "/" + info.getFileName();
-            try {
-                info.setOutputStream(new FileOutputStream(filePath));
-            } catch (FileNotFoundException e) {
-                e.printStackTrace();
-                return;
-            }
+        final int chunks = (pastAudioBytes + RecordingWriter.CHUNK_SIZE - 1) / RecordingWriter.CHUNK_SIZE;
+        final RecordingWriter writer = new RecordingWriter(outputStream.getChannel(), new RecordingFileListener(info, entry, muxer),
+                fileStorage, RecordingWriter.DEFAULT_BUFFER_SIZE + chunks * RecordingWriter.CHUNK_SIZE, RecordingWriter.CHUNK_SIZE);
+        muxer.setWriter(writer);
 
-            recordable.startRecording(new RunningRecordableListener(info));
+        return new RunningRecordingInfo.RecordingFile(recordTitle, fileName, entry, writer, muxer);
+    }
 
-            runningRecordings.put(recordable, info);
+    /**
+     * Files are opened in the main thread and in the background, each gets its own number.
+     */
+    private synchronized int takeRecordNum(@NonNull SharedPreferences prefs) {
+        final int recordNum = prefs.getInt("record_num", 1);
+        prefs.edit().putInt("record_num", recordNum + 1).apply();
+        return recordNum;
+    }
 
-            prefs.edit().putInt("record_num", recordNum + 1).apply();
+    private void showStorageFullNotification() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(STORAGE_NOTIFICATION_CHANNEL_ID,
+                    context.getString(R.string.settings_recordings), NotificationManager.IMPORTANCE_DEFAULT);
+            context.getSystemService(NotificationManager.class).createNotificationChannel(channel);
         }
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, STORAGE_NOTIFICATION_CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_stop_recording)
+                .setContentTitle(context.getString(R.string.notify_record_storage_full))
+                .setContentText(context.getString(R.string.notify_record_storage_full_desc))
+                .setAutoCancel(true);
+
+        NotificationManager notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        notificationManager.notify(STORAGE_NOTIFICATION_ID, builder.build());
     }
 
     public void stopRecording(@NonNull Recordable recordable) {
         recordable.stopRecording();
 
         runningRecordings.remove(recordable);
-
-        updateRecordingsList();
     }
 
     public RunningRecordingInfo getRecordingInfo(Recordable recordable) {
@@ -173,29 +479,35 @@ public class RecordingsManager {
         return pathRecordings;
     }
 
-    public void updateRecordingsList() {
-        String path = getRecordDir();
-        if (BuildConfig.DEBUG) {
-            Log.d(TAG, "Updating recordings from " + path);
-        }
-
-        savedRecordings.clear();
+    /**
+     * Shows catalogued recordings and checks the recordings directory for changes later.
+     * Called once when the app starts.
+     */
+    public void loadRecordings() {
+        final File directory = new File(getRecordDir());
+        catalogue.finishInterrupted(directory);
+        updateRecordingsList();
+        catalogue.reconcile(directory, RECONCILE_DELAY_MS, changed -> {
+            if (changed) {
+                updateRecordingsList();
+            }
+        });
+    }
 
-        File folder = new File(path);
-        File[] files = folder.listFiles();
-        if (files != null) {
-            for (File f : files) {
+    public void updateRecordingsList() {
+        catalogue.getRecordings(entries -> {
+            final ArrayList<DataRecording> recordings = new ArrayList<>(entries.size());
+            for (RecordingEntry entry : entries) {
                 DataRecording dr = new DataRecording();
-                dr.Name = f.getName();
-                dr.Time = new Date(f.lastModified());
-                savedRecordings.add(dr);
+                dr.Name = entry.fileName;
+                dr.Time = entry.startTime;
+                recordings.add(dr);
             }
 
-            Collections.sort(savedRecordings, (o1, o2) -> Long.compare(o2.Time.getTime(), o1.Time.getTime()));
-        } else {
-            Log.e(TAG, "Could not enumerate files in recordings directory");
-        }
-
-        savedRecordingsObservable.notifyObservers();
+            mainHandler.post(() -> {
+                savedRecordings = recordings;
+                savedRecordingsObservable.notifyObservers();
+            });
+        });
     }
 }
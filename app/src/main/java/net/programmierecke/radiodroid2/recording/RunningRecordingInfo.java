@@ -1,13 +1,33 @@
 package net.programmierecke.radiodroid2.recording;
 
-import java.io.FileOutputStream;
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicReference;
 
 public class RunningRecordingInfo {
+    /**
+     * File a recording is written to. A recording split into tracks moves on to the next file
+     * with a single write, so the title of one file is never seen with the writer of another.
+     */
+    static final class RecordingFile {
+        final String title;
+        final String fileName;
+        final RecordingEntry entry;
+        final RecordingWriter writer;
+        final RecordingMuxer muxer;
+
+        RecordingFile(@NonNull String title, @NonNull String fileName, @NonNull RecordingEntry entry,
+                      @NonNull RecordingWriter writer, @NonNull RecordingMuxer muxer) {
+            this.title = title;
+            this.fileName = fileName;
+            this.entry = entry;
+            this.writer = writer;
+            this.muxer = muxer;
+        }
+    }
+
     private Recordable recordable;
-    private String title;
-    private String fileName;
-    private FileOutputStream outputStream;
-    private long bytesWritten;
+    private final AtomicReference<RecordingFile> file = new AtomicReference<>();
 
     public Recordable getRecordable() {
         return recordable;
@@ -18,34 +38,51 @@ public class RunningRecordingInfo {
     }
 
     public String getTitle() {
-        return title;
+        return file.get().title;
     }
 
-    protected void setTitle(String title) {
-        this.title = title;
+    public String getFileName() {
+        return file.get().fileName;
     }
 
-    public String getFileName() {
-        return fileName;
+    public RecordingWriter getWriter() {
+        return file.get().writer;
+    }
+
+    RecordingMuxer getMuxer() {
+        return file.get().muxer;
     }
 
-    protected void setFileName(String fileName) {
-        this.fileName = fileName;
+    public RecordingEntry getEntry() {
+        return file.get().entry;
     }
 
-    public FileOutputStream getOutputStream() {
-        return outputStream;
+    void setFile(@NonNull RecordingFile file) {
+        this.file.set(file);
     }
 
-    protected void setOutputStream(FileOutputStream outputStream) {
-        this.outputStream = outputStream;
+    /**
+     * Changes the name of the file if it is still the one written to.
+     */
+    void fileRenamed(@NonNull RecordingEntry entry, @NonNull String fileName) {
+        while (true) {
+            final RecordingFile current = file.get();
+            if (current.entry != entry) {
+                return;
+            }
+
+            final RecordingFile renamed = new RecordingFile(current.title, fileName, current.entry, current.writer, current.muxer);
+            if (file.compareAndSet(current, renamed)) {
+                return;
+            }
+        }
     }
 
     public long getBytesWritten() {
-        return bytesWritten;
+        return getWriter().getBytesWritten();
     }
 
-    protected void setBytesWritten(long bytesWritten) {
-        this.bytesWritten = bytesWritten;
+    public long getBytesDropped() {
+        return getWriter().getBytesDropped();
     }
 }
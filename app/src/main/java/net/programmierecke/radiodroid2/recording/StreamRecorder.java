@@ -0,0 +1,229 @@
+package net.programmierecke.radiodroid2.recording;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+import com.google.android.exoplayer2.upstream.TransferListener;
+
+import net.programmierecke.radiodroid2.Utils;
+import net.programmierecke.radiodroid2.players.exoplayer.IcyDataSource;
+import net.programmierecke.radiodroid2.station.DataRadioStation;
+import net.programmierecke.radiodroid2.station.live.ShoutcastInfo;
+import net.programmierecke.radiodroid2.station.live.StreamLiveInfo;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * Records a station without playing it. The stream is read through the same
+ * {@link IcyDataSource} as in playback, which strips ICY metadata, and the bytes are
+ * passed on to the recording as they are, so there is no decoder, no audio track and no
+ * audio focus involved. Several stations can be recorded like this at once.
+ */
+public class StreamRecorder implements Recordable, IcyDataSource.IcyDataSourceListener {
+    public interface StoppedListener {
+        /**
+         * Called in the main thread once the recording is stopped for any reason.
+         */
+        void onRecorderStopped(@NonNull StreamRecorder recorder);
+    }
+
+    private static final String TAG = "StreamRecorder";
+
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    // Doesn't need to measure anything
+    private static final TransferListener NO_TRANSFER_LISTENER = new TransferListener() {
+        @Override
+        public void onTransferInitializing(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+        }
+
+        @Override
+        public void onTransferStart(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+        }
+
+        @Override
+        public void onBytesTransferred(DataSource source, DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {
+        }
+
+        @Override
+        public void onTransferEnd(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+        }
+    };
+
+    private final OkHttpClient httpClient;
+    private final DataRadioStation station;
+    private final String streamUrl;
+    private final long retryTimeoutMs;
+    private final long retryDelayMs;
+    private final StoppedListener stoppedListener;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private volatile RecordableListener recordableListener;
+    private volatile boolean stopped;
+    private volatile StreamLiveInfo lastLiveInfo;
+    private volatile String contentType;
+
+    public StreamRecorder(@NonNull OkHttpClient httpClient, @NonNull DataRadioStation station, @NonNull String streamUrl,
+                          long retryTimeoutMs, long retryDelayMs, @Nullable StoppedListener stoppedListener) {
+        this.httpClient = httpClient;
+        this.station = station;
+        this.streamUrl = streamUrl;
+        this.retryTimeoutMs = retryTimeoutMs;
+        this.retryDelayMs = retryDelayMs;
+        this.stoppedListener = stoppedListener;
+    }
+
+    @NonNull
+    public DataRadioStation getStation() {
+        return station;
+    }
+
+    @Override
+    public boolean canRecord() {
+        // Playlists of HLS streams would have to be followed
+        return !stopped && !Utils.urlIndicatesHlsStream(streamUrl);
+    }
+
+    @Override
+    public void startRecording(@NonNull RecordableListener recordableListener) {
+        this.recordableListener = recordableListener;
+
+        new Thread(this::readStream, TAG).start();
+    }
+
+    @Override
+    public void stopRecording() {
+        stopped = true;
+
+        final RecordableListener recordableListener = this.recordableListener;
+        if (recordableListener != null) {
+            this.recordableListener = null;
+            recordableListener.onRecordingEnded();
+
+            if (stoppedListener != null) {
+                mainHandler.post(() -> stoppedListener.onRecorderStopped(this));
+            }
+        }
+    }
+
+    @Override
+    public boolean isRecording() {
+        return recordableListener != null;
+    }
+
+    @Override
+    public Map<String, String> getRecordNameFormattingArgs() {
+        Map<String, String> args = new HashMap<>();
+        args.put("station", Utils.sanitizeName(station.Name));
+
+        final StreamLiveInfo liveInfo = lastLiveInfo;
+        if (liveInfo != null) {
+            args.put("artist", Utils.sanitizeName(liveInfo.getArtist()));
+            args.put("track", Utils.sanitizeName(liveInfo.getTrack()));
+        } else {
+            args.put("artist", "-");
+            args.put("track", "-");
+        }
+
+        return args;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public int getMaxPastAudioBytes() {
+        return 0;
+    }
+
+    private void readStream() {
+        final IcyDataSource dataSource = new IcyDataSource(httpClient, NO_TRANSFER_LISTENER, this);
+        final DataSpec dataSpec = new DataSpec(Uri.parse(streamUrl));
+        // Read bytes are passed on by the data source, the buffer is only a place to put them
+        final byte[] buffer = new byte[READ_BUFFER_SIZE];
+
+        long lastReadTime = SystemClock.elapsedRealtime();
+
+        while (!stopped) {
+            try {
+                dataSource.open(dataSpec);
+                while (!stopped) {
+                    if (dataSource.read(buffer, 0, buffer.length) < 0) {
+                        break;
+                    }
+                    lastReadTime = SystemClock.elapsedRealtime();
+                }
+            } catch (HttpDataSource.HttpDataSourceException e) {
+                Log.w(TAG, "Lost connection to " + streamUrl, e);
+            } finally {
+                try {
+                    dataSource.close();
+                } catch (HttpDataSource.HttpDataSourceException e) {
+                    Log.e(TAG, "Failed to close " + streamUrl, e);
+                }
+            }
+
+            if (stopped || SystemClock.elapsedRealtime() - lastReadTime > retryTimeoutMs) {
+                break;
+            }
+
+            SystemClock.sleep(retryDelayMs);
+        }
+
+        mainHandler.post(this::stopRecording);
+    }
+
+    @Override
+    public void onDataSourceConnected(@NonNull String contentType) {
+        this.contentType = contentType;
+    }
+
+    @Override
+    public void onDataSourceConnectionLost() {
+    }
+
+    @Override
+    public void onDataSourceConnectionLostIrrecoverably() {
+    }
+
+    @Override
+    public void onDataSourceShoutcastInfo(@Nullable ShoutcastInfo shoutcastInfo) {
+    }
+
+    @Override
+    public void onDataSourceStreamLiveInfo(StreamLiveInfo streamLiveInfo) {
+    }
+
+    @Override
+    public void onDataSourceBytesRead(byte[] buffer, int offset, int length) {
+        final RecordableListener recordableListener = this.recordableListener;
+        if (recordableListener != null) {
+            recordableListener.onBytesAvailable(buffer, offset, length);
+        }
+    }
+
+    @Override
+    public void onDataSourceStreamLiveInfoRead(StreamLiveInfo streamLiveInfo) {
+        lastLiveInfo = streamLiveInfo;
+
+        final RecordableListener recordableListener = this.recordableListener;
+        if (recordableListener != null) {
+            recordableListener.onStreamLiveInfo(streamLiveInfo);
+        }
+    }
+}
@@ -9,6 +9,8 @@ import android.view.KeyEvent;
 
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
+import net.programmierecke.radiodroid2.FavouriteManager;
+import net.programmierecke.radiodroid2.HistoryManager;
 import net.programmierecke.radiodroid2.IPlayerService;
 import net.programmierecke.radiodroid2.RadioDroidApp;
 import net.programmierecke.radiodroid2.station.DataRadioStation;
@@ -110,12 +112,18 @@ public class MediaSessionCallback extends MediaSessionCompat.Callback {
 
     @Override
     public void onPlayFromSearch(String query, Bundle extras) {
-        DataRadioStation station = ((RadioDroidApp) context.getApplicationContext()).getFavouriteManager().getBestNameMatch(query);
-        if (station == null)
-           station = ((RadioDroidApp) context.getApplicationContext()).getHistoryManager().getBestNameMatch(query);
-        if (station != null) {
-            GetRealLinkAndPlayTask playTask = new GetRealLinkAndPlayTask(context, station, playerService);
-            playTask.execute();
-        }
+        RadioDroidApp radioDroidApp = (RadioDroidApp) context.getApplicationContext();
+        FavouriteManager favouriteManager = radioDroidApp.getFavouriteManager();
+        HistoryManager historyManager = radioDroidApp.getHistoryManager();
+
+        favouriteManager.runWhenLoaded(() -> historyManager.runWhenLoaded(() -> {
+            DataRadioStation station = favouriteManager.getBestNameMatch(query);
+            if (station == null)
+               station = historyManager.getBestNameMatch(query);
+            if (station != null) {
+                GetRealLinkAndPlayTask playTask = new GetRealLinkAndPlayTask(context, station, playerService);
+                playTask.execute();
+            }
+        }));
     }
 }
\ No newline at end of file
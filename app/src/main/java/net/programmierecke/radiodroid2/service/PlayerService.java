@@ -4,6 +4,7 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.Map;
 
+import android.annotation.TargetApi;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
@@ -11,6 +12,7 @@ import android.app.PendingIntent;
 import android.app.Service;
 import android.bluetooth.BluetoothA2dp;
 import android.bluetooth.BluetoothHeadset;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
@@ -22,6 +24,7 @@ import android.graphics.drawable.Drawable;
 import android.media.AudioManager;
 import android.media.ToneGenerator;
 import android.media.audiofx.AudioEffect;
+import android.net.ConnectivityManager;
 import android.net.wifi.WifiManager;
 import android.os.Build;
 import android.os.CountDownTimer;
@@ -82,6 +85,7 @@ public class PlayerService extends JobIntentService implements RadioPlayer.Playe
     private static final String NOTIFICATION_CHANNEL_ID = "default";
 
     public static final String METERED_CONNECTION_WARNING_KEY = "warn_no_wifi";
+    public static final String LOW_POWER_PLAYBACK_KEY = "low_power_playback";
 
     public static final String PLAYER_SERVICE_NO_NOTIFICATION_EXTRA = "no_notification";
 
@@ -155,6 +159,35 @@ public class PlayerService extends JobIntentService implements RadioPlayer.Playe
 
     private boolean notificationIsActive = false;
 
+    private boolean screenOn = true;
+    // Track changed while the screen was off in low power playback
+    private boolean trackUpdatePending = false;
+
+    private final BroadcastReceiver screenStateReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            screenOn = Intent.ACTION_SCREEN_ON.equals(intent.getAction());
+            if (screenOn && trackUpdatePending) {
+                trackUpdatePending = false;
+
+                sendBroadCast(PLAYER_SERVICE_META_UPDATE);
+                if (radioPlayer.getPlayState() == PlayState.Playing) {
+                    updateNotification();
+                }
+            }
+        }
+    };
+
+    private final BroadcastReceiver networkChangedReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            // Only while playing
+            if (wakeLock != null && wakeLock.isHeld()) {
+                updateWifiLock();
+            }
+        }
+    };
+
     void sendBroadCast(String action) {
         Intent local = new Intent();
         local.setAction(action);
@@ -253,7 +286,7 @@ public class PlayerService extends JobIntentService implements RadioPlayer.Playe
                 RadioDroidApp radioDroidApp = (RadioDroidApp) getApplication();
                 RecordingsManager recordingsManager = radioDroidApp.getRecordingsManager();
 
-                recordingsManager.record(PlayerService.this, radioPlayer);
+                recordingsManager.record(PlayerService.this, radioPlayer, currentStation);
 
                 sendBroadCast(PLAYER_SERVICE_META_UPDATE);
             }
@@ -471,6 +504,19 @@ public class PlayerService extends JobIntentService implements RadioPlayer.Playe
 
         registerReceiver(headsetConnectionReceiver, headsetConnectionFilter);
 
+        final IntentFilter screenStateFilter = new IntentFilter();
+        screenStateFilter.addAction(Intent.ACTION_SCREEN_ON);
+        screenStateFilter.addAction(Intent.ACTION_SCREEN_OFF);
+
+        registerReceiver(screenStateReceiver, screenStateFilter);
+        registerReceiver(networkChangedReceiver, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT_WATCH) {
+            screenOn = powerManager.isInteractive();
+        } else {
+            screenOn = powerManager.isScreenOn();
+        }
+
         NotificationManager notificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             NotificationChannel notificationChannel = new NotificationChannel(NOTIFICATION_CHANNEL_ID, "RadioDroid2 Player", NotificationManager.IMPORTANCE_LOW);
@@ -489,11 +535,15 @@ public class PlayerService extends JobIntentService implements RadioPlayer.Playe
 
         stop();
 
+        trackHistoryRepository.flush();
+
         mediaSession.release();
 
         radioPlayer.destroy();
 
         unregisterReceiver(headsetConnectionReceiver);
+        unregisterReceiver(screenStateReceiver);
+        unregisterReceiver(networkChangedReceiver);
     }
 
     @Override
@@ -502,6 +552,31 @@ public class PlayerService extends JobIntentService implements RadioPlayer.Playe
         // and user presses play/pause media button.
         PlayerServiceUtil.bind(itsContext.getApplicationContext());
 
+        RadioDroidApp radioDroidApp = (RadioDroidApp) getApplication();
+        HistoryManager historyManager = radioDroidApp.getHistoryManager();
+        FavouriteManager favouriteManager = radioDroidApp.getFavouriteManager();
+
+        if (currentStation == null && !(historyManager.isLoaded() && favouriteManager.isLoaded())) {
+            // Saved stations are still being loaded, the command is handled once they are.
+            // startForeground can't wait for that on Android O+.
+            boolean showNotification = intent == null || !intent.getBooleanExtra(PLAYER_SERVICE_NO_NOTIFICATION_EXTRA, false);
+            boolean foregroundStarted = false;
+            if (showNotification && !notificationIsActive && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                startTemporaryForeground();
+                foregroundStarted = true;
+            }
+
+            final boolean deferredForegroundStarted = foregroundStarted;
+            historyManager.runWhenLoaded(() -> favouriteManager.runWhenLoaded(() ->
+                    handleStartCommand(intent, flags, startId, deferredForegroundStarted)));
+
+            return super.onStartCommand(intent, flags, startId);
+        }
+
+        return handleStartCommand(intent, flags, startId, false);
+    }
+
+    private int handleStartCommand(Intent intent, int flags, int startId, boolean foregroundStarted) {
         if (currentStation == null) {
             RadioDroidApp radioDroidApp = (RadioDroidApp) getApplication();
             HistoryManager historyManager = radioDroidApp.getHistoryManager();
@@ -567,15 +642,9 @@ public class PlayerService extends JobIntentService implements RadioPlayer.Playe
             if (currentStation == null) {
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
                     // On Android O+ we MUST show notification if started via startForegroundService
-
-                    NotificationChannel channel = new NotificationChannel(NOTIFICATION_CHANNEL_ID,
-                            "Temporary", NotificationManager.IMPORTANCE_DEFAULT);
-                    ((NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE)).createNotificationChannel(channel);
-                    Notification notification = new NotificationCompat.Builder(this, NOTIFICATION_CHANNEL_ID)
-                            .setContentTitle("")
-                            .setContentText("").build();
-                    startForeground(NOTIFY_ID, notification);
-                    stopForeground(true);
+                    if (!foregroundStarted) {
+                        startTemporaryForeground();
+                    }
                 } else {
                     stopSelf();
                     return START_NOT_STICKY;
@@ -588,6 +657,18 @@ public class PlayerService extends JobIntentService implements RadioPlayer.Playe
         return super.onStartCommand(intent, flags, startId);
     }
 
+    @TargetApi(26)
+    private void startTemporaryForeground() {
+        NotificationChannel channel = new NotificationChannel(NOTIFICATION_CHANNEL_ID,
+                "Temporary", NotificationManager.IMPORTANCE_DEFAULT);
+        ((NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE)).createNotificationChannel(channel);
+        Notification notification = new NotificationCompat.Builder(this, NOTIFICATION_CHANNEL_ID)
+                .setContentTitle("")
+                .setContentText("").build();
+        startForeground(NOTIFY_ID, notification);
+        stopForeground(true);
+    }
+
     private void playWithoutWarnings(DataRadioStation station) {
         setStation(station);
         playCurrentStation(false);
@@ -848,8 +929,24 @@ public class PlayerService extends JobIntentService implements RadioPlayer.Playe
             if (BuildConfig.DEBUG) Log.d(TAG, "wake lock is already acquired.");
         }
 
+        updateWifiLock();
+    }
+
+    /**
+     * Holds the wifi lock unless low power playback is on and the stream doesn't come over wifi,
+     * since then the lock would only keep the wifi radio awake for nothing.
+     */
+    private void updateWifiLock() {
         WifiManager wm = (WifiManager) itsContext.getApplicationContext().getSystemService(Context.WIFI_SERVICE);
         if (wm != null) {
+            if (sharedPref.getBoolean(LOW_POWER_PLAYBACK_KEY, false) && !Utils.hasWifiConnection(itsContext)) {
+                if (wifiLock != null && wifiLock.isHeld()) {
+                    if (BuildConfig.DEBUG) Log.d(TAG, "releasing wifi lock, not on wifi.");
+                    wifiLock.release();
+                }
+                return;
+            }
+
             if (wifiLock == null) {
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR1) {
                     wifiLock = wm.createWifiLock(WifiManager.WIFI_MODE_FULL_HIGH_PERF, "PlayerService");
@@ -1137,69 +1234,62 @@ public class PlayerService extends JobIntentService implements RadioPlayer.Playe
 
     @Override
     public void onStateChanged(final PlayState state, final int audioSessionId) {
-        // State changed can be called from the player's thread.
+        lastErrorFromPlayer = -1;
 
-        handler.post(new Runnable() {
-            @Override
-            public void run() {
-                lastErrorFromPlayer = -1;
+        switch (state) {
+            case Paused:
+                break;
+            case Playing: {
+                enableMediaSession();
 
-                switch (state) {
-                    case Paused:
-                        break;
-                    case Playing: {
-                        enableMediaSession();
+                if (BuildConfig.DEBUG) {
+                    Log.d(TAG, "Open audio effect control session, session id=" + audioSessionId);
+                }
 
-                        if (BuildConfig.DEBUG) {
-                            Log.d(TAG, "Open audio effect control session, session id=" + audioSessionId);
-                        }
+                lastPlayStartTime = System.currentTimeMillis();
 
-                        lastPlayStartTime = System.currentTimeMillis();
+                Intent i = new Intent(AudioEffect.ACTION_OPEN_AUDIO_EFFECT_CONTROL_SESSION);
+                i.putExtra(AudioEffect.EXTRA_AUDIO_SESSION, audioSessionId);
+                i.putExtra(AudioEffect.EXTRA_PACKAGE_NAME, getPackageName());
+                itsContext.sendBroadcast(i);
+                break;
+            }
+            default: {
+                if (state != PlayState.PrePlaying) {
+                    disableMediaSession();
+                }
 
-                        Intent i = new Intent(AudioEffect.ACTION_OPEN_AUDIO_EFFECT_CONTROL_SESSION);
-                        i.putExtra(AudioEffect.EXTRA_AUDIO_SESSION, audioSessionId);
-                        i.putExtra(AudioEffect.EXTRA_PACKAGE_NAME, getPackageName());
-                        itsContext.sendBroadcast(i);
-                        break;
+                if (audioSessionId > 0) {
+                    if (BuildConfig.DEBUG) {
+                        Log.d(TAG, "Close audio effect control session, session id=" + audioSessionId);
                     }
-                    default: {
-                        if (state != PlayState.PrePlaying) {
-                            disableMediaSession();
-                        }
-
-                        if (audioSessionId > 0) {
-                            if (BuildConfig.DEBUG) {
-                                Log.d(TAG, "Close audio effect control session, session id=" + audioSessionId);
-                            }
 
-                            Intent i = new Intent(AudioEffect.ACTION_CLOSE_AUDIO_EFFECT_CONTROL_SESSION);
-                            i.putExtra(AudioEffect.EXTRA_AUDIO_SESSION, audioSessionId);
-                            i.putExtra(AudioEffect.EXTRA_PACKAGE_NAME, getPackageName());
-                            itsContext.sendBroadcast(i);
-                        }
-
-                        if (state == PlayState.Idle) {
-                            stop();
-                        }
-
-                        break;
-                    }
+                    Intent i = new Intent(AudioEffect.ACTION_CLOSE_AUDIO_EFFECT_CONTROL_SESSION);
+                    i.putExtra(AudioEffect.EXTRA_AUDIO_SESSION, audioSessionId);
+                    i.putExtra(AudioEffect.EXTRA_PACKAGE_NAME, getPackageName());
+                    itsContext.sendBroadcast(i);
                 }
 
-                if (state != PlayState.Paused && state != PlayState.Idle) {
-                    startMeteredConnectionListener();
-                } else {
-                    stopMeteredConnectionListener();
+                if (state == PlayState.Idle) {
+                    stop();
                 }
 
-                updateNotification(state);
-
-                final Intent intent = new Intent();
-                intent.setAction(PLAYER_SERVICE_STATE_CHANGE);
-                intent.putExtra(PLAYER_SERVICE_STATE_EXTRA_KEY, (Parcelable) state);
-                LocalBroadcastManager.getInstance(itsContext).sendBroadcast(intent);
+                break;
             }
-        });
+        }
+
+        if (state != PlayState.Paused && state != PlayState.Idle) {
+            startMeteredConnectionListener();
+        } else {
+            stopMeteredConnectionListener();
+        }
+
+        updateNotification(state);
+
+        final Intent intent = new Intent();
+        intent.setAction(PLAYER_SERVICE_STATE_CHANGE);
+        intent.putExtra(PLAYER_SERVICE_STATE_EXTRA_KEY, (Parcelable) state);
+        LocalBroadcastManager.getInstance(itsContext).sendBroadcast(intent);
     }
 
     @Override
@@ -1209,17 +1299,10 @@ public class PlayerService extends JobIntentService implements RadioPlayer.Playe
 
     @Override
     public void onPlayerError(int messageId) {
-        handler.post(() -> {
-            PlayerService.this.lastErrorFromPlayer = messageId;
-
-            toastOnUi(messageId);
-            updateNotification();
-        });
-    }
-
-    @Override
-    public void onBufferedTimeUpdate(long bufferedMs) {
+        PlayerService.this.lastErrorFromPlayer = messageId;
 
+        toastOnUi(messageId);
+        updateNotification();
     }
 
     @Override
@@ -1258,32 +1341,28 @@ public class PlayerService extends JobIntentService implements RadioPlayer.Playe
         }
 
         if (oldLiveInfo == null || !oldLiveInfo.getTitle().equals(liveInfo.getTitle())) {
-            sendBroadCast(PLAYER_SERVICE_META_UPDATE);
-            updateNotification();
+            if (!screenOn && sharedPref.getBoolean(LOW_POWER_PLAYBACK_KEY, false)) {
+                // Nobody looks at the notification, it is updated once the screen turns on
+                trackUpdatePending = true;
+            } else {
+                sendBroadCast(PLAYER_SERVICE_META_UPDATE);
+                updateNotification();
+            }
 
             Calendar calendar = Calendar.getInstance();
             Date currentTime = calendar.getTime();
 
-            trackHistoryRepository.getLastInsertedHistoryItem((trackHistoryEntry, dao) -> {
-                if (trackHistoryEntry != null && trackHistoryEntry.title.equals(liveInfo.getTitle())) {
-                    // Prevent from generating several same entries when rapidly doing pause and resume.
-                    trackHistoryEntry.endTime = new Date(0);
-                    dao.update(trackHistoryEntry);
-                } else {
-                    dao.setCurrentPlayingTrackEndTime(currentTime);
-
-                    TrackHistoryEntry newTrackHistoryEntry = new TrackHistoryEntry();
-                    newTrackHistoryEntry.stationUuid = currentStation.StationUuid;
-                    newTrackHistoryEntry.artist = liveInfo.getArtist();
-                    newTrackHistoryEntry.title = liveInfo.getTitle();
-                    newTrackHistoryEntry.track = liveInfo.getTrack();
-                    newTrackHistoryEntry.stationIconUrl = currentStation.IconUrl;
-                    newTrackHistoryEntry.startTime = currentTime;
-                    newTrackHistoryEntry.endTime = new Date(0);
-
-                    trackHistoryRepository.insert(newTrackHistoryEntry);
-                }
-            });
+            TrackHistoryEntry newTrackHistoryEntry = new TrackHistoryEntry();
+            newTrackHistoryEntry.stationUuid = currentStation.StationUuid;
+            newTrackHistoryEntry.stationName = currentStation.Name != null ? currentStation.Name : "";
+            newTrackHistoryEntry.artist = liveInfo.getArtist();
+            newTrackHistoryEntry.title = liveInfo.getTitle();
+            newTrackHistoryEntry.track = liveInfo.getTrack();
+            newTrackHistoryEntry.stationIconUrl = currentStation.IconUrl;
+            newTrackHistoryEntry.startTime = currentTime;
+            newTrackHistoryEntry.endTime = new Date(0);
+
+            trackHistoryRepository.trackStarted(newTrackHistoryEntry);
         }
     }
 
@@ -27,6 +27,7 @@ import com.squareup.picasso.Target;
 
 import net.programmierecke.radiodroid2.R;
 import net.programmierecke.radiodroid2.RadioDroidApp;
+import net.programmierecke.radiodroid2.StationSaveManager;
 import net.programmierecke.radiodroid2.Utils;
 import net.programmierecke.radiodroid2.station.DataRadioStation;
 
@@ -181,36 +182,43 @@ public class RadioDroidBrowser {
             return;
         }
 
-        List<MediaBrowserCompat.MediaItem> mediaItems = new ArrayList<>();
-
-        List<DataRadioStation> stations = null;
+        final StationSaveManager stationSaveManager;
 
         switch (parentId) {
             case MEDIA_ID_MUSICS_FAVORITE: {
-                stations = radioDroidApp.getFavouriteManager().getList();
+                stationSaveManager = radioDroidApp.getFavouriteManager();
                 break;
             }
             case MEDIA_ID_MUSICS_HISTORY: {
-                stations = radioDroidApp.getHistoryManager().getList();
+                stationSaveManager = radioDroidApp.getHistoryManager();
                 break;
             }
-            case MEDIA_ID_MUSICS_TOP: {
-
+            default: {
+                stationSaveManager = null;
                 break;
             }
         }
 
+        if (stationSaveManager == null) {
+            result.sendResult(new ArrayList<>());
+            return;
+        }
+
+        // Saved stations are loaded in the background, the result is sent once they are available
+        result.detach();
+        stationSaveManager.runWhenLoaded(() -> sendStations(result, stationSaveManager.getList()));
+    }
+
+    private void sendStations(@NonNull MediaBrowserServiceCompat.Result<List<MediaBrowserCompat.MediaItem>> result, List<DataRadioStation> stations) {
         if (stations != null && !stations.isEmpty()) {
             stationIdToStation.clear();
             for (DataRadioStation station : stations) {
                 stationIdToStation.put(station.StationUuid, station);
             }
-            result.detach();
             new RetrieveStationsIconAndSendResult(result, stations, radioDroidApp).execute();
         } else {
-            result.sendResult(mediaItems);
+            result.sendResult(new ArrayList<>());
         }
-
     }
 
     @Nullable
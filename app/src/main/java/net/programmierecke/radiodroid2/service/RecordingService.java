@@ -0,0 +1,325 @@
+package net.programmierecke.radiodroid2.service;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.app.NotificationCompat;
+import androidx.core.content.ContextCompat;
+import androidx.preference.PreferenceManager;
+
+import net.programmierecke.radiodroid2.R;
+import net.programmierecke.radiodroid2.RadioDroidApp;
+import net.programmierecke.radiodroid2.Utils;
+import net.programmierecke.radiodroid2.recording.RecordingsManager;
+import net.programmierecke.radiodroid2.recording.StreamRecorder;
+import net.programmierecke.radiodroid2.station.DataRadioStation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * Keeps the app alive while stations are recorded without being played.
+ * <p>
+ * Scheduled recordings are handed over ahead of their start, so the stream url is already
+ * resolved when the recording should begin. Until then the service keeps the device awake.
+ * At most {@link #MAX_SCHEDULED_RECORDINGS} recordings run at once, later scheduled ones wait
+ * for a running one to end.
+ */
+public class RecordingService extends Service implements StreamRecorder.StoppedListener {
+    private static final String TAG = "RecordingService";
+
+    private static final String ACTION_RECORD = "net.programmierecke.radiodroid2.recording.RECORD";
+    private static final String ACTION_STOP_ALL = "net.programmierecke.radiodroid2.recording.STOP_ALL";
+    private static final String ACTION_RECORD_SCHEDULED = "net.programmierecke.radiodroid2.recording.RECORD_SCHEDULED";
+    private static final String EXTRA_STATION = "station";
+    private static final String EXTRA_START_TIME = "startTime";
+    private static final String EXTRA_END_TIME = "endTime";
+
+    static final int MAX_SCHEDULED_RECORDINGS = 3;
+
+    private static final String NOTIFICATION_CHANNEL_ID = "background-recordings";
+    private static final int NOTIFY_ID = 4;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final List<StreamRecorder> recorders = new ArrayList<>();
+    // Stations whose stream url is still being resolved
+    private int pendingStations;
+
+    // Scheduled recordings which didn't start yet
+    private final List<ScheduledRecording> scheduledRecordings = new ArrayList<>();
+
+    private PowerManager.WakeLock wakeLock;
+
+    private interface StreamUrlListener {
+        void onStreamUrlResolved(@NonNull String streamUrl);
+    }
+
+    private static class ScheduledRecording {
+        final DataRadioStation station;
+        final String streamUrl;
+        // Wall clock times
+        final long startTime;
+        final long endTime;
+
+        ScheduledRecording(DataRadioStation station, String streamUrl, long startTime, long endTime) {
+            this.station = station;
+            this.streamUrl = streamUrl;
+            this.startTime = startTime;
+            this.endTime = endTime;
+        }
+    }
+
+    public static void record(@NonNull Context context, @NonNull DataRadioStation station) {
+        Intent intent = new Intent(context, RecordingService.class);
+        intent.setAction(ACTION_RECORD);
+        intent.putExtra(EXTRA_STATION, station);
+        ContextCompat.startForegroundService(context, intent);
+    }
+
+    /**
+     * Records the station from the start time until the end time. Should be called a bit
+     * before the start time to have the stream url resolved in time.
+     */
+    public static void recordScheduled(@NonNull Context context, @NonNull DataRadioStation station, long startTime, long endTime) {
+        Intent intent = new Intent(context, RecordingService.class);
+        intent.setAction(ACTION_RECORD_SCHEDULED);
+        intent.putExtra(EXTRA_STATION, station);
+        intent.putExtra(EXTRA_START_TIME, startTime);
+        intent.putExtra(EXTRA_END_TIME, endTime);
+        ContextCompat.startForegroundService(context, intent);
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        // Must be in foreground soon after being started
+        updateNotification();
+
+        final String action = intent != null ? intent.getAction() : null;
+        if (ACTION_RECORD.equals(action)) {
+            final DataRadioStation station = intent.getParcelableExtra(EXTRA_STATION);
+            if (station != null) {
+                resolveStreamUrl(station, streamUrl -> {
+                    if (startRecorder(station, streamUrl) == null) {
+                        Toast.makeText(this, R.string.error_station_load, Toast.LENGTH_SHORT).show();
+                    }
+                });
+            }
+        } else if (ACTION_RECORD_SCHEDULED.equals(action)) {
+            final DataRadioStation station = intent.getParcelableExtra(EXTRA_STATION);
+            final long startTime = intent.getLongExtra(EXTRA_START_TIME, 0);
+            final long endTime = intent.getLongExtra(EXTRA_END_TIME, 0);
+            if (station != null && endTime > System.currentTimeMillis()) {
+                resolveStreamUrl(station, streamUrl ->
+                        schedule(new ScheduledRecording(station, streamUrl, startTime, endTime)));
+            }
+        } else if (ACTION_STOP_ALL.equals(action)) {
+            for (ScheduledRecording scheduledRecording : scheduledRecordings) {
+                mainHandler.removeCallbacksAndMessages(scheduledRecording);
+            }
+            scheduledRecordings.clear();
+
+            for (StreamRecorder recorder : new ArrayList<>(recorders)) {
+                getRecordingsManager().stopRecording(recorder);
+            }
+        }
+
+        stopIfIdle();
+
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public void onDestroy() {
+        for (ScheduledRecording scheduledRecording : scheduledRecordings) {
+            mainHandler.removeCallbacksAndMessages(scheduledRecording);
+        }
+        scheduledRecordings.clear();
+
+        for (StreamRecorder recorder : new ArrayList<>(recorders)) {
+            getRecordingsManager().stopRecording(recorder);
+        }
+
+        releaseWakeLock();
+
+        super.onDestroy();
+    }
+
+    @Override
+    public void onRecorderStopped(@NonNull StreamRecorder recorder) {
+        recorders.remove(recorder);
+        // Scheduled end is not needed anymore
+        mainHandler.removeCallbacksAndMessages(recorder);
+
+        startDueRecordings();
+
+        updateNotification();
+        stopIfIdle();
+    }
+
+    private void resolveStreamUrl(@NonNull DataRadioStation station, @NonNull StreamUrlListener listener) {
+        final RadioDroidApp radioDroidApp = (RadioDroidApp) getApplication();
+
+        pendingStations++;
+        acquireWakeLock();
+
+        new Thread(() -> {
+            final String streamUrl = Utils.getRealStationLink(radioDroidApp.getHttpClient(), radioDroidApp, station.StationUuid);
+            mainHandler.post(() -> {
+                pendingStations--;
+                if (streamUrl == null) {
+                    Toast.makeText(radioDroidApp, R.string.error_station_load, Toast.LENGTH_SHORT).show();
+                } else {
+                    listener.onStreamUrlResolved(streamUrl);
+                }
+                updateNotification();
+                stopIfIdle();
+            });
+        }, TAG).start();
+    }
+
+    private void schedule(@NonNull ScheduledRecording scheduledRecording) {
+        scheduledRecordings.add(scheduledRecording);
+        mainHandler.postAtTime(this::startDueRecordings, scheduledRecording, toUptime(scheduledRecording.startTime));
+    }
+
+    /**
+     * Starts scheduled recordings whose time has come, as long as the limit allows it.
+     * Those which ended while waiting are dropped.
+     */
+    private void startDueRecordings() {
+        final long now = System.currentTimeMillis();
+
+        for (ScheduledRecording scheduledRecording : new ArrayList<>(scheduledRecordings)) {
+            if (scheduledRecording.endTime <= now) {
+                Log.w(TAG, "Scheduled recording of " + scheduledRecording.station.Name + " could not start in time");
+                mainHandler.removeCallbacksAndMessages(scheduledRecording);
+                scheduledRecordings.remove(scheduledRecording);
+                continue;
+            }
+
+            if (scheduledRecording.startTime > now || recorders.size() >= MAX_SCHEDULED_RECORDINGS) {
+                continue;
+            }
+
+            mainHandler.removeCallbacksAndMessages(scheduledRecording);
+            scheduledRecordings.remove(scheduledRecording);
+
+            final StreamRecorder recorder = startRecorder(scheduledRecording.station, scheduledRecording.streamUrl);
+            if (recorder != null) {
+                mainHandler.postAtTime(() -> getRecordingsManager().stopRecording(recorder),
+                        recorder, toUptime(scheduledRecording.endTime));
+            }
+        }
+
+        updateNotification();
+        stopIfIdle();
+    }
+
+    private static long toUptime(long wallClockTime) {
+        // Uptime doesn't advance in deep sleep, but the service holds a wake lock while it waits
+        return SystemClock.uptimeMillis() + Math.max(0, wallClockTime - System.currentTimeMillis());
+    }
+
+    @Nullable
+    private StreamRecorder startRecorder(@NonNull DataRadioStation station, @NonNull String streamUrl) {
+        final RadioDroidApp radioDroidApp = (RadioDroidApp) getApplication();
+
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(radioDroidApp);
+        final int connectTimeout = prefs.getInt("stream_connect_timeout", 4);
+        final int readTimeout = prefs.getInt("stream_read_timeout", 10);
+        final int retryTimeout = prefs.getInt("settings_retry_timeout", 10);
+        final int retryDelay = prefs.getInt("settings_retry_delay", 100);
+
+        final OkHttpClient httpClient = radioDroidApp.newHttpClient()
+                .connectTimeout(connectTimeout, TimeUnit.SECONDS)
+                .readTimeout(readTimeout, TimeUnit.SECONDS)
+                .build();
+
+        final StreamRecorder recorder = new StreamRecorder(httpClient, station, streamUrl,
+                retryTimeout * 1000L, retryDelay, this);
+        if (!getRecordingsManager().record(this, recorder, station)) {
+            Log.w(TAG, "Could not record " + station.Name);
+            return null;
+        }
+
+        recorders.add(recorder);
+        return recorder;
+    }
+
+    private void stopIfIdle() {
+        if (recorders.isEmpty() && pendingStations == 0 && scheduledRecordings.isEmpty()) {
+            releaseWakeLock();
+            stopForeground(true);
+            stopSelf();
+        }
+    }
+
+    private void updateNotification() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(NOTIFICATION_CHANNEL_ID,
+                    getString(R.string.settings_recordings), NotificationManager.IMPORTANCE_LOW);
+            ((NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE)).createNotificationChannel(channel);
+        }
+
+        Intent stopIntent = new Intent(this, RecordingService.class);
+        stopIntent.setAction(ACTION_STOP_ALL);
+        PendingIntent pendingStopIntent = PendingIntent.getService(this, 0, stopIntent, 0);
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, NOTIFICATION_CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_start_recording)
+                .setContentTitle(getString(R.string.notify_recording_in_background))
+                .setContentText(getString(R.string.notify_recording_in_background_count, recorders.size() + pendingStations + scheduledRecordings.size()))
+                .addAction(R.drawable.ic_stop_recording, getString(R.string.action_stop_recording), pendingStopIntent)
+                .setOngoing(true);
+
+        startForeground(NOTIFY_ID, builder.build());
+    }
+
+    private void acquireWakeLock() {
+        if (wakeLock == null) {
+            PowerManager powerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
+            wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "RecordingService:");
+        }
+        if (!wakeLock.isHeld()) {
+            wakeLock.acquire();
+        }
+    }
+
+    private void releaseWakeLock() {
+        if (wakeLock != null) {
+            if (wakeLock.isHeld()) {
+                wakeLock.release();
+            }
+            wakeLock = null;
+        }
+    }
+
+    private RecordingsManager getRecordingsManager() {
+        return ((RadioDroidApp) getApplication()).getRecordingsManager();
+    }
+}
@@ -23,6 +23,7 @@ import net.programmierecke.radiodroid2.ActivityMain;
 import net.programmierecke.radiodroid2.R;
 import net.programmierecke.radiodroid2.Utils;
 import net.programmierecke.radiodroid2.service.MediaSessionCallback;
+import net.programmierecke.radiodroid2.utils.SearchNormalizer;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -68,6 +69,9 @@ public class DataRadioStation implements Parcelable {
 
 	public String playableUrl;
 
+	// Normalized Name used for searching, computed lazily and persisted together with the station
+	String nameSearchKey;
+
 	@Deprecated
 	public String StationId = "";
 
@@ -118,6 +122,19 @@ public class DataRadioStation implements Parcelable {
 		return TextUtils.join(", ", aList);
 	}
 
+	public String getNameSearchKey() {
+		if (nameSearchKey == null) {
+			nameSearchKey = SearchNormalizer.normalize(Name);
+		}
+		return nameSearchKey;
+	}
+
+	private void decodeNameSearchKey(JSONObject anObject) throws JSONException {
+		if (anObject.has("namesearchkey") && anObject.optInt("namesearchkeyversion") == SearchNormalizer.VERSION) {
+			nameSearchKey = anObject.getString("namesearchkey");
+		}
+	}
+
 	public boolean hasIcon() {
 		return !TextUtils.isEmpty(IconUrl);
 	}
@@ -136,61 +153,7 @@ public class DataRadioStation implements Parcelable {
 					JSONArray jsonArray = new JSONArray(result);
 					for (int i = 0; i < jsonArray.length(); i++) {
 						try {
-							JSONObject anObject = jsonArray.getJSONObject(i);
-
-							DataRadioStation aStation = new DataRadioStation();
-							aStation.Name = anObject.getString("name");
-							aStation.StreamUrl = "";
-							if (anObject.has("url")) {
-								aStation.StreamUrl = anObject.getString("url");
-							}
-							if (anObject.has("stationuuid")) {
-								aStation.StationUuid = anObject.getString("stationuuid");
-							}
-							if (!aStation.hasValidUuid()) {
-								aStation.StationId = anObject.getString("id");
-							}
-							if (anObject.has("changeuuid")) {
-								aStation.ChangeUuid = anObject.getString("changeuuid");
-							}
-							aStation.Votes = anObject.getInt("votes");
-							if (anObject.has("refreshretrycount")) {
-								aStation.RefreshRetryCount = anObject.getInt("refreshretrycount");
-							} else {
-								aStation.RefreshRetryCount = 0;
-							}
-							aStation.HomePageUrl = anObject.getString("homepage");
-							aStation.TagsAll = anObject.getString("tags");
-							aStation.Country = anObject.getString("country");
-							if (anObject.has("countrycode")) {
-								aStation.CountryCode = anObject.getString("countrycode");
-							}
-							aStation.State = anObject.getString("state");
-							aStation.IconUrl = anObject.getString("favicon");
-							aStation.Language = anObject.getString("language");
-							aStation.ClickCount = anObject.getInt("clickcount");
-							if (anObject.has("clicktrend")) {
-								aStation.ClickTrend = anObject.getInt("clicktrend");
-							}
-							if (anObject.has("bitrate")) {
-								aStation.Bitrate = anObject.getInt("bitrate");
-							}
-							if (anObject.has("codec")) {
-								aStation.Codec = anObject.getString("codec");
-							}
-							if (anObject.has("lastcheckok")){
-								aStation.Working = anObject.getInt("lastcheckok") != 0;
-							}
-							if (anObject.has("hls")){
-								aStation.Hls = anObject.getInt("hls") != 0;
-							}
-							if (anObject.has("DeletedOnServer")){
-								aStation.DeletedOnServer = anObject.getInt("DeletedOnServer") != 0;
-							}
-
-							aStation.fixStationFields();
-
-							aList.add(aStation);
+							aList.add(fromJson(jsonArray.getJSONObject(i)));
 						}catch(Exception e){
 							Log.e(TAG, "DecodeJson() #2 "+e);
 						}
@@ -208,58 +171,7 @@ public class DataRadioStation implements Parcelable {
 		if (result != null) {
 			if (TextUtils.isGraphic(result)) {
 				try {
-					JSONObject anObject = new JSONObject(result);
-
-					DataRadioStation aStation = new DataRadioStation();
-					aStation.Name = anObject.getString("name");
-					aStation.StreamUrl = "";
-					if (anObject.has("url")) {
-						aStation.StreamUrl = anObject.getString("url");
-					}
-					if (anObject.has("stationuuid")) {
-						aStation.StationUuid = anObject.getString("stationuuid");
-					}
-					if (!aStation.hasValidUuid()) {
-						aStation.StationId = anObject.getString("id");
-					}
-					if (anObject.has("changeuuid")) {
-						aStation.ChangeUuid = anObject.getString("changeuuid");
-					}
-					aStation.Votes = anObject.getInt("votes");
-					if (anObject.has("refreshretrycount")) {
-						aStation.RefreshRetryCount = anObject.getInt("refreshretrycount");
-					} else {
-						aStation.RefreshRetryCount = 0;
-					}
-					aStation.HomePageUrl = anObject.getString("homepage");
-					aStation.TagsAll = anObject.getString("tags");
-					aStation.Country = anObject.getString("country");
-					if (anObject.has("countrycode")) {
-						aStation.CountryCode = anObject.getString("countrycode");
-					}
-					aStation.State = anObject.getString("state");
-					aStation.IconUrl = anObject.getString("favicon");
-					aStation.Language = anObject.getString("language");
-					aStation.ClickCount = anObject.getInt("clickcount");
-					if (anObject.has("clicktrend")) {
-						aStation.ClickTrend = anObject.getInt("clicktrend");
-					}
-					if (anObject.has(("bitrate"))) {
-						aStation.Bitrate = anObject.getInt("bitrate");
-					}
-					if (anObject.has("codec")) {
-						aStation.Codec = anObject.getString("codec");
-					}
-					if (anObject.has("lastcheckok")){
-						aStation.Working = anObject.getInt("lastcheckok") != 0;
-					}
-					if (anObject.has("DeletedOnServer")){
-						aStation.DeletedOnServer = anObject.getInt("DeletedOnServer") != 0;
-					}
-
-					aStation.fixStationFields();
-
-					return aStation;
+					return fromJson(new JSONObject(result));
 				} catch (JSONException e) {
 					Log.e(TAG, "DecodeJsonSingle() "+e);
 				}
@@ -268,6 +180,63 @@ public class DataRadioStation implements Parcelable {
 		return null;
 	}
 
+	static DataRadioStation fromJson(JSONObject anObject) throws JSONException {
+		DataRadioStation aStation = new DataRadioStation();
+		aStation.Name = anObject.getString("name");
+		aStation.StreamUrl = "";
+		if (anObject.has("url")) {
+			aStation.StreamUrl = anObject.getString("url");
+		}
+		if (anObject.has("stationuuid")) {
+			aStation.StationUuid = anObject.getString("stationuuid");
+		}
+		if (!aStation.hasValidUuid()) {
+			aStation.StationId = anObject.getString("id");
+		}
+		if (anObject.has("changeuuid")) {
+			aStation.ChangeUuid = anObject.getString("changeuuid");
+		}
+		aStation.Votes = anObject.getInt("votes");
+		if (anObject.has("refreshretrycount")) {
+			aStation.RefreshRetryCount = anObject.getInt("refreshretrycount");
+		} else {
+			aStation.RefreshRetryCount = 0;
+		}
+		aStation.HomePageUrl = anObject.getString("homepage");
+		aStation.TagsAll = anObject.getString("tags");
+		aStation.Country = anObject.getString("country");
+		if (anObject.has("countrycode")) {
+			aStation.CountryCode = anObject.getString("countrycode");
+		}
+		aStation.State = anObject.getString("state");
+		aStation.IconUrl = anObject.getString("favicon");
+		aStation.Language = anObject.getString("language");
+		aStation.ClickCount = anObject.getInt("clickcount");
+		if (anObject.has("clicktrend")) {
+			aStation.ClickTrend = anObject.getInt("clicktrend");
+		}
+		if (anObject.has("bitrate")) {
+			aStation.Bitrate = anObject.getInt("bitrate");
+		}
+		if (anObject.has("codec")) {
+			aStation.Codec = anObject.getString("codec");
+		}
+		if (anObject.has("lastcheckok")){
+			aStation.Working = anObject.getInt("lastcheckok") != 0;
+		}
+		if (anObject.has("hls")){
+			aStation.Hls = anObject.getInt("hls") != 0;
+		}
+		if (anObject.has("DeletedOnServer")){
+			aStation.DeletedOnServer = anObject.getInt("DeletedOnServer") != 0;
+		}
+		aStation.decodeNameSearchKey(anObject);
+
+		aStation.fixStationFields();
+
+		return aStation;
+	}
+
 	public JSONObject toJson(){
 		JSONObject obj = new JSONObject();
 		try {
@@ -295,7 +264,10 @@ public class DataRadioStation implements Parcelable {
 			obj.put("bitrate",""+Bitrate);
 			obj.put("codec",Codec);
 			obj.put("lastcheckok",Working ? "1" : "0");
+			obj.put("hls",Hls ? "1" : "0");
 			obj.put("DeletedOnServer",DeletedOnServer ? "1" : "0");
+			obj.put("namesearchkey",getNameSearchKey());
+			obj.put("namesearchkeyversion",SearchNormalizer.VERSION);
 			return obj;
 		} catch (JSONException e) {
 			Log.e(TAG, "toJson() "+e);
@@ -327,6 +299,7 @@ public class DataRadioStation implements Parcelable {
 		StationId = station.StationId;
 		ChangeUuid = station.ChangeUuid;
 		Name = station.Name;
+		nameSearchKey = station.nameSearchKey;
 		HomePageUrl = station.HomePageUrl;
 		StreamUrl = station.StreamUrl;
 		IconUrl = station.IconUrl;
@@ -372,6 +345,7 @@ public class DataRadioStation implements Parcelable {
 		dest.writeByte(this.Hls ? (byte) 1 : (byte) 0);
 		dest.writeString(this.playableUrl);
 		dest.writeString(this.StationId);
+		dest.writeString(this.nameSearchKey);
 	}
 
 	protected DataRadioStation(Parcel in) {
@@ -395,6 +369,7 @@ public class DataRadioStation implements Parcelable {
 		this.Hls = in.readByte() != 0;
 		this.playableUrl = in.readString();
 		this.StationId = in.readString();
+		this.nameSearchKey = in.readString();
 	}
 
 	public static final Parcelable.Creator<DataRadioStation> CREATOR = new Parcelable.Creator<DataRadioStation>() {
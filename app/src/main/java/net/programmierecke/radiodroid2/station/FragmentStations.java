@@ -3,6 +3,7 @@ package net.programmierecke.radiodroid2.station;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.text.TextUtils;
 import android.util.Log;
@@ -28,6 +29,8 @@ import net.programmierecke.radiodroid2.Utils;
 import net.programmierecke.radiodroid2.interfaces.IFragmentSearchable;
 import net.programmierecke.radiodroid2.utils.CustomFilter;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -36,6 +39,11 @@ public class FragmentStations extends FragmentBase implements IFragmentSearchabl
 
     public static final String KEY_SEARCH_ENABLED = "SEARCH_ENABLED";
 
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    // Snapshots of lists which are not shown anymore are deleted after a while,
+    // one of a list still shown costs a single decoding of its JSON to write it again
+    private static final long SNAPSHOT_MAX_AGE_MS = 24 * 60 * 60 * 1000;
+
     private RecyclerView rvStations;
     private ViewGroup layoutError;
     private MaterialButton btnRetry;
@@ -70,7 +78,7 @@ public class FragmentStations extends FragmentBase implements IFragmentSearchabl
         boolean show_broken = sharedPref.getBoolean("show_broken", false);
 
         ArrayList<DataRadioStation> filteredStationsList = new ArrayList<>();
-        List<DataRadioStation> radioStations = DataRadioStation.DecodeJson(getUrlResult());
+        List<DataRadioStation> radioStations = decodeStations(ctx, getUrlResult());
 
         if (BuildConfig.DEBUG) Log.d(TAG, "station count:" + radioStations.size());
 
@@ -89,6 +97,56 @@ public class FragmentStations extends FragmentBase implements IFragmentSearchabl
         }
     }
 
+    // Lists are decoded every time they are shown, so a binary snapshot of the decoded list
+    // is kept next to the cached JSON and used for as long as the JSON stays the same.
+    private List<DataRadioStation> decodeStations(Context ctx, String json) {
+        if (json == null) {
+            return new ArrayList<>();
+        }
+
+        final long tag = ((long) json.length() << 32) | (json.hashCode() & 0xFFFFFFFFL);
+        final File snapshotFile = new File(ctx.getCacheDir(), Utils.sanitizeName(getRelativeUrl()) + SNAPSHOT_SUFFIX);
+
+        if (snapshotFile.exists()) {
+            try {
+                StationSnapshot.Reader snapshot = StationSnapshot.open(snapshotFile);
+                if (snapshot.getTag() == tag) {
+                    return snapshot;
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "could not read snapshot " + e);
+            }
+        }
+
+        final List<DataRadioStation> stations = DataRadioStation.DecodeJson(json);
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(() -> {
+            try {
+                StationSnapshot.write(stations, tag, snapshotFile);
+            } catch (IOException e) {
+                Log.e(TAG, "could not write snapshot " + e);
+            }
+
+            deleteOldSnapshots(snapshotFile.getParentFile());
+        });
+
+        return stations;
+    }
+
+    // Also deletes temporary files left behind by writes which did not finish
+    private static void deleteOldSnapshots(File dir) {
+        final File[] files = dir.listFiles((parent, name) -> name.contains(SNAPSHOT_SUFFIX));
+        if (files == null) {
+            return;
+        }
+
+        final long oldestModified = System.currentTimeMillis() - SNAPSHOT_MAX_AGE_MS;
+        for (File file : files) {
+            if (file.lastModified() < oldestModified && !file.delete()) {
+                Log.w(TAG, "could not delete old snapshot " + file);
+            }
+        }
+    }
+
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
                              Bundle savedInstanceState) {
@@ -0,0 +1,93 @@
+package net.programmierecke.radiodroid2.station;
+
+import androidx.annotation.NonNull;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import java.util.List;
+
+/**
+ * Positions in a list are always kept dense (0..n-1) so that they match indices of
+ * the in-memory list in StationSaveManager.
+ */
+@Dao
+public abstract class SavedStationDao {
+    @Query("SELECT * FROM saved_stations WHERE list_id = :listId ORDER BY position")
+    public abstract List<SavedStationEntry> getStations(@NonNull String listId);
+
+    // Uses the index on (list_id, position), so every page is found without skipping the ones before
+    @Query("SELECT * FROM saved_stations WHERE list_id = :listId AND position >= :fromPosition ORDER BY position LIMIT :limit")
+    public abstract List<SavedStationEntry> getStationsPage(@NonNull String listId, int fromPosition, int limit);
+
+    @Query("SELECT COUNT(*) FROM saved_stations WHERE list_id = :listId")
+    public abstract int count(@NonNull String listId);
+
+    /**
+     * Tells a snapshot apart from a list which was replaced as a whole, e.g. by a restored database.
+     * It is not a version of the list: updated stations keep it and different lists may sum up
+     * to the same value, which is fine as snapshots are deleted before every change anyway.
+     * Reads only the index on (list_id, position) which also holds the uid.
+     */
+    @Query("SELECT COALESCE(SUM(uid * (position + 1)), 0) FROM saved_stations WHERE list_id = :listId")
+    public abstract long checksum(@NonNull String listId);
+
+    @Insert
+    abstract void insert(SavedStationEntry entry);
+
+    @Insert
+    public abstract void insertAll(List<SavedStationEntry> entries);
+
+    @Query("UPDATE saved_stations SET station_json = :stationJson WHERE list_id = :listId AND station_uuid = :stationUuid")
+    public abstract void updateStation(@NonNull String listId, @NonNull String stationUuid, @NonNull String stationJson);
+
+    @Query("UPDATE saved_stations SET position = position + :delta WHERE list_id = :listId AND position BETWEEN :from AND :to")
+    abstract void shiftPositions(@NonNull String listId, int from, int to, int delta);
+
+    @Query("UPDATE saved_stations SET position = :to WHERE list_id = :listId AND position = :from")
+    abstract void setPosition(@NonNull String listId, int from, int to);
+
+    @Query("DELETE FROM saved_stations WHERE list_id = :listId AND position = :position")
+    abstract void deleteAt(@NonNull String listId, int position);
+
+    @Query("DELETE FROM saved_stations WHERE list_id = :listId AND position >= :position")
+    public abstract void deleteFrom(@NonNull String listId, int position);
+
+    @Query("DELETE FROM saved_stations WHERE list_id = :listId")
+    public abstract void deleteAll(@NonNull String listId);
+
+    @Transaction
+    public void insertAt(@NonNull SavedStationEntry entry) {
+        shiftPositions(entry.listId, entry.position, Integer.MAX_VALUE, 1);
+        insert(entry);
+    }
+
+    @Transaction
+    public void removeAt(@NonNull String listId, int position) {
+        deleteAt(listId, position);
+        shiftPositions(listId, position + 1, Integer.MAX_VALUE, -1);
+    }
+
+    @Transaction
+    public void move(@NonNull String listId, int from, int to) {
+        if (from == to) {
+            return;
+        }
+
+        // Park the moved station outside of the list while others are shifted
+        setPosition(listId, from, -1);
+        if (from < to) {
+            shiftPositions(listId, from + 1, to, -1);
+        } else {
+            shiftPositions(listId, to, from - 1, 1);
+        }
+        setPosition(listId, -1, to);
+    }
+
+    @Transaction
+    public void replaceAll(@NonNull String listId, @NonNull List<SavedStationEntry> entries) {
+        deleteAll(listId);
+        insertAll(entries);
+    }
+}
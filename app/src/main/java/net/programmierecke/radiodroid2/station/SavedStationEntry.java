@@ -0,0 +1,34 @@
+package net.programmierecke.radiodroid2.station;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * A station stored in one of the persistent station lists (favourites, history).
+ * Order of stations within a list is kept in {@link #position}.
+ */
+@Entity(tableName = "saved_stations", indices = {@Index(value = {"list_id", "position"})})
+public class SavedStationEntry {
+
+    @PrimaryKey(autoGenerate = true)
+    public int uid;
+
+    @ColumnInfo(name = "list_id")
+    @NonNull
+    public String listId;
+
+    @ColumnInfo(name = "position")
+    public int position;
+
+    @ColumnInfo(name = "station_uuid")
+    @NonNull
+    public String stationUuid;
+
+    // Station serialized with DataRadioStation.toJson()
+    @ColumnInfo(name = "station_json")
+    @NonNull
+    public String stationJson;
+}
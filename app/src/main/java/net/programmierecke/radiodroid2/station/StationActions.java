@@ -30,8 +30,10 @@ import net.programmierecke.radiodroid2.R;
 import net.programmierecke.radiodroid2.RadioBrowserServerManager;
 import net.programmierecke.radiodroid2.RadioDroidApp;
 import net.programmierecke.radiodroid2.Utils;
+import net.programmierecke.radiodroid2.alarm.RecordDurationDialog;
 import net.programmierecke.radiodroid2.alarm.TimePickerFragment;
 import net.programmierecke.radiodroid2.players.selector.PlayerType;
+import net.programmierecke.radiodroid2.service.RecordingService;
 import net.programmierecke.radiodroid2.views.ItemListDialog;
 
 import java.lang.ref.WeakReference;
@@ -52,6 +54,18 @@ public class StationActions {
         newFragment.show(activity.getSupportFragmentManager(), "timePicker");
     }
 
+    public static void scheduleRecording(final @NonNull FragmentActivity activity, final @NonNull DataRadioStation station) {
+        final RadioDroidApp radioDroidApp = (RadioDroidApp) activity.getApplicationContext();
+
+        final TimePickerFragment newFragment = new TimePickerFragment();
+        newFragment.setCallback((timePicker, hourOfDay, minute) -> {
+            Log.i(TAG, String.format("Recording time picked %d:%d", hourOfDay, minute));
+            RecordDurationDialog.show(activity, RecordDurationDialog.DEFAULT_MINUTES, minutes ->
+                    radioDroidApp.getAlarmManager().addRecording(station, hourOfDay, minute, minutes));
+        });
+        newFragment.show(activity.getSupportFragmentManager(), "timePicker");
+    }
+
     public static void showWebLinks(final @NonNull FragmentActivity activity, final @NonNull DataRadioStation station) {
         ItemListDialog.create(activity, new int[]{
                 R.string.action_station_visit_website, R.string.action_station_copy_stream_url, R.string.action_station_share
@@ -154,7 +168,10 @@ public class StationActions {
             Snackbar snackbar = Snackbar
                     .make(viewAttachTo, R.string.notify_station_removed_from_list, 6000);
             snackbar.setAnchorView(viewAttachTo);
-            snackbar.setAction(R.string.action_station_removed_from_list_undo, view1 -> favouriteManager.restore(station, removedIdx));
+            // Removal is postponed while favourites are loading, there is nothing to undo yet
+            if (removedIdx != -1) {
+                snackbar.setAction(R.string.action_station_removed_from_list_undo, view1 -> favouriteManager.restore(station, removedIdx));
+            }
             snackbar.show();
         }
     }
@@ -212,6 +229,10 @@ public class StationActions {
                 PlayerType.RADIODROID, () -> Utils.play(radioDroidApp, station));
     }
 
+    public static void recordWithoutPlaying(final @NonNull Context context, final @NonNull DataRadioStation station) {
+        RecordingService.record(context, station);
+    }
+
     private static void vote(final @NonNull Context context, final @NonNull DataRadioStation station) {
         final WeakReference<Context> contextRef = new WeakReference<>(context);
 
@@ -0,0 +1,164 @@
+package net.programmierecke.radiodroid2.station;
+
+import androidx.annotation.NonNull;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Ordered list of stations with an index on {@link DataRadioStation#StationUuid}.
+ * <p>
+ * Lookups by uuid are O(1). Changes re-index only the range of positions they shift,
+ * which is never more than what the underlying array has to shift anyway.
+ * If the same uuid is in the list more than once the index points to its first occurrence.
+ */
+public class StationList extends AbstractList<DataRadioStation> implements RandomAccess {
+    private final ArrayList<DataRadioStation> stations;
+    private final HashMap<String, Integer> uuidToPosition;
+
+    public StationList() {
+        stations = new ArrayList<>();
+        uuidToPosition = new HashMap<>();
+    }
+
+    public StationList(@NonNull Collection<DataRadioStation> initialStations) {
+        stations = new ArrayList<>(initialStations);
+        uuidToPosition = new HashMap<>(stations.size() * 2);
+        reindex(0, stations.size() - 1);
+    }
+
+    // Lets copies of the list be made with a single array copy
+    @Override
+    public Object[] toArray() {
+        return stations.toArray();
+    }
+
+    /**
+     * @return position of the first station with given uuid or -1 if there is none
+     */
+    public int positionOf(String uuid) {
+        Integer position = uuidToPosition.get(uuid);
+        return position != null ? position : -1;
+    }
+
+    public boolean containsUuid(String uuid) {
+        return uuidToPosition.containsKey(uuid);
+    }
+
+    public DataRadioStation getByUuid(String uuid) {
+        Integer position = uuidToPosition.get(uuid);
+        return position != null ? stations.get(position) : null;
+    }
+
+    /**
+     * Should be called after uuids of stations in the list have been changed in place.
+     */
+    public void rebuildIndex() {
+        uuidToPosition.clear();
+        reindex(0, stations.size() - 1);
+    }
+
+    /**
+     * Moves the station from one position to another shifting stations in between.
+     */
+    public void move(int fromPos, int toPos) {
+        if (fromPos == toPos) {
+            return;
+        }
+
+        DataRadioStation station = stations.remove(fromPos);
+        stations.add(toPos, station);
+
+        modCount++;
+        reindex(Math.min(fromPos, toPos), Math.max(fromPos, toPos));
+    }
+
+    @Override
+    public DataRadioStation get(int index) {
+        return stations.get(index);
+    }
+
+    @Override
+    public int size() {
+        return stations.size();
+    }
+
+    @Override
+    public DataRadioStation set(int index, DataRadioStation station) {
+        DataRadioStation oldStation = stations.set(index, station);
+
+        if (!oldStation.StationUuid.equals(station.StationUuid)) {
+            // Old station could have duplicates further in the list, find them.
+            rebuildIndex();
+        }
+
+        return oldStation;
+    }
+
+    @Override
+    public void add(int index, DataRadioStation station) {
+        stations.add(index, station);
+
+        modCount++;
+        reindex(index, stations.size() - 1);
+    }
+
+    @Override
+    public DataRadioStation remove(int index) {
+        DataRadioStation station = stations.remove(index);
+        forget(station, index);
+
+        modCount++;
+        reindex(index, stations.size() - 1);
+
+        return station;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        List<DataRadioStation> range = stations.subList(fromIndex, toIndex);
+        for (DataRadioStation station : range) {
+            forget(station, fromIndex);
+        }
+        range.clear();
+
+        modCount++;
+        reindex(fromIndex, stations.size() - 1);
+    }
+
+    @Override
+    public void clear() {
+        stations.clear();
+        uuidToPosition.clear();
+        modCount++;
+    }
+
+    private void forget(DataRadioStation station, int fromIndex) {
+        Integer position = uuidToPosition.get(station.StationUuid);
+        if (position != null && position >= fromIndex) {
+            uuidToPosition.remove(station.StationUuid);
+        }
+    }
+
+    /**
+     * Updates index for the stations in positions [from, to].
+     * Index for stations before {@code from} must be up to date.
+     */
+    private void reindex(int from, int to) {
+        // Positions of stations which have been in the range are stale
+        for (int i = from; i <= to; i++) {
+            forget(stations.get(i), from);
+        }
+
+        for (int i = from; i <= to; i++) {
+            String uuid = stations.get(i).StationUuid;
+            if (!uuidToPosition.containsKey(uuid)) {
+                uuidToPosition.put(uuid, i);
+            }
+        }
+    }
+}
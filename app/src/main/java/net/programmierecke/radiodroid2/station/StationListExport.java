@@ -0,0 +1,205 @@
+package net.programmierecke.radiodroid2.station;
+
+import androidx.annotation.NonNull;
+
+import net.programmierecke.radiodroid2.utils.Csv;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Streams a saved station list to and from files, one page of stations at a time.
+ * <p>
+ * JSON Lines keeps everything known about the stations, while CSV and M3U only keep what is
+ * useful to other apps. Stations are found by uuid when importing those.
+ */
+public class StationListExport {
+    public enum Format {
+        CSV,
+        JSON_LINES,
+        M3U
+    }
+
+    public interface PageSource {
+        /**
+         * @return up to limit stations starting at the position, ordered by position
+         */
+        @NonNull
+        List<SavedStationEntry> getPage(int fromPosition, int limit);
+    }
+
+    public interface StationSink {
+        void add(@NonNull List<DataRadioStation> stations);
+    }
+
+    public interface UuidSink {
+        void add(@NonNull List<String> uuids);
+    }
+
+    static final int PAGE_SIZE = 100;
+
+    public static final String M3U_PREFIX = "#RADIOBROWSERUUID:";
+
+    private static final String[] CSV_FIELDS = {"stationuuid", "name", "url", "homepage", "favicon", "countrycode", "language", "tags", "codec", "bitrate"};
+
+    /**
+     * @return format by extension of the file, M3U if it is not known
+     */
+    public static @NonNull
+    Format formatOf(@NonNull String fileName) {
+        final String name = fileName.toLowerCase(Locale.US);
+        if (name.endsWith(".csv")) {
+            return Format.CSV;
+        } else if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) {
+            return Format.JSON_LINES;
+        }
+        return Format.M3U;
+    }
+
+    /**
+     * @return number of exported stations
+     */
+    public static int export(@NonNull PageSource source, @NonNull Format format, @NonNull Writer writer) throws IOException {
+        if (format == Format.CSV) {
+            Csv.writeRecord(writer, CSV_FIELDS);
+        } else if (format == Format.M3U) {
+            writer.write("#EXTM3U\n");
+        }
+
+        int count = 0;
+        List<SavedStationEntry> page;
+        do {
+            page = source.getPage(count, PAGE_SIZE);
+            for (SavedStationEntry entry : page) {
+                if (format == Format.JSON_LINES) {
+                    // Stations are already stored as JSON
+                    writer.write(entry.stationJson);
+                    writer.write('\n');
+                    continue;
+                }
+
+                final JSONObject json;
+                try {
+                    json = new JSONObject(entry.stationJson);
+                } catch (JSONException e) {
+                    throw new IOException("Malformed station " + entry.stationUuid + ": " + e.getMessage());
+                }
+
+                if (format == Format.CSV) {
+                    final String[] fields = new String[CSV_FIELDS.length];
+                    for (int i = 0; i < CSV_FIELDS.length; i++) {
+                        fields[i] = json.optString(CSV_FIELDS[i]);
+                    }
+                    Csv.writeRecord(writer, fields);
+                } else {
+                    writer.write(M3U_PREFIX + entry.stationUuid + "\n");
+                    writer.write("#EXTINF:-1," + json.optString("name") + "\n");
+                    writer.write(json.optString("url") + "\n\n");
+                }
+            }
+            count += page.size();
+        } while (page.size() == PAGE_SIZE);
+
+        writer.flush();
+        return count;
+    }
+
+    /**
+     * Reads stations saved in {@link Format#JSON_LINES} and hands them over in batches.
+     *
+     * @return number of imported stations
+     */
+    public static int importStations(@NonNull Reader reader, @NonNull StationSink sink) throws IOException {
+        final BufferedReader lineReader = new BufferedReader(reader);
+        final List<DataRadioStation> batch = new ArrayList<>(PAGE_SIZE);
+        int count = 0;
+
+        String line;
+        while ((line = lineReader.readLine()) != null) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+
+            try {
+                batch.add(DataRadioStation.fromJson(new JSONObject(line)));
+            } catch (JSONException e) {
+                throw new IOException("Malformed station: " + e.getMessage());
+            }
+
+            if (batch.size() == PAGE_SIZE) {
+                sink.add(new ArrayList<>(batch));
+                count += batch.size();
+                batch.clear();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            sink.add(batch);
+            count += batch.size();
+        }
+
+        return count;
+    }
+
+    /**
+     * Reads uuids of stations saved in {@link Format#CSV} or {@link Format#M3U} and hands them
+     * over in batches, e.g. to look them up on the server.
+     *
+     * @return number of read uuids
+     */
+    public static int importUuids(@NonNull Reader reader, @NonNull Format format, @NonNull UuidSink sink) throws IOException {
+        final List<String> batch = new ArrayList<>(PAGE_SIZE);
+        int count = 0;
+
+        if (format == Format.CSV) {
+            final Csv.Reader csvReader = new Csv.Reader(reader);
+            final List<String> header = csvReader.readRecord();
+            final int uuidIndex = header != null ? header.indexOf(CSV_FIELDS[0]) : -1;
+            if (uuidIndex < 0) {
+                throw new IOException("No " + CSV_FIELDS[0] + " column");
+            }
+
+            List<String> record;
+            while ((record = csvReader.readRecord()) != null) {
+                if (uuidIndex < record.size() && !record.get(uuidIndex).trim().isEmpty()) {
+                    batch.add(record.get(uuidIndex).trim());
+                    count += flushIfFull(batch, sink);
+                }
+            }
+        } else {
+            final BufferedReader lineReader = new BufferedReader(reader);
+            String line;
+            while ((line = lineReader.readLine()) != null) {
+                if (line.startsWith(M3U_PREFIX)) {
+                    batch.add(line.substring(M3U_PREFIX.length()).trim());
+                    count += flushIfFull(batch, sink);
+                }
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            sink.add(batch);
+            count += batch.size();
+        }
+
+        return count;
+    }
+
+    private static int flushIfFull(@NonNull List<String> batch, @NonNull UuidSink sink) {
+        if (batch.size() < PAGE_SIZE) {
+            return 0;
+        }
+
+        sink.add(new ArrayList<>(batch));
+        batch.clear();
+        return PAGE_SIZE;
+    }
+}
@@ -60,6 +60,20 @@ object StationPopupMenu {
                         StationActions.share(context, station)
                     }
                 }
+                item {
+                    labelRes = R.string.context_menu_record
+                    icon = R.drawable.ic_start_recording
+                    callback = {
+                        StationActions.recordWithoutPlaying(context, station)
+                    }
+                }
+                item {
+                    labelRes = R.string.context_menu_schedule_recording
+                    icon = R.drawable.ic_start_recording
+                    callback = {
+                        StationActions.scheduleRecording(activity, station)
+                    }
+                }
                 item {
                     labelRes = R.string.context_menu_add_alarm
                     icon = R.drawable.ic_add_alarm_black_24dp
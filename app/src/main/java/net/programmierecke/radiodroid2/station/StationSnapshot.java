@@ -0,0 +1,410 @@
+package net.programmierecke.radiodroid2.station;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import net.programmierecke.radiodroid2.utils.SearchNormalizer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Compact binary form of a list of stations which loads several times faster than JSON.
+ * JSON stays the format for anything which leaves the app.
+ * <p>
+ * Every string is stored once in a string table and referenced by its index, which pays off
+ * for countries, languages, codecs and tags shared by many stations. Stations are decoded
+ * only when they are accessed for the first time.
+ * <p>
+ * Layout, fixed size numbers are big endian:
+ * <pre>
+ * int    MAGIC
+ * int    VERSION
+ * long   tag given by the writer to check whether the snapshot is still up to date
+ * int    SearchNormalizer.VERSION of the stored name search keys
+ * int    string count
+ * int    record count
+ * int    size of the strings section in bytes
+ * int[]  offsets of strings relative to the start of the strings section
+ * int[]  offsets of records relative to the start of the records section
+ * strings section: varint byte length followed by UTF-8 bytes for every string
+ * records section: see {@link #writeRecord}
+ * </pre>
+ */
+public class StationSnapshot {
+    private static final int MAGIC = 0x52445353; // "RDSS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    private static final int FLAG_WORKING = 1;
+    private static final int FLAG_HLS = 1 << 1;
+    private static final int FLAG_DELETED_ON_SERVER = 1 << 2;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Writes stations into a temporary file which then replaces the given one,
+     * so readers see either the old or the new snapshot but never a partially written one.
+     * The same snapshot can be written from several threads at once, the last one wins.
+     */
+    public static void write(@NonNull List<DataRadioStation> stations, long tag, @NonNull File file) throws IOException {
+        final StringTable strings = new StringTable();
+        final ByteSink records = new ByteSink(stations.size() * 64);
+        final int[] recordOffsets = new int[stations.size()];
+
+        for (int i = 0; i < stations.size(); i++) {
+            recordOffsets[i] = records.size();
+            writeRecord(records, strings, stations.get(i));
+        }
+
+        final File tmpFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        final FileOutputStream fileStream = new FileOutputStream(tmpFile);
+        boolean written = false;
+        try {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileStream));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(tag);
+            out.writeInt(SearchNormalizer.VERSION);
+            out.writeInt(strings.offsets.size());
+            out.writeInt(recordOffsets.length);
+            out.writeInt(strings.data.size());
+            for (int offset : strings.offsets) {
+                out.writeInt(offset);
+            }
+            for (int offset : recordOffsets) {
+                out.writeInt(offset);
+            }
+            strings.data.writeTo(out);
+            records.writeTo(out);
+            out.flush();
+            fileStream.getFD().sync();
+            written = true;
+        } finally {
+            fileStream.close();
+            if (!written) {
+                tmpFile.delete();
+            }
+        }
+
+        if (!tmpFile.renameTo(file)) {
+            tmpFile.delete();
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    /**
+     * Maps the snapshot into memory, stations are decoded when accessed.
+     */
+    public static @NonNull
+    Reader open(@NonNull File file) throws IOException {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = randomAccessFile.getChannel();
+            // The mapping stays valid after the channel is closed
+            return new Reader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Record layout: string references are varints of (index + 1) with 0 meaning null,
+     * integers are zigzag varints.
+     * <pre>
+     * uuid, change uuid, id, name, name search key, stream url, home page url, icon url,
+     * country, country code, state, language, codec: string references
+     * tags: varint of (count + 1) with 0 meaning null, followed by a string reference per tag
+     * click count, click trend, votes, refresh retry count, bitrate: integers
+     * flags: byte
+     * </pre>
+     */
+    private static void writeRecord(@NonNull ByteSink out, @NonNull StringTable strings, @NonNull DataRadioStation station) {
+        out.writeVarint(strings.ref(station.StationUuid));
+        out.writeVarint(strings.ref(station.ChangeUuid));
+        out.writeVarint(strings.ref(station.StationId));
+        out.writeVarint(strings.ref(station.Name));
+        out.writeVarint(strings.ref(station.getNameSearchKey()));
+        out.writeVarint(strings.ref(station.StreamUrl));
+        out.writeVarint(strings.ref(station.HomePageUrl));
+        out.writeVarint(strings.ref(station.IconUrl));
+        out.writeVarint(strings.ref(station.Country));
+        out.writeVarint(strings.ref(station.CountryCode));
+        out.writeVarint(strings.ref(station.State));
+        out.writeVarint(strings.ref(station.Language));
+        out.writeVarint(strings.ref(station.Codec));
+
+        if (station.TagsAll == null) {
+            out.writeVarint(0);
+        } else {
+            // Splitting keeps empty tags so joining gives back exactly the same string
+            final String[] tags = station.TagsAll.split(",", -1);
+            out.writeVarint(tags.length + 1);
+            for (String tag : tags) {
+                out.writeVarint(strings.ref(tag));
+            }
+        }
+
+        out.writeSignedVarint(station.ClickCount);
+        out.writeSignedVarint(station.ClickTrend);
+        out.writeSignedVarint(station.Votes);
+        out.writeSignedVarint(station.RefreshRetryCount);
+        out.writeSignedVarint(station.Bitrate);
+
+        int flags = 0;
+        if (station.Working) {
+            flags |= FLAG_WORKING;
+        }
+        if (station.Hls) {
+            flags |= FLAG_HLS;
+        }
+        if (station.DeletedOnServer) {
+            flags |= FLAG_DELETED_ON_SERVER;
+        }
+        out.writeByte(flags);
+    }
+
+    /**
+     * Read-only list of stations backed by a snapshot. Decoded stations and strings are kept,
+     * so every station is decoded at most once and equal strings are shared between stations.
+     * <p>
+     * Reading is safe from multiple threads, at worst a station is decoded twice.
+     */
+    public static class Reader extends AbstractList<DataRadioStation> implements RandomAccess {
+        private final ByteBuffer buffer;
+        private final long tag;
+        private final boolean searchKeysValid;
+        private final int stringOffsetsStart;
+        private final int recordOffsetsStart;
+        private final int stringsStart;
+        private final int recordsStart;
+
+        private final String[] strings;
+        private final DataRadioStation[] stations;
+
+        Reader(@NonNull ByteBuffer buffer) throws IOException {
+            this.buffer = buffer;
+
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a station snapshot");
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new IOException("Unsupported station snapshot version " + buffer.getInt(4));
+            }
+
+            tag = buffer.getLong(8);
+            searchKeysValid = buffer.getInt(16) == SearchNormalizer.VERSION;
+            final int stringCount = buffer.getInt(20);
+            final int recordCount = buffer.getInt(24);
+            final int stringsSize = buffer.getInt(28);
+
+            stringOffsetsStart = HEADER_SIZE;
+            recordOffsetsStart = stringOffsetsStart + stringCount * 4;
+            stringsStart = recordOffsetsStart + recordCount * 4;
+            recordsStart = stringsStart + stringsSize;
+
+            if (stringCount < 0 || recordCount < 0 || stringsSize < 0 || recordsStart > buffer.limit()) {
+                throw new IOException("Truncated station snapshot");
+            }
+
+            strings = new String[stringCount];
+            stations = new DataRadioStation[recordCount];
+        }
+
+        public long getTag() {
+            return tag;
+        }
+
+        @Override
+        public int size() {
+            return stations.length;
+        }
+
+        @Override
+        public DataRadioStation get(int index) {
+            DataRadioStation station = stations[index];
+            if (station == null) {
+                station = decodeRecord(recordsStart + buffer.getInt(recordOffsetsStart + index * 4));
+                stations[index] = station;
+            }
+            return station;
+        }
+
+        private DataRadioStation decodeRecord(int position) {
+            final Cursor cursor = new Cursor(position);
+            final DataRadioStation station = new DataRadioStation();
+
+            station.StationUuid = readString(cursor);
+            station.ChangeUuid = readString(cursor);
+            station.StationId = readString(cursor);
+            station.Name = readString(cursor);
+            final String nameSearchKey = readString(cursor);
+            if (searchKeysValid) {
+                station.nameSearchKey = nameSearchKey;
+            }
+            station.StreamUrl = readString(cursor);
+            station.HomePageUrl = readString(cursor);
+            station.IconUrl = readString(cursor);
+            station.Country = readString(cursor);
+            station.CountryCode = readString(cursor);
+            station.State = readString(cursor);
+            station.Language = readString(cursor);
+            station.Codec = readString(cursor);
+
+            final int tagCount = readVarint(cursor) - 1;
+            if (tagCount > 0) {
+                final StringBuilder tags = new StringBuilder(readString(cursor));
+                for (int i = 1; i < tagCount; i++) {
+                    tags.append(',').append(readString(cursor));
+                }
+                station.TagsAll = tags.toString();
+            }
+
+            station.ClickCount = readSignedVarint(cursor);
+            station.ClickTrend = readSignedVarint(cursor);
+            station.Votes = readSignedVarint(cursor);
+            station.RefreshRetryCount = readSignedVarint(cursor);
+            station.Bitrate = readSignedVarint(cursor);
+
+            final int flags = buffer.get(cursor.position++);
+            station.Working = (flags & FLAG_WORKING) != 0;
+            station.Hls = (flags & FLAG_HLS) != 0;
+            station.DeletedOnServer = (flags & FLAG_DELETED_ON_SERVER) != 0;
+
+            return station;
+        }
+
+        private @Nullable
+        String readString(@NonNull Cursor cursor) {
+            final int ref = readVarint(cursor);
+            if (ref == 0) {
+                return null;
+            }
+
+            final int index = ref - 1;
+            String string = strings[index];
+            if (string == null) {
+                final Cursor stringCursor = new Cursor(stringsStart + buffer.getInt(stringOffsetsStart + index * 4));
+                final byte[] bytes = new byte[readVarint(stringCursor)];
+                for (int i = 0; i < bytes.length; i++) {
+                    bytes[i] = buffer.get(stringCursor.position + i);
+                }
+                string = new String(bytes, UTF_8);
+                strings[index] = string;
+            }
+            return string;
+        }
+
+        // Uses absolute reads only so the buffer's own position is never touched
+        private int readVarint(@NonNull Cursor cursor) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(cursor.position++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        private int readSignedVarint(@NonNull Cursor cursor) {
+            final int value = readVarint(cursor);
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+
+    private static class Cursor {
+        int position;
+
+        Cursor(int position) {
+            this.position = position;
+        }
+    }
+
+    private static class StringTable {
+        final HashMap<String, Integer> indices = new HashMap<>();
+        final List<Integer> offsets = new ArrayList<>();
+        final ByteSink data = new ByteSink(4096);
+
+        /**
+         * @return reference to the string, adding it to the table if needed
+         */
+        int ref(@Nullable String string) {
+            if (string == null) {
+                return 0;
+            }
+
+            Integer index = indices.get(string);
+            if (index == null) {
+                index = offsets.size();
+                indices.put(string, index);
+                offsets.add(data.size());
+
+                final byte[] bytes = string.getBytes(UTF_8);
+                data.writeVarint(bytes.length);
+                data.write(bytes);
+            }
+            return index + 1;
+        }
+    }
+
+    private static class ByteSink {
+        private byte[] bytes;
+        private int size;
+
+        ByteSink(int initialCapacity) {
+            bytes = new byte[Math.max(initialCapacity, 16)];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void writeByte(int b) {
+            ensureCapacity(1);
+            bytes[size++] = (byte) b;
+        }
+
+        void write(byte[] data) {
+            ensureCapacity(data.length);
+            System.arraycopy(data, 0, bytes, size, data.length);
+            size += data.length;
+        }
+
+        void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            writeByte(value);
+        }
+
+        void writeSignedVarint(int value) {
+            writeVarint((value << 1) ^ (value >> 31));
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.write(bytes, 0, size);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+}
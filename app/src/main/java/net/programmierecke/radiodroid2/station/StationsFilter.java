@@ -9,7 +9,9 @@ import androidx.preference.PreferenceManager;
 
 import net.programmierecke.radiodroid2.RadioDroidApp;
 import net.programmierecke.radiodroid2.Utils;
+import net.programmierecke.radiodroid2.players.health.StreamHealthStore;
 import net.programmierecke.radiodroid2.utils.CustomFilter;
+import net.programmierecke.radiodroid2.utils.SearchNormalizer;
 
 import org.jetbrains.annotations.NotNull;
 
@@ -193,8 +195,9 @@ public class StationsFilter extends CustomFilter {
                 Log.d("FILTER", "performFiltering() 4a " + query);
                 ArrayList<WeightedStation> filteredStations = new ArrayList<>();
 
+                final String searchKey = SearchNormalizer.normalize(query);
                 for (DataRadioStation station : stationsToFilter) {
-                    int weight = FuzzySearch.partialRatio(query, station.Name.toLowerCase());
+                    int weight = FuzzySearch.partialRatio(searchKey, station.getNameSearchKey());
                     if (weight > FUZZY_SEARCH_THRESHOLD) {
                         // We will sort stations with similar weight by other metric
                         int compressedWeight = weight / 4;
@@ -217,6 +220,8 @@ public class StationsFilter extends CustomFilter {
                 Log.d("FILTER", "performFiltering() 4b " + query);
                 filteredStationsList = stationsToFilter;
             }
+
+            filteredStationsList = applyStreamHealth(filteredStationsList);
         }
 
         FilterResults filterResults = new FilterResults();
@@ -224,6 +229,40 @@ public class StationsFilter extends CustomFilter {
         return filterResults;
     }
 
+    /**
+     * Moves stations whose streams kept failing on this device to the end of the search
+     * results, or leaves them out if the user chose so. This is known locally, unlike
+     * broken stations which the server reports.
+     */
+    private @NonNull
+    List<DataRadioStation> applyStreamHealth(@NonNull List<DataRadioStation> stations) {
+        RadioDroidApp radioDroidApp = (RadioDroidApp) context.getApplicationContext();
+        StreamHealthStore streamHealthStore = radioDroidApp.getStreamHealthStore();
+
+        SharedPreferences sharedPref = PreferenceManager.getDefaultSharedPreferences(this.context);
+        final boolean hideFailing = sharedPref.getBoolean("hide_failing_stations", false);
+
+        List<DataRadioStation> healthyStations = new ArrayList<>(stations.size());
+        List<DataRadioStation> failingStations = new ArrayList<>();
+        for (DataRadioStation station : stations) {
+            if (streamHealthStore.isChronicallyFailing(station.StationUuid)) {
+                failingStations.add(station);
+            } else {
+                healthyStations.add(station);
+            }
+        }
+
+        if (failingStations.isEmpty()) {
+            return stations;
+        }
+
+        if (!hideFailing) {
+            healthyStations.addAll(failingStations);
+        }
+
+        return healthyStations;
+    }
+
     @Override
     protected void publishResults(CharSequence constraint, FilterResults results) {
         dataProvider.notifyFilteredStationsChanged(lastRemoteSearchStatus, (List<DataRadioStation>) results.values);
@@ -6,6 +6,7 @@ import android.text.TextUtils;
 
 import androidx.annotation.NonNull;
 
+import java.util.HashMap;
 import java.util.Map;
 
 public class StreamLiveInfo implements Parcelable {
@@ -26,6 +27,34 @@ public class StreamLiveInfo implements Parcelable {
         }
     }
 
+    /**
+     * Decodes metadata sent inside of a Shoutcast stream, e.g. "StreamTitle='Artist - Track';".
+     */
+    public static Map<String, String> decodeShoutcastMetadata(@NonNull String metadataStr) {
+        Map<String, String> metadata = new HashMap<>();
+
+        String[] kvs = metadataStr.split(";");
+
+        for (String kv : kvs) {
+            final int n = kv.indexOf('=');
+            if (n < 1) continue;
+
+            final boolean isString = n + 1 < kv.length()
+                    && kv.charAt(kv.length() - 1) == '\''
+                    && kv.charAt(n + 1) == '\'';
+
+            final String key = kv.substring(0, n);
+            final String val = isString ?
+                    kv.substring(n + 2, kv.length() - 1) :
+                    n + 1 < kv.length() ?
+                            kv.substring(n + 1) : "";
+
+            metadata.put(key, val);
+        }
+
+        return metadata;
+    }
+
     public @NonNull
     String getTitle() {
         return title;
@@ -0,0 +1,71 @@
+package net.programmierecke.radiodroid2.utils;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands values published from any thread over to a {@link Receiver} in the thread of the
+ * given executor, usually the main thread. Only the latest value is delivered: values
+ * published while a delivery is still pending replace the pending one, so a burst of
+ * changes costs the receiving thread a single message.
+ * <p>
+ * Publishing never blocks.
+ *
+ * @param <T> type of the value
+ */
+public class CoalescingChannel<T> {
+    public interface Receiver<T> {
+        /**
+         * Will be called in the executor thread.
+         */
+        void receive(@NonNull T value);
+    }
+
+    private final Executor executor;
+    private final Receiver<T> receiver;
+
+    private final AtomicReference<T> pending = new AtomicReference<>();
+    private final AtomicInteger publishedCount = new AtomicInteger();
+    private final AtomicInteger deliveredCount = new AtomicInteger();
+
+    private final Runnable deliverTask = this::deliver;
+
+    public CoalescingChannel(@NonNull Executor executor, @NonNull Receiver<T> receiver) {
+        this.executor = executor;
+        this.receiver = receiver;
+    }
+
+    public void publish(@NonNull T value) {
+        publishedCount.incrementAndGet();
+
+        // Only the first value since the last delivery schedules one
+        if (pending.getAndSet(value) == null) {
+            executor.execute(deliverTask);
+        }
+    }
+
+    /**
+     * @return number of values published so far
+     */
+    public int getPublishedCount() {
+        return publishedCount.get();
+    }
+
+    /**
+     * @return number of values delivered so far, the rest was replaced by newer ones
+     */
+    public int getDeliveredCount() {
+        return deliveredCount.get();
+    }
+
+    private void deliver() {
+        final T value = pending.getAndSet(null);
+        if (value != null) {
+            deliveredCount.incrementAndGet();
+            receiver.receive(value);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package net.programmierecke.radiodroid2.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes comma separated values as described in RFC 4180, one record at a time.
+ */
+public class Csv {
+
+    public static void writeRecord(@NonNull Writer writer, @NonNull String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeField(writer, fields[i] != null ? fields[i] : "");
+        }
+        writer.write("\r\n");
+    }
+
+    private static void writeField(@NonNull Writer writer, @NonNull String field) throws IOException {
+        boolean needsQuotes = false;
+        for (int i = 0; i < field.length() && !needsQuotes; i++) {
+            final char c = field.charAt(i);
+            needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+
+        if (!needsQuotes) {
+            writer.write(field);
+            return;
+        }
+
+        writer.write('"');
+        writer.write(field.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    public static class Reader {
+        private final BufferedReader reader;
+        private final StringBuilder field = new StringBuilder();
+
+        public Reader(@NonNull java.io.Reader reader) {
+            this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        }
+
+        /**
+         * @return fields of the next record or null if there are no more records
+         */
+        public @Nullable
+        List<String> readRecord() throws IOException {
+            int c = reader.read();
+            if (c == -1) {
+                return null;
+            }
+
+            final List<String> fields = new ArrayList<>();
+            field.setLength(0);
+            boolean quoted = false;
+
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        throw new IOException("Quoted field is not terminated");
+                    } else if (c == '"') {
+                        c = reader.read();
+                        if (c != '"') {
+                            // Closing quote, the character after it is not part of the field
+                            quoted = false;
+                            continue;
+                        }
+                        field.append('"');
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n' || c == -1) {
+                    fields.add(field.toString());
+                    return fields;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+
+                c = reader.read();
+            }
+        }
+    }
+}
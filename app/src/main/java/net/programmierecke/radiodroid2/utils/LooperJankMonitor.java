@@ -0,0 +1,121 @@
+package net.programmierecke.radiodroid2.utils;
+
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Printer;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how long the messages of a looper take, by the lines a looper prints before and
+ * after each message when it has a {@link Printer}. Messages longer than a frame on the main
+ * thread are what makes the UI jank.
+ * <p>
+ * Replaces any other printer of the looper while running, so it is meant for debug builds.
+ */
+public class LooperJankMonitor implements Printer {
+    static final long FRAME_MS = 16;
+
+    private final String name;
+
+    private Looper looper;
+
+    // Only used in the looper's thread
+    private long dispatchStart;
+
+    private final AtomicInteger messages = new AtomicInteger();
+    private final AtomicInteger slowMessages = new AtomicInteger();
+    private final AtomicLong busyMs = new AtomicLong();
+    private final AtomicLong longestMs = new AtomicLong();
+    private volatile long startTime;
+
+    public LooperJankMonitor(@NonNull String name) {
+        this.name = name;
+    }
+
+    public synchronized void start(@NonNull Looper looper) {
+        stop();
+
+        this.looper = looper;
+        reset(SystemClock.uptimeMillis());
+        looper.setMessageLogging(this);
+    }
+
+    public synchronized void stop() {
+        if (looper != null) {
+            looper.setMessageLogging(null);
+            looper = null;
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return looper != null;
+    }
+
+    @Override
+    public void println(String line) {
+        onLine(line, SystemClock.uptimeMillis());
+    }
+
+    void reset(long now) {
+        dispatchStart = 0;
+        messages.set(0);
+        slowMessages.set(0);
+        busyMs.set(0);
+        longestMs.set(0);
+        startTime = now;
+    }
+
+    void onLine(@NonNull String line, long now) {
+        if (line.startsWith(">>>>> Dispatching")) {
+            dispatchStart = now;
+        } else if (line.startsWith("<<<<< Finished") && dispatchStart != 0) {
+            final long durationMs = now - dispatchStart;
+            dispatchStart = 0;
+
+            messages.incrementAndGet();
+            busyMs.addAndGet(durationMs);
+            if (durationMs > FRAME_MS) {
+                slowMessages.incrementAndGet();
+            }
+            if (durationMs > longestMs.get()) {
+                longestMs.set(durationMs);
+            }
+        }
+    }
+
+    public int getMessages() {
+        return messages.get();
+    }
+
+    /**
+     * @return number of messages which took longer than a frame
+     */
+    public int getSlowMessages() {
+        return slowMessages.get();
+    }
+
+    public long getBusyMs() {
+        return busyMs.get();
+    }
+
+    public long getLongestMs() {
+        return longestMs.get();
+    }
+
+    @NonNull
+    public String getSummary() {
+        return getSummary(SystemClock.uptimeMillis());
+    }
+
+    @NonNull
+    String getSummary(long now) {
+        final long elapsedMs = Math.max(1, now - startTime);
+        return String.format(Locale.US, "%s: %d messages in %d ms, %d longer than %d ms, longest %d ms, busy %.1f%%",
+                name, getMessages(), elapsedMs, getSlowMessages(), FRAME_MS, getLongestMs(), 100.0 * getBusyMs() / elapsedMs);
+    }
+}
@@ -0,0 +1,121 @@
+package net.programmierecke.radiodroid2.utils;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.Process;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * Measures what playing costs: cpu time of the app, how often playback had to wait for the
+ * network and how much the battery drained, between {@link #start()} and {@link #stop()}.
+ * Comparing runs of the same length with and without low power playback shows what it saves.
+ * <p>
+ * Battery level is only known in whole percents, so runs should take an hour or more.
+ */
+public class PowerUsageMonitor {
+    public interface Counter {
+        long get();
+    }
+
+    static class Sample {
+        final long elapsedMs;
+        final long cpuMs;
+        final long networkReads;
+        // -1 if not known
+        final int batteryPercent;
+
+        Sample(long elapsedMs, long cpuMs, long networkReads, int batteryPercent) {
+            this.elapsedMs = elapsedMs;
+            this.cpuMs = cpuMs;
+            this.networkReads = networkReads;
+            this.batteryPercent = batteryPercent;
+        }
+    }
+
+    private final String name;
+    private final Context context;
+    private final Counter networkReads;
+
+    private Sample startSample;
+    private Sample stopSample;
+
+    /**
+     * @param networkReads counts reads which had to wait for the network
+     */
+    public PowerUsageMonitor(@NonNull String name, @NonNull Context context, @NonNull Counter networkReads) {
+        this.name = name;
+        this.context = context.getApplicationContext();
+        this.networkReads = networkReads;
+    }
+
+    public synchronized void start() {
+        startSample = takeSample();
+        stopSample = null;
+    }
+
+    public synchronized void stop() {
+        if (startSample != null && stopSample == null) {
+            stopSample = takeSample();
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return startSample != null && stopSample == null;
+    }
+
+    /**
+     * @return usage until {@link #stop()} or until now if still running
+     */
+    @NonNull
+    public synchronized String getSummary() {
+        if (startSample == null) {
+            return name + ": not started";
+        }
+
+        return getSummary(name, startSample, stopSample != null ? stopSample : takeSample());
+    }
+
+    @NonNull
+    static String getSummary(@NonNull String name, @NonNull Sample start, @NonNull Sample end) {
+        final long elapsedMs = Math.max(1, end.elapsedMs - start.elapsedMs);
+        final long cpuMs = end.cpuMs - start.cpuMs;
+        final long networkReads = end.networkReads - start.networkReads;
+
+        String battery = "battery unknown";
+        if (start.batteryPercent >= 0 && end.batteryPercent >= 0) {
+            final int drained = start.batteryPercent - end.batteryPercent;
+            battery = String.format(Locale.US, "battery %d%% -> %d%%, %.1f%% per hour",
+                    start.batteryPercent, end.batteryPercent, drained * 3600000.0 / elapsedMs);
+        }
+
+        return String.format(Locale.US, "%s: %d s, cpu %d ms (%.2f%%), %d network waits (%.2f per second), %s",
+                name, elapsedMs / 1000, cpuMs, 100.0 * cpuMs / elapsedMs,
+                networkReads, networkReads * 1000.0 / elapsedMs, battery);
+    }
+
+    private Sample takeSample() {
+        return new Sample(SystemClock.elapsedRealtime(), Process.getElapsedCpuTime(), networkReads.get(), getBatteryPercent());
+    }
+
+    private int getBatteryPercent() {
+        // Sticky broadcast, no receiver is registered
+        final Intent batteryStatus = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (batteryStatus == null) {
+            return -1;
+        }
+
+        final int level = batteryStatus.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        final int scale = batteryStatus.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        if (level < 0 || scale <= 0) {
+            return -1;
+        }
+
+        return level * 100 / scale;
+    }
+}
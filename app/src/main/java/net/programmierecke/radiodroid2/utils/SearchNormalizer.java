@@ -0,0 +1,119 @@
+package net.programmierecke.radiodroid2.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.text.Normalizer;
+
+/**
+ * Converts user visible strings into keys suitable for searching.
+ * <p>
+ * The key is compatibility decomposed (NFKD), stripped of diacritics, transliterated from
+ * Cyrillic and Greek into Latin letters, lower-cased and has its whitespace collapsed.
+ * So "Radio \u0160koda" (with a caron) and "RADIO  SKODA" both end up as "radio skoda".
+ */
+public class SearchNormalizer {
+    /**
+     * Should be increased every time the output of {@link #normalize(String)} changes so that
+     * persisted keys are recomputed.
+     */
+    public static final int VERSION = 1;
+
+    private static final char CYRILLIC_FIRST = '\u0430';
+    private static final String[] CYRILLIC = {
+            "a", "b", "v", "g", "d", "e", "zh", "z", "i", "i", "k", "l", "m", "n", "o", "p", // U+0430 - U+043F
+            "r", "s", "t", "u", "f", "kh", "ts", "ch", "sh", "shch", "", "y", "", "e", "iu", "ia", // U+0440 - U+044F
+            "e", "e", "dj", "g", "ie", "s", "i", "i", "j", "lj", "nj", "c", "k", "i", "u", "dz", // U+0450 - U+045F
+    };
+
+    private static final char GREEK_FIRST = '\u03B1';
+    private static final String[] GREEK = {
+            "a", "v", "g", "d", "e", "z", "i", "th", "i", "k", "l", "m", "n", "x", "o", "p", // U+03B1 - U+03C0
+            "r", "s", "s", "t", "y", "f", "ch", "ps", "o", // U+03C1 - U+03C9
+    };
+
+    public static @NonNull
+    String normalize(@Nullable String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+
+        final String decomposed = Normalizer.normalize(text, Normalizer.Form.NFKD);
+        final StringBuilder builder = new StringBuilder(decomposed.length());
+
+        boolean pendingSpace = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            final char c = Character.toLowerCase(decomposed.charAt(i));
+
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                pendingSpace = builder.length() > 0;
+                continue;
+            }
+
+            if (pendingSpace) {
+                builder.append(' ');
+                pendingSpace = false;
+            }
+
+            appendFolded(builder, c);
+        }
+
+        return builder.toString();
+    }
+
+    private static void appendFolded(@NonNull StringBuilder builder, char c) {
+        if (c < 0x80) {
+            builder.append(c);
+            return;
+        }
+
+        if (c >= CYRILLIC_FIRST && c < CYRILLIC_FIRST + CYRILLIC.length) {
+            builder.append(CYRILLIC[c - CYRILLIC_FIRST]);
+            return;
+        }
+
+        if (c >= GREEK_FIRST && c < GREEK_FIRST + GREEK.length) {
+            builder.append(GREEK[c - GREEK_FIRST]);
+            return;
+        }
+
+        switch (c) {
+            // Latin letters which have no canonical decomposition
+            case '\u00DF': // sharp s
+                builder.append("ss");
+                break;
+            case '\u00E6': // ae
+                builder.append("ae");
+                break;
+            case '\u0153': // oe
+                builder.append("oe");
+                break;
+            case '\u00F8': // o with stroke
+                builder.append('o');
+                break;
+            case '\u0111': // d with stroke
+            case '\u00F0': // eth
+                builder.append('d');
+                break;
+            case '\u0142': // l with stroke
+                builder.append('l');
+                break;
+            case '\u0131': // dotless i
+                builder.append('i');
+                break;
+            case '\u00FE': // thorn
+                builder.append("th");
+                break;
+            // Ukrainian letter outside of the basic Cyrillic range
+            case '\u0491': // ghe with upturn
+                builder.append('g');
+                break;
+            default:
+                builder.append(c);
+        }
+    }
+}
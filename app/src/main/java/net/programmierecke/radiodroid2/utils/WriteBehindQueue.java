@@ -0,0 +1,114 @@
+package net.programmierecke.radiodroid2.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects changes submitted from any thread and hands them over to a {@link Sink} in batches.
+ * <p>
+ * A batch is written at most once per {@code delayMs} and always in the thread of the given
+ * executor, which makes it the single writer as long as the executor is single threaded.
+ * Submitting is cheap so it could be done on the main thread.
+ *
+ * @param <T> type of the change
+ */
+public class WriteBehindQueue<T> {
+    public interface Sink<T> {
+        /**
+         * Will be called in the executor thread.
+         *
+         * @param changes changes in the order they were submitted, never empty
+         */
+        void write(@NonNull List<T> changes);
+    }
+
+    public interface Coalescer<T> {
+        /**
+         * Adds the change to the pending ones, possibly merging it with or dropping
+         * some of those which are still pending.
+         */
+        void coalesce(@NonNull List<T> pending, @NonNull T change);
+    }
+
+    private final ScheduledExecutorService executor;
+    private final long delayMs;
+    private final Sink<T> sink;
+    private final Coalescer<T> coalescer;
+
+    private final Object lock = new Object();
+    private List<T> pending = new ArrayList<>();
+    private ScheduledFuture<?> scheduledWrite;
+
+    public WriteBehindQueue(@NonNull ScheduledExecutorService executor, long delayMs, @NonNull Sink<T> sink) {
+        this(executor, delayMs, sink, List::add);
+    }
+
+    public WriteBehindQueue(@NonNull ScheduledExecutorService executor, long delayMs, @NonNull Sink<T> sink, @NonNull Coalescer<T> coalescer) {
+        this.executor = executor;
+        this.delayMs = delayMs;
+        this.sink = sink;
+        this.coalescer = coalescer;
+    }
+
+    public void submit(@NonNull T change) {
+        synchronized (lock) {
+            coalescer.coalesce(pending, change);
+
+            if (scheduledWrite == null) {
+                scheduledWrite = executor.schedule(this::write, delayMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Writes pending changes without waiting for the delay to pass.
+     *
+     * @return future which is done once all changes submitted before are written
+     */
+    public Future<?> flush() {
+        synchronized (lock) {
+            if (scheduledWrite != null) {
+                scheduledWrite.cancel(false);
+            }
+
+            scheduledWrite = executor.schedule(this::write, 0, TimeUnit.MILLISECONDS);
+            return scheduledWrite;
+        }
+    }
+
+    public boolean hasPendingChanges() {
+        synchronized (lock) {
+            return !pending.isEmpty();
+        }
+    }
+
+    /**
+     * @return the last change which is not handed over to the sink yet, or null if there is none
+     */
+    @Nullable
+    public T getLastPendingChange() {
+        synchronized (lock) {
+            return pending.isEmpty() ? null : pending.get(pending.size() - 1);
+        }
+    }
+
+    private void write() {
+        List<T> changes;
+        synchronized (lock) {
+            changes = pending;
+            pending = new ArrayList<>();
+            scheduledWrite = null;
+        }
+
+        if (!changes.isEmpty()) {
+            sink.write(changes);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package net.programmierecke.radiodroid2.alarm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RadioAlarmManagerTest {
+    private static DataRadioStationAlarm alarm(int hour, int minute, int recordMinutes) {
+        DataRadioStationAlarm alarm = new DataRadioStationAlarm();
+        alarm.hour = hour;
+        alarm.minute = minute;
+        alarm.recordMinutes = recordMinutes;
+        alarm.weekDays = new ArrayList<>();
+        return alarm;
+    }
+
+    private static long time(int year, int month, int day, int hour, int minute) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, day, hour, minute);
+        return calendar.getTimeInMillis();
+    }
+
+    @Test
+    void getNextStartTime_recordingNeedsLeadTime() {
+        final long now = time(2020, Calendar.MAY, 4, 7, 59) + 30 * 1000;
+
+        // Alarms still go off the same day
+        assertEquals(time(2020, Calendar.MAY, 4, 8, 0), RadioAlarmManager.getNextStartTime(alarm(8, 0, 0), now));
+
+        // Too late to resolve the stream in time, so the recording starts the next day
+        assertEquals(time(2020, Calendar.MAY, 5, 8, 0), RadioAlarmManager.getNextStartTime(alarm(8, 0, 30), now));
+        assertEquals(time(2020, Calendar.MAY, 4, 8, 2), RadioAlarmManager.getNextStartTime(alarm(8, 2, 30), now));
+    }
+
+    @Test
+    void getNextStartTime_skipsToWeekDay() {
+        // Monday
+        final long now = time(2020, Calendar.MAY, 4, 12, 0);
+
+        DataRadioStationAlarm alarm = alarm(8, 0, 60);
+        alarm.repeating = true;
+        alarm.weekDays = new ArrayList<>(Arrays.asList(Calendar.THURSDAY - 1));
+
+        assertEquals(time(2020, Calendar.MAY, 7, 8, 0), RadioAlarmManager.getNextStartTime(alarm, now));
+    }
+
+    @Test
+    void getActiveRecordingStartTime_onlyWhileRunning() {
+        // Recording from 23:30 until 00:30
+        DataRadioStationAlarm alarm = alarm(23, 30, 60);
+
+        assertEquals(time(2020, Calendar.MAY, 4, 23, 30),
+                RadioAlarmManager.getActiveRecordingStartTime(alarm, time(2020, Calendar.MAY, 5, 0, 15)));
+        assertEquals(-1, RadioAlarmManager.getActiveRecordingStartTime(alarm, time(2020, Calendar.MAY, 5, 0, 30)));
+        assertEquals(-1, RadioAlarmManager.getActiveRecordingStartTime(alarm, time(2020, Calendar.MAY, 5, 23, 29)));
+
+        alarm.repeating = true;
+        alarm.weekDays = new ArrayList<>(Arrays.asList(Calendar.TUESDAY - 1));
+        // Started on Monday which is not among the week days
+        assertEquals(-1, RadioAlarmManager.getActiveRecordingStartTime(alarm, time(2020, Calendar.MAY, 5, 0, 15)));
+
+        // Alarms which play a station are never resumed
+        assertEquals(-1, RadioAlarmManager.getActiveRecordingStartTime(alarm(23, 30, 0), time(2020, Calendar.MAY, 5, 0, 15)));
+    }
+}
@@ -0,0 +1,128 @@
+package net.programmierecke.radiodroid2.database;
+
+import net.programmierecke.radiodroid2.history.TrackHistoryDao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the retention queries of {@link TrackHistoryDao} against SQLite on the JVM.
+ */
+class HistoryRetentionTest {
+    private static final int BATCH_SIZE = 100;
+
+    private Connection connection;
+
+    @BeforeEach
+    void init() throws Exception {
+        connection = MigratedDatabase.open();
+    }
+
+    @AfterEach
+    void cleanup() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    void deleteOldestBeyondCount_keepsNewestTracksInBatches() throws Exception {
+        insertTracks(1050);
+
+        assertEquals(BATCH_SIZE, deleteBatch(TrackHistoryDao.DELETE_OLDEST_BEYOND_COUNT_QUERY, 800));
+        assertEquals(BATCH_SIZE, deleteBatch(TrackHistoryDao.DELETE_OLDEST_BEYOND_COUNT_QUERY, 800));
+        assertEquals(50, deleteBatch(TrackHistoryDao.DELETE_OLDEST_BEYOND_COUNT_QUERY, 800));
+        assertEquals(0, deleteBatch(TrackHistoryDao.DELETE_OLDEST_BEYOND_COUNT_QUERY, 800));
+
+        assertEquals(800, queryLong("SELECT COUNT(*) FROM track_history"));
+        assertEquals(251, queryLong("SELECT MIN(uid) FROM track_history"));
+        assertEquals(0, queryLong("SELECT COUNT(*) FROM track_history_fts WHERE docid < 251"));
+    }
+
+    @Test
+    void deleteOldestBeyondCount_keepsSmallerHistory() throws Exception {
+        insertTracks(10);
+
+        assertEquals(0, deleteBatch(TrackHistoryDao.DELETE_OLDEST_BEYOND_COUNT_QUERY, 10));
+        assertEquals(10, queryLong("SELECT COUNT(*) FROM track_history"));
+    }
+
+    @Test
+    void deleteStartedBefore_deletesOldTracks() throws Exception {
+        insertTracks(300);
+
+        // Tracks start every minute
+        final long before = 150 * 60 * 1000L;
+        assertEquals(BATCH_SIZE, deleteBatch(TrackHistoryDao.DELETE_STARTED_BEFORE_QUERY, before));
+        assertEquals(50, deleteBatch(TrackHistoryDao.DELETE_STARTED_BEFORE_QUERY, before));
+
+        assertEquals(150, queryLong("SELECT COUNT(*) FROM track_history"));
+        assertEquals(before, queryLong("SELECT MIN(start_time) FROM track_history"));
+    }
+
+    @Test
+    void incrementalVacuum_shrinksDatabase() throws Exception {
+        // Same as done once for the existing databases
+        execute("PRAGMA auto_vacuum = INCREMENTAL");
+        execute("VACUUM");
+        assertEquals(2, queryLong("PRAGMA auto_vacuum"));
+
+        insertTracks(2000);
+        final long pagesBefore = queryLong("PRAGMA page_count");
+
+        while (deleteBatch(TrackHistoryDao.DELETE_OLDEST_BEYOND_COUNT_QUERY, 100) > 0) {
+        }
+        assertEquals(pagesBefore, queryLong("PRAGMA page_count"));
+        assertTrue(queryLong("PRAGMA freelist_count") > 0);
+
+        // Every step of the statement frees one page and JDBC makes only one step,
+        // in the app the cursor is read to the end instead
+        while (queryLong("PRAGMA freelist_count") > 0) {
+            execute("PRAGMA incremental_vacuum");
+        }
+
+        assertTrue(queryLong("PRAGMA page_count") < pagesBefore / 2);
+    }
+
+    private void insertTracks(int count) throws SQLException {
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO track_history(station_uuid, station_name, station_icon_url, track, artist, title, start_time, end_time) VALUES('station', 'Station', '', '', ?, ?, ?, 0)")) {
+            for (int i = 0; i < count; i++) {
+                insert.setString(1, "Artist " + i);
+                insert.setString(2, "Some rather long title of the track number " + i);
+                insert.setLong(3, i * 60 * 1000L);
+                insert.executeUpdate();
+            }
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+
+    // Binds arguments to Room-style :named parameters in their order
+    private int deleteBatch(String sql, long argument) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql.replaceAll(":\\w+", "?"))) {
+            statement.setLong(1, argument);
+            statement.setInt(2, BATCH_SIZE);
+            return statement.executeUpdate();
+        }
+    }
+
+    private long queryLong(String sql) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            return resultSet.getLong(1);
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        MigratedDatabase.execute(connection, sql);
+    }
+}
@@ -0,0 +1,68 @@
+package net.programmierecke.radiodroid2.database;
+
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * In-memory SQLite database on the JVM with the schema of version 1 upgraded by the real migrations.
+ */
+class MigratedDatabase {
+    private static final String SCHEMA_V1 = "schemas/net.programmierecke.radiodroid2.database.RadioDroidDatabase/1.json";
+
+    private static final Migration[] MIGRATIONS = {
+            RadioDroidDatabase.MIGRATION_1_2,
+            RadioDroidDatabase.MIGRATION_2_3,
+            RadioDroidDatabase.MIGRATION_3_4,
+            RadioDroidDatabase.MIGRATION_4_5,
+            RadioDroidDatabase.MIGRATION_5_6,
+            RadioDroidDatabase.MIGRATION_6_7,
+            RadioDroidDatabase.MIGRATION_7_8,
+    };
+
+    static Connection open() throws Exception {
+        Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+
+        JSONArray entities = new JSONObject(new String(Files.readAllBytes(new File(SCHEMA_V1).toPath()), "UTF-8"))
+                .getJSONObject("database").getJSONArray("entities");
+        for (int i = 0; i < entities.length(); i++) {
+            JSONObject entity = entities.getJSONObject(i);
+            execute(connection, entity.getString("createSql").replace("${TABLE_NAME}", entity.getString("tableName")));
+        }
+
+        for (Migration migration : MIGRATIONS) {
+            migration.migrate(asSupportDatabase(connection));
+        }
+
+        return connection;
+    }
+
+    static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    // Migrations only need execSQL
+    static SupportSQLiteDatabase asSupportDatabase(Connection connection) {
+        return (SupportSQLiteDatabase) Proxy.newProxyInstance(SupportSQLiteDatabase.class.getClassLoader(),
+                new Class[]{SupportSQLiteDatabase.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("execSQL") || args.length != 1) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+
+                    execute(connection, (String) args[0]);
+                    return null;
+                });
+    }
+}
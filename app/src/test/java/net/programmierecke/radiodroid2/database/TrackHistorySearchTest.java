@@ -0,0 +1,168 @@
+package net.programmierecke.radiodroid2.database;
+
+import net.programmierecke.radiodroid2.history.TrackHistoryDao;
+import net.programmierecke.radiodroid2.history.TrackHistoryRepository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Runs the real migrations and search query against SQLite on the JVM.
+ */
+class TrackHistorySearchTest {
+    private static final String[] WORDS = {"love", "night", "dance", "radio", "summer", "heart", "blue", "fire", "rain", "dream", "city", "baby", "time", "life", "world"};
+
+    private Connection connection;
+
+    @BeforeEach
+    void init() throws Exception {
+        connection = MigratedDatabase.open();
+    }
+
+    @AfterEach
+    void cleanup() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    void toFtsQuery_quotesWordsAsPrefixes() {
+        assertEquals("\"the*\" \"beatles*\"", TrackHistoryRepository.toFtsQuery("  The  Beatles"));
+        assertEquals("\"AC*\" \"DC*\" \"OR*\"", TrackHistoryRepository.toFtsQuery("AC/DC OR \"*"));
+        assertNull(TrackHistoryRepository.toFtsQuery(" - "));
+    }
+
+    @Test
+    void search_followsInsertsUpdatesAndDeletes() throws Exception {
+        insertTrack(1, "Queen", "Bohemian Rhapsody", "Classic Rock FM");
+        insertTrack(2, "Daft Punk", "One More Time", "Radio Nova");
+        insertTrack(3, "Queen", "Radio Ga Ga", "Radio Nova");
+
+        assertEquals(Arrays.asList(3, 1), search("queen"));
+        assertEquals(Arrays.asList(3, 2), search("nova"));
+        assertEquals(Arrays.asList(3), search("queen radi"));
+
+        execute("UPDATE track_history SET title = 'Under Pressure' WHERE uid = 3");
+        assertEquals(Arrays.asList(3), search("pressure"));
+        assertEquals(Arrays.asList(), search("ga"));
+
+        execute("DELETE FROM track_history WHERE uid = 1");
+        assertEquals(Arrays.asList(3), search("queen"));
+    }
+
+    @Test
+    void search_findsSameTracksAsScan() throws Exception {
+        insertTracks(1000, 100);
+
+        List<Integer> found = search("artist 99");
+
+        assertEquals(scan("Artist 99"), found);
+        assertEquals(10, found.size());
+    }
+
+    /**
+     * Seeds 100k tracks and compares the FTS query with scanning the history using LIKE.
+     * Times include counting all matches, as the paged list does for placeholders.
+     * Run with -Dbenchmarks=true.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void benchmark_search100kTracks() throws Exception {
+        final int count = 100000;
+        insertTracks(count, 5000);
+
+        // Warm up
+        search("artist 4999");
+        scan("Artist 4999");
+
+        long start = System.nanoTime();
+        List<Integer> found = search("artist 4999");
+        final long ftsNs = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        List<Integer> scanned = scan("Artist 4999");
+        final long scanNs = System.nanoTime() - start;
+
+        System.out.println(String.format("Searching %d tracks: FTS %.1f ms, LIKE scan %.1f ms",
+                count, ftsNs / 1e6, scanNs / 1e6));
+
+        assertEquals(scanned, found);
+    }
+
+    private void insertTracks(int count, int artistCount) throws SQLException {
+        final Random random = new Random(1);
+
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO track_history(station_uuid, station_name, station_icon_url, track, artist, title, start_time, end_time) VALUES('', ?, '', '', ?, ?, 0, 0)")) {
+            for (int i = 0; i < count; i++) {
+                insert.setString(1, "Station " + (i % 300));
+                insert.setString(2, "Artist " + (i % artistCount));
+                insert.setString(3, WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " t" + i);
+                insert.executeUpdate();
+            }
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+
+    private void insertTrack(int uid, String artist, String title, String stationName) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO track_history(uid, station_uuid, station_name, station_icon_url, track, artist, title, start_time, end_time) VALUES(?, '', ?, '', '', ?, ?, 0, 0)")) {
+            insert.setInt(1, uid);
+            insert.setString(2, stationName);
+            insert.setString(3, artist);
+            insert.setString(4, title);
+            insert.executeUpdate();
+        }
+    }
+
+    // Same queries Room runs for a page of the positional data source
+    private List<Integer> search(String query) throws SQLException {
+        final String sql = TrackHistoryDao.SEARCH_HISTORY_QUERY.replace(":ftsQuery", "?");
+        final String ftsQuery = TrackHistoryRepository.toFtsQuery(query);
+
+        try (PreparedStatement countStatement = connection.prepareStatement("SELECT COUNT(*) FROM (" + sql + ")")) {
+            countStatement.setString(1, ftsQuery);
+            countStatement.executeQuery().close();
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement("SELECT * FROM (" + sql + ") LIMIT 15 OFFSET 0")) {
+            statement.setString(1, ftsQuery);
+            return uids(statement.executeQuery());
+        }
+    }
+
+    private List<Integer> scan(String text) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT * FROM track_history WHERE artist LIKE ? OR title LIKE ? OR station_name LIKE ? ORDER BY uid DESC LIMIT 15")) {
+            for (int i = 1; i <= 3; i++) {
+                statement.setString(i, "%" + text + "%");
+            }
+            return uids(statement.executeQuery());
+        }
+    }
+
+    private static List<Integer> uids(ResultSet resultSet) throws SQLException {
+        List<Integer> uids = new ArrayList<>();
+        while (resultSet.next()) {
+            uids.add(resultSet.getInt("uid"));
+        }
+        resultSet.close();
+        return uids;
+    }
+
+    private void execute(String sql) throws SQLException {
+        MigratedDatabase.execute(connection, sql);
+    }
+}
@@ -0,0 +1,187 @@
+package net.programmierecke.radiodroid2.database;
+
+import net.programmierecke.radiodroid2.history.TrackStatsDao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Checks that rollups maintained by {@link TrackStatsTriggers} match the history.
+ */
+class TrackStatsTest {
+    private static final List<String> ROLLUP_TABLES = Arrays.asList("daily_station_stats", "daily_artist_stats", "daily_track_stats");
+
+    private static final long START_TIME = 1600000000000L;
+    private static final int DAY_MS = 24 * 60 * 60 * 1000;
+
+    private Connection connection;
+    private Random random;
+    private long time;
+
+    @BeforeEach
+    void init() throws Exception {
+        connection = MigratedDatabase.open();
+        random = new Random(1);
+        time = START_TIME;
+    }
+
+    @AfterEach
+    void cleanup() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    void rollups_followHistoryChanges() throws Exception {
+        for (int i = 0; i < 2000; i++) {
+            playNextTrack();
+
+            if (random.nextInt(10) == 0) {
+                // Same track is resumed
+                execute("UPDATE track_history SET end_time = 0 WHERE uid = (SELECT MAX(uid) FROM track_history)");
+            }
+        }
+
+        List<List<List<Object>>> maintained = readRollups();
+        assertFalse(maintained.get(0).isEmpty());
+
+        TrackStatsTriggers.rebuild(MigratedDatabase.asSupportDatabase(connection));
+
+        assertEquals(readRollups(), maintained);
+    }
+
+    @Test
+    void rollups_surviveHistoryTruncation() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            playNextTrack();
+        }
+        List<List<List<Object>>> rollups = readRollups();
+
+        execute("DELETE FROM track_history WHERE uid < 90");
+
+        assertEquals(rollups, readRollups());
+    }
+
+    /**
+     * Compares reading a month of statistics from rollups with aggregating the raw history
+     * of 100k tracks. Run with -Dbenchmarks=true.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void benchmark_statsFromRollups() throws Exception {
+        connection.setAutoCommit(false);
+        for (int i = 0; i < 100000; i++) {
+            playNextTrack();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+
+        final int toDay = (int) (time / DAY_MS);
+        final int fromDay = toDay - 30;
+
+        // Warm up
+        queryFromRollups(fromDay, toDay);
+        queryFromHistory(fromDay, toDay);
+
+        long start = System.nanoTime();
+        List<List<Object>> fromRollups = queryFromRollups(fromDay, toDay);
+        final long rollupsNs = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        List<List<Object>> fromHistory = queryFromHistory(fromDay, toDay);
+        final long historyNs = System.nanoTime() - start;
+
+        System.out.println(String.format("Statistics over 100000 tracks: rollups %.1f ms, raw history %.1f ms",
+                rollupsNs / 1e6, historyNs / 1e6));
+
+        assertFalse(fromRollups.isEmpty());
+        assertFalse(fromHistory.isEmpty());
+    }
+
+    private List<List<Object>> queryFromRollups(int fromDay, int toDay) throws SQLException {
+        List<List<Object>> rows = new ArrayList<>();
+        rows.addAll(query(TrackStatsDao.TOP_ARTISTS_QUERY, "station1", fromDay, toDay, 10));
+        rows.addAll(query(TrackStatsDao.LISTENING_TIME_PER_DAY_QUERY, fromDay, toDay));
+        rows.addAll(query(TrackStatsDao.MOST_HEARD_TRACKS_QUERY, fromDay, toDay, 10));
+        return rows;
+    }
+
+    private List<List<Object>> queryFromHistory(int fromDay, int toDay) throws SQLException {
+        final String listenedMs = "(CASE WHEN end_time > start_time THEN end_time - start_time ELSE 0 END)";
+        final long from = (long) fromDay * DAY_MS;
+        final long to = (long) (toDay + 1) * DAY_MS;
+
+        List<List<Object>> rows = new ArrayList<>();
+        rows.addAll(query("SELECT artist, COUNT(*) AS play_count FROM track_history WHERE station_uuid = ? AND start_time >= ? AND start_time < ? " +
+                "GROUP BY artist ORDER BY play_count DESC LIMIT 10", "station1", from, to));
+        rows.addAll(query("SELECT start_time / " + DAY_MS + " AS day, SUM(" + listenedMs + ") FROM track_history WHERE start_time >= ? AND start_time < ? " +
+                "GROUP BY day ORDER BY day", from, to));
+        rows.addAll(query("SELECT artist, title, COUNT(*) AS play_count, SUM(" + listenedMs + ") AS listened_ms FROM track_history WHERE start_time >= ? AND start_time < ? " +
+                "GROUP BY artist, title ORDER BY play_count DESC, listened_ms DESC LIMIT 10", from, to));
+        return rows;
+    }
+
+    // Ends the currently playing track and starts a new one
+    private void playNextTrack() throws SQLException {
+        time += random.nextInt(10 * 60 * 1000);
+        try (PreparedStatement update = connection.prepareStatement("UPDATE track_history SET end_time = ? WHERE uid = (SELECT MAX(uid) FROM track_history) AND end_time = 0")) {
+            update.setLong(1, time);
+            update.executeUpdate();
+        }
+
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO track_history(station_uuid, station_icon_url, track, artist, title, start_time, end_time) VALUES(?, '', '', ?, ?, ?, 0)")) {
+            insert.setString(1, "station" + random.nextInt(10));
+            insert.setString(2, "artist" + random.nextInt(30));
+            insert.setString(3, "title" + random.nextInt(5));
+            insert.setLong(4, time);
+            insert.executeUpdate();
+        }
+    }
+
+    private List<List<List<Object>>> readRollups() throws SQLException {
+        List<List<List<Object>>> rollups = new ArrayList<>();
+        for (String table : ROLLUP_TABLES) {
+            rollups.add(query("SELECT * FROM " + table + " ORDER BY 1, 2, 3"));
+        }
+        return rollups;
+    }
+
+    // Binds arguments to Room-style :named parameters in their order
+    private List<List<Object>> query(String sql, Object... args) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql.replaceAll(":\\w+", "?"))) {
+            for (int i = 0; i < args.length; i++) {
+                statement.setObject(i + 1, args[i]);
+            }
+
+            List<List<Object>> rows = new ArrayList<>();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                final int columns = resultSet.getMetaData().getColumnCount();
+                while (resultSet.next()) {
+                    List<Object> row = new ArrayList<>();
+                    for (int column = 1; column <= columns; column++) {
+                        row.add(resultSet.getObject(column));
+                    }
+                    rows.add(row);
+                }
+            }
+            return rows;
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        MigratedDatabase.execute(connection, sql);
+    }
+}
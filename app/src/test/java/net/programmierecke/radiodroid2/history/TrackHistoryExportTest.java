@@ -0,0 +1,169 @@
+package net.programmierecke.radiodroid2.history;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TrackHistoryExportTest {
+
+    @Test
+    void csv_roundTripsTricky() throws Exception {
+        final List<TrackHistoryEntry> tracks = trickyTracks();
+        assertEquals(tracks, roundTrip(tracks, TrackHistoryExport.Format.CSV));
+    }
+
+    @Test
+    void jsonLines_roundTripsTricky() throws Exception {
+        final List<TrackHistoryEntry> tracks = trickyTracks();
+        assertEquals(tracks, roundTrip(tracks, TrackHistoryExport.Format.JSON_LINES));
+    }
+
+    @Test
+    void export_pagesThroughHistory() throws Exception {
+        final List<TrackHistoryEntry> tracks = new ArrayList<>();
+        for (int i = 0; i < TrackHistoryExport.PAGE_SIZE * 2 + 1; i++) {
+            tracks.add(track(i + 1));
+        }
+
+        final List<Integer> requestedPages = new ArrayList<>();
+        final int count = TrackHistoryExport.export((afterUid, limit) -> {
+            requestedPages.add(afterUid);
+            return page(tracks, afterUid, limit);
+        }, TrackHistoryExport.Format.CSV, new StringWriter());
+
+        assertEquals(tracks.size(), count);
+        assertEquals(Arrays.asList(0, TrackHistoryExport.PAGE_SIZE, TrackHistoryExport.PAGE_SIZE * 2), requestedPages);
+    }
+
+    @Test
+    void import_insertsInBatches() throws Exception {
+        StringWriter writer = new StringWriter();
+        final List<TrackHistoryEntry> tracks = new ArrayList<>();
+        for (int i = 0; i < TrackHistoryExport.PAGE_SIZE + 10; i++) {
+            tracks.add(track(i + 1));
+        }
+        TrackHistoryExport.export((afterUid, limit) -> page(tracks, afterUid, limit), TrackHistoryExport.Format.JSON_LINES, writer);
+
+        final List<Integer> batchSizes = new ArrayList<>();
+        final int count = TrackHistoryExport.importHistory(new StringReader(writer.toString()), TrackHistoryExport.Format.JSON_LINES,
+                batch -> batchSizes.add(batch.size()));
+
+        assertEquals(tracks.size(), count);
+        assertEquals(Arrays.asList(TrackHistoryExport.PAGE_SIZE, 10), batchSizes);
+    }
+
+    @Test
+    void import_rejectsMalformedTime() {
+        final String csv = "start_time,title\r\n" + "yesterday,Title\r\n";
+        assertThrows(IOException.class, () -> TrackHistoryExport.importHistory(new StringReader(csv), TrackHistoryExport.Format.CSV, batch -> {
+        }));
+    }
+
+    @Test
+    void formatOf_usesExtension() {
+        assertEquals(TrackHistoryExport.Format.CSV, TrackHistoryExport.formatOf("history.CSV"));
+        assertEquals(TrackHistoryExport.Format.JSON_LINES, TrackHistoryExport.formatOf("history.jsonl"));
+        assertEquals(null, TrackHistoryExport.formatOf("history.m3u"));
+    }
+
+    /**
+     * Exports and imports 100k tracks generated on the fly, so only the exporter and
+     * importer hold tracks in memory. Run with -Dbenchmarks=true.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void benchmark_100kTracks() throws Exception {
+        final int count = 100000;
+
+        for (TrackHistoryExport.Format format : TrackHistoryExport.Format.values()) {
+            final StringWriter writer = new StringWriter();
+            long start = System.nanoTime();
+            TrackHistoryExport.export((afterUid, limit) -> {
+                List<TrackHistoryEntry> page = new ArrayList<>();
+                for (int uid = afterUid + 1; uid <= Math.min(afterUid + limit, count); uid++) {
+                    page.add(track(uid));
+                }
+                return page;
+            }, format, writer);
+            final long exportNs = System.nanoTime() - start;
+
+            final String exported = writer.toString();
+            final int[] imported = {0};
+            start = System.nanoTime();
+            TrackHistoryExport.importHistory(new StringReader(exported), format, batch -> imported[0] += batch.size());
+            final long importNs = System.nanoTime() - start;
+
+            System.out.println(String.format("%s, %d tracks, %d KB: export %.0f tracks/s, import %.0f tracks/s",
+                    format, count, exported.length() / 1024, count / (exportNs / 1e9), count / (importNs / 1e9)));
+
+            assertEquals(count, imported[0]);
+        }
+    }
+
+    private static List<TrackHistoryEntry> roundTrip(List<TrackHistoryEntry> tracks, TrackHistoryExport.Format format) throws IOException {
+        final StringWriter writer = new StringWriter();
+        TrackHistoryExport.export((afterUid, limit) -> page(tracks, afterUid, limit), format, writer);
+
+        final List<TrackHistoryEntry> imported = new ArrayList<>();
+        TrackHistoryExport.importHistory(new StringReader(writer.toString()), format, imported::addAll);
+
+        // Imported tracks get new uids
+        for (int i = 0; i < imported.size(); i++) {
+            imported.get(i).uid = tracks.get(i).uid;
+        }
+        return imported;
+    }
+
+    private static List<TrackHistoryEntry> page(List<TrackHistoryEntry> tracks, int afterUid, int limit) {
+        List<TrackHistoryEntry> page = new ArrayList<>();
+        for (TrackHistoryEntry track : tracks) {
+            if (track.uid > afterUid && page.size() < limit) {
+                page.add(track);
+            }
+        }
+        return page;
+    }
+
+    private static List<TrackHistoryEntry> trickyTracks() {
+        TrackHistoryEntry quotes = track(1);
+        quotes.artist = "Simon & Garfunkel, \"live\"";
+        quotes.title = "Line one\r\nline two\nthree";
+
+        TrackHistoryEntry unicode = track(2);
+        unicode.artist = "Beyoncé";
+        unicode.title = "Спокойной ночи 🌙";
+        unicode.artUrl = null;
+
+        TrackHistoryEntry playing = track(3);
+        playing.endTime = new Date(0);
+        playing.title = "";
+        playing.stationName = ",";
+
+        return new ArrayList<>(Arrays.asList(quotes, unicode, playing));
+    }
+
+    private static TrackHistoryEntry track(int uid) {
+        TrackHistoryEntry track = new TrackHistoryEntry();
+        track.uid = uid;
+        track.stationUuid = "960e57c5-0601-11e8-ae97-52543be04c81";
+        track.stationName = "Station " + (uid % 100);
+        track.stationIconUrl = "https://example.com/icon.png";
+        track.artist = "Artist " + (uid % 5000);
+        track.title = "Title " + uid;
+        track.track = "Artist " + (uid % 5000) + " - Title " + uid;
+        track.artUrl = "https://example.com/art/" + uid + ".jpg";
+        track.startTime = new Date(1600000000123L + uid * 180000L);
+        track.endTime = new Date(1600000000123L + uid * 180000L + 179000L);
+        return track;
+    }
+}
@@ -0,0 +1,26 @@
+package net.programmierecke.radiodroid2.history;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TrackHistoryRetentionTest {
+
+    @Test
+    void tracksToKeep_withoutLimits_keepsAll() {
+        assertEquals(-1, TrackHistoryRetention.tracksToKeep(0, 0, 1000000, 1000));
+    }
+
+    @Test
+    void tracksToKeep_usesTrackLimit() {
+        assertEquals(1000, TrackHistoryRetention.tracksToKeep(1000, 0, 1000000, 5000));
+        assertEquals(1000, TrackHistoryRetention.tracksToKeep(1000, 2000000, 1000000, 5000));
+    }
+
+    @Test
+    void tracksToKeep_sharesSizeBetweenTracks() {
+        assertEquals(2500, TrackHistoryRetention.tracksToKeep(0, 500000, 1000000, 5000));
+        assertEquals(1000, TrackHistoryRetention.tracksToKeep(1000, 500000, 1000000, 5000));
+        assertEquals(500, TrackHistoryRetention.tracksToKeep(1000, 100000, 1000000, 5000));
+    }
+}
@@ -0,0 +1,86 @@
+package net.programmierecke.radiodroid2.history;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TrackHistoryWriterTest {
+    private static final int LONG = TrackHistoryWriter.DEBOUNCE_MS;
+
+    private final List<TrackHistoryEntry> pending = new ArrayList<>();
+    private long time = 0;
+
+    @Test
+    void coalesceTracks_keepsTracksWhichPlayedLongEnough() {
+        start("A", LONG);
+        start("B", LONG);
+        start("C", LONG);
+
+        assertEquals(Arrays.asList("A", "B", "C"), pendingTitles());
+    }
+
+    @Test
+    void coalesceTracks_dropsRapidlyReplacedTitles() {
+        start("A", LONG);
+        start("Artist - ", 100);
+        start("Artist - Title", LONG);
+
+        assertEquals(Arrays.asList("A", "Artist - Title"), pendingTitles());
+    }
+
+    @Test
+    void coalesceTracks_resumesTitleAfterFlipFlop() {
+        start("A", LONG);
+        start("B", 1000);
+        start("A", 1000);
+        start("B", 1000);
+        start("A", LONG);
+
+        assertEquals(Arrays.asList("A"), pendingTitles());
+        assertEquals(0, pending.get(0).startTime.getTime());
+    }
+
+    @Test
+    void coalesceTracks_keepsShortTrackBeforeStationSwitch() {
+        start("A", LONG);
+        start("B", 1000);
+        start("station2", "C", LONG);
+
+        assertEquals(Arrays.asList("A", "B", "C"), pendingTitles());
+    }
+
+    @Test
+    void coalesceTracks_keepsSameTitleOfAnotherStation() {
+        start("A", 1000);
+        start("station2", "A", LONG);
+
+        assertEquals(Arrays.asList("A", "A"), pendingTitles());
+    }
+
+    private void start(String title, int playsForMs) {
+        start("station1", title, playsForMs);
+    }
+
+    private void start(String stationUuid, String title, int playsForMs) {
+        TrackHistoryEntry track = new TrackHistoryEntry();
+        track.stationUuid = stationUuid;
+        track.title = title;
+        track.startTime = new Date(time);
+        time += playsForMs;
+
+        TrackHistoryWriter.coalesceTracks(pending, track);
+    }
+
+    private List<String> pendingTitles() {
+        List<String> titles = new ArrayList<>();
+        for (TrackHistoryEntry track : pending) {
+            titles.add(track.title);
+        }
+        return titles;
+    }
+}
@@ -0,0 +1,67 @@
+package net.programmierecke.radiodroid2.players;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BufferLevelObservableTest {
+    private final List<Runnable> mainThreadTasks = new ArrayList<>();
+    private final List<Long> samplingIntervals = new ArrayList<>();
+    private BufferLevelObservable observable;
+
+    @BeforeEach
+    void setUp() {
+        observable = new BufferLevelObservable(mainThreadTasks::add);
+        observable.setSamplingListener(samplingIntervals::add);
+    }
+
+    private void runMainThreadTasks() {
+        while (!mainThreadTasks.isEmpty()) {
+            mainThreadTasks.remove(0).run();
+        }
+    }
+
+    @Test
+    void subscribers_decideSamplingInterval() {
+        final BufferLevelObservable.Subscriber first = bufferedMs -> {
+        };
+        final BufferLevelObservable.Subscriber second = bufferedMs -> {
+        };
+
+        observable.subscribe(first, 1000);
+        observable.subscribe(second, 250);
+        observable.unsubscribe(second);
+        observable.unsubscribe(first);
+
+        // Initial interval when the listener was set, then the changes
+        assertEquals(Arrays.asList(0L, 1000L, 250L, 1000L, 0L), samplingIntervals);
+        assertEquals(0, observable.getSamplingIntervalMs());
+    }
+
+    @Test
+    void publish_deliversLatestLevelToSubscribers() {
+        final List<Long> received = new ArrayList<>();
+        final BufferLevelObservable.Subscriber subscriber = received::add;
+
+        observable.subscribe(subscriber, 1000);
+        // Told the current level at once
+        assertEquals(Collections.singletonList(-1L), received);
+
+        observable.publish(1500);
+        observable.publish(1200);
+        runMainThreadTasks();
+        assertEquals(Arrays.asList(-1L, 1200L), received);
+        assertEquals(1200, observable.getBufferedMs());
+
+        observable.unsubscribe(subscriber);
+        observable.publish(900);
+        runMainThreadTasks();
+        assertEquals(Arrays.asList(-1L, 1200L), received);
+    }
+}
@@ -1,5 +1,6 @@
 package net.programmierecke.radiodroid2.players.exoplayer;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.google.android.exoplayer2.upstream.DataSource;
@@ -77,10 +78,69 @@ class IcyDataSourceTest {
         assertEquals(0, icyDataSource.metadataBytesToSkip);
     }
 
+    @Test
+    void sendToDataSourceListenersWithoutMetadata_readsMetadataInOrder() {
+        final String metadata = "StreamTitle='Artist - Track';";
+        final byte[] metadataFrame = new byte[32];
+        System.arraycopy(metadata.getBytes(), 0, metadataFrame, 0, metadata.length());
+        final String frame = "\u0002" + new String(metadataFrame);
+
+        icyDataSource.remainingUntilMetadata = "audioN".length();
+        icyDataSource.shoutcastInfo.metadataOffset = "audioN".length();
+        icyDataSource.metadataBytesToSkip = 0;
+
+        // Split in the middle of the metadata
+        final byte[] buffer = ("audio1" + frame + "audio2").getBytes();
+        final int split = "audio1".length() + 10;
+        icyDataSource.sendToDataSourceListenersWithoutMetadata(buffer, 0, split);
+        icyDataSource.sendToDataSourceListenersWithoutMetadata(buffer, split, buffer.length - split);
+
+        assertEquals("audio1[Artist - Track]audio2", transferredBytesWithoutMetadata.toString());
+    }
+
+    @Test
+    void sendToDataSourceListenersWithoutMetadata_handlesLongMetadata() {
+        final byte[] metadataFrame = new byte[1 + 200 * 16];
+        metadataFrame[0] = (byte) 200;
+        final byte[] title = "StreamTitle='Long';".getBytes();
+        System.arraycopy(title, 0, metadataFrame, 1, title.length);
+
+        icyDataSource.remainingUntilMetadata = 0;
+        icyDataSource.shoutcastInfo.metadataOffset = "audioN".length();
+        icyDataSource.metadataBytesToSkip = 0;
+
+        final byte[] buffer = new byte[metadataFrame.length + "audio1".length()];
+        System.arraycopy(metadataFrame, 0, buffer, 0, metadataFrame.length);
+        System.arraycopy("audio1".getBytes(), 0, buffer, metadataFrame.length, "audio1".length());
+        icyDataSource.sendToDataSourceListenersWithoutMetadata(buffer, 0, buffer.length);
+
+        assertEquals("[Long]audio1", transferredBytesWithoutMetadata.toString());
+    }
+
+    @Test
+    void getNextBatchReadBytes_followsReceiveRate() {
+        // 16 KiB per second
+        assertEquals(32 * 1024, IcyDataSource.getNextBatchReadBytes(16 * 1024, 1000));
+        assertEquals(16 * 1024, IcyDataSource.getNextBatchReadBytes(32 * 1024, 4000));
+        assertEquals(IcyDataSource.MAX_BATCH_READ_BYTES, IcyDataSource.getNextBatchReadBytes(48 * 1024, 1000));
+    }
+
+    @Test
+    void getNextBatchReadBytes_growsAtMostTwice() {
+        // Received at once from what was already buffered
+        assertEquals(16 * 1024, IcyDataSource.getNextBatchReadBytes(8 * 1024, 0));
+    }
+
+    @Test
+    void getNextBatchReadBytes_stopsBatchingSlowStreams() {
+        // 2 KiB per second
+        assertEquals(0, IcyDataSource.getNextBatchReadBytes(8 * 1024, 4000));
+    }
+
     static class TestDataSourceListener implements IcyDataSource.IcyDataSourceListener {
 
         @Override
-        public void onDataSourceConnected() {
+        public void onDataSourceConnected(@NonNull String contentType) {
 
         }
 
@@ -108,6 +168,11 @@ class IcyDataSourceTest {
         public void onDataSourceBytesRead(byte[] buffer, int offset, int length) {
             transferredBytesWithoutMetadata.append(new String(buffer, offset,length));
         }
+
+        @Override
+        public void onDataSourceStreamLiveInfoRead(StreamLiveInfo streamLiveInfo) {
+            transferredBytesWithoutMetadata.append("[").append(streamLiveInfo.getTitle()).append("]");
+        }
     }
 
     static class TestTransferListener implements TransferListener {
@@ -0,0 +1,129 @@
+package net.programmierecke.radiodroid2.players.health;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamHealthStoreTest {
+    private static final String STATION = "uuid";
+    private static final String RESOLVED_URL = "http://example.com/stream";
+    private static final String STATION_URL = "http://mirror.example.com/stream";
+
+    private final List<StreamHealthEntry> savedEntries = new ArrayList<>();
+    private StreamHealthStore store;
+
+    @BeforeEach
+    void setUp() {
+        final StreamHealthDao dao = new StreamHealthDao() {
+            @Override
+            public void insert(StreamHealthEntry entry) {
+                savedEntries.add(entry);
+            }
+
+            @Override
+            public List<StreamHealthEntry> getAll() {
+                return new ArrayList<>(savedEntries);
+            }
+
+            @Override
+            public void deleteOlderThan(long before) {
+                savedEntries.removeIf(entry -> entry.lastAttempt < before);
+            }
+        };
+
+        store = new StreamHealthStore(dao, Runnable::run);
+    }
+
+    @Test
+    void candidates_preferResolvedUrlUntilItFails() {
+        assertEquals(Arrays.asList(RESOLVED_URL, STATION_URL), store.getCandidates(STATION, RESOLVED_URL, STATION_URL));
+
+        store.recordConnectFailure(STATION, RESOLVED_URL);
+        store.recordSession(STATION, STATION_URL, 1200, 60000, 0, 0);
+
+        assertEquals(Arrays.asList(STATION_URL, RESOLVED_URL), store.getCandidates(STATION, RESOLVED_URL, STATION_URL));
+        assertTrue(store.isReliable(STATION, STATION_URL));
+        assertFalse(store.isReliable(STATION, RESOLVED_URL));
+    }
+
+    @Test
+    void candidates_includeKnownUrlsAndSkipPlaylists() {
+        store.recordSession(STATION, STATION_URL, 1200, 60000, 0, 0);
+
+        // Server could not be reached and the station's URL is a playlist
+        assertEquals(Arrays.asList(STATION_URL), store.getCandidates(STATION, null, "http://example.com/listen.pls"));
+    }
+
+    @Test
+    void sessions_withoutResultAreIgnored() {
+        store.recordSession(STATION, RESOLVED_URL, 0, 0, 0, 0);
+
+        assertTrue(savedEntries.isEmpty());
+    }
+
+    @Test
+    void station_failsChronicallyOnlyIfAllUrlsDo() {
+        for (int i = 0; i < StreamHealthStore.CHRONIC_FAILURES; i++) {
+            assertFalse(store.isChronicallyFailing(STATION));
+            store.recordSession(STATION, RESOLVED_URL, 0, 0, 0, 2);
+        }
+        assertTrue(store.isChronicallyFailing(STATION));
+
+        store.recordSession(STATION, STATION_URL, 3000, 60000, 0, 0);
+        assertFalse(store.isChronicallyFailing(STATION));
+        assertFalse(store.isChronicallyFailing("other"));
+    }
+
+    @Test
+    void score_punishesSlowStartupAndRebuffering() {
+        final StreamHealthEntry fast = StreamHealthStore.withResult(null, STATION, RESOLVED_URL, 0, true, 500, 60000, 0);
+        final StreamHealthEntry slow = StreamHealthStore.withResult(null, STATION, RESOLVED_URL, 0, true, 8000, 60000, 0);
+        final StreamHealthEntry stuttering = StreamHealthStore.withResult(null, STATION, RESOLVED_URL, 0, true, 500, 40000, 20000);
+
+        assertTrue(StreamHealthStore.score(fast, 0) > StreamHealthStore.score(slow, 0));
+        assertTrue(StreamHealthStore.score(fast, 0) > StreamHealthStore.score(stuttering, 0));
+        assertEquals(0.3 / 3, stuttering.rebufferRatio, 1e-9);
+    }
+
+    @Test
+    void score_forgetsOldResults() {
+        StreamHealthEntry entry = null;
+        for (int i = 0; i < 4; i++) {
+            entry = StreamHealthStore.withResult(entry, STATION, RESOLVED_URL, 0, false, 0, 0, 0);
+        }
+
+        final float unknownScore = StreamHealthStore.score(null, 0);
+        assertEquals(1 / 6f, StreamHealthStore.score(entry, 0), 1e-6);
+        assertTrue(StreamHealthStore.score(entry, 10 * StreamHealthStore.HALF_LIFE_MS) > 0.49f);
+        assertTrue(StreamHealthStore.score(entry, 10 * StreamHealthStore.HALF_LIFE_MS) < unknownScore);
+    }
+
+    @Test
+    void load_restoresSavedEntries() {
+        store.recordSession(STATION, STATION_URL, 1200, 60000, 0, 0);
+
+        final StreamHealthStore loadedStore = new StreamHealthStore(new StreamHealthDao() {
+            @Override
+            public void insert(StreamHealthEntry entry) {
+            }
+
+            @Override
+            public List<StreamHealthEntry> getAll() {
+                return savedEntries;
+            }
+
+            @Override
+            public void deleteOlderThan(long before) {
+            }
+        }, Runnable::run);
+
+        assertTrue(loadedStore.isReliable(STATION, STATION_URL));
+    }
+}
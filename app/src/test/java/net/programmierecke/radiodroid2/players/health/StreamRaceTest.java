@@ -0,0 +1,99 @@
+package net.programmierecke.radiodroid2.players.health;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamRaceTest {
+    /**
+     * Answers each URL after its delay on a thread of its own, never if there is no delay for it.
+     */
+    private static class FakeProber implements StreamRace.Prober {
+        final Map<String, Long> delays = new HashMap<>();
+        final Map<String, Boolean> answers = new HashMap<>();
+        final List<String> probed = new ArrayList<>();
+        final List<String> cancelled = new ArrayList<>();
+
+        void answer(String url, long delayMs, boolean connected) {
+            delays.put(url, delayMs);
+            answers.put(url, connected);
+        }
+
+        @Override
+        public synchronized StreamRace.Probe probe(String url, StreamRace.ProbeCallback callback) {
+            probed.add(url);
+
+            final Long delay = delays.get(url);
+            if (delay != null) {
+                new Thread(() -> {
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException ignored) {
+                    }
+                    callback.onProbed(url, answers.get(url));
+                }).start();
+            }
+
+            return () -> {
+                synchronized (FakeProber.this) {
+                    cancelled.add(url);
+                }
+            };
+        }
+    }
+
+    @Test
+    void race_fastFirstCandidateIsTheOnlyOneTried() throws Exception {
+        final FakeProber prober = new FakeProber();
+        prober.answer("a", 10, true);
+        prober.answer("b", 10, true);
+
+        assertEquals("a", StreamRace.race(Arrays.asList("a", "b"), prober, 1000, 5000, null));
+        assertEquals(Arrays.asList("a"), prober.probed);
+        assertEquals(Arrays.asList("a"), prober.cancelled);
+    }
+
+    @Test
+    void race_slowCandidateGetsFallback() throws Exception {
+        final FakeProber prober = new FakeProber();
+        prober.answer("a", 2000, true);
+        prober.answer("b", 10, true);
+
+        assertEquals("b", StreamRace.race(Arrays.asList("a", "b"), prober, 100, 5000, null));
+        assertEquals(Arrays.asList("a", "b"), prober.probed);
+        assertEquals(Arrays.asList("a", "b"), prober.cancelled);
+    }
+
+    @Test
+    void race_failedCandidateIsReplacedAtOnce() throws Exception {
+        final FakeProber prober = new FakeProber();
+        prober.answer("a", 10, false);
+        prober.answer("b", 10, true);
+
+        final List<String> failed = new ArrayList<>();
+        final long start = System.nanoTime();
+        assertEquals("b", StreamRace.race(Arrays.asList("a", "b"), prober, 5000, 10000, failed::add));
+
+        assertEquals(Arrays.asList("a"), failed);
+        // Didn't wait for the fallback delay
+        assertTrue(System.nanoTime() - start < 2_000_000_000L);
+    }
+
+    @Test
+    void race_givesUpWhenNothingAnswers() throws Exception {
+        final FakeProber prober = new FakeProber();
+        prober.answer("a", 10, false);
+
+        assertNull(StreamRace.race(Arrays.asList("a", "b"), prober, 50, 300, null));
+        assertEquals(Arrays.asList("a", "b"), prober.probed);
+        assertNull(StreamRace.race(new ArrayList<>(), prober, 50, 300, null));
+    }
+}
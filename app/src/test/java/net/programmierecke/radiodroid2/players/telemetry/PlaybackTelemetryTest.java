@@ -0,0 +1,76 @@
+package net.programmierecke.radiodroid2.players.telemetry;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PlaybackTelemetryTest {
+
+    @Test
+    void session_separatesStartupFromRebuffering() {
+        final PlaybackTelemetry.Session session = new PlaybackTelemetry.Session("uuid", "Station", 0, 1000);
+
+        session.onBuffering(1000);
+        session.onReady(1500);
+        session.onBuffering(11500);
+        // Repeated without becoming ready in between
+        session.onBuffering(11600);
+        session.onReady(12500);
+
+        assertEquals(500, session.getStartupMs());
+        assertEquals(1, session.getRebufferCount());
+        assertEquals(1000, session.getRebufferMs(12500));
+        assertEquals(10000, session.getPlayingMs(12500));
+        // Still playing
+        assertEquals(17500, session.getPlayingMs(20000));
+
+        session.onStopped(20000);
+        assertEquals(17500, session.getPlayingMs(30000));
+        assertEquals(1000 / 18500f, PlaybackTelemetry.rebufferRatio(session.getPlayingMs(30000), session.getRebufferMs(30000)));
+    }
+
+    @Test
+    void session_averagesBandwidthAndSkipsEmpty() {
+        final PlaybackTelemetry.Session session = new PlaybackTelemetry.Session("uuid", "Station", 0, 0);
+        assertNull(session.toEntry(1000));
+
+        session.onBandwidthEstimate(100000);
+        session.onBandwidthEstimate(0);
+        session.onBandwidthEstimate(300000);
+        session.onLoadError();
+        session.onDecoderInitialized("c2.android.mp3.decoder", 12);
+
+        final PlaybackSessionEntry entry = session.toEntry(1000);
+        assertEquals(200000, entry.bitrateEstimate);
+        assertEquals(1, entry.loadErrorCount);
+        assertEquals(0, entry.startupMs);
+        assertEquals("c2.android.mp3.decoder", entry.decoderName);
+        assertEquals(12, entry.decoderInitMs);
+    }
+
+    @Test
+    void report_writesRatio() throws Exception {
+        final PlaybackSessionEntry entry = new PlaybackSessionEntry();
+        entry.uid = 1;
+        entry.stationUuid = "uuid";
+        entry.stationName = "Station, with comma";
+        entry.startTime = new Date(0);
+        entry.endTime = new Date(1000);
+        entry.playingMs = 750;
+        entry.rebufferMs = 250;
+        entry.rebufferCount = 2;
+
+        final StringWriter writer = new StringWriter();
+        final int count = PlaybackReport.export((afterUid, limit) -> afterUid == 0 ? Collections.singletonList(entry) : Collections.emptyList(), writer);
+
+        assertEquals(1, count);
+        final String[] lines = writer.toString().split("\r?\n");
+        assertEquals(2, lines.length);
+        assertEquals(",1970-01-01T00:00:01.000Z,uuid,\"Station, with comma\",0,750,2,250,0.2500,0,0,,0,0", lines[1]);
+    }
+}
@@ -0,0 +1,129 @@
+package net.programmierecke.radiodroid2.recording;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FrameScannerTest {
+    // MPEG 1 Layer III, 128 kbit/s, 44100 Hz
+    private static final byte[] MP3_HEADER = {(byte) 0xFF, (byte) 0xFB, (byte) 0x90, 0x64};
+    private static final int MP3_FRAME_LENGTH = 417;
+
+    @Test
+    void frameLength_mpegAudio() {
+        assertEquals(MP3_FRAME_LENGTH, FrameScanner.frameLength(header(0xFF, 0xFB, 0x90, 0x64), 0));
+        // Padding
+        assertEquals(MP3_FRAME_LENGTH + 1, FrameScanner.frameLength(header(0xFF, 0xFB, 0x92, 0x64), 0));
+        // MPEG 2 Layer III, 64 kbit/s, 22050 Hz
+        assertEquals(208, FrameScanner.frameLength(header(0xFF, 0xF3, 0x80, 0x64), 0));
+        // MPEG 1 Layer II, 192 kbit/s, 48000 Hz
+        assertEquals(576, FrameScanner.frameLength(header(0xFF, 0xFD, 0xA4, 0x64), 0));
+        // MPEG 1 Layer I, 32 kbit/s, 32000 Hz
+        assertEquals(48, FrameScanner.frameLength(header(0xFF, 0xFF, 0x18, 0x64), 0));
+    }
+
+    @Test
+    void frameLength_rejectsInvalidHeaders() {
+        // Free format, reserved bitrate, reserved sample rate, reserved version, no sync
+        assertEquals(0, FrameScanner.frameLength(header(0xFF, 0xFB, 0x00, 0x64), 0));
+        assertEquals(0, FrameScanner.frameLength(header(0xFF, 0xFB, 0xF0, 0x64), 0));
+        assertEquals(0, FrameScanner.frameLength(header(0xFF, 0xFB, 0x9C, 0x64), 0));
+        assertEquals(0, FrameScanner.frameLength(header(0xFF, 0xEB, 0x90, 0x64), 0));
+        assertEquals(0, FrameScanner.frameLength(header(0xFE, 0xFB, 0x90, 0x64), 0));
+    }
+
+    @Test
+    void frameLength_adts() {
+        assertEquals(371, FrameScanner.frameLength(adtsFrame(371), 0));
+    }
+
+    @Test
+    void findFrameStart_skipsFalseSync() {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write(new byte[100], 0, 100);
+        // Looks like a header but isn't followed by another one
+        stream.write(MP3_HEADER, 0, MP3_HEADER.length);
+        stream.write(new byte[50], 0, 50);
+        final int firstFrame = stream.size();
+        writeMp3Frames(stream, 3);
+
+        final byte[] bytes = stream.toByteArray();
+        assertEquals(firstFrame, new FrameScanner().findFrameStart(bytes, 0, bytes.length));
+    }
+
+    @Test
+    void findFrameStart_acrossBuffers() {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write(new byte[30], 0, 30);
+        writeMp3Frames(stream, 5);
+        final byte[] bytes = stream.toByteArray();
+
+        final FrameScanner scanner = new FrameScanner();
+        final int bufferSize = 100;
+        int found = -1;
+        for (int offset = 0; offset < bytes.length && found < 0; offset += bufferSize) {
+            final int frameStart = scanner.findFrameStart(bytes, offset, Math.min(bufferSize, bytes.length - offset));
+            if (frameStart >= 0) {
+                found = frameStart;
+            }
+        }
+
+        // The first frame is in a buffer with no room for the next header, so its successor is taken
+        assertEquals(30 + MP3_FRAME_LENGTH, found);
+    }
+
+    @Test
+    void findFrameStart_adts() {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write(new byte[10], 0, 10);
+        for (int i = 0; i < 3; i++) {
+            final byte[] frame = adtsFrame(300 + i);
+            stream.write(frame, 0, frame.length);
+        }
+
+        final byte[] bytes = stream.toByteArray();
+        assertEquals(10, new FrameScanner().findFrameStart(bytes, 0, bytes.length));
+    }
+
+    @Test
+    void findFrameStart_noFramesInOtherCodecs() {
+        final byte[] bytes = new byte[4096];
+        for (int i = 0; i < bytes.length; i += 4) {
+            bytes[i] = 'O';
+            bytes[i + 1] = 'g';
+            bytes[i + 2] = 'g';
+            bytes[i + 3] = (byte) 0xFF;
+        }
+
+        assertEquals(-1, new FrameScanner().findFrameStart(bytes, 0, bytes.length));
+    }
+
+    private static void writeMp3Frames(ByteArrayOutputStream stream, int count) {
+        for (int i = 0; i < count; i++) {
+            stream.write(MP3_HEADER, 0, MP3_HEADER.length);
+            stream.write(new byte[MP3_FRAME_LENGTH - MP3_HEADER.length], 0, MP3_FRAME_LENGTH - MP3_HEADER.length);
+        }
+    }
+
+    private static byte[] adtsFrame(int length) {
+        final byte[] frame = new byte[length];
+        frame[0] = (byte) 0xFF;
+        frame[1] = (byte) 0xF1; // MPEG-4, no CRC
+        frame[2] = (byte) 0x50; // AAC LC, 44100 Hz
+        frame[3] = (byte) (0x80 | (length >> 11) & 0x03);
+        frame[4] = (byte) (length >> 3);
+        frame[5] = (byte) ((length & 0x07) << 5 | 0x1F);
+        frame[6] = (byte) 0xFC;
+        return frame;
+    }
+
+    private static byte[] header(int... bytes) {
+        final byte[] header = new byte[8];
+        for (int i = 0; i < bytes.length; i++) {
+            header[i] = (byte) bytes[i];
+        }
+        return header;
+    }
+}
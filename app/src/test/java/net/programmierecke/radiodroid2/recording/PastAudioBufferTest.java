@@ -0,0 +1,107 @@
+package net.programmierecke.radiodroid2.recording;
+
+import androidx.annotation.NonNull;
+
+import net.programmierecke.radiodroid2.station.live.StreamLiveInfo;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PastAudioBufferTest {
+    // MPEG 1 Layer III, 128 kbit/s, 44100 Hz
+    private static final byte[] MP3_HEADER = {(byte) 0xFF, (byte) 0xFB, (byte) 0x90, 0x64};
+    private static final int MP3_FRAME_LENGTH = 417;
+
+    private static class CollectingListener implements RecordableListener {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        @Override
+        public void onBytesAvailable(byte[] buffer, int offset, int length) {
+            bytes.write(buffer, offset, length);
+        }
+
+        @Override
+        public void onStreamLiveInfo(@NonNull StreamLiveInfo liveInfo) {
+        }
+
+        @Override
+        public void onRecordingEnded() {
+        }
+    }
+
+    @Test
+    void reuseOrCreate_sizesBySecondsAndBitrate() {
+        assertNull(PastAudioBuffer.reuseOrCreate(null, 0, 128));
+
+        final PastAudioBuffer buffer = PastAudioBuffer.reuseOrCreate(null, 10, 320);
+        assertEquals(400000, buffer.getCapacity());
+        assertSame(buffer, PastAudioBuffer.reuseOrCreate(buffer, 10, 320));
+
+        // Unknown bitrate
+        assertEquals(160000, PastAudioBuffer.reuseOrCreate(buffer, 10, 0).getCapacity());
+    }
+
+    @Test
+    void flushTo_startsAtFrameAfterWrap() {
+        final byte[] stream = mp3Stream(10);
+        final PastAudioBuffer buffer = new PastAudioBuffer(2000);
+
+        // Odd pieces so that the oldest byte is in the middle of the buffer and of a frame
+        for (int offset = 0; offset < stream.length; offset += 333) {
+            buffer.write(stream, offset, Math.min(333, stream.length - offset));
+        }
+
+        final CollectingListener listener = new CollectingListener();
+        buffer.flushTo(listener);
+
+        final int firstFrame = ((stream.length - 2000) / MP3_FRAME_LENGTH + 1) * MP3_FRAME_LENGTH;
+        assertArrayEquals(Arrays.copyOfRange(stream, firstFrame, stream.length), listener.bytes.toByteArray());
+    }
+
+    @Test
+    void flushTo_onlyOncePerListener() {
+        final PastAudioBuffer buffer = new PastAudioBuffer(100);
+        buffer.write(new byte[]{1, 2, 3}, 0, 3);
+
+        final CollectingListener listener = new CollectingListener();
+        buffer.flushTo(listener);
+        buffer.write(new byte[]{4}, 0, 1);
+        buffer.flushTo(listener);
+
+        // Not MP3 or AAC, so everything is passed on
+        assertArrayEquals(new byte[]{1, 2, 3}, listener.bytes.toByteArray());
+
+        final CollectingListener nextListener = new CollectingListener();
+        buffer.flushTo(nextListener);
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, nextListener.bytes.toByteArray());
+    }
+
+    @Test
+    void write_keepsEndOfLargeWrites() {
+        final PastAudioBuffer buffer = new PastAudioBuffer(4);
+        buffer.write(new byte[]{1, 2, 3, 4, 5, 6, 7}, 0, 7);
+
+        final CollectingListener listener = new CollectingListener();
+        buffer.flushTo(listener);
+
+        assertArrayEquals(new byte[]{4, 5, 6, 7}, listener.bytes.toByteArray());
+    }
+
+    private static byte[] mp3Stream(int frames) {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (int i = 0; i < frames; i++) {
+            stream.write(MP3_HEADER, 0, MP3_HEADER.length);
+            final byte[] data = new byte[MP3_FRAME_LENGTH - MP3_HEADER.length];
+            Arrays.fill(data, (byte) i);
+            stream.write(data, 0, data.length);
+        }
+        return stream.toByteArray();
+    }
+}
@@ -0,0 +1,73 @@
+package net.programmierecke.radiodroid2.recording;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RecordingCatalogueTest {
+    private File directory;
+
+    @BeforeEach
+    void init() throws IOException {
+        directory = Files.createTempDirectory("recordings").toFile();
+    }
+
+    @AfterEach
+    void cleanup() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    void findUncatalogued_describesNewFiles() throws IOException {
+        createFile("catalogued.mp3", 10);
+        final File copied = createFile("Station_2020-10-01_20-00.aac", 1234);
+        copied.setLastModified(1600000000000L);
+        new File(directory, "subdirectory").mkdir();
+
+        final List<RecordingEntry> entries = RecordingCatalogue.findUncatalogued(
+                Collections.singletonList("catalogued.mp3"), directory.listFiles());
+
+        assertEquals(1, entries.size());
+        final RecordingEntry entry = entries.get(0);
+        assertEquals("Station_2020-10-01_20-00.aac", entry.fileName);
+        assertEquals("Station_2020-10-01_20-00", entry.title);
+        assertEquals(1234, entry.sizeBytes);
+        assertEquals("AAC", entry.codec);
+        assertEquals(1600000000000L, entry.startTime.getTime());
+        assertEquals("", entry.stationUuid);
+    }
+
+    @Test
+    void findMissing_returnsDeletedFiles() throws IOException {
+        createFile("kept.mp3", 10);
+
+        final List<String> missing = RecordingCatalogue.findMissing(
+                Arrays.asList("kept.mp3", "deleted.mp3", "deleted.ts"), directory.listFiles());
+
+        assertEquals(Arrays.asList("deleted.mp3", "deleted.ts"), missing);
+    }
+
+    @Test
+    void reconcile_emptyDirectoryAndCatalogue() {
+        assertEquals(0, RecordingCatalogue.findUncatalogued(Collections.emptyList(), directory.listFiles()).size());
+        assertEquals(0, RecordingCatalogue.findMissing(Collections.emptyList(), directory.listFiles()).size());
+    }
+
+    private File createFile(String name, int size) throws IOException {
+        final File file = new File(directory, name);
+        Files.write(file.toPath(), new byte[size]);
+        return file;
+    }
+}
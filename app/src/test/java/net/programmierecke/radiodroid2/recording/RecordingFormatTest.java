@@ -0,0 +1,33 @@
+package net.programmierecke.radiodroid2.recording;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RecordingFormatTest {
+    @Test
+    void fromContentType_ignoresCaseAndParameters() {
+        assertEquals(RecordingFormat.MP3, RecordingFormat.fromContentType("audio/MPEG"));
+        assertEquals(RecordingFormat.AAC, RecordingFormat.fromContentType("audio/aacp"));
+        assertEquals(RecordingFormat.OPUS, RecordingFormat.fromContentType("audio/ogg; codecs=opus"));
+        assertEquals(RecordingFormat.OGG, RecordingFormat.fromContentType("application/ogg"));
+        assertEquals(RecordingFormat.MPEG_TS, RecordingFormat.fromContentType("video/MP2T"));
+        assertNull(RecordingFormat.fromContentType("application/octet-stream"));
+        assertNull(RecordingFormat.fromContentType(null));
+    }
+
+    @Test
+    void sniff_recognizesContainers() {
+        assertEquals(RecordingFormat.FLAC, RecordingFormat.sniff("fLaC....".getBytes(), 0, 8));
+
+        final byte[] ts = new byte[2 * 188];
+        ts[0] = 0x47;
+        ts[188] = 0x47;
+        assertEquals(RecordingFormat.MPEG_TS, RecordingFormat.sniff(ts, 0, ts.length));
+
+        // Only one sync byte
+        ts[188] = 0;
+        assertNull(RecordingFormat.sniff(ts, 0, ts.length));
+    }
+}
@@ -0,0 +1,137 @@
+package net.programmierecke.radiodroid2.recording;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RecordingMuxerTest {
+    // MPEG 1 Layer III, 128 kbit/s, 44100 Hz, joint stereo
+    private static final byte[] MP3_HEADER = {(byte) 0xFF, (byte) 0xFB, (byte) 0x90, 0x64};
+    private static final int MP3_FRAME_LENGTH = 417;
+
+    private static final int ADTS_FRAME_LENGTH = 100;
+
+    @Test
+    void mp3_startsWithFrameAndXingHeader() throws Exception {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        // Recording starts in the middle of a frame
+        stream.write(new byte[100], 0, 100);
+        final byte[] frames = mp3Frames(20);
+        stream.write(frames, 0, frames.length);
+
+        final RecordingMuxer muxer = new RecordingMuxer(RecordingFormat.MP3);
+        final byte[] file = record(muxer, stream.toByteArray(), 1000);
+
+        assertEquals(RecordingFormat.MP3, muxer.getFormat());
+        assertEquals(MP3_FRAME_LENGTH + frames.length, file.length);
+        assertArrayEquals(frames, Arrays.copyOfRange(file, MP3_FRAME_LENGTH, file.length));
+
+        // Same stream, without CRC and padding
+        assertArrayEquals(new byte[]{(byte) 0xFF, (byte) 0xFB, (byte) 0x90, 0x64}, Arrays.copyOfRange(file, 0, 4));
+
+        // After the side information of a stereo frame
+        final ByteBuffer xing = ByteBuffer.wrap(file, 4 + 32, 116);
+        assertEquals("Info", new String(file, 4 + 32, 4, "US-ASCII"));
+        xing.position(xing.position() + 4);
+        assertEquals(0x07, xing.getInt());
+        assertEquals(20, xing.getInt());
+        assertEquals(file.length, xing.getInt());
+        // Seek table is relative to the header, like the byte count
+        assertEquals(256 / 21, xing.get());
+        // Frame 10 is in the middle
+        xing.position(xing.position() + 49);
+        assertEquals(11 * 256 / 21, xing.get() & 0xFF);
+    }
+
+    @Test
+    void aac_leavesOutId3TagsOfSegments() throws Exception {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int segment = 0; segment < 3; segment++) {
+            final byte[] tag = {'I', 'D', '3', 4, 0, 0, 0, 0, 0, 5, 1, 2, 3, 4, 5};
+            stream.write(tag, 0, tag.length);
+            final byte[] frames = adtsFrames(4);
+            stream.write(frames, 0, frames.length);
+            expected.write(frames, 0, frames.length);
+        }
+
+        final RecordingMuxer muxer = new RecordingMuxer(null);
+        // Small pieces split headers and tags between buffers
+        final byte[] file = record(muxer, stream.toByteArray(), 7);
+
+        assertEquals(RecordingFormat.AAC, muxer.getFormat());
+        assertArrayEquals(expected.toByteArray(), file);
+    }
+
+    @Test
+    void container_isWrittenAsItIs() throws Exception {
+        final byte[] stream = new byte[1000];
+        Arrays.fill(stream, (byte) 0xFF);
+        System.arraycopy(new byte[]{'O', 'g', 'g', 'S'}, 0, stream, 0, 4);
+
+        final RecordingMuxer muxer = new RecordingMuxer(RecordingFormat.MP3);
+        assertArrayEquals(stream, record(muxer, stream, 100));
+        assertEquals(RecordingFormat.OGG, muxer.getFormat());
+
+        // Opus is in Ogg as well
+        final RecordingMuxer opusMuxer = new RecordingMuxer(RecordingFormat.OPUS);
+        record(opusMuxer, stream, 100);
+        assertEquals(RecordingFormat.OPUS, opusMuxer.getFormat());
+    }
+
+    private static byte[] record(RecordingMuxer muxer, byte[] stream, int pieceLength) throws Exception {
+        final File file = File.createTempFile("recording", ".mp3");
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            final RecordingWriter writer = new RecordingWriter(randomAccessFile.getChannel(), null);
+            muxer.setWriter(writer);
+
+            for (int offset = 0; offset < stream.length; offset += pieceLength) {
+                muxer.write(stream, offset, Math.min(pieceLength, stream.length - offset));
+            }
+
+            muxer.close();
+            writer.join();
+
+            return Files.readAllBytes(file.toPath());
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static byte[] mp3Frames(int count) {
+        final ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i++) {
+            final byte[] frame = new byte[MP3_FRAME_LENGTH];
+            Arrays.fill(frame, (byte) i);
+            System.arraycopy(MP3_HEADER, 0, frame, 0, MP3_HEADER.length);
+            frames.write(frame, 0, frame.length);
+        }
+        return frames.toByteArray();
+    }
+
+    private static byte[] adtsFrames(int count) {
+        final ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i++) {
+            final byte[] frame = new byte[ADTS_FRAME_LENGTH];
+            Arrays.fill(frame, (byte) i);
+            // AAC LC, 44100 Hz, stereo
+            frame[0] = (byte) 0xFF;
+            frame[1] = (byte) 0xF1;
+            frame[2] = 0x50;
+            frame[3] = (byte) (0x80 | (ADTS_FRAME_LENGTH >> 11));
+            frame[4] = (byte) (ADTS_FRAME_LENGTH >> 3);
+            frame[5] = (byte) (((ADTS_FRAME_LENGTH & 0x07) << 5) | 0x1F);
+            frame[6] = (byte) 0xFC;
+            frames.write(frame, 0, frame.length);
+        }
+        return frames.toByteArray();
+    }
+}
@@ -0,0 +1,23 @@
+package net.programmierecke.radiodroid2.recording;
+
+import org.junit.jupiter.api.Test;
+
+import static net.programmierecke.radiodroid2.recording.RecordingStorage.EXTENT_SIZE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RecordingStorageTest {
+    @Test
+    void extendReservation_roundsUpToExtents() {
+        assertEquals(EXTENT_SIZE, RecordingStorage.extendReservation(1, 0));
+        assertEquals(EXTENT_SIZE, RecordingStorage.extendReservation(EXTENT_SIZE, 0));
+        assertEquals(2 * EXTENT_SIZE, RecordingStorage.extendReservation(EXTENT_SIZE + 1, EXTENT_SIZE));
+        // A large write may need several extents at once
+        assertEquals(4 * EXTENT_SIZE, RecordingStorage.extendReservation(3 * EXTENT_SIZE + 10, EXTENT_SIZE));
+    }
+
+    @Test
+    void extendReservation_keepsSufficientReservation() {
+        assertEquals(EXTENT_SIZE, RecordingStorage.extendReservation(100, EXTENT_SIZE));
+        assertEquals(0, RecordingStorage.extendReservation(0, 0));
+    }
+}
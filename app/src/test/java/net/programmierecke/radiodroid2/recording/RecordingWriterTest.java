@@ -0,0 +1,287 @@
+package net.programmierecke.radiodroid2.recording;
+
+import androidx.annotation.NonNull;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecordingWriterTest {
+
+    private static class MemoryChannel implements WritableByteChannel {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final List<Integer> writes = new ArrayList<>();
+        final CountDownLatch blocked;
+        boolean open = true;
+
+        MemoryChannel(CountDownLatch blocked) {
+            this.blocked = blocked;
+        }
+
+        @Override
+        public synchronized int write(ByteBuffer src) throws IOException {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+
+            final int length = src.remaining();
+            writes.add(length);
+            bytes.write(src.array(), src.arrayOffset() + src.position(), length);
+            src.position(src.limit());
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+
+    @Test
+    void write_keepsBytesAcrossBufferWraps() throws Exception {
+        final MemoryChannel channel = new MemoryChannel(new CountDownLatch(0));
+        final RecordingWriter writer = new RecordingWriter(channel, null, null, 64, 16);
+
+        final byte[] data = new byte[10000];
+        new Random(1).nextBytes(data);
+
+        // Odd sized pieces so that they wrap the buffer at different offsets
+        int offset = 0;
+        while (offset < data.length) {
+            final int length = Math.min(7, data.length - offset);
+            if (writer.write(data, offset, length)) {
+                offset += length;
+            } else {
+                Thread.yield();
+            }
+        }
+
+        writer.close();
+        writer.join();
+
+        assertArrayEquals(data, channel.bytes.toByteArray());
+        assertEquals(data.length, writer.getBytesWritten());
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    void write_realignsToChunksAfterPartialFlush() throws Exception {
+        final MemoryChannel channel = new MemoryChannel(new CountDownLatch(0));
+        final RecordingWriter writer = new RecordingWriter(channel, null, null, 64, 16);
+
+        writer.write(new byte[10], 0, 10);
+        // Less than a chunk is written once the writer gets tired of waiting
+        while (writer.getBytesWritten() < 10) {
+            Thread.sleep(50);
+        }
+
+        for (int i = 0; i < 5; i++) {
+            while (!writer.write(new byte[9], 0, 9)) {
+                Thread.yield();
+            }
+        }
+        writer.close();
+        writer.join();
+
+        long position = 0;
+        for (int length : channel.writes) {
+            assertTrue(position % 16 + length <= 16);
+            position += length;
+        }
+        assertEquals(55, position);
+    }
+
+    @Test
+    void write_dropsAndCountsBytesWhenStorageIsSlow() throws Exception {
+        final CountDownLatch storage = new CountDownLatch(1);
+        final MemoryChannel channel = new MemoryChannel(storage);
+        final RecordingWriter writer = new RecordingWriter(channel, null, null, 64, 16);
+
+        // The writer may already hold the first chunk while waiting for storage
+        int accepted = 0;
+        int dropped = 0;
+        for (int i = 0; i < 20; i++) {
+            if (writer.write(new byte[8], 0, 8)) {
+                accepted += 8;
+            } else {
+                dropped += 8;
+            }
+        }
+
+        assertTrue(dropped > 0);
+        assertEquals(dropped, writer.getBytesDropped());
+
+        storage.countDown();
+        writer.close();
+        writer.join();
+
+        assertEquals(accepted, channel.bytes.size());
+        assertEquals(accepted, writer.getBytesWritten());
+    }
+
+    @Test
+    void close_flushesPartialChunkAndNotifies() throws Exception {
+        final MemoryChannel channel = new MemoryChannel(new CountDownLatch(0));
+        final CountDownLatch closed = new CountDownLatch(1);
+        final RecordingWriter writer = new RecordingWriter(channel, new RecordingWriter.Listener() {
+            @Override
+            public void onWriteFailed(@NonNull RecordingWriter writer, @NonNull IOException e) {
+            }
+
+            @Override
+            public void onClosed(@NonNull RecordingWriter writer) {
+                closed.countDown();
+            }
+        });
+
+        writer.write(new byte[]{1, 2, 3}, 0, 3);
+        writer.close();
+
+        assertTrue(closed.await(5, TimeUnit.SECONDS));
+        assertArrayEquals(new byte[]{1, 2, 3}, channel.bytes.toByteArray());
+        assertFalse(writer.write(new byte[]{4}, 0, 1));
+    }
+
+    @Test
+    void writeFailure_isReported() throws Exception {
+        final CountDownLatch failed = new CountDownLatch(1);
+        final RecordingWriter writer = new RecordingWriter(new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                throw new IOException("No space left on device");
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        }, new RecordingWriter.Listener() {
+            @Override
+            public void onWriteFailed(@NonNull RecordingWriter writer, @NonNull IOException e) {
+                failed.countDown();
+            }
+
+            @Override
+            public void onClosed(@NonNull RecordingWriter writer) {
+            }
+        });
+
+        writer.write(new byte[RecordingWriter.CHUNK_SIZE], 0, RecordingWriter.CHUNK_SIZE);
+
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        writer.join();
+    }
+
+    @Test
+    void storage_isReservedAheadAndTruncatedOnClose() throws Exception {
+        final File file = File.createTempFile("recording", ".mp3");
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            final FileChannel channel = randomAccessFile.getChannel();
+            final List<Long> reservations = new ArrayList<>();
+            final long[] released = {-1};
+
+            final RecordingWriter writer = new RecordingWriter(channel, null, new RecordingWriter.Storage() {
+                @Override
+                public long reserve(long requiredBytes, long reservedBytes) throws IOException {
+                    final long newReservedBytes = reservedBytes + 100;
+                    // Grows the file like an allocation would
+                    channel.write(ByteBuffer.wrap(new byte[1]), newReservedBytes - 1);
+                    reservations.add(newReservedBytes);
+                    return newReservedBytes;
+                }
+
+                @Override
+                public void release(long reservedBytes) {
+                    released[0] = reservedBytes;
+                }
+            }, 64, 16);
+
+            final byte[] data = new byte[150];
+            new Random(2).nextBytes(data);
+            for (int offset = 0; offset < data.length; ) {
+                if (writer.write(data, offset, 10)) {
+                    offset += 10;
+                } else {
+                    Thread.yield();
+                }
+            }
+
+            writer.close();
+            writer.join();
+
+            assertEquals(2, reservations.size());
+            assertEquals(200, released[0]);
+            assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    void storage_failureStopsWriter() throws Exception {
+        final MemoryChannel channel = new MemoryChannel(new CountDownLatch(0));
+        final CountDownLatch failed = new CountDownLatch(1);
+        final long[] released = {-1};
+
+        final RecordingWriter writer = new RecordingWriter(channel, new RecordingWriter.Listener() {
+            @Override
+            public void onWriteFailed(@NonNull RecordingWriter writer, @NonNull IOException e) {
+                failed.countDown();
+            }
+
+            @Override
+            public void onClosed(@NonNull RecordingWriter writer) {
+            }
+        }, new RecordingWriter.Storage() {
+            @Override
+            public long reserve(long requiredBytes, long reservedBytes) throws IOException {
+                if (reservedBytes > 0) {
+                    throw new IOException("Quota exceeded");
+                }
+                return 32;
+            }
+
+            @Override
+            public void release(long reservedBytes) {
+                released[0] = reservedBytes;
+            }
+        }, 64, 16);
+
+        writer.write(new byte[48], 0, 48);
+
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        writer.join();
+
+        assertEquals(32, channel.bytes.size());
+        assertEquals(32, released[0]);
+        assertFalse(writer.write(new byte[1], 0, 1));
+    }
+}
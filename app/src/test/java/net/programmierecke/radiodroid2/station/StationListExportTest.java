@@ -0,0 +1,107 @@
+package net.programmierecke.radiodroid2.station;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StationListExportTest {
+
+    @Test
+    void jsonLines_roundTripsStations() throws Exception {
+        final List<SavedStationEntry> entries = entries(StationListExport.PAGE_SIZE + 5);
+
+        final String exported = export(entries, StationListExport.Format.JSON_LINES);
+
+        final List<DataRadioStation> imported = new ArrayList<>();
+        final int count = StationListExport.importStations(new StringReader(exported), imported::addAll);
+
+        assertEquals(entries.size(), count);
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(entries.get(i).stationJson, imported.get(i).toJson().toString());
+        }
+    }
+
+    @Test
+    void m3u_keepsPreviousLayoutAndUuids() throws Exception {
+        final List<SavedStationEntry> entries = entries(2);
+
+        final String exported = export(entries, StationListExport.Format.M3U);
+
+        assertEquals("#EXTM3U\n" +
+                "#RADIOBROWSERUUID:uuid-0\n#EXTINF:-1,Station 0, \"quoted\"\nhttp://example.com/0\n\n" +
+                "#RADIOBROWSERUUID:uuid-1\n#EXTINF:-1,Station 1, \"quoted\"\nhttp://example.com/1\n\n", exported);
+        assertEquals(uuids(entries), importUuids(exported, StationListExport.Format.M3U));
+    }
+
+    @Test
+    void csv_importsUuids() throws Exception {
+        final List<SavedStationEntry> entries = entries(StationListExport.PAGE_SIZE * 2);
+
+        final String exported = export(entries, StationListExport.Format.CSV);
+
+        assertEquals(uuids(entries), importUuids(exported, StationListExport.Format.CSV));
+    }
+
+    @Test
+    void formatOf_defaultsToM3u() {
+        assertEquals(StationListExport.Format.CSV, StationListExport.formatOf("favourites.csv"));
+        assertEquals(StationListExport.Format.JSON_LINES, StationListExport.formatOf("favourites.JSONL"));
+        assertEquals(StationListExport.Format.M3U, StationListExport.formatOf("favourites.m3u"));
+        assertEquals(StationListExport.Format.M3U, StationListExport.formatOf("favourites"));
+    }
+
+    private static String export(List<SavedStationEntry> entries, StationListExport.Format format) throws Exception {
+        final StringWriter writer = new StringWriter();
+        final int count = StationListExport.export((fromPosition, limit) ->
+                new ArrayList<>(entries.subList(Math.min(fromPosition, entries.size()), Math.min(fromPosition + limit, entries.size()))), format, writer);
+        assertEquals(entries.size(), count);
+        return writer.toString();
+    }
+
+    private static List<String> importUuids(String exported, StationListExport.Format format) throws Exception {
+        final List<String> uuids = new ArrayList<>();
+        StationListExport.importUuids(new StringReader(exported), format, uuids::addAll);
+        return uuids;
+    }
+
+    private static List<String> uuids(List<SavedStationEntry> entries) {
+        final List<String> uuids = new ArrayList<>();
+        for (SavedStationEntry entry : entries) {
+            uuids.add(entry.stationUuid);
+        }
+        return uuids;
+    }
+
+    private static List<SavedStationEntry> entries(int count) {
+        final List<SavedStationEntry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            DataRadioStation station = new DataRadioStation();
+            station.StationUuid = "uuid-" + i;
+            station.Name = "Station " + i + ", \"quoted\"";
+            station.StreamUrl = "http://example.com/" + i;
+            station.HomePageUrl = "http://example.com/";
+            station.IconUrl = "http://example.com/favicon.png";
+            station.Country = "Germany";
+            station.CountryCode = "DE";
+            station.State = "";
+            station.Language = "german";
+            station.Codec = "MP3";
+            station.TagsAll = "rock,pop";
+            station.Votes = i;
+            station.Bitrate = 128;
+
+            SavedStationEntry entry = new SavedStationEntry();
+            entry.listId = "favourites";
+            entry.position = i;
+            entry.stationUuid = station.StationUuid;
+            entry.stationJson = station.toJson().toString();
+            entries.add(entry);
+        }
+        return entries;
+    }
+}
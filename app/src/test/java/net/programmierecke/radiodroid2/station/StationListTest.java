@@ -0,0 +1,132 @@
+package net.programmierecke.radiodroid2.station;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StationListTest {
+    private static DataRadioStation station(String uuid) {
+        DataRadioStation station = new DataRadioStation();
+        station.StationUuid = uuid;
+        return station;
+    }
+
+    private static void assertIndexConsistent(StationList list) {
+        for (int i = 0; i < list.size(); i++) {
+            String uuid = list.get(i).StationUuid;
+            int firstPosition = -1;
+            for (int j = 0; j < list.size(); j++) {
+                if (list.get(j).StationUuid.equals(uuid)) {
+                    firstPosition = j;
+                    break;
+                }
+            }
+            assertEquals(firstPosition, list.positionOf(uuid));
+        }
+    }
+
+    @Test
+    void lookups_followInsertsAndRemovals() {
+        StationList list = new StationList();
+        DataRadioStation a = station("a");
+        list.add(a);
+        list.add(station("b"));
+        list.add(0, station("c"));
+
+        assertEquals(1, list.positionOf("a"));
+        assertSame(a, list.getByUuid("a"));
+        assertTrue(list.containsUuid("c"));
+
+        list.remove(0);
+        assertEquals(0, list.positionOf("a"));
+        assertFalse(list.containsUuid("c"));
+        assertNull(list.getByUuid("c"));
+        assertEquals(-1, list.positionOf("c"));
+    }
+
+    @Test
+    void move_updatesPositionsInRange() {
+        StationList list = new StationList();
+        for (String uuid : new String[]{"a", "b", "c", "d", "e"}) {
+            list.add(station(uuid));
+        }
+
+        list.move(0, 3);
+        assertEquals("bcdae", uuids(list));
+        assertIndexConsistent(list);
+
+        list.move(4, 1);
+        assertEquals("becda", uuids(list));
+        assertIndexConsistent(list);
+    }
+
+    @Test
+    void duplicates_indexPointsToFirstOccurrence() {
+        StationList list = new StationList();
+        list.add(station("a"));
+        list.add(station("b"));
+        list.add(station("a"));
+
+        assertEquals(0, list.positionOf("a"));
+        list.remove(0);
+        assertEquals(1, list.positionOf("a"));
+        list.subList(1, 2).clear();
+        assertFalse(list.containsUuid("a"));
+    }
+
+    @Test
+    void randomOperations_keepIndexConsistent() {
+        Random random = new Random(42);
+        StationList list = new StationList();
+        List<DataRadioStation> reference = new ArrayList<>();
+
+        for (int i = 0; i < 2000; i++) {
+            int op = random.nextInt(5);
+            if (op <= 1 || reference.isEmpty()) {
+                int pos = random.nextInt(reference.size() + 1);
+                DataRadioStation station = station(Integer.toString(random.nextInt(30)));
+                list.add(pos, station);
+                reference.add(pos, station);
+            } else if (op == 2) {
+                int pos = random.nextInt(reference.size());
+                list.remove(pos);
+                reference.remove(pos);
+            } else if (op == 3) {
+                int from = random.nextInt(reference.size());
+                int to = random.nextInt(reference.size());
+                list.move(from, to);
+                reference.add(to, reference.remove(from));
+            } else {
+                int pos = random.nextInt(reference.size());
+                DataRadioStation station = station(Integer.toString(random.nextInt(30)));
+                list.set(pos, station);
+                reference.set(pos, station);
+            }
+
+            assertEquals(reference, list);
+            assertIndexConsistent(list);
+        }
+
+        Collections.reverse(reference);
+        list.clear();
+        list.addAll(reference);
+        assertIndexConsistent(list);
+    }
+
+    private static String uuids(List<DataRadioStation> list) {
+        StringBuilder builder = new StringBuilder();
+        for (DataRadioStation station : list) {
+            builder.append(station.StationUuid);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,256 @@
+package net.programmierecke.radiodroid2.station;
+
+import org.json.JSONArray;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StationSnapshotTest {
+    private static final String[] COUNTRIES = {"Germany", "Russia", "Brazil", "United States Of America", "Japan"};
+    private static final String[] LANGUAGES = {"german", "russian", "portuguese", "english", "japanese"};
+    private static final String[] CODECS = {"MP3", "AAC", "AAC+", "OGG"};
+    private static final String[] TAGS = {"pop", "rock", "news", "jazz", "classical", "talk", "80s"};
+
+    private File file;
+
+    @BeforeEach
+    void init() throws IOException {
+        file = File.createTempFile("stations", ".snapshot");
+    }
+
+    @AfterEach
+    void cleanup() {
+        file.delete();
+    }
+
+    @Test
+    void write_thenOpen_givesSameStations() throws Exception {
+        List<DataRadioStation> stations = createStations(100);
+
+        DataRadioStation special = new DataRadioStation();
+        special.Name = "Радио ☃";
+        special.TagsAll = ",,";
+        special.ClickTrend = -42;
+        special.Votes = Integer.MAX_VALUE;
+        special.Bitrate = Integer.MIN_VALUE;
+        special.Working = false;
+        special.Hls = true;
+        special.DeletedOnServer = true;
+        stations.add(special);
+
+        StationSnapshot.write(stations, 42, file);
+        StationSnapshot.Reader snapshot = StationSnapshot.open(file);
+
+        assertEquals(42, snapshot.getTag());
+        assertEquals(stations.size(), snapshot.size());
+        for (int i = 0; i < stations.size(); i++) {
+            assertStationEquals(stations.get(i), snapshot.get(i));
+        }
+    }
+
+    @Test
+    void write_keepsNullFields() throws Exception {
+        DataRadioStation station = new DataRadioStation();
+
+        StationSnapshot.write(Collections.singletonList(station), 0, file);
+        DataRadioStation decoded = StationSnapshot.open(file).get(0);
+
+        assertNull(decoded.Name);
+        assertNull(decoded.TagsAll);
+        assertNull(decoded.Codec);
+        assertEquals("", decoded.StationUuid);
+    }
+
+    @Test
+    void open_sharesDecodedStationsAndStrings() throws Exception {
+        StationSnapshot.write(createStations(20), 0, file);
+        StationSnapshot.Reader snapshot = StationSnapshot.open(file);
+
+        assertSame(snapshot.get(3), snapshot.get(3));
+        // Countries repeat every COUNTRIES.length stations
+        assertSame(snapshot.get(0).Country, snapshot.get(COUNTRIES.length).Country);
+    }
+
+    @Test
+    void write_deduplicatesStrings() throws Exception {
+        StationSnapshot.write(createStations(1000), 0, file);
+        final long withSharedStrings = file.length();
+
+        List<DataRadioStation> stations = createStations(1000);
+        for (int i = 0; i < stations.size(); i++) {
+            stations.get(i).Country += i;
+        }
+        StationSnapshot.write(stations, 0, file);
+
+        assertTrue(withSharedStrings < file.length());
+    }
+
+    @Test
+    void write_fromSeveralThreads_leavesOneCompleteSnapshot() throws Exception {
+        final File dir = Files.createTempDirectory("snapshots").toFile();
+        final File target = new File(dir, "stations.snapshot");
+        final List<DataRadioStation> stations = createStations(500);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> writes = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                writes.add(executor.submit(() -> {
+                    StationSnapshot.write(stations, 7, target);
+                    return null;
+                }));
+            }
+            for (Future<?> write : writes) {
+                write.get();
+            }
+
+            assertEquals(Collections.singletonList(target.getName()), Arrays.asList(dir.list()));
+            assertEquals(stations.size(), StationSnapshot.open(target).size());
+        } finally {
+            executor.shutdown();
+            target.delete();
+            dir.delete();
+        }
+    }
+
+    @Test
+    void open_rejectsOtherFiles() throws Exception {
+        FileOutputStream out = new FileOutputStream(file);
+        out.write("[{\"name\":\"not a snapshot\"}]".getBytes("UTF-8"));
+        out.close();
+
+        assertThrows(IOException.class, () -> StationSnapshot.open(file));
+    }
+
+    /**
+     * Compares decoding 10k stations from JSON with opening a snapshot of them and
+     * accessing every station. Run with -Dbenchmarks=true.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void benchmark_decode10kStations() throws Exception {
+        final int count = 10000;
+        final int rounds = 5;
+
+        List<DataRadioStation> stations = createStations(count);
+        String json = toJson(stations);
+        StationSnapshot.write(stations, 0, file);
+
+        long jsonNs = Long.MAX_VALUE;
+        long snapshotNs = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            JSONArray jsonArray = new JSONArray(json);
+            List<DataRadioStation> fromJson = new ArrayList<>(count);
+            for (int i = 0; i < jsonArray.length(); i++) {
+                fromJson.add(DataRadioStation.fromJson(jsonArray.getJSONObject(i)));
+            }
+            jsonNs = Math.min(jsonNs, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            List<DataRadioStation> fromSnapshot = new ArrayList<>(StationSnapshot.open(file));
+            snapshotNs = Math.min(snapshotNs, System.nanoTime() - start);
+
+            assertEquals(count, fromJson.size());
+            assertEquals(count, fromSnapshot.size());
+        }
+
+        System.out.println(String.format("Decoding %d stations: JSON %d ms (%d KiB), snapshot %d ms (%d KiB)",
+                count, jsonNs / 1000000, json.length() / 1024, snapshotNs / 1000000, file.length() / 1024));
+    }
+
+    private static List<DataRadioStation> createStations(int count) {
+        List<DataRadioStation> stations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            DataRadioStation station = new DataRadioStation();
+            station.StationUuid = String.format("96%06d-0601-11e8-ae97-52543be04c81", i);
+            station.ChangeUuid = String.format("12%06d-0601-11e8-ae97-52543be04c81", i);
+            station.Name = "Radio Station " + i;
+            station.StreamUrl = "http://stream.example.org/radio" + i + ".mp3";
+            station.HomePageUrl = "http://www.example.org/radio" + i;
+            station.IconUrl = "http://www.example.org/radio" + i + "/favicon.png";
+            station.Country = COUNTRIES[i % COUNTRIES.length];
+            station.CountryCode = station.Country.substring(0, 2).toUpperCase();
+            station.State = "";
+            station.Language = LANGUAGES[i % LANGUAGES.length];
+            station.Codec = CODECS[i % CODECS.length];
+            station.TagsAll = TAGS[i % TAGS.length] + "," + TAGS[(i / 3) % TAGS.length];
+            station.ClickCount = i * 7;
+            station.ClickTrend = i % 11 - 5;
+            station.Votes = i * 3;
+            station.Bitrate = 128;
+            station.Working = i % 13 != 0;
+            stations.add(station);
+        }
+        return stations;
+    }
+
+    private static String toJson(List<DataRadioStation> stations) {
+        StringBuilder builder = new StringBuilder("[");
+        for (DataRadioStation station : stations) {
+            if (builder.length() > 1) {
+                builder.append(',');
+            }
+            builder.append('{');
+            appendField(builder, "stationuuid", station.StationUuid).append(',');
+            appendField(builder, "changeuuid", station.ChangeUuid).append(',');
+            appendField(builder, "name", station.Name).append(',');
+            appendField(builder, "url", station.StreamUrl).append(',');
+            appendField(builder, "homepage", station.HomePageUrl).append(',');
+            appendField(builder, "favicon", station.IconUrl).append(',');
+            appendField(builder, "country", station.Country).append(',');
+            appendField(builder, "countrycode", station.CountryCode).append(',');
+            appendField(builder, "state", station.State).append(',');
+            appendField(builder, "language", station.Language).append(',');
+            appendField(builder, "codec", station.Codec).append(',');
+            appendField(builder, "tags", station.TagsAll).append(',');
+            builder.append("\"clickcount\":").append(station.ClickCount).append(',');
+            builder.append("\"clicktrend\":").append(station.ClickTrend).append(',');
+            builder.append("\"votes\":").append(station.Votes).append(',');
+            builder.append("\"bitrate\":").append(station.Bitrate).append(',');
+            builder.append("\"lastcheckok\":").append(station.Working ? 1 : 0);
+            builder.append('}');
+        }
+        return builder.append(']').toString();
+    }
+
+    private static StringBuilder appendField(StringBuilder builder, String name, String value) {
+        return builder.append('"').append(name).append("\":\"").append(value).append('"');
+    }
+
+    private static void assertStationEquals(DataRadioStation expected, DataRadioStation actual) {
+        assertEquals(Arrays.asList(expected.StationUuid, expected.ChangeUuid, expected.StationId, expected.Name,
+                expected.getNameSearchKey(), expected.StreamUrl, expected.HomePageUrl, expected.IconUrl,
+                expected.Country, expected.CountryCode, expected.State, expected.Language, expected.Codec,
+                expected.TagsAll),
+                Arrays.asList(actual.StationUuid, actual.ChangeUuid, actual.StationId, actual.Name,
+                        actual.getNameSearchKey(), actual.StreamUrl, actual.HomePageUrl, actual.IconUrl,
+                        actual.Country, actual.CountryCode, actual.State, actual.Language, actual.Codec,
+                        actual.TagsAll));
+        assertEquals(Arrays.asList(expected.ClickCount, expected.ClickTrend, expected.Votes,
+                expected.RefreshRetryCount, expected.Bitrate),
+                Arrays.asList(actual.ClickCount, actual.ClickTrend, actual.Votes,
+                        actual.RefreshRetryCount, actual.Bitrate));
+        assertEquals(Arrays.asList(expected.Working, expected.Hls, expected.DeletedOnServer),
+                Arrays.asList(actual.Working, actual.Hls, actual.DeletedOnServer));
+    }
+}
@@ -0,0 +1,65 @@
+package net.programmierecke.radiodroid2.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CoalescingChannelTest {
+
+    @Test
+    void publish_deliversOnlyLatestPendingValue() {
+        final List<Runnable> scheduled = new ArrayList<>();
+        final List<Integer> received = new ArrayList<>();
+        final CoalescingChannel<Integer> channel = new CoalescingChannel<>(scheduled::add, received::add);
+
+        channel.publish(1);
+        channel.publish(2);
+        channel.publish(3);
+        assertEquals(1, scheduled.size());
+
+        scheduled.remove(0).run();
+        assertEquals(Collections.singletonList(3), received);
+
+        channel.publish(4);
+        assertEquals(1, scheduled.size());
+        scheduled.remove(0).run();
+
+        assertEquals(Arrays.asList(3, 4), received);
+        assertEquals(4, channel.getPublishedCount());
+        assertEquals(2, channel.getDeliveredCount());
+    }
+
+    @Test
+    void publish_fromOtherThreadAlwaysDeliversLastValue() throws Exception {
+        final ExecutorService receivingThread = Executors.newSingleThreadExecutor();
+        final List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        final CoalescingChannel<Integer> channel = new CoalescingChannel<>(receivingThread, received::add);
+
+        final int count = 10000;
+        for (int i = 1; i <= count; i++) {
+            channel.publish(i);
+        }
+
+        final CountDownLatch delivered = new CountDownLatch(1);
+        receivingThread.execute(delivered::countDown);
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        receivingThread.shutdown();
+
+        assertEquals(count, (int) received.get(received.size() - 1));
+        assertTrue(received.size() <= count);
+        // Values arrive in order
+        for (int i = 1; i < received.size(); i++) {
+            assertTrue(received.get(i - 1) < received.get(i));
+        }
+    }
+}
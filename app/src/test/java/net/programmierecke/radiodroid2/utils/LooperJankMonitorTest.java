@@ -0,0 +1,28 @@
+package net.programmierecke.radiodroid2.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LooperJankMonitorTest {
+
+    @Test
+    void onLine_measuresMessages() {
+        final LooperJankMonitor monitor = new LooperJankMonitor("Main thread");
+        monitor.reset(1000);
+
+        monitor.onLine(">>>>> Dispatching to Handler (android.os.Handler) {42} null: 0", 1000);
+        monitor.onLine("<<<<< Finished to Handler (android.os.Handler) {42} null", 1004);
+        monitor.onLine(">>>>> Dispatching to Handler (android.os.Handler) {42} null: 1", 1100);
+        monitor.onLine("<<<<< Finished to Handler (android.os.Handler) {42} null", 1130);
+        // Started before the monitor
+        monitor.onLine("<<<<< Finished to Handler (android.os.Handler) {42} null", 1200);
+
+        assertEquals(2, monitor.getMessages());
+        assertEquals(1, monitor.getSlowMessages());
+        assertEquals(34, monitor.getBusyMs());
+        assertEquals(30, monitor.getLongestMs());
+        assertEquals("Main thread: 2 messages in 1000 ms, 1 longer than 16 ms, longest 30 ms, busy 3.4%",
+                monitor.getSummary(2000));
+    }
+}
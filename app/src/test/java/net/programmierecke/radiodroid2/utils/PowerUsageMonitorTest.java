@@ -0,0 +1,21 @@
+package net.programmierecke.radiodroid2.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PowerUsageMonitorTest {
+
+    @Test
+    void summary_isPerTimePlayed() {
+        final PowerUsageMonitor.Sample start = new PowerUsageMonitor.Sample(1000, 500, 10, 80);
+        final PowerUsageMonitor.Sample end = new PowerUsageMonitor.Sample(1000 + 2 * 3600 * 1000, 72500, 7210, 74);
+
+        assertEquals("Low power: 7200 s, cpu 72000 ms (1.00%), 7200 network waits (1.00 per second), battery 80% -> 74%, 3.0% per hour",
+                PowerUsageMonitor.getSummary("Low power", start, end));
+
+        final PowerUsageMonitor.Sample unknownBattery = new PowerUsageMonitor.Sample(11000, 500, 10, -1);
+        assertEquals("Normal: 10 s, cpu 0 ms (0.00%), 0 network waits (0.00 per second), battery unknown",
+                PowerUsageMonitor.getSummary("Normal", start, unknownBattery));
+    }
+}
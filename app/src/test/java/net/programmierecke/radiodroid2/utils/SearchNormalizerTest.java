@@ -0,0 +1,37 @@
+package net.programmierecke.radiodroid2.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SearchNormalizerTest {
+    @Test
+    void normalize_foldsCaseAndDiacritics() {
+        assertEquals("radio skoda", SearchNormalizer.normalize("Radio Škoda"));
+        assertEquals("radio skoda", SearchNormalizer.normalize("RADIO SKODA"));
+        assertEquals("cafe creme", SearchNormalizer.normalize("Café Crème"));
+        assertEquals("strasse", SearchNormalizer.normalize("Straße"));
+        assertEquals("lodz", SearchNormalizer.normalize("Łódź"));
+    }
+
+    @Test
+    void normalize_foldsCompatibilityCharacters() {
+        // Fullwidth "FM" and circled digit one
+        assertEquals("fm 1", SearchNormalizer.normalize("ＦＭ ①"));
+    }
+
+    @Test
+    void normalize_transliteratesCyrillicAndGreek() {
+        // "Radio Mayak" in Cyrillic
+        assertEquals("radio maiak", SearchNormalizer.normalize("Радио Маяк"));
+        // "Athina" in Greek with tonos
+        assertEquals("athina", SearchNormalizer.normalize("Αθήνα"));
+    }
+
+    @Test
+    void normalize_collapsesWhitespace() {
+        assertEquals("jazz radio", SearchNormalizer.normalize("  Jazz \t  Radio  "));
+        assertEquals("", SearchNormalizer.normalize("   "));
+        assertEquals("", SearchNormalizer.normalize(null));
+    }
+}
@@ -0,0 +1,156 @@
+package net.programmierecke.radiodroid2.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteBehindQueueTest {
+    private ScheduledExecutorService executor;
+    private List<List<Integer>> writtenBatches;
+
+    @BeforeEach
+    void init() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        writtenBatches = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @AfterEach
+    void cleanup() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void submit_writesChangesInOneBatchAfterDelay() throws Exception {
+        final CountDownLatch written = new CountDownLatch(1);
+        WriteBehindQueue<Integer> queue = new WriteBehindQueue<>(executor, 500, changes -> {
+            writtenBatches.add(changes);
+            written.countDown();
+        });
+
+        queue.submit(1);
+        queue.submit(2);
+        queue.submit(3);
+        assertTrue(writtenBatches.isEmpty());
+
+        assertTrue(written.await(10, TimeUnit.SECONDS));
+
+        assertEquals(Collections.singletonList(Arrays.asList(1, 2, 3)), writtenBatches);
+        assertFalse(queue.hasPendingChanges());
+    }
+
+    @Test
+    void flush_writesWithoutWaitingForDelay() throws Exception {
+        WriteBehindQueue<Integer> queue = new WriteBehindQueue<>(executor, 60 * 1000, writtenBatches::add);
+
+        queue.submit(1);
+        queue.flush().get();
+
+        assertEquals(Collections.singletonList(Collections.singletonList(1)), writtenBatches);
+    }
+
+    @Test
+    void getLastPendingChange_returnsChangeUntilWritten() throws Exception {
+        WriteBehindQueue<Integer> queue = new WriteBehindQueue<>(executor, 60 * 1000, writtenBatches::add);
+
+        assertNull(queue.getLastPendingChange());
+
+        queue.submit(1);
+        queue.submit(2);
+        assertEquals(Integer.valueOf(2), queue.getLastPendingChange());
+
+        queue.flush().get();
+        assertNull(queue.getLastPendingChange());
+    }
+
+    @Test
+    void submit_usesCoalescer() throws Exception {
+        // Keeps only the latest change
+        WriteBehindQueue<Integer> queue = new WriteBehindQueue<>(executor, 60 * 1000, writtenBatches::add, (pending, change) -> {
+            pending.clear();
+            pending.add(change);
+        });
+
+        for (int i = 0; i < 10; i++) {
+            queue.submit(i);
+        }
+        queue.flush().get();
+
+        assertEquals(Collections.singletonList(Collections.singletonList(9)), writtenBatches);
+    }
+
+    /**
+     * Main thread time per mutation of the station list. Before, every mutation serialized the
+     * whole list and wrote it synchronously. Now it copies the list and submits the change.
+     * Both are measured on the same list sizes. Only reports numbers, run with -Dbenchmarks=true.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void benchmark_callerTimePerMutation() throws Exception {
+        final int mutations = 200;
+
+        final File file = File.createTempFile("stations", ".json");
+        file.deleteOnExit();
+
+        for (int listSize : new int[]{100, 1000, 5000}) {
+            final List<String> stations = new ArrayList<>();
+            for (int i = 0; i < listSize; i++) {
+                stations.add("{\"stationuuid\":\"" + i + "\",\"name\":\"Station " + i + "\",\"url\":\"http://example.org/stream/" + i + "\"}");
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < mutations; i++) {
+                Collections.swap(stations, i % listSize, (i + 1) % listSize);
+                writeWholeList(file, stations);
+            }
+            final long saveNs = (System.nanoTime() - start) / mutations;
+
+            WriteBehindQueue<List<String>> queue = new WriteBehindQueue<>(executor, 60 * 1000, changes -> {
+                try {
+                    writeWholeList(file, changes.get(changes.size() - 1));
+                } catch (IOException ignored) {
+                }
+            });
+
+            start = System.nanoTime();
+            for (int i = 0; i < mutations; i++) {
+                Collections.swap(stations, i % listSize, (i + 1) % listSize);
+                queue.submit(Collections.unmodifiableList(new ArrayList<>(stations)));
+            }
+            final long submitNs = (System.nanoTime() - start) / mutations;
+            queue.flush().get();
+
+            System.out.println(String.format("%d stations: %d us per synchronous save, %d us per submit",
+                    listSize, saveNs / 1000, submitNs / 1000));
+        }
+    }
+
+    private static void writeWholeList(File file, List<String> stations) throws IOException {
+        StringBuilder builder = new StringBuilder("[");
+        for (String station : stations) {
+            builder.append(station).append(',');
+        }
+        builder.append(']');
+
+        try (FileWriter writer = new FileWriter(file, false)) {
+            writer.write(builder.toString());
+        }
+    }
+}